@@ -0,0 +1,87 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import io.github.tempsotsusei.kotobanotane.config.AsyncConfiguration;
+import io.github.tempsotsusei.kotobanotane.config.AsyncExecutorProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@code llmJobExecutor} の 2 つのモードで、OpenAI の応答待ちが大半を占めるジョブを 1 秒あたり何件さばけるかを比べる負荷試験。
+ *
+ * <p>各ジョブは {@link LlmBulkhead} の枠を取り、{@code OpenAiClient#requestStructuredJson} と同じく Mono を
+ * {@code block()} で待つ（応答時間は {@code latencyMillis} で固定）。{@code PLATFORM} は従来の既定値（最大 4 スレッド）なので
+ * 上限はおよそ {@code 4 / latency}、{@code VIRTUAL} はバルクヘッドの上限（{@code bulkheadLimit}）までの同時実行になる。
+ *
+ * <p>{@code -Djdk.tracePinnedThreads=short} 付きで実行するので、待機中に仮想スレッドがキャリアスレッドに固定されるとスタックが出力される。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.tracePinnedThreads=short")
+public class LlmJobExecutorBenchmark {
+
+  private static final int JOBS = 200;
+
+  @Param({"PLATFORM", "VIRTUAL"})
+  public AsyncExecutorProperties.Mode mode;
+
+  @Param({"50"})
+  public long latencyMillis;
+
+  @Param({"16"})
+  public int bulkheadLimit;
+
+  private Executor executor;
+  private LlmBulkhead bulkhead;
+
+  @Setup
+  public void setUp() {
+    // PLATFORM の待ち行列は 1 回分のジョブが溢れない長さにする（溢れると TaskRejectedException になる）
+    AsyncExecutorProperties properties =
+        new AsyncExecutorProperties(2, 4, JOBS, mode, bulkheadLimit, Map.of(), 60_000, JOBS);
+    executor = new AsyncConfiguration(properties).llmJobExecutor();
+    bulkhead = new LlmBulkhead(properties, new SimpleMeterRegistry());
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (executor instanceof ThreadPoolTaskExecutor pool) {
+      pool.shutdown();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(JOBS)
+  public void jobs() throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(JOBS);
+    for (int i = 0; i < JOBS; i++) {
+      executor.execute(
+          () -> {
+            try {
+              bulkhead.call(
+                  "feedback", () -> Mono.delay(Duration.ofMillis(latencyMillis)).block());
+            } finally {
+              done.countDown();
+            }
+          });
+    }
+    done.await();
+  }
+}
@@ -0,0 +1,115 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * キーワード生成と同じ規模のリクエストで、ボディ組み立てのコストを比較するベンチマーク。
+ *
+ * <ul>
+ *   <li>{@code mapWithSchemaRebuild}: 従来の実装（呼び出しごとにスキーマと HashMap を組み立てて全体をシリアライズ）
+ *   <li>{@code mapWithSharedSchema}: スキーマだけ使い回し、ボディ全体は毎回シリアライズする
+ *   <li>{@code template}: {@link StructuredRequestTemplate} でユーザー入力だけを差し込む
+ * </ul>
+ *
+ * <p>{@code ./gradlew jmh}（gc プロファイラ有効）で実行し、{@code gc.alloc.rate.norm} で 1 回あたりの割り当て量を比較する。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StructuredRequestPayloadBenchmark {
+
+  private static final String MODEL = "gpt-4o-mini";
+  private static final String SYSTEM_PROMPT =
+      "あなたは4〜6歳の子ども向けに日本語文章からキーワードセットを抽出するアシスタントです。"
+          + "各セットは「関連しそうな単語2つ」と「関連が薄い単語2つ」の計4語で構成してください。"
+          + "すべての単語はひらがなで、可能であれば10文字以内に収めてください。"
+          + "セットは必ず3つ返し、JSON配列以外の出力は行わないでください。";
+  private static final String USER_INPUT =
+      "むかしむかし、やまのふもとに ちいさな うさぎが すんでいました。"
+          + "ある日、うさぎは もりの おくで ひかる いしを みつけました。"
+          + "「これは なんだろう」と うさぎは くびを かしげました。";
+  private static final int MAX_OUTPUT_TOKENS = 2000;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private JsonNode sharedSchema;
+  private StructuredRequestTemplate template;
+
+  @Setup
+  public void setUp() {
+    sharedSchema = buildKeywordObjectSchema();
+    template =
+        StructuredRequestTemplate.create(
+            objectMapper, MODEL, SYSTEM_PROMPT, "keyword_matrix", sharedSchema, false);
+  }
+
+  @Benchmark
+  public byte[] mapWithSchemaRebuild() throws Exception {
+    return objectMapper.writeValueAsBytes(buildPayload(buildKeywordObjectSchema()));
+  }
+
+  @Benchmark
+  public byte[] mapWithSharedSchema() throws Exception {
+    return objectMapper.writeValueAsBytes(buildPayload(sharedSchema));
+  }
+
+  @Benchmark
+  public byte[] template() {
+    return template.render(objectMapper, USER_INPUT, MAX_OUTPUT_TOKENS);
+  }
+
+  /** テンプレート導入前の OpenAiClient と同じ組み立て方。 */
+  private Map<String, Object> buildPayload(JsonNode schema) {
+    Map<String, Object> payload = new HashMap<>();
+    payload.put("model", MODEL);
+    payload.put(
+        "input",
+        List.of(
+            Map.of("role", "system", "content", SYSTEM_PROMPT),
+            Map.of("role", "user", "content", USER_INPUT)));
+    Map<String, Object> responseFormat = new HashMap<>();
+    responseFormat.put("type", "json_schema");
+    responseFormat.put("name", "keyword_matrix");
+    responseFormat.put("schema", schema);
+    Map<String, Object> textConfig = new HashMap<>();
+    textConfig.put("format", responseFormat);
+    payload.put("text", textConfig);
+    payload.put("max_output_tokens", MAX_OUTPUT_TOKENS);
+    return payload;
+  }
+
+  /** KeywordListsGenerationService と同じスキーマ。 */
+  private JsonNode buildKeywordObjectSchema() {
+    ObjectNode root = objectMapper.createObjectNode();
+    root.put("$schema", "http://json-schema.org/draft-07/schema#");
+    root.put("type", "object");
+    ObjectNode keywordsArray = objectMapper.createObjectNode();
+    keywordsArray.put("type", "array");
+    keywordsArray.put("additionalItems", false);
+    ObjectNode innerArray = objectMapper.createObjectNode();
+    innerArray.put("type", "array");
+    innerArray.putObject("items").put("type", "string");
+    innerArray.put("minItems", 4);
+    innerArray.put("maxItems", 4);
+    innerArray.put("additionalItems", false);
+    keywordsArray.set("items", innerArray);
+    keywordsArray.put("minItems", 3);
+    keywordsArray.put("maxItems", 3);
+    root.putObject("properties").set("keywords", keywordsArray);
+    root.set("required", objectMapper.createArrayNode().add("keywords"));
+    root.put("additionalProperties", false);
+    return root;
+  }
+}
@@ -0,0 +1,218 @@
+package io.github.tempsotsusei.kotobanotane.application.feedback;
+
+import io.github.tempsotsusei.kotobanotane.application.llm.FeedbackBatchGenerationService;
+import io.github.tempsotsusei.kotobanotane.application.llm.FeedbackItem;
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiClientException;
+import io.github.tempsotsusei.kotobanotane.config.FeedbackBatchProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * バッチモード時に、フィードバック待ちの章を溜めてまとめて生成・保存するコンポーネント。
+ *
+ * <p>{@code maxBatchSize} 件溜まるか、最初の章から {@code flushIntervalMillis} 経過した時点で 1 バッチとして投入する。結果は章ごとに {@link
+ * FeedbackService#createIfAbsent(String, String)} で保存する。結果に含まれなかった章や、バッチ自体が失敗した場合（投入の失敗やポーリングの打ち切り）は
+ * 何も保存せず、待っている章の Mono をエラーにしてジョブを取り出し直させる（取り出し回数の上限に達したらワーカーが失敗メッセージを保存する）。
+ *
+ * <p>{@link #enqueue(String, String)} は章の保存で完了する Mono を返す。{@link FeedbackJobWorker} はこの完了を待ってからジョブを終えるので、
+ * バッチの結果を待つ間もジョブのリースは延長され続け、インスタンスが落ちてもジョブは失われない。
+ *
+ * <p>バッチごとに章数・成功数・API 呼び出し回数・所要時間をログとメトリクス（{@code llm.feedback.batch.*}）に残し、章ごとの即時呼び出しとの比較に使う。
+ */
+@Component
+public class FeedbackBatchCollector {
+
+  private static final Logger log = LoggerFactory.getLogger(FeedbackBatchCollector.class);
+
+  private final FeedbackBatchGenerationService feedbackBatchGenerationService;
+  private final FeedbackService feedbackService;
+  private final FeedbackBatchProperties properties;
+  private final MeterRegistry meterRegistry;
+  private final Object lock = new Object();
+  private Map<String, Pending> pending = new LinkedHashMap<>();
+  private Disposable flushTimer;
+
+  public FeedbackBatchCollector(
+      FeedbackBatchGenerationService feedbackBatchGenerationService,
+      FeedbackService feedbackService,
+      FeedbackBatchProperties properties,
+      MeterRegistry meterRegistry) {
+    this.feedbackBatchGenerationService = feedbackBatchGenerationService;
+    this.feedbackService = feedbackService;
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /** バッチモードが有効かどうか。 */
+  public boolean isEnabled() {
+    return properties.enabled();
+  }
+
+  /**
+   * 章をバッチ待ちに追加する。件数が上限に達した場合はその場で投入する。
+   *
+   * <p>追加は呼び出しの時点で行う。同じ章がまだ投入前なら、新たに積まずに待っている章の完了を返す。
+   *
+   * @param chapterId 保存先の章 ID
+   * @param chapterText 平文化済み章本文
+   * @return 章のフィードバックの保存で完了し、生成や保存ができなかった場合はエラーになる Mono
+   */
+  public Mono<Void> enqueue(String chapterId, String chapterText) {
+    boolean full;
+    Pending entry;
+    synchronized (lock) {
+      entry = pending.computeIfAbsent(chapterId, key -> new Pending(chapterText, Sinks.empty()));
+      full = pending.size() >= properties.maxBatchSize();
+      if (!full && flushTimer == null) {
+        flushTimer =
+            Schedulers.parallel()
+                .schedule(this::flush, properties.flushIntervalMillis(), TimeUnit.MILLISECONDS);
+      }
+    }
+    if (full) {
+      flush();
+    }
+    return entry.saved().asMono();
+  }
+
+  /** 溜まっている章を 1 バッチとして投入する。 */
+  public void flush() {
+    Map<String, Pending> batch;
+    synchronized (lock) {
+      if (flushTimer != null) {
+        flushTimer.dispose();
+        flushTimer = null;
+      }
+      if (pending.isEmpty()) {
+        return;
+      }
+      batch = pending;
+      pending = new LinkedHashMap<>();
+    }
+    submit(batch).subscribe(unused -> {}, e -> log.error("Feedback batch terminated", e));
+  }
+
+  /** 待ち件数を返す。 */
+  public int pendingCount() {
+    synchronized (lock) {
+      return pending.size();
+    }
+  }
+
+  /**
+   * 終了時に未投入の章をジョブへ返す。
+   *
+   * <p>待っている章の Mono をエラーにするので、{@link FeedbackJobWorker} がジョブのリースを手放し、再起動後や他のインスタンスで取り出し直される。
+   * 投入済みでバッチの結果を待っている章は、ワーカーの終了処理でリースが手放される。
+   */
+  @PreDestroy
+  void releasePendingOnShutdown() {
+    Map<String, Pending> remaining;
+    synchronized (lock) {
+      if (flushTimer != null) {
+        flushTimer.dispose();
+        flushTimer = null;
+      }
+      remaining = pending;
+      pending = new LinkedHashMap<>();
+    }
+    if (remaining.isEmpty()) {
+      return;
+    }
+    log.warn("Returning {} chapters waiting for batch feedback on shutdown", remaining.size());
+    IllegalStateException shutdown =
+        new IllegalStateException("Feedback batch collector is shutting down");
+    remaining.values().forEach(entry -> entry.saved().tryEmitError(shutdown));
+  }
+
+  private Mono<Void> submit(Map<String, Pending> batch) {
+    long startedAt = System.nanoTime();
+    double httpCallsBefore = httpCalls();
+    Map<String, String> chapterTexts = new LinkedHashMap<>();
+    batch.forEach((chapterId, entry) -> chapterTexts.put(chapterId, entry.chapterText()));
+    return feedbackBatchGenerationService
+        .generateBatch(chapterTexts)
+        .publishOn(Schedulers.boundedElastic())
+        .doOnNext(results -> save(batch, results, startedAt, httpCallsBefore))
+        .doOnError(
+            e -> {
+              log.warn(
+                  "Feedback batch failed, returning chapters to jobs chapters={}", batch.size(), e);
+              countChapters("returned", batch.size());
+              batch.values().forEach(entry -> entry.saved().tryEmitError(e));
+            })
+        .then()
+        .onErrorComplete();
+  }
+
+  private void save(
+      Map<String, Pending> batch,
+      Map<String, List<FeedbackItem>> results,
+      long startedAt,
+      double httpCallsBefore) {
+    int failed = 0;
+    for (Map.Entry<String, Pending> entry : batch.entrySet()) {
+      String chapterId = entry.getKey();
+      List<FeedbackItem> feedbacks = results.get(chapterId);
+      if (feedbacks == null) {
+        failed++;
+        entry
+            .getValue()
+            .saved()
+            .tryEmitError(
+                new OpenAiClientException(
+                    "Feedback batch returned no result for chapterId=" + chapterId));
+        continue;
+      }
+      try {
+        feedbackService.createIfAbsent(
+            chapterId, FeedbackGenerationJobService.formatFeedbacks(feedbacks));
+        entry.getValue().saved().tryEmitEmpty();
+      } catch (RuntimeException e) {
+        log.error("Failed to save batch feedback chapterId={}", chapterId, e);
+        // ジョブを手放させ、後で取り出し直して保存する
+        entry.getValue().saved().tryEmitError(e);
+      }
+    }
+    int succeeded = batch.size() - failed;
+    long elapsedNanos = System.nanoTime() - startedAt;
+    countChapters("succeeded", succeeded);
+    countChapters("failed", failed);
+    Timer.builder("llm.feedback.batch.turnaround")
+        .description("バッチ投入から保存完了までの時間")
+        .register(meterRegistry)
+        .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    // 章ごとの即時生成では章数と同じ回数だけ API を呼ぶため、httpCalls と chapters の比が呼び出し削減率になる
+    log.info(
+        "Feedback batch saved chapters={} succeeded={} failed={} httpCalls={} elapsedMs={}",
+        batch.size(),
+        succeeded,
+        failed,
+        Math.round(httpCalls() - httpCallsBefore),
+        TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+  }
+
+  private void countChapters(String result, int count) {
+    meterRegistry.counter("llm.feedback.batch.chapters", "result", result).increment(count);
+  }
+
+  /** バッチ API の呼び出し回数（同時に走る他のバッチ分を含む概算）。 */
+  private double httpCalls() {
+    return meterRegistry.counter("llm.openai.batch.http_calls").count();
+  }
+
+  /** バッチ待ちの章。{@code saved} は章の保存で完了する。 */
+  private record Pending(String chapterText, Sinks.Empty<Void> saved) {}
+}
@@ -2,15 +2,26 @@ package io.github.tempsotsusei.kotobanotane.application.feedback;
 
 import io.github.tempsotsusei.kotobanotane.application.llm.FeedbackGenerationService;
 import io.github.tempsotsusei.kotobanotane.application.llm.FeedbackItem;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmPriority;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUnavailableException;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUsageLedger;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * 章本文を基にフィードバックを生成し、非同期で保存するジョブサービス。
  *
- * <p>LLM 呼び出しに失敗した場合は、固定の失敗メッセージを保存して空欄を残さない。
+ * <p>新規作成された物語の章は feedback_jobs に積まれ、{@link FeedbackJobWorker} から {@link #runJob(String, Map)} で処理される。生成や保存に失敗した場合は
+ * エラーをそのまま返し、ワーカーがジョブを取り出し直す。取り出し回数の上限に達したジョブには、ワーカーが {@link #saveFailureMessages(Collection)}
+ * で固定の失敗メッセージを保存して空欄を残さない。
  */
 @Service
 public class FeedbackGenerationJobService {
@@ -21,29 +32,145 @@ public class FeedbackGenerationJobService {
 
   private final FeedbackGenerationService feedbackGenerationService;
   private final FeedbackService feedbackService;
+  private final FeedbackBatchCollector feedbackBatchCollector;
 
   public FeedbackGenerationJobService(
-      FeedbackGenerationService feedbackGenerationService, FeedbackService feedbackService) {
+      FeedbackGenerationService feedbackGenerationService,
+      FeedbackService feedbackService,
+      FeedbackBatchCollector feedbackBatchCollector) {
     this.feedbackGenerationService = feedbackGenerationService;
     this.feedbackService = feedbackService;
+    this.feedbackBatchCollector = feedbackBatchCollector;
   }
 
   /**
-   * 章本文を平文化した文字列を元にフィードバックを生成し、保存する。
+   * 1 章分のフィードバックを生成して保存する。
+   *
+   * <p>OpenAI の応答を待つ間はどのスレッドも占有しない。保存（JPA）だけは boundedElastic 上で行う。
    *
    * @param chapterId 保存先の章 ID
    * @param chapterText 平文化済み章本文
+   * @return 保存完了で完了し、生成や保存に失敗した場合はエラーになる Mono
+   */
+  public Mono<Void> generateAndSaveAsync(String chapterId, String chapterText) {
+    return feedbackGenerationService
+        .generateAsync(chapterText)
+        .map(FeedbackGenerationJobService::formatFeedbacks)
+        .publishOn(Schedulers.boundedElastic())
+        .doOnNext(
+            formatted -> {
+              feedbackService.createIfAbsent(chapterId, formatted);
+              log.info("Feedback generated for chapterId={}", chapterId);
+            })
+        .then()
+        .doOnError(e -> logGenerationFailure("chapterId=" + chapterId, e))
+        .contextWrite(LlmPriority.BACKGROUND.asContext());
+  }
+
+  /**
+   * キューから取り出した同じ物語の章について、1 回の LLM 呼び出しでフィードバックを生成し、章ごとに保存する。
+   *
+   * <p>長いシステムプロンプトを章の数だけ送らずに済む。結果に含まれなかった章だけは章単位の生成にフォールバックする。バッチモードが有効な場合は各章を {@link
+   * FeedbackBatchCollector} に積み、バッチの結果が全章分保存された時点で完了する。いずれも生成や保存に失敗した章があればエラーになり、ジョブは取り出し直される
+   * （保存済みの章は再実行で飛ばす）。
+   *
+   * <p>ジョブは再実行されうるため、フィードバックが保存済みの章は生成せずに飛ばし、保存も章ごとに 1 件までにする。
+   *
+   * <p>即時生成の使用量は物語の作成者に紐付けて記録する（バッチモードでは複数ユーザーの章をまとめるため紐付けない）。OpenAI の同時実行枠は {@link
+   * LlmPriority#BACKGROUND} として待つので、キーワード生成など子どもが画面で待っている呼び出しが先に通る。
+   *
+   * @param auth0Id 物語を作成したユーザー
+   * @param chapterTexts 章 ID をキーにした平文化済み章本文（章番号順）
+   * @return 全章の保存で完了し、失敗した章があればエラーになる Mono
+   */
+  public Mono<Void> runJob(String auth0Id, Map<String, String> chapterTexts) {
+    return Mono.fromCallable(
+            () -> feedbackService.findChapterIdsWithFeedback(chapterTexts.keySet()))
+        .subscribeOn(Schedulers.boundedElastic())
+        .flatMap(
+            saved -> {
+              if (!saved.isEmpty()) {
+                log.info("Skipping chapters that already have feedback chapterIds={}", saved);
+              }
+              Map<String, String> remaining = new LinkedHashMap<>(chapterTexts);
+              remaining.keySet().removeAll(saved);
+              return generateAndSaveAll(auth0Id, remaining);
+            });
+  }
+
+  private Mono<Void> generateAndSaveAll(String auth0Id, Map<String, String> chapterTexts) {
+    if (feedbackBatchCollector.isEnabled()) {
+      return Flux.fromIterable(chapterTexts.entrySet())
+          .flatMap(entry -> feedbackBatchCollector.enqueue(entry.getKey(), entry.getValue()))
+          .then();
+    }
+    return generateAndSaveAllAsync(chapterTexts)
+        .contextWrite(LlmUsageLedger.attributedTo(auth0Id));
+  }
+
+  /**
+   * {@link #runJob(String, Map)} の即時生成の処理本体。
+   *
+   * @param chapterTexts 章 ID をキーにした平文化済み章本文
+   * @return 全章の保存完了で完了し、失敗した章があればエラーになる Mono
    */
-  @Async("llmJobExecutor")
-  public void generateAndSave(String chapterId, String chapterText) {
-    try {
-      var feedbacks = feedbackGenerationService.generate(chapterText);
-      String formatted = formatFeedbacks(feedbacks);
-      feedbackService.create(chapterId, formatted);
-      log.info("Feedback generated for chapterId={}", chapterId);
-    } catch (Exception e) {
-      log.warn("Feedback generation failed for chapterId={}", chapterId, e);
-      feedbackService.create(chapterId, FAILURE_MESSAGE);
+  public Mono<Void> generateAndSaveAllAsync(Map<String, String> chapterTexts) {
+    if (chapterTexts.size() <= 1) {
+      return Flux.fromIterable(chapterTexts.entrySet())
+          .concatMap(entry -> generateAndSaveAsync(entry.getKey(), entry.getValue()))
+          .then();
+    }
+    return feedbackGenerationService
+        .generateForChaptersAsync(chapterTexts)
+        .publishOn(Schedulers.boundedElastic())
+        .flatMapMany(
+            results ->
+                Flux.fromIterable(chapterTexts.entrySet())
+                    .concatMap(
+                        entry -> saveOrFallback(entry.getKey(), entry.getValue(), results)))
+        .then()
+        .doOnError(e -> logGenerationFailure("chapterIds=" + chapterTexts.keySet(), e))
+        .contextWrite(LlmPriority.BACKGROUND.asContext());
+  }
+
+  private Mono<Void> saveOrFallback(
+      String chapterId, String chapterText, Map<String, List<FeedbackItem>> results) {
+    List<FeedbackItem> feedbacks = results.get(chapterId);
+    if (feedbacks == null) {
+      log.warn("Chapter missing from multi-chapter feedback chapterId={}", chapterId);
+      return generateAndSaveAsync(chapterId, chapterText);
+    }
+    return Mono.fromRunnable(
+        () -> {
+          feedbackService.createIfAbsent(chapterId, formatFeedbacks(feedbacks));
+          log.info("Feedback generated for chapterId={}", chapterId);
+        });
+  }
+
+  /**
+   * 生成を行わずに、各章へ失敗メッセージを保存する。取り出しの上限回数に達したジョブ向け。
+   *
+   * @param chapterIds 保存先の章 ID
+   * @return 保存完了で完了する Mono
+   */
+  Mono<Void> saveFailureMessages(Collection<String> chapterIds) {
+    return Flux.fromIterable(chapterIds).concatMap(this::saveFailureMessage).then();
+  }
+
+  private Mono<Void> saveFailureMessage(String chapterId) {
+    return Mono.fromRunnable(() -> feedbackService.createIfAbsent(chapterId, FAILURE_MESSAGE))
+        .subscribeOn(Schedulers.boundedElastic())
+        .then();
+  }
+
+  private void logGenerationFailure(String target, Throwable e) {
+    if (e instanceof LlmUnavailableException unavailable) {
+      log.warn(
+          "Feedback generation skipped (LLM unavailable) {} retryAfter={}",
+          target,
+          unavailable.getRetryAfter());
+    } else {
+      log.warn("Feedback generation failed for {}", target, e);
     }
   }
 
@@ -53,7 +180,7 @@ public class FeedbackGenerationJobService {
    * @param feedbacks original/corrected/reason のリスト
    * @return ラベル付きテキスト（間違いなしの場合は固定メッセージ）
    */
-  private String formatFeedbacks(java.util.List<FeedbackItem> feedbacks) {
+  static String formatFeedbacks(List<FeedbackItem> feedbacks) {
     if (feedbacks == null || feedbacks.isEmpty()) {
       return NO_ISSUE_MESSAGE;
     }
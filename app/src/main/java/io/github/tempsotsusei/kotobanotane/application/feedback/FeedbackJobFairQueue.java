@@ -0,0 +1,107 @@
+package io.github.tempsotsusei.kotobanotane.application.feedback;
+
+import io.github.tempsotsusei.kotobanotane.domain.feedbackjob.FeedbackJob;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 取り出し候補のフィードバック生成ジョブから、ユーザー間で公平になるように処理するジョブを選ぶ（deficit round-robin）。
+ *
+ * <p>ユーザーを順番に回り、1 巡ごとに各ユーザーへ {@code quantum} 章分のクレジットを与える。クレジットの範囲で、そのユーザーの古い物語から順に選ぶ
+ * （同じ物語の章はまとめて 1 回の生成に渡すため、物語の章数をコストにする）。回る順番とクレジットは次の取り出しにも持ち越すので、取り出しのたびに同じユーザーから
+ * 始まることはない。1 ユーザーの処理中の件数が {@code userLimit} に達したら、そのユーザーはそれ以上選ばない。
+ *
+ * <p>スレッドセーフではない。{@link FeedbackJobWorker} が取り出しのロックの中で呼ぶ。
+ */
+final class FeedbackJobFairQueue {
+
+  private final int quantum;
+  private final Deque<String> rotation = new ArrayDeque<>();
+  private final Map<String, Integer> deficits = new HashMap<>();
+
+  FeedbackJobFairQueue(int quantum) {
+    this.quantum = quantum;
+  }
+
+  /**
+   * 候補から今回処理を始めるジョブを選ぶ。
+   *
+   * @param candidates 取り出し候補のジョブ（古い順）
+   * @param limit 今回始められる最大件数
+   * @param userLimit 1 ユーザーが同時に処理できる最大件数
+   * @param runningByUser ユーザーごとの処理中の件数
+   * @return 物語ごとにまとめたジョブ（始める順）
+   */
+  List<List<FeedbackJob>> select(
+      List<FeedbackJob> candidates,
+      int limit,
+      int userLimit,
+      Map<String, Integer> runningByUser) {
+    Map<String, Deque<List<FeedbackJob>>> backlog = backlogByUser(candidates);
+    // 候補の無くなったユーザーは外し、新しいユーザーは末尾に加える
+    rotation.removeIf(user -> !backlog.containsKey(user));
+    deficits.keySet().retainAll(backlog.keySet());
+    backlog.keySet().stream().filter(user -> !rotation.contains(user)).forEach(rotation::addLast);
+
+    Map<String, Integer> running = new HashMap<>(runningByUser);
+    List<List<FeedbackJob>> selected = new ArrayList<>();
+    int total = 0;
+    boolean progressing = true;
+    while (progressing && total < limit) {
+      progressing = false;
+      for (int i = 0, users = rotation.size(); i < users && total < limit; i++) {
+        String user = rotation.pollFirst();
+        rotation.addLast(user);
+        Deque<List<FeedbackJob>> stories = backlog.get(user);
+        if (stories.isEmpty()) {
+          continue;
+        }
+        int deficit = deficits.getOrDefault(user, 0) + quantum;
+        while (!stories.isEmpty()) {
+          int cost = stories.peekFirst().size();
+          int userRunning = running.getOrDefault(user, 0);
+          if (cost > deficit) {
+            // 次の巡回でクレジットが増えれば選べる
+            progressing = true;
+            break;
+          }
+          if ((userRunning > 0 && userRunning + cost > userLimit)
+              || (total > 0 && total + cost > limit)) {
+            // 枠が空くまで待つ間にクレジットをため込まない
+            deficit = Math.min(deficit, cost);
+            break;
+          }
+          selected.add(stories.pollFirst());
+          total += cost;
+          deficit -= cost;
+          running.merge(user, cost, Integer::sum);
+          progressing = true;
+        }
+        deficits.put(user, stories.isEmpty() ? 0 : deficit);
+      }
+    }
+    return selected;
+  }
+
+  private static Map<String, Deque<List<FeedbackJob>>> backlogByUser(
+      List<FeedbackJob> candidates) {
+    Map<String, Deque<List<FeedbackJob>>> backlog = new LinkedHashMap<>();
+    candidates.stream()
+        .collect(
+            Collectors.groupingBy(
+                FeedbackJob::storyId, LinkedHashMap::new, Collectors.toList()))
+        .values()
+        .forEach(
+            story ->
+                backlog
+                    .computeIfAbsent(story.get(0).auth0Id(), user -> new ArrayDeque<>())
+                    .addLast(story));
+    return backlog;
+  }
+}
@@ -0,0 +1,374 @@
+package io.github.tempsotsusei.kotobanotane.application.feedback;
+
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUnavailableException;
+import io.github.tempsotsusei.kotobanotane.application.uuid.UuidGeneratorService;
+import io.github.tempsotsusei.kotobanotane.config.FeedbackJobProperties;
+import io.github.tempsotsusei.kotobanotane.config.time.TimeProvider;
+import io.github.tempsotsusei.kotobanotane.domain.feedbackjob.FeedbackJob;
+import io.github.tempsotsusei.kotobanotane.domain.feedbackjob.FeedbackJobRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * feedback_jobs テーブルに積まれたフィードバック生成ジョブを取り出して処理するワーカー。
+ *
+ * <p>{@code pollIntervalMillis} ごと（と {@link #wakeUp()} の呼び出し時）に {@code FOR UPDATE SKIP LOCKED}
+ * でジョブを取り出してリースを付けるため、複数のインスタンスが同じジョブを奪い合わずに分担できる。処理中のジョブは {@code
+ * heartbeatIntervalMillis} ごとにリースを延ばし、インスタンスが落ちてリースが切れたジョブは他のインスタンスが取り出し直す。
+ * 保存まで終わったジョブは削除する。再実行がありうるため、フィードバックは章ごとに 1 件だけ保存し、保存済みの章は生成し直さない。
+ *
+ * <p>取り出す前にユーザーごとの先頭数件を候補として読み、{@link FeedbackJobFairQueue} でユーザー間を順番に回って選ぶ。1 人のユーザーが
+ * 物語を続けて作っても、他のユーザーのジョブはその後ろに並ばない。1 ユーザーが同時に使える処理枠は {@code maxUserSharePercent} まで。
+ *
+ * <p>同じ物語の章はまとめて {@link FeedbackGenerationJobService#runJob(String, Map)} に渡す。取り出し回数が {@code
+ * maxAttempts} を超えたジョブは生成せず、失敗メッセージを保存して終える。失敗メッセージを保存するのはこのときだけで、生成や保存に失敗したジョブ
+ * （サーキットブレーカーが開いている、再試行を使い切ったなど）はリースを手放し、{@code retryBackoffMillis}（取り出し回数ごとに倍）後に取り出し直す。バッチモードでもバッチの結果が保存されるまでは処理中として
+ * リースを延ばし続けるため、バッチ待ちのジョブも {@code maxInFlight} の枠を使う。
+ *
+ * <p>終了時は新たな取り出しを止め、処理中のジョブを {@code drainTimeoutMillis} まで待つ。待ちきれなかったジョブはリースを手放し、他のインスタンスや再起動後にすぐ取り出せるようにする。
+ * 処理中のジョブは OpenAI の WebClient や DB を使うため、{@link SmartLifecycle} の最後のフェーズで動かし、Web サーバーや Reactor Netty
+ * のリソースより先に止める。
+ */
+@Component
+public class FeedbackJobWorker implements SmartLifecycle {
+
+  private static final Logger log = LoggerFactory.getLogger(FeedbackJobWorker.class);
+
+  private final FeedbackJobRepository feedbackJobRepository;
+  private final FeedbackGenerationJobService feedbackGenerationJobService;
+  private final FeedbackJobProperties properties;
+  private final TimeProvider timeProvider;
+  private final MeterRegistry meterRegistry;
+  private final String workerId;
+  private final FeedbackJobFairQueue fairQueue;
+  /** 処理中のジョブ ID と、そのジョブを登録したユーザー。 */
+  private final Map<String, String> inFlight = new ConcurrentHashMap<>();
+  private final Disposable.Composite running = Disposables.composite();
+  private final Object pollLock = new Object();
+  private volatile boolean started;
+  private volatile boolean draining;
+  private Disposable pollTimer;
+  private Disposable heartbeatTimer;
+
+  public FeedbackJobWorker(
+      FeedbackJobRepository feedbackJobRepository,
+      FeedbackGenerationJobService feedbackGenerationJobService,
+      FeedbackJobProperties properties,
+      TimeProvider timeProvider,
+      UuidGeneratorService uuidGeneratorService,
+      MeterRegistry meterRegistry) {
+    this.feedbackJobRepository = feedbackJobRepository;
+    this.feedbackGenerationJobService = feedbackGenerationJobService;
+    this.properties = properties;
+    this.timeProvider = timeProvider;
+    this.meterRegistry = meterRegistry;
+    this.workerId = uuidGeneratorService.generateV7();
+    this.fairQueue = new FeedbackJobFairQueue(properties.fairQuantum());
+    meterRegistry.gauge("feedback.jobs.in_flight", inFlight, Map::size);
+  }
+
+  /** キューの確認とリースの延長を開始する。 */
+  @Override
+  public void start() {
+    if (!properties.enabled()) {
+      log.info("Feedback job worker disabled on this instance");
+      return;
+    }
+    pollTimer =
+        Schedulers.boundedElastic()
+            .schedulePeriodically(
+                this::poll, 0, properties.pollIntervalMillis(), TimeUnit.MILLISECONDS);
+    long heartbeat = properties.heartbeatIntervalMillis();
+    heartbeatTimer =
+        Schedulers.boundedElastic()
+            .schedulePeriodically(this::heartbeat, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+    started = true;
+    log.info("Feedback job worker started workerId={}", workerId);
+  }
+
+  /** 次の定期確認を待たずにキューを確認する。ジョブを登録したトランザクションのコミット後に呼ぶ。 */
+  public void wakeUp() {
+    if (started && !draining) {
+      Schedulers.boundedElastic().schedule(this::poll);
+    }
+  }
+
+  /** 空いている枠の分だけ、ユーザー間で公平にジョブを選んで取り出し、物語ごとに処理を始める。 */
+  void poll() {
+    synchronized (pollLock) {
+      if (draining) {
+        return;
+      }
+      int capacity = properties.maxInFlight() - inFlight.size();
+      if (capacity <= 0) {
+        return;
+      }
+      int limit = Math.min(capacity, properties.claimBatchSize());
+      int userLimit = properties.maxInFlightPerUser();
+      Instant now = timeProvider.nowInstant();
+      List<FeedbackJob> candidates;
+      List<List<FeedbackJob>> selected;
+      List<FeedbackJob> claimed;
+      try {
+        candidates =
+            feedbackJobRepository.findClaimable(now, userLimit, properties.candidateWindow());
+        if (candidates.isEmpty()) {
+          return;
+        }
+        selected = fairQueue.select(candidates, limit, userLimit, runningByUser());
+        List<String> selectedIds =
+            selected.stream().flatMap(List::stream).map(FeedbackJob::jobId).toList();
+        claimed =
+            feedbackJobRepository.claim(
+                workerId, selectedIds, now, now.plusMillis(properties.leaseMillis()));
+      } catch (RuntimeException e) {
+        log.warn("Failed to claim feedback jobs", e);
+        return;
+      }
+      if (claimed.isEmpty()) {
+        return;
+      }
+      meterRegistry.counter("feedback.jobs.claimed").increment(claimed.size());
+      Timer queueWait =
+          Timer.builder("feedback.jobs.queue_wait")
+              .description("ジョブの登録から最初に取り出されるまでの時間")
+              .register(meterRegistry);
+      claimed.stream()
+          .filter(job -> job.attempts() == 1)
+          .forEach(job -> queueWait.record(Duration.between(job.createdAt(), now)));
+      Map<String, FeedbackJob> claimedById =
+          claimed.stream().collect(Collectors.toMap(FeedbackJob::jobId, Function.identity()));
+      // 今回取り出さなかった候補が残っているか、候補が 1 ユーザー分の上限に達していて候補の外にもジョブがありうるユーザーは、
+      // 順番待ちの多い側として遅延を分けて記録する
+      Map<String, Long> candidatesByUser =
+          candidates.stream()
+              .collect(Collectors.groupingBy(FeedbackJob::auth0Id, Collectors.counting()));
+      Set<String> backlogged =
+          candidates.stream()
+              .filter(
+                  job ->
+                      !claimedById.containsKey(job.jobId())
+                          || candidatesByUser.get(job.auth0Id()) >= userLimit)
+              .map(FeedbackJob::auth0Id)
+              .collect(Collectors.toSet());
+      for (List<FeedbackJob> story : selected) {
+        List<FeedbackJob> jobs =
+            story.stream()
+                .map(job -> claimedById.get(job.jobId()))
+                .filter(Objects::nonNull)
+                .toList();
+        if (!jobs.isEmpty()) {
+          run(jobs, backlogged.contains(jobs.get(0).auth0Id()));
+        }
+      }
+      if (claimed.size() == limit) {
+        // 取り切れていない可能性があるので、空いた枠があれば続けて取り出す
+        wakeUp();
+      }
+    }
+  }
+
+  /** 処理中のジョブのリースを延ばす。 */
+  void heartbeat() {
+    List<String> jobIds = List.copyOf(inFlight.keySet());
+    if (jobIds.isEmpty()) {
+      return;
+    }
+    Instant leaseUntil = timeProvider.nowInstant().plusMillis(properties.leaseMillis());
+    try {
+      int extended = feedbackJobRepository.extendLeases(workerId, jobIds, leaseUntil);
+      // 確認の間に終わって削除されたジョブは数えない
+      long lost = jobIds.stream().filter(inFlight::containsKey).count() - extended;
+      if (lost > 0) {
+        meterRegistry.counter("feedback.jobs.lease_lost").increment(lost);
+        log.warn("Lost leases on {} feedback jobs workerId={}", lost, workerId);
+      }
+    } catch (RuntimeException e) {
+      log.warn("Failed to extend feedback job leases workerId={}", workerId, e);
+    }
+  }
+
+  /** 取り出しを止め、処理中のジョブを待ってから残りのリースを手放す。 */
+  @Override
+  public void stop() {
+    drain();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return started && !draining;
+  }
+
+  /**
+   * 最後に起動し、最初に止める。停止はフェーズの大きい順なので、Web サーバー（{@code DEFAULT_PHASE - 1024} 以下）や Reactor Netty
+   * のリソース（0）より先に処理中のジョブを片付けられる。
+   */
+  @Override
+  public int getPhase() {
+    return SmartLifecycle.DEFAULT_PHASE;
+  }
+
+  /** 終了時に取り出しを止め、処理中のジョブを待ってから残りのリースを手放す。 */
+  void drain() {
+    synchronized (pollLock) {
+      // 実行中の取り出しが終わるのを待ってから止めるので、以降 inFlight が増えることはない
+      draining = true;
+    }
+    if (pollTimer != null) {
+      pollTimer.dispose();
+    }
+    long deadline =
+        System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.drainTimeoutMillis());
+    synchronized (inFlight) {
+      while (!inFlight.isEmpty()) {
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMillis <= 0) {
+          break;
+        }
+        try {
+          inFlight.wait(remainingMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+    if (heartbeatTimer != null) {
+      heartbeatTimer.dispose();
+    }
+    List<String> unfinished = List.copyOf(inFlight.keySet());
+    running.dispose();
+    if (!unfinished.isEmpty()) {
+      log.warn("Releasing {} unfinished feedback jobs on shutdown", unfinished.size());
+      release(unfinished);
+    }
+  }
+
+  /** 処理中のジョブ数を返す。 */
+  public int inFlightCount() {
+    return inFlight.size();
+  }
+
+  private Map<String, Integer> runningByUser() {
+    Map<String, Integer> running = new HashMap<>();
+    inFlight.values().forEach(auth0Id -> running.merge(auth0Id, 1, Integer::sum));
+    return running;
+  }
+
+  private void run(List<FeedbackJob> jobs, boolean backlogged) {
+    List<String> jobIds = jobs.stream().map(FeedbackJob::jobId).toList();
+    Map<String, String> chapterTexts = new LinkedHashMap<>();
+    jobs.forEach(job -> chapterTexts.put(job.chapterId(), job.chapterText()));
+    boolean exhausted = jobs.stream().anyMatch(job -> job.attempts() > properties.maxAttempts());
+    Mono<Void> work;
+    if (exhausted) {
+      log.warn("Feedback jobs exceeded max attempts chapterIds={}", chapterTexts.keySet());
+      work = feedbackGenerationJobService.saveFailureMessages(chapterTexts.keySet());
+    } else {
+      work = feedbackGenerationJobService.runJob(jobs.get(0).auth0Id(), chapterTexts);
+    }
+    String result = exhausted ? "exhausted" : "done";
+    jobs.forEach(job -> inFlight.put(job.jobId(), job.auth0Id()));
+    Disposable.Swap slot = Disposables.swap();
+    running.add(slot);
+    slot.update(
+        Mono.defer(() -> work)
+            .then(
+                Mono.fromRunnable(() -> complete(jobs, result, backlogged))
+                    .subscribeOn(Schedulers.boundedElastic()))
+            .onErrorResume(
+                e -> {
+                  Duration delay = retryDelay(jobs, e);
+                  log.warn(
+                      "Feedback job failed, retrying in {}ms chapterIds={}",
+                      delay.toMillis(),
+                      chapterTexts.keySet(),
+                      e);
+                  retryLater(jobIds, delay);
+                  return Mono.empty();
+                })
+            .doFinally(
+                signal -> {
+                  running.remove(slot);
+                  synchronized (inFlight) {
+                    jobIds.forEach(inFlight::remove);
+                    inFlight.notifyAll();
+                  }
+                })
+            .subscribe());
+  }
+
+  private void complete(List<FeedbackJob> jobs, String result, boolean backlogged) {
+    feedbackJobRepository.complete(workerId, jobs.stream().map(FeedbackJob::jobId).toList());
+    meterRegistry.counter("feedback.jobs.completed", "result", result).increment(jobs.size());
+    Instant now = timeProvider.nowInstant();
+    Timer latency =
+        Timer.builder("feedback.jobs.latency")
+            .description("ジョブの登録から処理が終わるまでの時間")
+            .tag("user_backlog", backlogged ? "heavy" : "light")
+            .register(meterRegistry);
+    jobs.forEach(job -> latency.record(Duration.between(job.createdAt(), now)));
+    log.debug(
+        "Feedback jobs completed auth0Id={} count={} oldestLatencyMs={}",
+        jobs.get(0).auth0Id(),
+        jobs.size(),
+        jobs.stream()
+            .map(job -> Duration.between(job.createdAt(), now).toMillis())
+            .max(Long::compare)
+            .orElse(0L));
+  }
+
+  /** 取り出し回数ごとに倍にした待ち時間。LLM が再試行の目安を示していれば、それより短くしない。 */
+  private Duration retryDelay(List<FeedbackJob> jobs, Throwable error) {
+    int attempts = jobs.stream().mapToInt(FeedbackJob::attempts).max().orElse(1);
+    Duration delay =
+        Duration.ofMillis(properties.retryBackoffMillis())
+            .multipliedBy(1L << Math.min(Math.max(attempts - 1, 0), 10));
+    if (error instanceof LlmUnavailableException unavailable
+        && unavailable.getRetryAfter() != null
+        && unavailable.getRetryAfter().compareTo(delay) > 0) {
+      return unavailable.getRetryAfter();
+    }
+    return delay;
+  }
+
+  private void retryLater(List<String> jobIds, Duration delay) {
+    try {
+      feedbackJobRepository.retryLater(workerId, jobIds, timeProvider.nowInstant().plus(delay));
+      meterRegistry.counter("feedback.jobs.retried").increment(jobIds.size());
+    } catch (RuntimeException e) {
+      // 手放せなくてもリースが切れれば取り出し直される
+      log.warn("Failed to release failed feedback jobs jobIds={}", jobIds, e);
+    }
+  }
+
+  private void release(List<String> jobIds) {
+    try {
+      feedbackJobRepository.release(workerId, jobIds);
+      meterRegistry.counter("feedback.jobs.released").increment(jobIds.size());
+    } catch (RuntimeException e) {
+      // 手放せなくてもリースが切れれば他のワーカーが取り出す
+      log.warn("Failed to release feedback jobs jobIds={}", jobIds, e);
+    }
+  }
+}
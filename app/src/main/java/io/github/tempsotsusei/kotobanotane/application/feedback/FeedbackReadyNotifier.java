@@ -0,0 +1,137 @@
+package io.github.tempsotsusei.kotobanotane.application.feedback;
+
+import io.github.tempsotsusei.kotobanotane.config.FeedbackEventsProperties;
+import io.github.tempsotsusei.kotobanotane.domain.story.Story;
+import io.github.tempsotsusei.kotobanotane.domain.story.StoryRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * フィードバックの保存をユーザーごとの購読者へ知らせる。
+ *
+ * <p>接続中のユーザーごとに 1 つの Sink を持ち、{@link FeedbackSavedEvent} のコミット後に物語の作成者の Sink へ通知を流す。購読は Reactor
+ * の Flux なので、通知を待つ間はスレッドを占有しない。受け取りの遅い購読者への通知は捨てる（クライアントは {@code GET /api/story}
+ * で取り直せるため）。
+ *
+ * <p>このインスタンスで接続しているユーザーにしか届かない。誰も接続していなければ物語の読み込みも行わない。
+ */
+@Component
+public class FeedbackReadyNotifier {
+
+  private static final Logger log = LoggerFactory.getLogger(FeedbackReadyNotifier.class);
+
+  private final StoryRepository storyRepository;
+  private final FeedbackEventsProperties properties;
+  private final MeterRegistry meterRegistry;
+  private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+  private final AtomicInteger connections = new AtomicInteger();
+
+  public FeedbackReadyNotifier(
+      StoryRepository storyRepository,
+      FeedbackEventsProperties properties,
+      MeterRegistry meterRegistry) {
+    this.storyRepository = storyRepository;
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+    Gauge.builder("feedback.events.connections", connections, AtomicInteger::get)
+        .description("フィードバック保存通知を購読している接続数")
+        .register(meterRegistry);
+  }
+
+  /**
+   * ユーザーの通知を購読する。購読の登録は返した Flux の購読時に行い、その Flux の終了（切断を含む）で解除する。購読されなかった Flux は何も登録しない。
+   *
+   * <p>接続数の上限はこの呼び出しの時点でも確認し、レスポンスを返し始める前に 429 で断れるようにする。確認から購読までの間に埋まった場合は、Flux がエラーで終わる。
+   *
+   * @param auth0Id 購読するユーザー
+   * @return 保存通知の Flux（完了しない）
+   * @throws ResponseStatusException ユーザーの接続数が {@code maxStreamsPerUser} に達している場合（429）
+   */
+  public Flux<FeedbackReady> subscribe(String auth0Id) {
+    Channel current = channels.get(auth0Id);
+    if (current != null && current.subscribers >= properties.maxStreamsPerUser()) {
+      throw tooManyStreams();
+    }
+    return Flux.using(
+        () -> register(auth0Id), channel -> channel.sink.asFlux(), channel -> unsubscribe(auth0Id));
+  }
+
+  /** 保存のコミット後に、物語の作成者が接続していれば通知する。 */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onFeedbackSaved(FeedbackSavedEvent event) {
+    if (channels.isEmpty()) {
+      return;
+    }
+    String auth0Id =
+        storyRepository.findById(event.storyId()).map(Story::auth0UserId).orElse(null);
+    Channel channel = auth0Id == null ? null : channels.get(auth0Id);
+    if (channel == null) {
+      return;
+    }
+    Sinks.EmitResult result;
+    synchronized (channel) {
+      result = channel.sink.tryEmitNext(new FeedbackReady(event.storyId(), event.chapterId()));
+    }
+    meterRegistry
+        .counter("feedback.events.sent", "result", result.isSuccess() ? "sent" : "dropped")
+        .increment();
+    if (result.isFailure()) {
+      log.debug(
+          "Feedback ready event not delivered chapterId={} result={}", event.chapterId(), result);
+    }
+  }
+
+  private Channel register(String auth0Id) {
+    Channel channel =
+        channels.compute(
+            auth0Id,
+            (key, current) -> {
+              Channel opened = current == null ? new Channel() : current;
+              if (opened.subscribers >= properties.maxStreamsPerUser()) {
+                throw tooManyStreams();
+              }
+              opened.subscribers++;
+              return opened;
+            });
+    connections.incrementAndGet();
+    return channel;
+  }
+
+  private static ResponseStatusException tooManyStreams() {
+    return new ResponseStatusException(
+        HttpStatus.TOO_MANY_REQUESTS, "too many feedback event streams");
+  }
+
+  private void unsubscribe(String auth0Id) {
+    connections.decrementAndGet();
+    channels.computeIfPresent(
+        auth0Id, (key, channel) -> --channel.subscribers == 0 ? null : channel);
+  }
+
+  /**
+   * フィードバック保存の通知。
+   *
+   * @param storyId 物語 ID
+   * @param chapterId フィードバックが保存された章 ID
+   */
+  public record FeedbackReady(String storyId, String chapterId) {}
+
+  /** 1 ユーザー分の購読。{@code subscribers} は {@code channels.compute} の中でだけ更新し、外からは上限の事前確認にだけ読む。 */
+  private static final class Channel {
+
+    private final Sinks.Many<FeedbackReady> sink =
+        Sinks.many().multicast().directBestEffort();
+    private volatile int subscribers;
+  }
+}
@@ -0,0 +1,10 @@
+package io.github.tempsotsusei.kotobanotane.application.feedback;
+
+/**
+ * フィードバックが新規登録されたことを知らせるイベント。登録したトランザクションの中で発行する。
+ *
+ * @param feedbackId 登録したフィードバック ID
+ * @param chapterId 紐付く章 ID
+ * @param storyId 章の属する物語 ID
+ */
+public record FeedbackSavedEvent(String feedbackId, String chapterId, String storyId) {}
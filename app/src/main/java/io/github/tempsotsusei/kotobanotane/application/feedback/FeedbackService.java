@@ -2,12 +2,17 @@ package io.github.tempsotsusei.kotobanotane.application.feedback;
 
 import io.github.tempsotsusei.kotobanotane.application.uuid.UuidGeneratorService;
 import io.github.tempsotsusei.kotobanotane.config.time.TimeProvider;
+import io.github.tempsotsusei.kotobanotane.domain.chapter.Chapter;
 import io.github.tempsotsusei.kotobanotane.domain.chapter.ChapterRepository;
 import io.github.tempsotsusei.kotobanotane.domain.feedback.Feedback;
 import io.github.tempsotsusei.kotobanotane.domain.feedback.FeedbackRepository;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,7 +22,8 @@ import org.springframework.web.server.ResponseStatusException;
 /**
  * feedbacks テーブルへの CRUD を担うアプリケーションサービス。
  *
- * <p>chapter の存在確認や本文バリデーションなどを担当する。
+ * <p>chapter の存在確認や本文バリデーションなどを担当する。フィードバックは章ごとに 1 件までで、新規登録時は {@link
+ * FeedbackSavedEvent} を発行する。
  */
 @Service
 public class FeedbackService {
@@ -26,16 +32,19 @@ public class FeedbackService {
   private final ChapterRepository chapterRepository;
   private final UuidGeneratorService uuidGeneratorService;
   private final TimeProvider timeProvider;
+  private final ApplicationEventPublisher eventPublisher;
 
   public FeedbackService(
       FeedbackRepository feedbackRepository,
       ChapterRepository chapterRepository,
       UuidGeneratorService uuidGeneratorService,
-      TimeProvider timeProvider) {
+      TimeProvider timeProvider,
+      ApplicationEventPublisher eventPublisher) {
     this.feedbackRepository = feedbackRepository;
     this.chapterRepository = chapterRepository;
     this.uuidGeneratorService = uuidGeneratorService;
     this.timeProvider = timeProvider;
+    this.eventPublisher = eventPublisher;
   }
 
   /** すべてのフィードバックを返す。 */
@@ -48,22 +57,62 @@ public class FeedbackService {
     return feedbackRepository.findById(feedbackId);
   }
 
+  /**
+   * 指定した章のうち、フィードバックが登録済みの章 ID を返す。
+   *
+   * @param chapterIds 確認する章 ID
+   * @return フィードバックのある章 ID
+   */
+  public Set<String> findChapterIdsWithFeedback(Collection<String> chapterIds) {
+    if (chapterIds.isEmpty()) {
+      return Set.of();
+    }
+    return feedbackRepository.findAllByChapterIdIn(chapterIds).stream()
+        .map(Feedback::chapterId)
+        .collect(Collectors.toSet());
+  }
+
   /**
    * フィードバックを新規登録する。
    *
    * @param chapterId 紐付ける章 ID
    * @param feedbackText 本文
    * @return 登録結果
+   * @throws ResponseStatusException 章が存在しないか本文が空の場合（400）、章のフィードバックが登録済みの場合（409）
    */
   @Transactional
   public Feedback create(String chapterId, String feedbackText) {
-    ensureChapterExists(chapterId);
+    Chapter chapter = requireChapter(chapterId);
     ensureFeedbackText(feedbackText);
+    ensureNoFeedback(chapterId);
 
-    Instant now = timeProvider.nowInstant();
-    Feedback feedback =
-        new Feedback(uuidGeneratorService.generateV7(), chapterId, feedbackText, now, now);
-    return feedbackRepository.save(feedback);
+    Feedback saved = feedbackRepository.save(newFeedback(chapterId, feedbackText));
+    eventPublisher.publishEvent(
+        new FeedbackSavedEvent(saved.feedbackId(), chapterId, chapter.storyId()));
+    return saved;
+  }
+
+  /**
+   * 章にまだフィードバックが無い場合だけ新規登録する。
+   *
+   * <p>生成ジョブは再実行されうるため、ジョブからの保存はこちらを使う。同じ章を並行して保存しても、chapter_id の一意インデックスで 1 件に絞られる。
+   *
+   * @param chapterId 紐付ける章 ID
+   * @param feedbackText 本文
+   * @return 登録結果（既に同じ章のフィードバックがあった場合は空）
+   */
+  @Transactional
+  public Optional<Feedback> createIfAbsent(String chapterId, String feedbackText) {
+    Chapter chapter = requireChapter(chapterId);
+    ensureFeedbackText(feedbackText);
+
+    Feedback feedback = newFeedback(chapterId, feedbackText);
+    if (!feedbackRepository.saveIfAbsent(feedback)) {
+      return Optional.empty();
+    }
+    eventPublisher.publishEvent(
+        new FeedbackSavedEvent(feedback.feedbackId(), chapterId, chapter.storyId()));
+    return Optional.of(feedback);
   }
 
   /**
@@ -94,7 +143,10 @@ public class FeedbackService {
       if (!StringUtils.hasText(candidate)) {
         throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "chapterId must not be blank");
       }
-      ensureChapterExists(candidate);
+      requireChapter(candidate);
+      if (!candidate.equals(existing.chapterId())) {
+        ensureNoFeedback(candidate);
+      }
       nextChapterId = candidate;
     }
 
@@ -109,14 +161,27 @@ public class FeedbackService {
         existing.feedbackId(), nextChapterId, nextFeedback, existing.createdAt(), updatedAt);
   }
 
-  private void ensureChapterExists(String chapterId) {
-    boolean exists = chapterRepository.findById(chapterId).isPresent();
-    if (!exists) {
+  private Feedback newFeedback(String chapterId, String feedbackText) {
+    Instant now = timeProvider.nowInstant();
+    return new Feedback(uuidGeneratorService.generateV7(), chapterId, feedbackText, now, now);
+  }
+
+  private void ensureNoFeedback(String chapterId) {
+    if (feedbackRepository.existsByChapterId(chapterId)) {
       throw new ResponseStatusException(
-          HttpStatus.BAD_REQUEST, "chapterId does not exist: " + chapterId);
+          HttpStatus.CONFLICT, "feedback already exists for chapterId: " + chapterId);
     }
   }
 
+  private Chapter requireChapter(String chapterId) {
+    return chapterRepository
+        .findById(chapterId)
+        .orElseThrow(
+            () ->
+                new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "chapterId does not exist: " + chapterId));
+  }
+
   private void ensureFeedbackText(String feedbackText) {
     if (!StringUtils.hasText(feedbackText)) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "feedback must not be blank");
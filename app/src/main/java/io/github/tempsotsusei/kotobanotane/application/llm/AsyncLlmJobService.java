@@ -22,21 +22,32 @@ public class AsyncLlmJobService {
 
   private static final String SYSTEM_PROMPT = "Async job invocation logger.";
   private static final int MAX_OUTPUT_TOKENS = 16;
+  private static final String SCHEMA_NAME = "async_job_ack";
 
   private final OpenAiClient openAiClient;
   private final ObjectMapper objectMapper;
   private final UserService userService;
+  private final LlmBulkhead llmBulkhead;
+  private final JsonNode ackSchema;
 
   public AsyncLlmJobService(
-      OpenAiClient openAiClient, ObjectMapper objectMapper, UserService userService) {
+      OpenAiClient openAiClient,
+      ObjectMapper objectMapper,
+      UserService userService,
+      LlmBulkhead llmBulkhead) {
     this.openAiClient = openAiClient;
     this.objectMapper = objectMapper;
     this.userService = userService;
+    this.llmBulkhead = llmBulkhead;
+    // スキーマは不変なので一度だけ組み立て、リクエストテンプレートのキャッシュに同一インスタンスで当てる
+    this.ackSchema = buildAckSchema();
   }
 
   /**
    * 非同期 LLM ジョブを実行し、完了したらユーザーの {@code updated_at} を進める。
    *
+   * <p>OpenAI の応答はブロックして待つ。同時実行数は {@link LlmBulkhead} のユースケースごとの上限で抑える。
+   *
    * @param auth0Id 対象ユーザー
    * @param jobIndex 同一リクエスト内でのジョブ番号（1 始まり）
    */
@@ -44,12 +55,13 @@ public class AsyncLlmJobService {
   public void runJob(String auth0Id, int jobIndex) {
     try {
       String userInput = "job-%d".formatted(jobIndex);
-      JsonNode schema = buildAckSchema();
       OpenAiStructuredRequest request =
           new OpenAiStructuredRequest(
-              SYSTEM_PROMPT, userInput, schema, "async_job_ack", MAX_OUTPUT_TOKENS);
+              SYSTEM_PROMPT, userInput, ackSchema, SCHEMA_NAME, MAX_OUTPUT_TOKENS);
       // 応答内容は使用しないため破棄する
-      openAiClient.requestStructuredJson(request);
+      llmBulkhead.call(
+          LlmUsageLedger.useCaseOf(SCHEMA_NAME),
+          () -> openAiClient.requestStructuredJson(request, LlmPriority.BACKGROUND));
       userService.update(auth0Id);
       log.info("Async job completed auth0Id={} jobIndex={}", auth0Id, jobIndex);
     } catch (Exception e) {
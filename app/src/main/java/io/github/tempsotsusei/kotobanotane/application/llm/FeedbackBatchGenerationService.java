@@ -0,0 +1,122 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import io.github.tempsotsusei.kotobanotane.config.FeedbackBatchProperties;
+import io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.OpenAiBatchClient;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 複数章のフィードバックを Batch API でまとめて生成するサービス。
+ *
+ * <p>プロンプトとスキーマは {@link FeedbackGenerationService} と共通で、章ごとの即時生成と同じ結果形式を返す。即時性は失うが、Batch API
+ * は同期呼び出しの半額で、同期側のレート制限枠も消費しない。
+ *
+ * <p>完了期限（{@link FeedbackBatchProperties#completionTimeout()}）を過ぎても結果が返らない場合はバッチを取り消し、取り消しまでに生成された章は
+ * その結果を使い、残りの章だけを章ごとの即時生成に切り替える。
+ */
+@Service
+public class FeedbackBatchGenerationService {
+
+  private static final Logger log = LoggerFactory.getLogger(FeedbackBatchGenerationService.class);
+  private static final int IMMEDIATE_FALLBACK_CONCURRENCY = 4;
+
+  private final FeedbackGenerationService feedbackGenerationService;
+  private final OpenAiBatchClient openAiBatchClient;
+  private final FeedbackBatchProperties properties;
+
+  public FeedbackBatchGenerationService(
+      FeedbackGenerationService feedbackGenerationService,
+      OpenAiBatchClient openAiBatchClient,
+      FeedbackBatchProperties properties) {
+    this.feedbackGenerationService = feedbackGenerationService;
+    this.openAiBatchClient = openAiBatchClient;
+    this.properties = properties;
+  }
+
+  /**
+   * 章本文をまとめて 1 バッチとして投入し、章 ID ごとのフィードバックを返す。
+   *
+   * @param chapterTexts 章 ID をキーにした平文化済み章本文
+   * @return 生成に成功した章 ID とフィードバックの組（本文が空の章や失敗した章は含まない）
+   */
+  public Mono<Map<String, List<FeedbackItem>>> generateBatch(Map<String, String> chapterTexts) {
+    Map<String, OpenAiStructuredRequest> requests = new LinkedHashMap<>();
+    chapterTexts.forEach(
+        (chapterId, text) -> {
+          if (StringUtils.hasText(text)) {
+            requests.put(chapterId, feedbackGenerationService.buildRequest(text));
+          }
+        });
+    return openAiBatchClient
+        .execute(
+            requests,
+            Duration.ofMillis(properties.pollIntervalMillis()),
+            properties.completionWindow(),
+            properties.completionTimeout())
+        .map(this::toFeedbacks)
+        .onErrorResume(
+            OpenAiBatchTimeoutException.class,
+            e -> {
+              Map<String, List<FeedbackItem>> feedbacks = toFeedbacks(e.getPartialResults());
+              Set<String> remaining = new LinkedHashSet<>(requests.keySet());
+              remaining.removeAll(feedbacks.keySet());
+              log.warn(
+                  "Feedback batch timed out, generating immediately chapters={} fromBatch={}",
+                  remaining.size(),
+                  feedbacks.size());
+              return generateImmediately(remaining, chapterTexts)
+                  .map(
+                      immediate -> {
+                        feedbacks.putAll(immediate);
+                        return feedbacks;
+                      });
+            });
+  }
+
+  /** 章ごとの即時生成で結果を作る。失敗した章は結果に含めない。 */
+  private Mono<Map<String, List<FeedbackItem>>> generateImmediately(
+      Set<String> chapterIds, Map<String, String> chapterTexts) {
+    return Flux.fromIterable(chapterIds)
+        .flatMap(
+            chapterId ->
+                feedbackGenerationService
+                    .generateAsync(chapterTexts.get(chapterId))
+                    .map(feedbacks -> Map.entry(chapterId, feedbacks))
+                    .onErrorResume(
+                        e -> {
+                          log.warn("Immediate feedback failed chapterId={}", chapterId, e);
+                          return Mono.empty();
+                        }),
+            IMMEDIATE_FALLBACK_CONCURRENCY)
+        .collectMap(Map.Entry::getKey, Map.Entry::getValue, LinkedHashMap::new)
+        .contextWrite(LlmPriority.BACKGROUND.asContext());
+  }
+
+  private Map<String, List<FeedbackItem>> toFeedbacks(Map<String, OpenAiBatchResult> results) {
+    Map<String, List<FeedbackItem>> feedbacks = new LinkedHashMap<>();
+    results.forEach(
+        (chapterId, result) -> {
+          if (result.isSucceeded()) {
+            // スキーマを満たさない結果は含めず、失敗した章と同じく取り出し直させる
+            feedbackGenerationService
+                .parseResponse(result.json())
+                .ifPresentOrElse(
+                    items -> feedbacks.put(chapterId, items),
+                    () -> log.warn("Batch feedback did not match schema chapterId={}", chapterId));
+          } else {
+            log.warn("Batch feedback failed chapterId={} reason={}", chapterId, result.error());
+          }
+        });
+    return feedbacks;
+  }
+}
@@ -2,22 +2,34 @@ package io.github.tempsotsusei.kotobanotane.application.llm;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.OpenAiClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
 
 /**
  * 4〜6歳の子どもが書いた文章を、文法だけやさしく直す LLM 呼び出しサービス。
  *
- * <p>LLM から構造化されたフィードバック配列を受け取り、original/corrected/reason のリストに変換する。
+ * <p>LLM から構造化されたフィードバック配列を受け取り、original/corrected/reason のリストに変換する。応答は {@link
+ * StructuredOutputValidator} でスキーマに照らして検証し、満たしていない応答は使わない（1 章分なら失敗として扱い、複数章分なら該当の章だけ結果から外す）。
  */
 @Service
 public class FeedbackGenerationService {
 
+  private static final Logger log = LoggerFactory.getLogger(FeedbackGenerationService.class);
+
   private static final String SYSTEM_PROMPT =
       """
 			あなたは4〜6歳の子どもが書いた文章を、文法だけやさしく直すアシスタントです。
@@ -55,14 +67,40 @@ public class FeedbackGenerationService {
 			}
 			""";
 
+  private static final String MULTI_CHAPTER_INSTRUCTION =
+      """
+
+			ここからは複数の章をまとめて渡す場合のルールです。上の出力形式の代わりに、こちらに従ってください。
+			入力は chapterKey と text を持つ章の JSON 配列です。章ごとに上と同じルールで直しを探してください。
+			- 出力のフィールドは `chapters` のみ。入力と同じ順番・同じ数の要素を入れる。
+			- 各要素は chapterKey（入力の値をそのまま）と feedbacks（上と同じ構造の配列）を含む。
+			- 別の章の文を original に入れたり、章をまたいで直しをまとめたりしない。
+			""";
+
+  /** 出力トークン数の上限。実際の max_output_tokens は実測に基づいてこれ以下に絞られる。 */
   private static final int MAX_OUTPUT_TOKENS = 2000;
 
   private final OpenAiClient openAiClient;
   private final ObjectMapper objectMapper;
+  private final StructuredOutputValidator validator;
+  private final MeterRegistry meterRegistry;
+  private final JsonNode schema;
+  private final JsonNode multiChapterSchema;
+  private final JsonNode chapterSchema;
 
-  public FeedbackGenerationService(OpenAiClient openAiClient, ObjectMapper objectMapper) {
+  public FeedbackGenerationService(
+      OpenAiClient openAiClient,
+      ObjectMapper objectMapper,
+      StructuredOutputValidator validator,
+      MeterRegistry meterRegistry) {
     this.openAiClient = openAiClient;
     this.objectMapper = objectMapper;
+    this.validator = validator;
+    this.meterRegistry = meterRegistry;
+    // スキーマは不変なので一度だけ組み立て、OpenAiClient のリクエストテンプレートと検証ルールを使い回せるようにする
+    this.schema = buildSchema();
+    this.multiChapterSchema = buildMultiChapterSchema();
+    this.chapterSchema = multiChapterSchema.path("properties").path("chapters").path("items");
   }
 
   /**
@@ -70,21 +108,127 @@ public class FeedbackGenerationService {
    *
    * @param chapterText 平文化済み章本文
    * @return original/corrected/reason を含むフィードバックリスト
+   * @throws OpenAiClientException 応答がスキーマを満たしていない場合
    */
   public List<FeedbackItem> generate(String chapterText) {
+    JsonNode response =
+        openAiClient.requestStructuredJson(buildRequest(chapterText), LlmPriority.BACKGROUND);
+    return parseResponse(response).orElseThrow(FeedbackGenerationService::invalidResponse);
+  }
+
+  /**
+   * {@link #generate(String)} の非同期版。OpenAI 応答を待つ間も呼び出しスレッドを占有しない。
+   *
+   * @param chapterText 平文化済み章本文
+   * @return フィードバックリストを発行し、応答がスキーマを満たしていなければ {@link OpenAiClientException} になる Mono
+   */
+  public Mono<List<FeedbackItem>> generateAsync(String chapterText) {
+    return Mono.fromCallable(() -> buildRequest(chapterText))
+        .flatMap(openAiClient::requestStructuredJsonAsync)
+        .map(
+            response ->
+                parseResponse(response).orElseThrow(FeedbackGenerationService::invalidResponse));
+  }
+
+  /**
+   * 複数章のフィードバックを 1 回の structured request でまとめて生成し、章 ID ごとに分けて返す。
+   *
+   * <p>システムプロンプトを章の数だけ送らずに済むため、リクエスト数・入力トークンを章数分の 1 に減らせる。章 ID の代わりに短いキー（c1, c2, ...）を
+   * LLM に渡し、応答を章 ID に戻す。
+   *
+   * @param chapterTexts 章 ID をキーにした平文化済み章本文（順番を保つ Map を渡す）
+   * @return 章 ID とフィードバックの組（応答に含まれなかった章と、スキーマを満たしていなかった章は含まない）
+   */
+  public Mono<Map<String, List<FeedbackItem>>> generateForChaptersAsync(
+      Map<String, String> chapterTexts) {
+    return Mono.fromCallable(() -> buildMultiChapterRequest(chapterTexts))
+        .flatMap(
+            multi ->
+                openAiClient
+                    .requestStructuredJsonAsync(multi.request())
+                    .map(response -> splitByChapter(response, multi.chapterIdsByKey())));
+  }
+
+  private MultiChapterRequest buildMultiChapterRequest(Map<String, String> chapterTexts) {
+    Map<String, String> chapterIdsByKey = new LinkedHashMap<>();
+    ArrayNode chapters = objectMapper.createArrayNode();
+    chapterTexts.forEach(
+        (chapterId, text) -> {
+          if (!StringUtils.hasText(text)) {
+            throw new IllegalArgumentException("chapterText must not be blank");
+          }
+          String key = "c" + (chapterIdsByKey.size() + 1);
+          chapterIdsByKey.put(key, chapterId);
+          chapters.addObject().put("chapterKey", key).put("text", text);
+        });
+    OpenAiStructuredRequest request =
+        new OpenAiStructuredRequest(
+            SYSTEM_PROMPT + MULTI_CHAPTER_INSTRUCTION,
+            chapters.toString(),
+            multiChapterSchema,
+            "chapter_feedbacks_wrapper",
+            MAX_OUTPUT_TOKENS * chapterTexts.size());
+    return new MultiChapterRequest(request, chapterIdsByKey);
+  }
+
+  private Map<String, List<FeedbackItem>> splitByChapter(
+      JsonNode response, Map<String, String> chapterIdsByKey) {
+    Map<String, List<FeedbackItem>> result = new LinkedHashMap<>();
+    for (JsonNode chapter : response.path("chapters")) {
+      String chapterId = chapterIdsByKey.get(chapter.path("chapterKey").asText());
+      if (chapterId == null) {
+        continue;
+      }
+      List<String> violations = validator.validate(chapterSchema, chapter);
+      if (!violations.isEmpty()) {
+        // 含めなかった章は呼び出し側で章ごとの生成に回る
+        countViolation("chapter_feedbacks_wrapper");
+        log.warn("Discarded invalid chapter feedback chapterId={} {}", chapterId, violations);
+        continue;
+      }
+      result.putIfAbsent(chapterId, parseFeedbacks(chapter.path("feedbacks")));
+    }
+    return result;
+  }
+
+  /**
+   * 1 章分の応答をスキーマで検証してから変換する。バッチの結果の変換にも使う。
+   *
+   * @param response {@code feedbacks_wrapper} の応答
+   * @return フィードバックリスト（スキーマを満たしていなければ empty）
+   */
+  Optional<List<FeedbackItem>> parseResponse(JsonNode response) {
+    List<String> violations = validator.validate(schema, response);
+    if (!violations.isEmpty()) {
+      countViolation("feedbacks_wrapper");
+      log.warn("Discarded invalid feedback response {}", violations);
+      return Optional.empty();
+    }
+    return Optional.of(parseFeedbacks(response.path("feedbacks")));
+  }
+
+  private static OpenAiClientException invalidResponse() {
+    return new OpenAiClientException("OpenAI feedback response did not match the schema");
+  }
+
+  private void countViolation(String schemaName) {
+    Counter.builder("llm.feedback.schema_violations")
+        .description("スキーマを満たさず使わなかったフィードバック応答の数")
+        .tag("schema", schemaName)
+        .register(meterRegistry)
+        .increment();
+  }
+
+  OpenAiStructuredRequest buildRequest(String chapterText) {
     if (!StringUtils.hasText(chapterText)) {
       throw new IllegalArgumentException("chapterText must not be blank");
     }
 
-    JsonNode schema = buildSchema();
-    OpenAiStructuredRequest request =
-        new OpenAiStructuredRequest(
-            SYSTEM_PROMPT, chapterText, schema, "feedbacks_wrapper", MAX_OUTPUT_TOKENS);
-    JsonNode response = openAiClient.requestStructuredJson(request);
-    return parseFeedbacks(response.path("feedbacks"));
+    return new OpenAiStructuredRequest(
+        SYSTEM_PROMPT, chapterText, schema, "feedbacks_wrapper", MAX_OUTPUT_TOKENS);
   }
 
-  private List<FeedbackItem> parseFeedbacks(JsonNode feedbacksNode) {
+  List<FeedbackItem> parseFeedbacks(JsonNode feedbacksNode) {
     if (feedbacksNode == null || !feedbacksNode.isArray()) {
       return Collections.emptyList();
     }
@@ -107,7 +251,37 @@ public class FeedbackGenerationService {
     ObjectNode root = objectMapper.createObjectNode();
     root.put("type", "object");
     ObjectNode properties = objectMapper.createObjectNode();
+    properties.set("feedbacks", buildFeedbacksArraySchema());
+    root.set("properties", properties);
+    root.set("required", objectMapper.createArrayNode().add("feedbacks"));
+    root.put("additionalProperties", false);
+    return root;
+  }
 
+  /** 複数章用のスキーマを構築する（chapters: array of {chapterKey, feedbacks}）。 */
+  private JsonNode buildMultiChapterSchema() {
+    ObjectNode chapterItem = objectMapper.createObjectNode();
+    chapterItem.put("type", "object");
+    ObjectNode chapterProps = objectMapper.createObjectNode();
+    chapterProps.putObject("chapterKey").put("type", "string");
+    chapterProps.set("feedbacks", buildFeedbacksArraySchema());
+    chapterItem.set("properties", chapterProps);
+    chapterItem.set("required", objectMapper.createArrayNode().add("chapterKey").add("feedbacks"));
+    chapterItem.put("additionalProperties", false);
+
+    ObjectNode chaptersArray = objectMapper.createObjectNode();
+    chaptersArray.put("type", "array");
+    chaptersArray.set("items", chapterItem);
+
+    ObjectNode root = objectMapper.createObjectNode();
+    root.put("type", "object");
+    root.putObject("properties").set("chapters", chaptersArray);
+    root.set("required", objectMapper.createArrayNode().add("chapters"));
+    root.put("additionalProperties", false);
+    return root;
+  }
+
+  private ObjectNode buildFeedbacksArraySchema() {
     ObjectNode feedbacksArray = objectMapper.createObjectNode();
     feedbacksArray.put("type", "array");
     ObjectNode feedbackItem = objectMapper.createObjectNode();
@@ -121,11 +295,10 @@ public class FeedbackGenerationService {
         "required", objectMapper.createArrayNode().add("original").add("corrected").add("reason"));
     feedbackItem.put("additionalProperties", false);
     feedbacksArray.set("items", feedbackItem);
-
-    properties.set("feedbacks", feedbacksArray);
-    root.set("properties", properties);
-    root.set("required", objectMapper.createArrayNode().add("feedbacks"));
-    root.put("additionalProperties", false);
-    return root;
+    return feedbacksArray;
   }
+
+  /** 複数章リクエストと、LLM に渡した短いキーから章 ID への対応。 */
+  private record MultiChapterRequest(
+      OpenAiStructuredRequest request, Map<String, String> chapterIdsByKey) {}
 }
@@ -0,0 +1,162 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import io.github.tempsotsusei.kotobanotane.config.InitialKeywordPoolProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 初回サジェスト用キーワードセットを事前生成して保持するプール。
+ *
+ * <p>容量 {@code highWatermark} の固定長キュー（リングバッファ）に検証済みのセットを貯めておき、取り出しは O(1) で行う。取り出したエントリはキューから消えるため、同じセットを 2
+ * 回返すことはない。残数が {@code lowWatermark} を下回るとバックグラウンドで {@code highWatermark} まで補充する。
+ */
+@Component
+public class InitialKeywordPool {
+
+  private static final Logger log = LoggerFactory.getLogger(InitialKeywordPool.class);
+  private static final int EXPECTED_SET_COUNT = 3;
+  private static final int EXPECTED_WORDS_PER_SET = 4;
+
+  private final KeywordListsGenerationService keywordListsGenerationService;
+  private final LlmUsageLedger usageLedger;
+  private final InitialKeywordPoolProperties properties;
+  private final BlockingQueue<List<List<String>>> pool;
+  private final AtomicBoolean refilling = new AtomicBoolean();
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter rejected;
+  private final Counter refillFailures;
+
+  public InitialKeywordPool(
+      KeywordListsGenerationService keywordListsGenerationService,
+      LlmUsageLedger usageLedger,
+      InitialKeywordPoolProperties properties,
+      MeterRegistry meterRegistry) {
+    this.keywordListsGenerationService = keywordListsGenerationService;
+    this.usageLedger = usageLedger;
+    this.properties = properties;
+    this.pool = new ArrayBlockingQueue<>(properties.highWatermark());
+    Gauge.builder("llm.initial_keyword_pool.size", pool, BlockingQueue::size)
+        .description("事前生成済みの初回キーワードセット数")
+        .register(meterRegistry);
+    this.hits = meterRegistry.counter("llm.initial_keyword_pool.requests", "result", "hit");
+    this.misses = meterRegistry.counter("llm.initial_keyword_pool.requests", "result", "miss");
+    this.rejected = meterRegistry.counter("llm.initial_keyword_pool.rejected");
+    this.refillFailures = meterRegistry.counter("llm.initial_keyword_pool.refill_failures");
+  }
+
+  /** 起動完了時にプールを満たしておく。 */
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmUp() {
+    refillIfNeeded();
+  }
+
+  /**
+   * プールからキーワードセットを 1 件取り出す。取り出し後、必要に応じて補充を開始する。
+   *
+   * @return 事前生成済みのセット（空の場合は empty）
+   */
+  public Optional<List<List<String>>> poll() {
+    List<List<String>> keywords = properties.enabled() ? pool.poll() : null;
+    refillIfNeeded();
+    return Optional.ofNullable(keywords);
+  }
+
+  /**
+   * プールから取り出し、空であれば LLM をその場で呼び出して生成する。
+   *
+   * <p>その場で呼び出す場合だけ、ユーザーの 1 日あたりの利用上限を確認し、使用量をそのユーザーに紐付けて {@link LlmUsageLedger} に記録する。
+   * プールから返す分は補充時に誰にも紐付けずに記録済みなので数えない。
+   *
+   * @param auth0Id 呼び出し元ユーザー
+   * @return 初回サジェスト用のキーワードセット
+   * @throws LlmQuotaExceededException プールが空で、ユーザーが利用上限に達している場合
+   */
+  public List<List<String>> takeOrGenerate(String auth0Id) {
+    Optional<List<List<String>>> pooled = poll();
+    if (pooled.isPresent()) {
+      hits.increment();
+      return pooled.get();
+    }
+    misses.increment();
+    usageLedger.requireWithinQuota(auth0Id);
+    return keywordListsGenerationService
+        .generateInitialKeywordsAsync()
+        .contextWrite(LlmUsageLedger.attributedTo(auth0Id))
+        .block();
+  }
+
+  /** 現在の残数を返す。 */
+  public int size() {
+    return pool.size();
+  }
+
+  /** 残数が low watermark を下回っていれば、high watermark まで非同期で補充する。 */
+  void refillIfNeeded() {
+    if (!properties.enabled() || pool.size() >= properties.lowWatermark()) {
+      return;
+    }
+    if (!refilling.compareAndSet(false, true)) {
+      return;
+    }
+    int needed = properties.highWatermark() - pool.size();
+    log.debug("Refilling initial keyword pool size={} needed={}", pool.size(), needed);
+    Flux.range(0, needed)
+        .flatMap(i -> generateOne(), properties.refillConcurrency())
+        .filter(this::acceptIfValid)
+        .doOnNext(pool::offer)
+        .doFinally(signal -> refilling.set(false))
+        // 補充は誰も待っていないので、対話的な呼び出しに OpenAI の同時実行枠を譲る
+        .contextWrite(LlmPriority.BACKGROUND.asContext())
+        .subscribe(
+            unused -> {},
+            e -> log.warn("Initial keyword pool refill terminated unexpectedly", e));
+  }
+
+  private Mono<List<List<String>>> generateOne() {
+    return keywordListsGenerationService
+        .generateInitialKeywordsAsync()
+        .map(keywords -> keywords.stream().map(List::copyOf).toList())
+        .onErrorResume(
+            e -> {
+              refillFailures.increment();
+              log.warn("Initial keyword pool refill call failed: {}", e.getMessage());
+              return Mono.empty();
+            });
+  }
+
+  private boolean acceptIfValid(List<List<String>> keywords) {
+    boolean valid = isValid(keywords);
+    if (!valid) {
+      rejected.increment();
+      log.warn("Discarded invalid initial keyword set: {}", keywords);
+    }
+    return valid;
+  }
+
+  /** 4 語 × 3 セットで、空の単語を含まないことを検証する。 */
+  static boolean isValid(List<List<String>> keywords) {
+    if (keywords == null || keywords.size() != EXPECTED_SET_COUNT) {
+      return false;
+    }
+    return keywords.stream()
+        .allMatch(
+            group ->
+                group.size() == EXPECTED_WORDS_PER_SET
+                    && group.stream().allMatch(StringUtils::hasText));
+  }
+}
@@ -0,0 +1,93 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.tempsotsusei.kotobanotane.config.KeywordCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@link KeywordListsGenerationService#generate(String)} の結果を保持するプロセス内キャッシュ。
+ *
+ * <p>キーは NFKC 正規化した章本文とプロンプトバージョン。W-TinyLFU（Caffeine）で退避し、エントリの概算バイト数を重みとして {@code
+ * maxWeightBytes} をメモリ上限とする。ヒット/ミス数は {@code cache.*} メトリクス（cache=keyword_lists）で確認できる。
+ */
+@Component
+public class KeywordListsCache {
+
+  static final String CACHE_NAME = "keyword_lists";
+
+  /** String 1 つあたりのオブジェクトヘッダ等のおおよそのオーバーヘッド（バイト）。 */
+  private static final int STRING_OVERHEAD_BYTES = 48;
+
+  private final boolean enabled;
+  private final Cache<CacheKey, List<List<String>>> cache;
+
+  public KeywordListsCache(KeywordCacheProperties properties, MeterRegistry meterRegistry) {
+    this.enabled = properties.enabled();
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumWeight(properties.maxWeightBytes())
+            .weigher((CacheKey key, List<List<String>> value) -> estimateBytes(key, value))
+            .expireAfterWrite(Duration.ofSeconds(properties.ttlSeconds()))
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+  }
+
+  /**
+   * キャッシュ済みのキーワードセットを取得する。
+   *
+   * @param promptVersion プロンプトのバージョン
+   * @param chapterText 平文化済み章本文
+   * @return キャッシュ済みの結果（無効時・未登録時は空）
+   */
+  public Optional<List<List<String>>> get(String promptVersion, String chapterText) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(cache.getIfPresent(CacheKey.of(promptVersion, chapterText)));
+  }
+
+  /**
+   * 生成結果を不変リストとして登録する。
+   *
+   * @param promptVersion プロンプトのバージョン
+   * @param chapterText 平文化済み章本文
+   * @param keywordLists 生成されたキーワードセット
+   * @return 登録した不変リスト
+   */
+  public List<List<String>> put(
+      String promptVersion, String chapterText, List<List<String>> keywordLists) {
+    List<List<String>> immutable = keywordLists.stream().map(List::copyOf).toList();
+    if (enabled && !immutable.isEmpty()) {
+      cache.put(CacheKey.of(promptVersion, chapterText), immutable);
+    }
+    return immutable;
+  }
+
+  /** キー・値に含まれる文字列の UTF-16 バイト数とオーバーヘッドから概算サイズを求める。 */
+  private static int estimateBytes(CacheKey key, List<List<String>> value) {
+    long bytes = STRING_OVERHEAD_BYTES * 2L + key.normalizedText().length() * 2L;
+    for (List<String> group : value) {
+      for (String keyword : group) {
+        bytes += STRING_OVERHEAD_BYTES + keyword.length() * 2L;
+      }
+    }
+    return (int) Math.min(Integer.MAX_VALUE, bytes);
+  }
+
+  /** キャッシュキー。 */
+  record CacheKey(String promptVersion, String normalizedText) {
+
+    static CacheKey of(String promptVersion, String chapterText) {
+      return new CacheKey(
+          promptVersion, Normalizer.normalize(chapterText, Normalizer.Form.NFKC).strip());
+    }
+  }
+}
@@ -4,14 +4,23 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.OpenAiClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-/** 文章からキーワード一覧を生成する用途別サービス。 */
+/**
+ * 文章からキーワード一覧を生成する用途別サービス。
+ *
+ * <p>応答は {@link StructuredOutputValidator} で検証し、4 語を超えるセットは切り詰め、ひらがな 10 文字以内の 4 語になっていないセットは捨てる。3
+ * セットに満たない場合は、足りない数だけを短いプロンプトで 1 回だけ追加で依頼する（全体を生成し直すより待ち時間が短い）。それでも足りなければ揃った分だけを返し、キャッシュには入れない。
+ */
 @Service
 public class KeywordListsGenerationService {
 
@@ -21,53 +30,216 @@ public class KeywordListsGenerationService {
           + "すべての単語はひらがなで、可能であれば10文字以内に収めてください。"
           + "セットは必ず3つ返し、JSON配列以外の出力は行わないでください。";
 
-  private static final String INITIAL_USER_PROMPT_TEMPLATE =
-      """
-			これは章本文が存在しない初回サジェスト用の依頼です。seed=%s
+  /**
+   * 初回サジェスト用のシステムプロンプト。毎回変わる seed はユーザー入力にだけ入れ、ここは呼び出しをまたいで同じバイト列に保つ（プロンプトキャッシュを効かせるため）。
+   */
+  private static final String INITIAL_SYSTEM_PROMPT =
+      SYSTEM_PROMPT
+          + """
+
+			これは章本文が存在しない初回サジェスト用の依頼です。ユーザー入力の seed は毎回変わる値です。
 			子どもがワクワクするようなテーマや季節、感情、小さな発見などを自由に想像し、
 			それぞれのセットに関連語2つ・無関係な遊び心ある単語2つを混ぜてください。
 			ひらがな・10文字以内を守りつつ、毎回違う切り口になるよう意識してください。
 			""";
 
+  /** 出力トークン数の上限。実際の max_output_tokens は実測に基づいてこれ以下に絞られる。 */
   private static final int MAX_OUTPUT_TOKENS = 2000;
 
+  /** 足りないセットだけを補うときのシステムプロンプト。依頼数と使用済みの単語はユーザー入力に入れ、ここは固定に保つ。 */
+  private static final String REPAIR_SYSTEM_PROMPT =
+      "あなたは4〜6歳の子ども向けのキーワードセットを補うアシスタントです。"
+          + "各セットは「関連しそうな単語2つ」と「関連が薄い単語2つ」の計4語で、すべてひらがな・10文字以内にしてください。"
+          + "ユーザー入力の「必要なセット数」と同じ数のセットを返し、「使用済みの単語」は使わないでください。";
+
+  /** 1 回の生成で揃えるセット数と、1 セットの語数。 */
+  private static final int SET_COUNT = 3;
+
+  private static final int WORDS_PER_SET = 4;
+
+  /** ひらがな（長音符を含む）で 10 文字以内。 */
+  private static final String WORD_PATTERN = "^[\\u3041-\\u3096\\u30FC]+$";
+
+  private static final int MAX_WORD_LENGTH = 10;
+
+  /** プロンプトやスキーマを変更した際に上げるバージョン。キャッシュキーに含める。 */
+  static final String PROMPT_VERSION = "v1";
+
   private final OpenAiClient openAiClient;
   private final ObjectMapper objectMapper;
+  private final KeywordListsCache keywordListsCache;
+  private final StructuredOutputValidator validator;
+  private final MeterRegistry meterRegistry;
+  private final JsonNode keywordObjectSchema;
+  private final JsonNode keywordSetSchema;
 
-  public KeywordListsGenerationService(OpenAiClient openAiClient, ObjectMapper objectMapper) {
+  /** 補完用のスキーマ。添字が依頼するセット数（0 は使わない）。 */
+  private final List<JsonNode> repairSchemas;
+
+  public KeywordListsGenerationService(
+      OpenAiClient openAiClient,
+      ObjectMapper objectMapper,
+      KeywordListsCache keywordListsCache,
+      StructuredOutputValidator validator,
+      MeterRegistry meterRegistry) {
     this.openAiClient = openAiClient;
     this.objectMapper = objectMapper;
+    this.keywordListsCache = keywordListsCache;
+    this.validator = validator;
+    this.meterRegistry = meterRegistry;
+    this.keywordObjectSchema = buildKeywordObjectSchema(SET_COUNT);
+    this.keywordSetSchema = buildKeywordSetSchema();
+    List<JsonNode> schemas = new ArrayList<>();
+    for (int count = 0; count <= SET_COUNT; count++) {
+      schemas.add(count == 0 ? null : buildKeywordObjectSchema(count));
+    }
+    this.repairSchemas = schemas;
   }
 
-  /** 章テキストからキーワードの配列（配列の配列）を生成する。内部的には OpenAI の structured outputs を使用する。 */
+  /**
+   * 章テキストからキーワードの配列（配列の配列）を生成する。内部的には OpenAI の structured outputs を使用する。
+   *
+   * <p>同じ本文（NFKC 正規化後）の結果がキャッシュにあれば OpenAI を呼ばずに返す。
+   */
   public List<List<String>> generate(String chapterText) {
-    if (!StringUtils.hasText(chapterText)) {
-      throw new IllegalArgumentException("chapterText must not be blank");
-    }
+    OpenAiStructuredRequest request = buildRequest(chapterText);
+    return keywordListsCache
+        .get(PROMPT_VERSION, chapterText)
+        .orElseGet(
+            () -> {
+              JsonNode response = openAiClient.requestStructuredJson(request);
+              return cacheIfComplete(chapterText, repair(request, response));
+            });
+  }
 
-    JsonNode schema = buildKeywordObjectSchema();
-    OpenAiStructuredRequest request =
-        new OpenAiStructuredRequest(
-            SYSTEM_PROMPT, chapterText, schema, "keyword_matrix", MAX_OUTPUT_TOKENS);
+  /**
+   * {@link #generate(String)} の非同期版。OpenAI 応答を待つ間も呼び出しスレッドを占有しない。
+   *
+   * @param chapterText 平文化済み章本文
+   * @return 4 語 × 3 セットのキーワードを発行する Mono
+   */
+  public Mono<List<List<String>>> generateAsync(String chapterText) {
+    return generateAsync(chapterText, LlmDeadline.none());
+  }
+
+  /**
+   * 締め切り付きで {@link #generateAsync(String)} を行う。締め切りまでに応答が無ければ {@link
+   * LlmDeadlineExceededException} で失敗する。
+   *
+   * @param chapterText 平文化済み章本文
+   * @param deadline リクエストの締め切り
+   * @return 4 語 × 3 セットのキーワードを発行する Mono
+   */
+  public Mono<List<List<String>>> generateAsync(String chapterText, LlmDeadline deadline) {
+    return Mono.fromCallable(() -> buildRequest(chapterText))
+        .flatMap(
+            request ->
+                keywordListsCache
+                    .get(PROMPT_VERSION, chapterText)
+                    .map(Mono::just)
+                    .orElseGet(() -> requestAndCacheAsync(request, chapterText, deadline)));
+  }
+
+  private Mono<List<List<String>>> requestAndCacheAsync(
+      OpenAiStructuredRequest request, String chapterText, LlmDeadline deadline) {
+    return openAiClient
+        .requestStructuredJsonAsync(request, deadline)
+        .flatMap(response -> repairAsync(request, response, deadline))
+        .map(sets -> cacheIfComplete(chapterText, sets));
+  }
+
+  /**
+   * {@link #generate(String)} のストリーミング版。4 語セットが 1 つ完成するたびに発行する。
+   *
+   * <p>OpenAI の応答をストリーミングで受け取り、{@code keywords} 配列を逐次パースする。キャッシュにあれば OpenAI を呼ばずにそのまま流し、
+   * 最後まで受け取れた結果はキャッシュに登録する。不正なセットは流さずに捨て、足りない分はストリームの最後に補完して流す。
+   *
+   * @param chapterText 平文化済み章本文
+   * @return 4 語のキーワードセットを順に発行する Flux
+   */
+  public Flux<List<String>> streamKeywordSets(String chapterText) {
+    return streamKeywordSets(chapterText, LlmDeadline.none());
+  }
+
+  /**
+   * 締め切り付きで {@link #streamKeywordSets(String)} を行う。
+   *
+   * @param chapterText 平文化済み章本文
+   * @param deadline リクエストの締め切り
+   * @return 4 語のキーワードセットを順に発行する Flux
+   */
+  public Flux<List<String>> streamKeywordSets(String chapterText, LlmDeadline deadline) {
+    return Mono.fromCallable(() -> buildRequest(chapterText))
+        .flatMapMany(
+            request ->
+                keywordListsCache
+                    .get(PROMPT_VERSION, chapterText)
+                    .map(Flux::fromIterable)
+                    .orElseGet(() -> streamAndCache(request, chapterText, deadline)));
+  }
 
-    JsonNode response = openAiClient.requestStructuredJson(request);
-    return convertToList(response);
+  private Flux<List<String>> streamAndCache(
+      OpenAiStructuredRequest request, String chapterText, LlmDeadline deadline) {
+    return Flux.defer(
+        () -> {
+          KeywordSetStreamParser parser = new KeywordSetStreamParser(objectMapper.getFactory());
+          List<List<String>> received = new ArrayList<>();
+          return openAiClient
+              .streamStructuredText(request, deadline)
+              .concatMapIterable(parser::feed)
+              .concatWith(Flux.defer(() -> Flux.fromIterable(parser.finish())))
+              .concatMapIterable(set -> accept(set, received))
+              .concatWith(
+                  Flux.defer(
+                      () ->
+                          requestMissing(request, received, deadline)
+                              .onErrorResume(error -> !received.isEmpty(), error -> Mono.empty())
+                              .flatMapIterable(response -> acceptAll(response, received))
+                              .concatWith(Mono.<List<String>>fromRunnable(() -> finish(received)))))
+              .doOnComplete(() -> cacheIfComplete(chapterText, received));
+        });
   }
 
   /**
    * 初回サジェスト用に、章本文なしでキーワードを生成する。
    *
-   * <p>毎回 seed を変えて LLM にランダム性を持たせる。
+   * <p>毎回 seed を変えて LLM にランダム性を持たせる。seed 入りのプロンプトは再利用されないためキャッシュしない。
+   *
+   * <p>使用量の記録先や優先度は購読時の Reactor Context で渡す。
    *
-   * @return 生成されたキーワードセット
+   * @return 生成されたキーワードセットを発行する Mono
    */
-  public List<List<String>> generateInitialKeywords() {
-    String seed = UUID.randomUUID().toString();
-    String prompt = INITIAL_USER_PROMPT_TEMPLATE.formatted(seed);
-    return generate(prompt);
+  public Mono<List<List<String>>> generateInitialKeywordsAsync() {
+    return Mono.fromCallable(this::buildInitialRequest)
+        .flatMap(
+            request ->
+                openAiClient
+                    .requestStructuredJsonAsync(request)
+                    .flatMap(response -> repairAsync(request, response, LlmDeadline.none())));
   }
 
-  private JsonNode buildKeywordObjectSchema() {
+  /** 指示はすべて固定のシステムプロンプトに置き、ユーザー入力は seed だけにする。 */
+  OpenAiStructuredRequest buildInitialRequest() {
+    return new OpenAiStructuredRequest(
+        INITIAL_SYSTEM_PROMPT,
+        "seed=" + UUID.randomUUID(),
+        keywordObjectSchema,
+        "keyword_matrix",
+        MAX_OUTPUT_TOKENS);
+  }
+
+  private OpenAiStructuredRequest buildRequest(String chapterText) {
+    if (!StringUtils.hasText(chapterText)) {
+      throw new IllegalArgumentException("chapterText must not be blank");
+    }
+
+    // スキーマは毎回同じインスタンスを渡し、OpenAiClient 側の事前シリアライズ済みテンプレートを使わせる
+    return new OpenAiStructuredRequest(
+        SYSTEM_PROMPT, chapterText, keywordObjectSchema, "keyword_matrix", MAX_OUTPUT_TOKENS);
+  }
+
+  /** {@code count} セットのキーワードを返させるスキーマを構築する。 */
+  private JsonNode buildKeywordObjectSchema(int count) {
     ObjectNode root = objectMapper.createObjectNode();
     root.put("$schema", "http://json-schema.org/draft-07/schema#");
     root.put("type", "object");
@@ -89,8 +261,8 @@ public class KeywordListsGenerationService {
     innerArray.put("additionalItems", false);
 
     keywordsArray.set("items", innerArray);
-    keywordsArray.put("minItems", 3);
-    keywordsArray.put("maxItems", 3);
+    keywordsArray.put("minItems", count);
+    keywordsArray.put("maxItems", count);
 
     properties.set("keywords", keywordsArray);
     root.set("properties", properties);
@@ -100,21 +272,151 @@ public class KeywordListsGenerationService {
     return root;
   }
 
-  /** OpenAI から返却された JSON を List<List<String>> に変換する。 */
-  private List<List<String>> convertToList(JsonNode response) {
+  /**
+   * 1 セット分の検証用スキーマ。ひらがなと長さの制約は OpenAI に送るスキーマには入れず、ローカルの検証だけに使う（送るスキーマを変えるとプロンプトキャッシュが切れる）。
+   */
+  private JsonNode buildKeywordSetSchema() {
+    ObjectNode word = objectMapper.createObjectNode();
+    word.put("type", "string");
+    word.put("minLength", 1);
+    word.put("maxLength", MAX_WORD_LENGTH);
+    word.put("pattern", WORD_PATTERN);
+    ObjectNode set = objectMapper.createObjectNode();
+    set.put("type", "array");
+    set.put("minItems", WORDS_PER_SET);
+    set.put("maxItems", WORDS_PER_SET);
+    set.set("items", word);
+    return set;
+  }
+
+  /** 応答から正しいセットを取り出し、足りなければ足りない分だけを同期で依頼して補う。 */
+  private List<List<String>> repair(OpenAiStructuredRequest request, JsonNode response) {
+    List<List<String>> accepted = new ArrayList<>();
+    acceptAll(response, accepted);
+    if (accepted.size() < SET_COUNT) {
+      try {
+        JsonNode extra = openAiClient.requestStructuredJson(buildRepairRequest(request, accepted));
+        acceptAll(extra, accepted);
+      } catch (RuntimeException e) {
+        // 補完に失敗しても、揃った分があればそれを返す
+        if (accepted.isEmpty()) {
+          throw e;
+        }
+      }
+    }
+    return finish(accepted);
+  }
+
+  /** {@link #repair} の非同期版。 */
+  private Mono<List<List<String>>> repairAsync(
+      OpenAiStructuredRequest request, JsonNode response, LlmDeadline deadline) {
+    return Mono.defer(
+        () -> {
+          List<List<String>> accepted = new ArrayList<>();
+          acceptAll(response, accepted);
+          return requestMissing(request, accepted, deadline)
+              .doOnNext(extra -> acceptAll(extra, accepted))
+              .onErrorResume(error -> !accepted.isEmpty(), error -> Mono.empty())
+              .then(Mono.fromCallable(() -> finish(accepted)));
+        });
+  }
+
+  /** 足りないセットがあれば、その数だけを依頼する。揃っていれば何もしない。 */
+  private Mono<JsonNode> requestMissing(
+      OpenAiStructuredRequest request, List<List<String>> accepted, LlmDeadline deadline) {
+    if (accepted.size() >= SET_COUNT) {
+      return Mono.empty();
+    }
+    return Mono.fromCallable(() -> buildRepairRequest(request, accepted))
+        .flatMap(repairRequest -> openAiClient.requestStructuredJsonAsync(repairRequest, deadline));
+  }
+
+  /** 足りないセット数・使用済みの単語・元の入力だけを渡す補完用リクエストを組み立てる。 */
+  OpenAiStructuredRequest buildRepairRequest(
+      OpenAiStructuredRequest request, List<List<String>> accepted) {
+    int missing = SET_COUNT - accepted.size();
+    count("requested", missing);
+    String usedWords = accepted.stream().flatMap(List::stream).collect(Collectors.joining("、"));
+    String userInput =
+        "必要なセット数: "
+            + missing
+            + "\n使用済みの単語: "
+            + (usedWords.isEmpty() ? "なし" : usedWords)
+            + "\n元の入力:\n"
+            + request.userInput();
+    return new OpenAiStructuredRequest(
+        REPAIR_SYSTEM_PROMPT,
+        userInput,
+        repairSchemas.get(missing),
+        "keyword_repair",
+        Math.ceilDiv(MAX_OUTPUT_TOKENS * missing, SET_COUNT));
+  }
+
+  /** 応答の {@code keywords} から正しいセットを {@code accepted} に加え、加えたセットを返す。 */
+  private List<List<String>> acceptAll(JsonNode response, List<List<String>> accepted) {
     JsonNode keywordsNode = response.path("keywords");
     if (!keywordsNode.isArray()) {
-      throw new OpenAiClientException("OpenAI response must contain 'keywords' array");
+      count("dropped", SET_COUNT);
+      return List.of();
     }
-    List<List<String>> result = new ArrayList<>();
+    List<List<String>> added = new ArrayList<>();
     for (JsonNode group : keywordsNode) {
-      if (!group.isArray()) {
-        continue;
+      List<String> set = new ArrayList<>();
+      if (group.isArray()) {
+        group.forEach(node -> set.add(node.isTextual() ? node.asText() : node.toString()));
       }
-      List<String> keywords = new ArrayList<>();
-      group.forEach(node -> keywords.add(Objects.toString(node.asText(), "")));
-      result.add(keywords);
+      added.addAll(accept(set, accepted));
+    }
+    return added;
+  }
+
+  /**
+   * 1 セットを検証し、正しければ {@code accepted} に加える。4 語を超える分と、揃った後のセットは切り詰める。重複したセットは捨てる。
+   *
+   * @return 加えたセット（加えなかった場合は空）
+   */
+  private List<List<String>> accept(List<String> set, List<List<String>> accepted) {
+    if (accepted.size() >= SET_COUNT) {
+      count("trimmed", 1);
+      return List.of();
+    }
+    List<String> words = set;
+    if (words.size() > WORDS_PER_SET) {
+      count("trimmed", 1);
+      words = List.copyOf(words.subList(0, WORDS_PER_SET));
     }
-    return result;
+    if (!validator.isValid(keywordSetSchema, objectMapper.valueToTree(words))
+        || accepted.contains(words)) {
+      count("dropped", 1);
+      return List.of();
+    }
+    accepted.add(words);
+    return List.of(words);
+  }
+
+  private List<List<String>> finish(List<List<String>> accepted) {
+    if (accepted.isEmpty()) {
+      throw new OpenAiClientException("OpenAI response did not contain any valid keyword set");
+    }
+    if (accepted.size() < SET_COUNT) {
+      count("incomplete", 1);
+    }
+    return accepted;
+  }
+
+  /** 3 セット揃った結果だけをキャッシュに入れる。 */
+  private List<List<String>> cacheIfComplete(String chapterText, List<List<String>> sets) {
+    if (sets.size() < SET_COUNT) {
+      return sets;
+    }
+    return keywordListsCache.put(PROMPT_VERSION, chapterText, sets);
+  }
+
+  private void count(String action, int amount) {
+    Counter.builder("llm.keywords.repair")
+        .description("キーワード応答の補正内容（切り詰め・破棄・追加依頼・不足のまま返却）")
+        .tag("action", action)
+        .register(meterRegistry)
+        .increment(amount);
   }
 }
@@ -0,0 +1,116 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code {"keywords": [[...], [...], [...]]}} 形式の JSON を断片ごとに受け取り、完成した 4 語セットから順に取り出すパーサー。
+ *
+ * <p>Jackson のノンブロッキングパーサーを使うため、トークンの途中で断片が切れていても問題ない。1 本のストリームにつき 1 インスタンスを使い、スレッドセーフではない。
+ */
+final class KeywordSetStreamParser {
+
+  private static final String KEYWORDS_FIELD = "keywords";
+
+  private final JsonParser parser;
+  private final ByteArrayFeeder feeder;
+  private int depth;
+  private boolean rootClosed;
+  private String rootField;
+  private boolean inKeywords;
+  private List<String> currentSet;
+
+  KeywordSetStreamParser(JsonFactory jsonFactory) {
+    try {
+      this.parser = jsonFactory.createNonBlockingByteArrayParser();
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to create non-blocking JSON parser", e);
+    }
+    this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+  }
+
+  /**
+   * JSON の断片を投入し、この断片で完成したキーワードセットを返す。
+   *
+   * @param chunk JSON 本文の断片
+   * @return 新たに完成したキーワードセット（なければ空）
+   */
+  List<List<String>> feed(String chunk) {
+    byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+    try {
+      feeder.feedInput(bytes, 0, bytes.length);
+      return drain();
+    } catch (IOException e) {
+      throw new OpenAiClientException("Failed to parse streamed keywords JSON", e);
+    }
+  }
+
+  /**
+   * 入力の終端を通知し、残りのセットを返す。JSON が閉じていなければエラーにする。
+   *
+   * @return 新たに完成したキーワードセット（なければ空）
+   */
+  List<List<String>> finish() {
+    try {
+      feeder.endOfInput();
+      List<List<String>> remaining = drain();
+      if (!rootClosed) {
+        throw new OpenAiClientException("OpenAI stream ended before keywords JSON was complete");
+      }
+      return remaining;
+    } catch (IOException e) {
+      throw new OpenAiClientException("Failed to parse streamed keywords JSON", e);
+    }
+  }
+
+  private List<List<String>> drain() throws IOException {
+    List<List<String>> completed = new ArrayList<>();
+    JsonToken token;
+    while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+      switch (token) {
+        case START_OBJECT -> depth++;
+        case END_OBJECT -> {
+          depth--;
+          rootClosed = depth == 0;
+        }
+        case FIELD_NAME -> {
+          if (depth == 1) {
+            rootField = parser.currentName();
+          }
+        }
+        case START_ARRAY -> {
+          depth++;
+          if (depth == 2 && KEYWORDS_FIELD.equals(rootField)) {
+            inKeywords = true;
+          } else if (inKeywords && depth == 3) {
+            currentSet = new ArrayList<>();
+          }
+        }
+        case END_ARRAY -> {
+          if (inKeywords && depth == 3 && currentSet != null) {
+            completed.add(List.copyOf(currentSet));
+            currentSet = null;
+          } else if (inKeywords && depth == 2) {
+            inKeywords = false;
+          }
+          depth--;
+        }
+        case VALUE_STRING -> {
+          if (inKeywords && depth == 3 && currentSet != null) {
+            currentSet.add(parser.getText());
+          }
+        }
+        default -> {
+          // keywords 以外の値やネストは読み飛ばす
+        }
+      }
+    }
+    return completed;
+  }
+}
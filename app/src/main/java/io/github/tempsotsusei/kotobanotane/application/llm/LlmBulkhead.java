@@ -0,0 +1,120 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import io.github.tempsotsusei.kotobanotane.config.AsyncExecutorProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+
+/**
+ * LLM ジョブの同時実行数をユースケースごとのセマフォで抑えるバルクヘッド。
+ *
+ * <p>{@code llmJobExecutor} を仮想スレッドで動かす場合はスレッド数が上限にならないため、ここで上限をかける。あるユースケースが詰まっても他のユースケースの枠は
+ * 食いつぶさない。空きを待つ間は呼び出し元のスレッドが止まるので、仮想スレッドから呼ぶ前提（待機中はキャリアスレッドを占有しない）。
+ *
+ * <p>仮想スレッドはジョブの数だけ起動されるため、待っているジョブの数も {@code bulkheadMaxWaiting} で抑える。超えた分は待たずに諦める。
+ */
+@Component
+public class LlmBulkhead {
+
+  private final AsyncExecutorProperties properties;
+  private final MeterRegistry meterRegistry;
+  private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+  public LlmBulkhead(AsyncExecutorProperties properties, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * ユースケースの枠を 1 つ確保して処理を実行する。
+   *
+   * @param useCase ユースケース名（{@link LlmUsageLedger#useCaseOf(String)} の値）
+   * @param task 実行する処理
+   * @return 処理の結果
+   * @throws LlmUnavailableException {@code bulkheadTimeoutMillis} 待っても枠が空かない場合、または待っているジョブが {@code
+   *     bulkheadMaxWaiting} に達している場合
+   */
+  public <T> T call(String useCase, Supplier<T> task) {
+    Lane lane = lanes.computeIfAbsent(useCase, this::newLane);
+    Semaphore semaphore = lane.semaphore();
+    long startedAt = System.nanoTime();
+    if (lane.waiting().incrementAndGet() > properties.bulkheadMaxWaiting()
+        && semaphore.availablePermits() == 0) {
+      lane.waiting().decrementAndGet();
+      throw reject(useCase, "queue_full", Duration.ZERO);
+    }
+    boolean acquired;
+    try {
+      acquired = semaphore.tryAcquire(properties.bulkheadTimeoutMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new LlmUnavailableException("Interrupted waiting for LLM bulkhead", Duration.ZERO);
+    } finally {
+      lane.waiting().decrementAndGet();
+    }
+    Timer.builder("llm.bulkhead.wait")
+        .description("LLM ジョブが同時実行の枠を待った時間")
+        .tag("use_case", useCase)
+        .register(meterRegistry)
+        .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    if (!acquired) {
+      throw reject(useCase, "timeout", Duration.ofMillis(properties.bulkheadTimeoutMillis()));
+    }
+    try {
+      return task.get();
+    } finally {
+      semaphore.release();
+    }
+  }
+
+  /** ユースケースの実行中の数を返す。 */
+  public int inUse(String useCase) {
+    Lane lane = lanes.get(useCase);
+    return lane == null
+        ? 0
+        : properties.bulkheadLimit(useCase) - lane.semaphore().availablePermits();
+  }
+
+  /** ユースケースの枠の空きを待っているジョブ数を返す。 */
+  public int waiting(String useCase) {
+    Lane lane = lanes.get(useCase);
+    return lane == null ? 0 : lane.waiting().get();
+  }
+
+  private Lane newLane(String useCase) {
+    Lane lane =
+        new Lane(new Semaphore(properties.bulkheadLimit(useCase), true), new AtomicInteger());
+    Gauge.builder("llm.bulkhead.in_use", () -> inUse(useCase))
+        .description("同時実行の枠を使っている LLM ジョブ数")
+        .tag("use_case", useCase)
+        .register(meterRegistry);
+    Gauge.builder("llm.bulkhead.waiting", lane.waiting(), AtomicInteger::get)
+        .description("同時実行の枠の空きを待っている LLM ジョブ数")
+        .tag("use_case", useCase)
+        .register(meterRegistry);
+    return lane;
+  }
+
+  private LlmUnavailableException reject(String useCase, String reason, Duration retryAfter) {
+    Counter.builder("llm.bulkhead.rejections")
+        .description("同時実行の枠が空かずに諦めた LLM ジョブ数")
+        .tag("use_case", useCase)
+        .tag("reason", reason)
+        .register(meterRegistry)
+        .increment();
+    return new LlmUnavailableException(
+        "LLM bulkhead is full use_case=%s reason=%s".formatted(useCase, reason), retryAfter);
+  }
+
+  /** ユースケースごとの枠と、空きを待っているジョブ数。 */
+  private record Lane(Semaphore semaphore, AtomicInteger waiting) {}
+}
@@ -0,0 +1,71 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import java.time.Duration;
+
+/**
+ * LLM を利用する 1 リクエストの締め切り。コントローラーで作成し、サービスを経由して {@code OpenAiClient} まで渡す。
+ *
+ * <p>締め切りを過ぎた呼び出しは打ち切られ、間に合わないリトライは行わない。{@link #none()} は締め切りなし（バッチや非同期ジョブ向け）を表す。
+ */
+public final class LlmDeadline {
+
+  private static final LlmDeadline NONE = new LlmDeadline(0L, false);
+
+  private final long expiresAtNanos;
+  private final boolean bounded;
+
+  private LlmDeadline(long expiresAtNanos, boolean bounded) {
+    this.expiresAtNanos = expiresAtNanos;
+    this.bounded = bounded;
+  }
+
+  /** 締め切りなし。 */
+  public static LlmDeadline none() {
+    return NONE;
+  }
+
+  /**
+   * 現在から {@code timeout} 後を締め切りとする。
+   *
+   * @param timeout 残り時間
+   * @return 締め切り
+   */
+  public static LlmDeadline after(Duration timeout) {
+    return new LlmDeadline(System.nanoTime() + Math.max(0L, timeout.toNanos()), true);
+  }
+
+  /** 締め切りが設定されているか。 */
+  public boolean isBounded() {
+    return bounded;
+  }
+
+  /** 締め切りまでの残り時間（過ぎていれば 0）。締め切りなしの場合は呼び出さないこと。 */
+  public Duration remaining() {
+    if (!bounded) {
+      throw new IllegalStateException("deadline is not bounded");
+    }
+    return Duration.ofNanos(Math.max(0L, expiresAtNanos - System.nanoTime()));
+  }
+
+  /** 締め切りを過ぎているか。 */
+  public boolean isExpired() {
+    return bounded && expiresAtNanos - System.nanoTime() <= 0;
+  }
+
+  /**
+   * {@code needed} の時間を使っても締め切りに間に合うか。
+   *
+   * @param needed 必要な時間
+   * @return 締め切りなし、または残り時間が {@code needed} 以上なら true
+   */
+  public boolean allows(Duration needed) {
+    return !bounded || remaining().compareTo(needed) >= 0;
+  }
+
+  @Override
+  public String toString() {
+    return bounded
+        ? "LlmDeadline[remaining=" + remaining().toMillis() + "ms]"
+        : "LlmDeadline[none]";
+  }
+}
@@ -0,0 +1,9 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+/** リクエストの締め切り（{@link LlmDeadline}）までに LLM の応答が得られなかったことを示す例外。 */
+public class LlmDeadlineExceededException extends OpenAiClientException {
+
+  public LlmDeadlineExceededException(String message) {
+    super(message);
+  }
+}
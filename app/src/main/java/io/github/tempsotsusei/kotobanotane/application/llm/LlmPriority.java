@@ -0,0 +1,38 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * LLM 呼び出しの優先度。OpenAI の同時実行枠が埋まっているときに、{@link LlmScheduler} が待機中の呼び出しを通す順番を決める。
+ *
+ * <p>呼び出し元は Reactor の Context（{@link #asContext()}）で OpenAI クライアントまで伝える。Context が無い呼び出しは {@link
+ * #INTERACTIVE} として扱う。
+ */
+public enum LlmPriority {
+  /** 子どもが画面で結果を待っている呼び出し（キーワード生成など）。 */
+  INTERACTIVE,
+  /** 結果を急がない呼び出し（フィードバック生成、事前生成プールの補充など）。 */
+  BACKGROUND;
+
+  private static final String CONTEXT_KEY = LlmPriority.class.getName();
+
+  /**
+   * この優先度を OpenAI クライアントへ伝えるための Reactor Context を作る。
+   *
+   * @return {@code contextWrite} に渡す Context
+   */
+  public Context asContext() {
+    return Context.of(CONTEXT_KEY, this);
+  }
+
+  /**
+   * Context から優先度を取り出す。
+   *
+   * @param context 購読時の Context
+   * @return 優先度（無ければ {@link #INTERACTIVE}）
+   */
+  public static LlmPriority of(ContextView context) {
+    return context.getOrDefault(CONTEXT_KEY, INTERACTIVE);
+  }
+}
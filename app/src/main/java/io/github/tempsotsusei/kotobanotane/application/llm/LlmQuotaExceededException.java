@@ -0,0 +1,19 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import java.time.Duration;
+
+/** ユーザーの 1 日あたりの LLM 利用上限に達したため、呼び出しを行わずに失敗したことを示す例外。 */
+public class LlmQuotaExceededException extends OpenAiClientException {
+
+  private final Duration retryAfter;
+
+  public LlmQuotaExceededException(String message, Duration retryAfter) {
+    super(message);
+    this.retryAfter = retryAfter;
+  }
+
+  /** 上限がリセットされる（翌日になる）までの時間。 */
+  public Duration getRetryAfter() {
+    return retryAfter;
+  }
+}
@@ -0,0 +1,127 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import io.github.tempsotsusei.kotobanotane.config.LlmSchedulerProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Component;
+
+/**
+ * OpenAI の同時実行枠を待つ呼び出しを、{@link LlmPriority} ごとの待機列に並べるスケジューラー。
+ *
+ * <p>枠が空いたら {@link LlmPriority#INTERACTIVE} を先に通す。ただし {@link LlmPriority#BACKGROUND} も待っている間は払い出しのたびに
+ * {@code backgroundSharePercent} 分のクレジットを積み、1 件分たまったら BACKGROUND を 1 件通す。対話的な呼び出しが途切れなくても、
+ * バックグラウンドの処理は払い出しの一定割合を必ず受け取る。同じ優先度の中は FIFO。
+ *
+ * <p>待機列の操作はスレッドセーフではない。呼び出し側（{@code OpenAiConcurrencyLimiter}）が自分のロックの中で呼ぶ。
+ */
+@Component
+public class LlmScheduler {
+
+  private final int backgroundSharePercent;
+  private final Map<LlmPriority, Deque<Ticket>> queues = new EnumMap<>(LlmPriority.class);
+  private final Map<LlmPriority, Timer> waitTimers = new EnumMap<>(LlmPriority.class);
+  private int backgroundCredit;
+
+  public LlmScheduler(LlmSchedulerProperties properties, MeterRegistry meterRegistry) {
+    this.backgroundSharePercent = properties.backgroundSharePercent();
+    for (LlmPriority priority : LlmPriority.values()) {
+      Deque<Ticket> queue = new ArrayDeque<>();
+      queues.put(priority, queue);
+      String tag = priority.name().toLowerCase();
+      waitTimers.put(
+          priority,
+          Timer.builder("llm.scheduler.queue_wait")
+              .description("OpenAI の同時実行枠を待った時間")
+              .tag("priority", tag)
+              .register(meterRegistry));
+      Gauge.builder("llm.scheduler.queue", queue, Deque::size)
+          .description("OpenAI の同時実行枠を待っている呼び出し数")
+          .tag("priority", tag)
+          .register(meterRegistry);
+    }
+  }
+
+  /** 待機列の末尾に並べる。 */
+  public void offer(Ticket ticket) {
+    queues.get(ticket.priority).addLast(ticket);
+  }
+
+  /**
+   * 次に枠を渡す呼び出しを待機列から取り出す。
+   *
+   * @return 取り出した呼び出し（待機列が空なら null）
+   */
+  public Ticket poll() {
+    Deque<Ticket> interactive = queues.get(LlmPriority.INTERACTIVE);
+    Deque<Ticket> background = queues.get(LlmPriority.BACKGROUND);
+    if (background.isEmpty()) {
+      // 待っていない間のクレジットは持ち越さない（後からまとめて割り込ませない）
+      backgroundCredit = 0;
+      return interactive.pollFirst();
+    }
+    if (interactive.isEmpty()) {
+      return background.pollFirst();
+    }
+    backgroundCredit += backgroundSharePercent;
+    if (backgroundCredit >= 100) {
+      backgroundCredit -= 100;
+      return background.pollFirst();
+    }
+    return interactive.pollFirst();
+  }
+
+  /** 待機列から取り除く（タイムアウトやキャンセル時）。 */
+  public boolean remove(Ticket ticket) {
+    return queues.get(ticket.priority).remove(ticket);
+  }
+
+  /** 優先度ごとの待機中の呼び出し数を返す。 */
+  public int size(LlmPriority priority) {
+    return queues.get(priority).size();
+  }
+
+  /** 待機中の呼び出し数（全優先度の合計）を返す。 */
+  public int size() {
+    int size = 0;
+    for (Deque<Ticket> queue : queues.values()) {
+      size += queue.size();
+    }
+    return size;
+  }
+
+  /**
+   * 枠を受け取るまでの待ち時間を記録する。
+   *
+   * @param priority 優先度
+   * @param waitedNanos 待った時間（待たずに通った場合は 0）
+   */
+  public void recordWait(LlmPriority priority, long waitedNanos) {
+    waitTimers.get(priority).record(waitedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** 待機列に並ぶ呼び出し。呼び出し側で拡張して待機中の状態を持たせる。 */
+  public static class Ticket {
+
+    private final LlmPriority priority;
+    private final long enqueuedAtNanos = System.nanoTime();
+
+    protected Ticket(LlmPriority priority) {
+      this.priority = priority;
+    }
+
+    public LlmPriority priority() {
+      return priority;
+    }
+
+    /** 並んでからの経過時間（ナノ秒）。 */
+    public long waitedNanos() {
+      return System.nanoTime() - enqueuedAtNanos;
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import java.time.Duration;
+
+/**
+ * LLM が一時的に利用できない（サーキットブレーカーが OPEN など）ため、呼び出しを行わずに失敗したことを示す例外。
+ *
+ * <p>呼び出し元はこの例外を受け取ったら、固定メッセージやキャッシュなどで縮退動作に切り替える。
+ */
+public class LlmUnavailableException extends OpenAiClientException {
+
+  private final Duration retryAfter;
+
+  public LlmUnavailableException(String message, Duration retryAfter) {
+    super(message);
+    this.retryAfter = retryAfter;
+  }
+
+  /** 再試行までの目安時間。 */
+  public Duration getRetryAfter() {
+    return retryAfter;
+  }
+}
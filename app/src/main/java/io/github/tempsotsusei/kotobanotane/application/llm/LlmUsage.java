@@ -0,0 +1,16 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+/**
+ * OpenAI レスポンスの {@code usage} から読み取った 1 回分のトークン使用量。
+ *
+ * @param inputTokens 入力トークン数（キャッシュ済みを含む）
+ * @param outputTokens 出力トークン数
+ * @param cachedTokens プロンプトキャッシュに載った入力トークン数
+ */
+public record LlmUsage(long inputTokens, long outputTokens, long cachedTokens) {
+
+  /** 入力と出力を合わせたトークン数。 */
+  public long totalTokens() {
+    return inputTokens + outputTokens;
+  }
+}
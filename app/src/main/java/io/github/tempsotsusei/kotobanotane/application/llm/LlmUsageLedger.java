@@ -0,0 +1,298 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import io.github.tempsotsusei.kotobanotane.config.LlmUsageProperties;
+import io.github.tempsotsusei.kotobanotane.config.time.TimeProvider;
+import io.github.tempsotsusei.kotobanotane.domain.llmusage.LlmUsageDaily;
+import io.github.tempsotsusei.kotobanotane.domain.llmusage.LlmUsageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * OpenAI のトークン使用量をユーザー（auth0Id）とユースケースごとに集計する台帳。
+ *
+ * <p>呼び出しごとの加算はメモリ上の {@link LongAdder}（スレッドごとに分散して加算するカウンタ）に対して行い、{@code flushIntervalMillis}
+ * ごとに増分をまとめて llm_usage_daily テーブルへ書き出す。書き出しに失敗した増分はメモリに戻し、次回まとめて書き出す。
+ *
+ * <p>1 日あたりの利用上限はメモリ上のユーザー別合計だけで判定し、LLM 呼び出しの経路では DB を参照しない。起動時に当日分の合計を DB から読み込むが、他インスタンスの
+ * 起動後の利用量は反映されないため、複数インスタンス構成では概算の上限となる。
+ *
+ * <p>呼び出し元のユーザーは Reactor の Context（{@link #attributedTo(String)}）で OpenAI クライアントまで伝える。Context
+ * が無い呼び出し（事前生成プールの補充など）は {@link #UNATTRIBUTED} として記録する。
+ */
+@Component
+public class LlmUsageLedger {
+
+  private static final Logger log = LoggerFactory.getLogger(LlmUsageLedger.class);
+
+  /** 呼び出し元のユーザーが特定できない利用量の記録先。 */
+  public static final String UNATTRIBUTED = "system";
+
+  private static final String CONTEXT_KEY = LlmUsageLedger.class.getName() + ".auth0Id";
+
+  private final LlmUsageRepository llmUsageRepository;
+  private final LlmUsageProperties properties;
+  private final TimeProvider timeProvider;
+  private final MeterRegistry meterRegistry;
+  private final Map<UsageKey, Counters> pending = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> tokensToday = new ConcurrentHashMap<>();
+  private final Object flushLock = new Object();
+  private volatile LocalDate today;
+  private Disposable flushTimer;
+
+  public LlmUsageLedger(
+      LlmUsageRepository llmUsageRepository,
+      LlmUsageProperties properties,
+      TimeProvider timeProvider,
+      MeterRegistry meterRegistry) {
+    this.llmUsageRepository = llmUsageRepository;
+    this.properties = properties;
+    this.timeProvider = timeProvider;
+    this.meterRegistry = meterRegistry;
+    this.today = timeProvider.now().toLocalDate();
+  }
+
+  /**
+   * 利用量をユーザーに紐付けるための Reactor Context を作る。
+   *
+   * @param auth0Id 呼び出し元ユーザー
+   * @return {@code contextWrite} に渡す Context
+   */
+  public static Context attributedTo(String auth0Id) {
+    return Context.of(CONTEXT_KEY, auth0Id);
+  }
+
+  /**
+   * Context から呼び出し元ユーザーを取り出す。
+   *
+   * @param context 購読時の Context
+   * @return auth0Id（無ければ {@link #UNATTRIBUTED}）
+   */
+  public static String auth0IdOf(ContextView context) {
+    return context.getOrDefault(CONTEXT_KEY, UNATTRIBUTED);
+  }
+
+  /**
+   * スキーマ名から集計用のユースケース名を決める。
+   *
+   * @param schemaName 構造化出力のスキーマ名
+   * @return ユースケース名
+   */
+  public static String useCaseOf(String schemaName) {
+    if (schemaName == null) {
+      return "structured_output";
+    }
+    return switch (schemaName) {
+      case "keyword_matrix", "keyword_repair" -> "keywords";
+      case "feedbacks_wrapper", "chapter_feedbacks_wrapper" -> "feedback";
+      default -> schemaName;
+    };
+  }
+
+  /** 起動完了時に当日分の合計を読み込み、定期的な書き出しを開始する。 */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    loadToday();
+    long interval = properties.flushIntervalMillis();
+    flushTimer =
+        Schedulers.boundedElastic()
+            .schedulePeriodically(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * 1 回分の使用量を記録する。
+   *
+   * @param auth0Id 呼び出し元ユーザー（null の場合は {@link #UNATTRIBUTED}）
+   * @param schemaName 構造化出力のスキーマ名
+   * @param usage トークン使用量
+   */
+  public void record(String auth0Id, String schemaName, LlmUsage usage) {
+    String user = auth0Id == null || auth0Id.isBlank() ? UNATTRIBUTED : auth0Id;
+    String useCase = useCaseOf(schemaName);
+    LocalDate date = currentDate();
+    pending
+        .computeIfAbsent(new UsageKey(user, useCase, date), key -> new Counters())
+        .add(1, usage.inputTokens(), usage.outputTokens(), usage.cachedTokens());
+    tokensToday.computeIfAbsent(user, key -> new LongAdder()).add(usage.totalTokens());
+    meterRegistry.counter("llm.usage.requests", "use_case", useCase).increment();
+    tokenCounter(useCase, "input").increment(usage.inputTokens());
+    tokenCounter(useCase, "output").increment(usage.outputTokens());
+    tokenCounter(useCase, "cached").increment(usage.cachedTokens());
+    if (usage.inputTokens() > 0) {
+      // プロンプトキャッシュの効き具合をユースケースごとに見るため、入力のうちキャッシュから読まれた割合を残す
+      DistributionSummary.builder("llm.usage.cache_hit_ratio")
+          .description("入力トークンのうちプロンプトキャッシュから読まれた割合")
+          .tag("use_case", useCase)
+          .register(meterRegistry)
+          .record((double) usage.cachedTokens() / usage.inputTokens());
+    }
+  }
+
+  /**
+   * ユーザーが当日の利用上限に達していないことを確認する。メモリ上の合計だけを参照する。
+   *
+   * @param auth0Id 呼び出し元ユーザー
+   * @throws LlmQuotaExceededException 上限に達している場合
+   */
+  public void requireWithinQuota(String auth0Id) {
+    if (!properties.hasDailyTokenQuota()) {
+      return;
+    }
+    long used = tokensUsedToday(auth0Id);
+    if (used >= properties.dailyTokenQuota()) {
+      meterRegistry.counter("llm.usage.quota_rejections").increment();
+      log.info("LLM daily quota exceeded auth0Id={} usedTokens={}", auth0Id, used);
+      throw new LlmQuotaExceededException("Daily LLM token quota exceeded", untilTomorrow());
+    }
+  }
+
+  /**
+   * ユーザーの当日の使用トークン数（入力＋出力）を返す。
+   *
+   * @param auth0Id 対象ユーザー
+   * @return 使用トークン数
+   */
+  public long tokensUsedToday(String auth0Id) {
+    currentDate();
+    LongAdder used = tokensToday.get(auth0Id);
+    return used == null ? 0 : used.sum();
+  }
+
+  /** 溜まっている増分を DB へ書き出す。失敗した場合は増分をメモリに戻す。 */
+  public void flush() {
+    synchronized (flushLock) {
+      LocalDate date = currentDate();
+      List<LlmUsageDaily> increments = new ArrayList<>();
+      for (Map.Entry<UsageKey, Counters> entry : pending.entrySet()) {
+        LlmUsageDaily increment = entry.getValue().drain(entry.getKey());
+        if (increment != null) {
+          increments.add(increment);
+        }
+        if (entry.getKey().date().isBefore(date)) {
+          // 前日以前のキーにはもう加算されないので、書き出したら捨てる
+          pending.remove(entry.getKey(), entry.getValue());
+        }
+      }
+      if (increments.isEmpty()) {
+        return;
+      }
+      try {
+        llmUsageRepository.addAll(increments);
+        meterRegistry.counter("llm.usage.flushed_rows").increment(increments.size());
+      } catch (RuntimeException e) {
+        log.warn("Failed to flush LLM usage rows={}, will retry", increments.size(), e);
+        increments.forEach(this::restore);
+      }
+    }
+  }
+
+  /** 終了時にタイマーを止め、残っている増分を書き出す。 */
+  @PreDestroy
+  void stop() {
+    if (flushTimer != null) {
+      flushTimer.dispose();
+    }
+    flush();
+  }
+
+  private void loadToday() {
+    LocalDate date = currentDate();
+    try {
+      for (LlmUsageDaily usage : llmUsageRepository.findAllByUsageDate(date)) {
+        tokensToday
+            .computeIfAbsent(usage.auth0Id(), key -> new LongAdder())
+            .add(usage.totalTokens());
+      }
+    } catch (RuntimeException e) {
+      log.warn("Failed to load today's LLM usage, quotas start from zero", e);
+    }
+  }
+
+  private void restore(LlmUsageDaily usage) {
+    pending
+        .computeIfAbsent(
+            new UsageKey(usage.auth0Id(), usage.useCase(), usage.usageDate()),
+            key -> new Counters())
+        .add(
+            usage.requestCount(), usage.inputTokens(), usage.outputTokens(), usage.cachedTokens());
+  }
+
+  /** 現在の日付を返す。日付が変わっていればユーザー別の当日合計をリセットする。 */
+  private LocalDate currentDate() {
+    LocalDate now = timeProvider.now().toLocalDate();
+    if (!now.equals(today)) {
+      synchronized (this) {
+        if (!now.equals(today)) {
+          tokensToday.clear();
+          today = now;
+        }
+      }
+    }
+    return now;
+  }
+
+  private Duration untilTomorrow() {
+    ZonedDateTime now = timeProvider.now();
+    return Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay(now.getZone()));
+  }
+
+  private Counter tokenCounter(String useCase, String type) {
+    return meterRegistry.counter("llm.usage.tokens", "use_case", useCase, "type", type);
+  }
+
+  private record UsageKey(String auth0Id, String useCase, LocalDate date) {}
+
+  /** 書き出し待ちの増分。加算は競合しにくい {@link LongAdder} で行う。 */
+  private static final class Counters {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder input = new LongAdder();
+    private final LongAdder output = new LongAdder();
+    private final LongAdder cached = new LongAdder();
+
+    void add(long requestCount, long inputTokens, long outputTokens, long cachedTokens) {
+      requests.add(requestCount);
+      input.add(inputTokens);
+      output.add(outputTokens);
+      cached.add(cachedTokens);
+    }
+
+    /** 現在値を取り出して 0 に戻す。増分が無ければ null。 */
+    LlmUsageDaily drain(UsageKey key) {
+      long requestCount = requests.sumThenReset();
+      long inputTokens = input.sumThenReset();
+      long outputTokens = output.sumThenReset();
+      long cachedTokens = cached.sumThenReset();
+      if (requestCount == 0 && inputTokens == 0 && outputTokens == 0 && cachedTokens == 0) {
+        return null;
+      }
+      return new LlmUsageDaily(
+          key.auth0Id(),
+          key.useCase(),
+          key.date(),
+          requestCount,
+          inputTokens,
+          outputTokens,
+          cachedTokens);
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Batch API で処理された 1 リクエスト分の結果。
+ *
+ * @param customId 投入時に付与した識別子
+ * @param json 抽出済みの structured output（失敗時は null）
+ * @param error 失敗理由（成功時は null）
+ */
+public record OpenAiBatchResult(String customId, JsonNode json, String error) {
+
+  public static OpenAiBatchResult succeeded(String customId, JsonNode json) {
+    return new OpenAiBatchResult(customId, json, null);
+  }
+
+  public static OpenAiBatchResult failed(String customId, String error) {
+    return new OpenAiBatchResult(customId, null, error);
+  }
+
+  /** 成功した結果かどうか。 */
+  public boolean isSucceeded() {
+    return json != null;
+  }
+}
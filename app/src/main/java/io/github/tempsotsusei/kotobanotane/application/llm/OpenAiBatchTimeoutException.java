@@ -0,0 +1,24 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import java.util.Map;
+
+/**
+ * バッチが待ち時間の上限までに終わらず、取り消した場合に送出する例外。
+ *
+ * <p>取り消しまでに処理されたリクエストの結果を持つ。呼び出し元は成功した分をそのまま使い、残りだけを別の方法で処理する。
+ */
+public class OpenAiBatchTimeoutException extends OpenAiClientException {
+
+  private final Map<String, OpenAiBatchResult> partialResults;
+
+  public OpenAiBatchTimeoutException(
+      String batchId, Map<String, OpenAiBatchResult> partialResults) {
+    super("OpenAI batch timed out and was cancelled batchId=" + batchId);
+    this.partialResults = Map.copyOf(partialResults);
+  }
+
+  /** 取り消しまでに処理された結果（custom_id をキーにしたもの。未処理のリクエストは含まないか失敗扱い）。 */
+  public Map<String, OpenAiBatchResult> getPartialResults() {
+    return partialResults;
+  }
+}
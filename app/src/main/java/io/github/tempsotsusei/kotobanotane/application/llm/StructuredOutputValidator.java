@@ -0,0 +1,222 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import org.springframework.stereotype.Component;
+
+/**
+ * structured outputs の応答を JSON Schema に照らしてローカルで検証するバリデーター。
+ *
+ * <p>スキーマは初回にルールの木へコンパイルし（{@code pattern} の正規表現もここで 1 度だけコンパイルする）、同一インスタンスごとにキャッシュする。
+ * 呼び出し側はスキーマを定数として使い回す前提。対応するキーワードは {@code type}・{@code enum}・{@code properties}・{@code
+ * required}・{@code additionalProperties: false}・{@code items}・{@code minItems}・{@code maxItems}・{@code
+ * minLength}・{@code maxLength}・{@code pattern} で、それ以外は無視する。
+ */
+@Component
+public class StructuredOutputValidator {
+
+  /** 想定するスキーマ数に対して十分な上限。超えた分はキャッシュせずにその都度コンパイルする。 */
+  private static final int MAX_CACHED_SCHEMAS = 64;
+
+  private final Map<SchemaKey, Rule> compiled = new ConcurrentHashMap<>();
+
+  /**
+   * 値をスキーマで検証する。
+   *
+   * @param schema JSON Schema
+   * @param value 検証する値
+   * @return 違反の一覧（{@code $.keywords[0]: ...} の形式）。満たしていれば空
+   */
+  public List<String> validate(JsonNode schema, JsonNode value) {
+    List<String> violations = new ArrayList<>();
+    compile(schema).check(value, "$", violations);
+    return violations;
+  }
+
+  /** 値がスキーマを満たすか。 */
+  public boolean isValid(JsonNode schema, JsonNode value) {
+    return validate(schema, value).isEmpty();
+  }
+
+  private Rule compile(JsonNode schema) {
+    SchemaKey key = new SchemaKey(schema);
+    Rule rule = compiled.get(key);
+    if (rule == null) {
+      rule = compileRule(schema);
+      if (compiled.size() < MAX_CACHED_SCHEMAS) {
+        compiled.putIfAbsent(key, rule);
+      }
+    }
+    return rule;
+  }
+
+  private static Rule compileRule(JsonNode schema) {
+    List<Rule> rules = new ArrayList<>();
+    typeRule(schema.path("type")).ifPresent(rules::add);
+    JsonNode enumValues = schema.path("enum");
+    if (enumValues.isArray()) {
+      Set<JsonNode> allowed = new HashSet<>();
+      enumValues.forEach(allowed::add);
+      rules.add(
+          (value, path, violations) -> {
+            if (!allowed.contains(value)) {
+              violations.add(path + ": not one of " + enumValues);
+            }
+          });
+    }
+    if (schema.has("properties") || schema.has("required") || schema.has("additionalProperties")) {
+      rules.add(objectRule(schema));
+    }
+    if (schema.has("items") || schema.has("minItems") || schema.has("maxItems")) {
+      rules.add(arrayRule(schema));
+    }
+    if (schema.has("minLength") || schema.has("maxLength") || schema.has("pattern")) {
+      rules.add(stringRule(schema));
+    }
+    return (value, path, violations) -> {
+      for (Rule rule : rules) {
+        rule.check(value, path, violations);
+      }
+    };
+  }
+
+  private static Optional<Rule> typeRule(JsonNode type) {
+    List<String> types = new ArrayList<>();
+    if (type.isTextual()) {
+      types.add(type.asText());
+    } else if (type.isArray()) {
+      type.forEach(node -> types.add(node.asText()));
+    }
+    if (types.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        (value, path, violations) -> {
+          if (types.stream().noneMatch(expected -> hasType(value, expected))) {
+            violations.add(path + ": expected " + String.join("|", types));
+          }
+        });
+  }
+
+  private static boolean hasType(JsonNode value, String type) {
+    return switch (type) {
+      case "object" -> value.isObject();
+      case "array" -> value.isArray();
+      case "string" -> value.isTextual();
+      case "integer" -> value.isIntegralNumber();
+      case "number" -> value.isNumber();
+      case "boolean" -> value.isBoolean();
+      case "null" -> value.isNull();
+      default -> true;
+    };
+  }
+
+  /** 型が object のときだけ検証する（型の違反は type のルールで扱う）。 */
+  private static Rule objectRule(JsonNode schema) {
+    Map<String, Rule> properties = new LinkedHashMap<>();
+    schema
+        .path("properties")
+        .fields()
+        .forEachRemaining(field -> properties.put(field.getKey(), compileRule(field.getValue())));
+    List<String> required = new ArrayList<>();
+    schema.path("required").forEach(name -> required.add(name.asText()));
+    JsonNode additional = schema.path("additionalProperties");
+    boolean closed = additional.isBoolean() && !additional.asBoolean();
+    return (value, path, violations) -> {
+      if (!value.isObject()) {
+        return;
+      }
+      for (String name : required) {
+        if (!value.has(name)) {
+          violations.add(path + "." + name + ": required");
+        }
+      }
+      value
+          .fields()
+          .forEachRemaining(
+              field -> {
+                Rule rule = properties.get(field.getKey());
+                if (rule != null) {
+                  rule.check(field.getValue(), path + "." + field.getKey(), violations);
+                } else if (closed) {
+                  violations.add(path + "." + field.getKey() + ": not allowed");
+                }
+              });
+    };
+  }
+
+  /** 型が array のときだけ検証する。 */
+  private static Rule arrayRule(JsonNode schema) {
+    Rule items = schema.path("items").isObject() ? compileRule(schema.path("items")) : null;
+    int minItems = schema.path("minItems").asInt(0);
+    int maxItems = schema.path("maxItems").asInt(Integer.MAX_VALUE);
+    return (value, path, violations) -> {
+      if (!value.isArray()) {
+        return;
+      }
+      if (value.size() < minItems) {
+        violations.add(path + ": fewer than " + minItems + " items");
+      }
+      if (value.size() > maxItems) {
+        violations.add(path + ": more than " + maxItems + " items");
+      }
+      if (items != null) {
+        for (int i = 0; i < value.size(); i++) {
+          items.check(value.get(i), path + "[" + i + "]", violations);
+        }
+      }
+    };
+  }
+
+  /** 型が string のときだけ検証する。長さはコードポイント数で数える。 */
+  private static Rule stringRule(JsonNode schema) {
+    int minLength = schema.path("minLength").asInt(0);
+    int maxLength = schema.path("maxLength").asInt(Integer.MAX_VALUE);
+    JsonNode regex = schema.path("pattern");
+    Pattern pattern = regex.isTextual() ? Pattern.compile(regex.asText()) : null;
+    return (value, path, violations) -> {
+      if (!value.isTextual()) {
+        return;
+      }
+      String text = value.asText();
+      int length = text.codePointCount(0, text.length());
+      if (length < minLength) {
+        violations.add(path + ": shorter than " + minLength);
+      }
+      if (length > maxLength) {
+        violations.add(path + ": longer than " + maxLength);
+      }
+      if (pattern != null && !pattern.matcher(text).find()) {
+        violations.add(path + ": does not match " + pattern.pattern());
+      }
+    };
+  }
+
+  /** コンパイル済みのルール。違反があれば {@code violations} に追加する。 */
+  @FunctionalInterface
+  private interface Rule {
+    void check(JsonNode value, String path, List<String> violations);
+  }
+
+  /** キャッシュキー。スキーマは深い比較・ハッシュ計算を避けるため同一インスタンスかどうかで比較する。 */
+  private record SchemaKey(JsonNode schema) {
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof SchemaKey key && schema == key.schema;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(schema);
+    }
+  }
+}
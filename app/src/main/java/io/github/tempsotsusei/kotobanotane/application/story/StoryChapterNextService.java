@@ -4,11 +4,14 @@ import com.fasterxml.jackson.databind.JsonNode;
 import io.github.tempsotsusei.kotobanotane.application.chapter.ChapterJsonTextService;
 import io.github.tempsotsusei.kotobanotane.application.chapter.ChapterTextAnalysis;
 import io.github.tempsotsusei.kotobanotane.application.llm.KeywordListsGenerationService;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmDeadline;
 import java.util.List;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
  * `/api/story/chapter/next` から呼び出され、章 JSON を整形して LLM に渡すアプリケーションサービス。
@@ -34,14 +37,35 @@ public class StoryChapterNextService {
   /**
    * TipTap JSON を受け取り、文字列化→バリデーション→LLM 呼び出しまでを実行する。
    *
+   * <p>文字列化とバリデーションは呼び出し時に同期的に行い、LLM 呼び出しは締め切り付きの Mono として返す。購読を解除すると（クライアント切断など）
+   * OpenAI への通信もキャンセルされる。
+   *
+   * @param chapterJson フロントエンドから渡される章 JSON
+   * @param deadline リクエストの締め切り
+   * @return LLM が生成した 4 語 × 3 セットのリストを発行する Mono
+   */
+  public Mono<List<List<String>>> generateNextChapterKeywords(
+      JsonNode chapterJson, LlmDeadline deadline) {
+    ChapterTextAnalysis analysis = chapterJsonTextService.analyze(chapterJson);
+    String plainText = analysis.plainText();
+    validateTextLength(plainText);
+    return keywordListsGenerationService.generateAsync(plainText, deadline);
+  }
+
+  /**
+   * {@link #generateNextChapterKeywords(JsonNode, LlmDeadline)} のストリーミング版。
+   *
+   * <p>文字列化とバリデーションは呼び出し時に同期的に行い、不正な入力はストリームを開始する前に 400 とする。
+   *
    * @param chapterJson フロントエンドから渡される章 JSON
-   * @return LLM が生成した 4 語 × 3 セットのリスト
+   * @param deadline リクエストの締め切り
+   * @return 4 語のキーワードセットを完成順に発行する Flux
    */
-  public List<List<String>> generateNextChapterKeywords(JsonNode chapterJson) {
+  public Flux<List<String>> streamNextChapterKeywords(JsonNode chapterJson, LlmDeadline deadline) {
     ChapterTextAnalysis analysis = chapterJsonTextService.analyze(chapterJson);
     String plainText = analysis.plainText();
     validateTextLength(plainText);
-    return keywordListsGenerationService.generate(plainText);
+    return keywordListsGenerationService.streamKeywordSets(plainText, deadline);
   }
 
   /**
@@ -4,6 +4,8 @@ import io.github.tempsotsusei.kotobanotane.application.chapter.ChapterService;
 import io.github.tempsotsusei.kotobanotane.application.uuid.UuidGeneratorService;
 import io.github.tempsotsusei.kotobanotane.config.time.TimeProvider;
 import io.github.tempsotsusei.kotobanotane.domain.chapter.Chapter;
+import io.github.tempsotsusei.kotobanotane.domain.feedbackjob.FeedbackJob;
+import io.github.tempsotsusei.kotobanotane.domain.feedbackjob.FeedbackJobRepository;
 import io.github.tempsotsusei.kotobanotane.domain.story.Story;
 import io.github.tempsotsusei.kotobanotane.domain.story.StoryRepository;
 import io.github.tempsotsusei.kotobanotane.domain.thumbnail.ThumbnailRepository;
@@ -20,7 +22,8 @@ import org.springframework.web.server.ResponseStatusException;
 /**
  * Story と Chapter を一括作成するアプリケーションサービス。
  *
- * <p>バリデーション済みの入力を受け取り、すべての章を登録できない場合はロールバックする。
+ * <p>バリデーション済みの入力を受け取り、すべての章を登録できない場合はロールバックする。章ごとのフィードバック生成ジョブも同じトランザクションで
+ * feedback_jobs に登録するため、物語が保存されればジョブも必ず残る。
  */
 @Service
 public class StoryCreationService {
@@ -31,6 +34,7 @@ public class StoryCreationService {
   private final StoryRepository storyRepository;
   private final ChapterService chapterService;
   private final ThumbnailRepository thumbnailRepository;
+  private final FeedbackJobRepository feedbackJobRepository;
   private final UuidGeneratorService uuidGeneratorService;
   private final TimeProvider timeProvider;
 
@@ -38,23 +42,25 @@ public class StoryCreationService {
       StoryRepository storyRepository,
       ChapterService chapterService,
       ThumbnailRepository thumbnailRepository,
+      FeedbackJobRepository feedbackJobRepository,
       UuidGeneratorService uuidGeneratorService,
       TimeProvider timeProvider) {
     this.storyRepository = storyRepository;
     this.chapterService = chapterService;
     this.thumbnailRepository = thumbnailRepository;
+    this.feedbackJobRepository = feedbackJobRepository;
     this.uuidGeneratorService = uuidGeneratorService;
     this.timeProvider = timeProvider;
   }
 
   /**
-   * Story と Chapter をトランザクションで一括作成する。
+   * Story と Chapter をトランザクションで一括作成し、章ごとのフィードバック生成ジョブを登録する。
    *
    * @param auth0UserId 作成者 Auth0 ID
    * @param storyTitle タイトル
    * @param thumbnailId サムネイル ID（任意）
    * @param drafts バリデーション済みの章入力（平文化テキスト含む）
-   * @return Story ID とフィードバック生成対象の章情報
+   * @return 登録した Story の ID
    */
   @Transactional
   public StoryCreationResult createStoryWithChapters(
@@ -70,7 +76,7 @@ public class StoryCreationService {
             uuidGeneratorService.generateV7(), auth0UserId, storyTitle, thumbnailToUse, now, now);
     Story savedStory = storyRepository.save(story);
 
-    List<ChapterFeedbackTarget> feedbackTargets = new ArrayList<>();
+    List<FeedbackJob> feedbackJobs = new ArrayList<>();
     drafts.stream()
         .sorted(Comparator.comparingInt(ChapterDraft::chapterNum))
         .forEach(
@@ -78,11 +84,19 @@ public class StoryCreationService {
               Chapter created =
                   chapterService.create(
                       savedStory.storyId(), draft.chapterNum(), draft.chapterJson());
-              feedbackTargets.add(
-                  new ChapterFeedbackTarget(created.chapterId(), draft.plainText()));
+              feedbackJobs.add(
+                  new FeedbackJob(
+                      uuidGeneratorService.generateV7(),
+                      savedStory.storyId(),
+                      created.chapterId(),
+                      auth0UserId,
+                      draft.plainText(),
+                      0,
+                      now));
             });
+    feedbackJobRepository.enqueueAll(feedbackJobs);
 
-    return new StoryCreationResult(savedStory.storyId(), feedbackTargets);
+    return new StoryCreationResult(savedStory.storyId());
   }
 
   /** タイトルが空でなく、最大長を超えないことを検証する。 */
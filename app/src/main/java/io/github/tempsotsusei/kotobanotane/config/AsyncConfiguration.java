@@ -4,13 +4,18 @@ import java.util.concurrent.Executor;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 /** 非同期実行のための共通設定。 */
 @Configuration
 @EnableAsync
-@EnableConfigurationProperties(AsyncExecutorProperties.class)
+@EnableConfigurationProperties({
+  AsyncExecutorProperties.class,
+  FeedbackJobProperties.class,
+  FeedbackEventsProperties.class
+})
 public class AsyncConfiguration {
 
   private final AsyncExecutorProperties properties;
@@ -21,6 +26,12 @@ public class AsyncConfiguration {
 
   @Bean("llmJobExecutor")
   public Executor llmJobExecutor() {
+    if (properties.mode() == AsyncExecutorProperties.Mode.VIRTUAL) {
+      // ジョブのほとんどは OpenAI の応答待ちなので、スレッド数では絞らずに LlmBulkhead のユースケースごとの上限で抑える
+      SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("llm-job-");
+      executor.setVirtualThreads(true);
+      return executor;
+    }
     ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
     executor.setCorePoolSize(properties.corePoolSize());
     executor.setMaxPoolSize(properties.maxPoolSize());
@@ -1,13 +1,37 @@
 package io.github.tempsotsusei.kotobanotane.config;
 
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+/**
+ * LLM ジョブ用エグゼキューター（{@code llmJobExecutor}）の設定。
+ *
+ * @param corePoolSize {@code PLATFORM} モードでのコアスレッド数
+ * @param maxPoolSize {@code PLATFORM} モードでの最大スレッド数
+ * @param queueCapacity {@code PLATFORM} モードでの待ち行列の長さ
+ * @param mode スレッドの種類（未指定時は {@code VIRTUAL}）
+ * @param defaultBulkheadLimit ユースケースごとの同時実行数の上限（個別指定が無い場合）
+ * @param bulkheads ユースケース名（{@code async_job_ack} など）ごとの同時実行数の上限
+ * @param bulkheadTimeoutMillis 上限に空きが出るまで待つ最大時間（ミリ秒）
+ * @param bulkheadMaxWaiting ユースケースごとに上限の空きを待てるジョブ数。超えた分は待たずに諦める
+ */
 @ConfigurationProperties(prefix = "app.async.llm")
-public record AsyncExecutorProperties(int corePoolSize, int maxPoolSize, int queueCapacity) {
+public record AsyncExecutorProperties(
+    int corePoolSize,
+    int maxPoolSize,
+    int queueCapacity,
+    Mode mode,
+    int defaultBulkheadLimit,
+    Map<String, Integer> bulkheads,
+    long bulkheadTimeoutMillis,
+    int bulkheadMaxWaiting) {
 
   private static final int DEFAULT_CORE_POOL_SIZE = 2;
   private static final int DEFAULT_MAX_POOL_SIZE = 4;
   private static final int DEFAULT_QUEUE_CAPACITY = 100;
+  private static final int DEFAULT_BULKHEAD_LIMIT = 16;
+  private static final long DEFAULT_BULKHEAD_TIMEOUT_MILLIS = 30_000L;
+  private static final int DEFAULT_BULKHEAD_MAX_WAITING = 100;
 
   public AsyncExecutorProperties {
     int resolvedCore = corePoolSize <= 0 ? DEFAULT_CORE_POOL_SIZE : corePoolSize;
@@ -19,5 +43,32 @@ public record AsyncExecutorProperties(int corePoolSize, int maxPoolSize, int que
     corePoolSize = resolvedCore;
     maxPoolSize = resolvedMax;
     queueCapacity = resolvedQueue;
+    mode = mode == null ? Mode.VIRTUAL : mode;
+    defaultBulkheadLimit =
+        defaultBulkheadLimit <= 0 ? DEFAULT_BULKHEAD_LIMIT : defaultBulkheadLimit;
+    bulkheads = bulkheads == null ? Map.of() : Map.copyOf(bulkheads);
+    bulkheadTimeoutMillis =
+        bulkheadTimeoutMillis <= 0 ? DEFAULT_BULKHEAD_TIMEOUT_MILLIS : bulkheadTimeoutMillis;
+    bulkheadMaxWaiting =
+        bulkheadMaxWaiting <= 0 ? DEFAULT_BULKHEAD_MAX_WAITING : bulkheadMaxWaiting;
+  }
+
+  /**
+   * ユースケースの同時実行数の上限を返す。
+   *
+   * @param useCase ユースケース名
+   * @return 個別指定（1 以上）があればその値、無ければ {@link #defaultBulkheadLimit()}
+   */
+  public int bulkheadLimit(String useCase) {
+    Integer limit = bulkheads.get(useCase);
+    return limit == null || limit <= 0 ? defaultBulkheadLimit : limit;
+  }
+
+  /** エグゼキューターのスレッドの種類。 */
+  public enum Mode {
+    /** 従来のスレッドプール。同時実行数はスレッド数で決まる。 */
+    PLATFORM,
+    /** タスクごとに仮想スレッドを起動する。同時実行数はユースケースごとの上限で抑える。 */
+    VIRTUAL
   }
 }
@@ -0,0 +1,79 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.StringUtils;
+
+/**
+ * 負荷試験用の OpenAI Responses API スタブ（{@code fake-openai} プロファイル）の設定。
+ *
+ * @param host 待ち受けるホスト
+ * @param port 待ち受けるポート（0 なら空いているポート）
+ * @param latencyDistribution 応答時間（ストリーミングでは最初の差分までの時間）の分布
+ * @param latencyMedianMillis 応答時間の中央値（ミリ秒）
+ * @param latencyP99Millis 応答時間の p99（ミリ秒）。{@code LOGNORMAL} のときだけ使う
+ * @param rateLimitPercent 429 を返す割合（%）
+ * @param serverErrorPercent 500/503 を返す割合（%）
+ * @param retryAfterMillis 429 に付ける {@code Retry-After} の待ち時間（ミリ秒）
+ * @param streamDeltaIntervalMillis ストリーミングで差分を送る間隔（ミリ秒）
+ * @param streamChunkChars ストリーミングの差分 1 件あたりの文字数
+ * @param streamFailurePercent ストリーミングの途中で error イベントを送って打ち切る割合（%）
+ * @param seed 乱数の種。0 以外を指定すると、抽選の並びが起動ごとに同じになる
+ */
+@ConfigurationProperties(prefix = "app.fake-openai")
+public record FakeOpenAiProperties(
+    String host,
+    int port,
+    LatencyDistribution latencyDistribution,
+    long latencyMedianMillis,
+    long latencyP99Millis,
+    int rateLimitPercent,
+    int serverErrorPercent,
+    long retryAfterMillis,
+    long streamDeltaIntervalMillis,
+    int streamChunkChars,
+    int streamFailurePercent,
+    long seed) {
+
+  private static final String DEFAULT_HOST = "127.0.0.1";
+  private static final long DEFAULT_LATENCY_MEDIAN_MILLIS = 800L;
+  private static final long DEFAULT_LATENCY_P99_MILLIS = 4_000L;
+  private static final long DEFAULT_RETRY_AFTER_MILLIS = 1_000L;
+  private static final long DEFAULT_STREAM_DELTA_INTERVAL_MILLIS = 30L;
+  private static final int DEFAULT_STREAM_CHUNK_CHARS = 8;
+
+  /** 応答時間の分布。 */
+  public enum LatencyDistribution {
+    /** 常に中央値。 */
+    FIXED,
+    /** 0〜中央値の 2 倍の一様分布。 */
+    UNIFORM,
+    /** 中央値と p99 から決めた対数正規分布。 */
+    LOGNORMAL
+  }
+
+  public FakeOpenAiProperties {
+    host = StringUtils.hasText(host) ? host : DEFAULT_HOST;
+    port = Math.max(0, port);
+    latencyDistribution =
+        latencyDistribution == null ? LatencyDistribution.LOGNORMAL : latencyDistribution;
+    latencyMedianMillis =
+        latencyMedianMillis <= 0 ? DEFAULT_LATENCY_MEDIAN_MILLIS : latencyMedianMillis;
+    latencyP99Millis =
+        latencyP99Millis <= 0
+            ? Math.max(DEFAULT_LATENCY_P99_MILLIS, latencyMedianMillis)
+            : Math.max(latencyP99Millis, latencyMedianMillis);
+    rateLimitPercent = clampPercent(rateLimitPercent);
+    serverErrorPercent = clampPercent(serverErrorPercent);
+    retryAfterMillis = retryAfterMillis <= 0 ? DEFAULT_RETRY_AFTER_MILLIS : retryAfterMillis;
+    streamDeltaIntervalMillis =
+        streamDeltaIntervalMillis <= 0
+            ? DEFAULT_STREAM_DELTA_INTERVAL_MILLIS
+            : streamDeltaIntervalMillis;
+    streamChunkChars = streamChunkChars <= 0 ? DEFAULT_STREAM_CHUNK_CHARS : streamChunkChars;
+    streamFailurePercent = clampPercent(streamFailurePercent);
+  }
+
+  private static int clampPercent(int percent) {
+    return Math.min(100, Math.max(0, percent));
+  }
+}
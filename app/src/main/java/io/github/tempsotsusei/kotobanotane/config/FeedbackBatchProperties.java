@@ -0,0 +1,46 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.convert.DurationStyle;
+
+/**
+ * フィードバック生成のバッチ（Batch API）モード設定。
+ *
+ * @param enabled バッチモードを使うか（未指定時は無効で、章ごとに即時生成する）
+ * @param maxBatchSize 1 バッチにまとめる最大章数。溜まった時点で投入する
+ * @param flushIntervalMillis 最初の章が溜まってから、件数に達しなくても投入するまでの時間（ミリ秒）
+ * @param pollIntervalMillis バッチの状態を確認する間隔（ミリ秒）
+ * @param completionWindow Batch API に渡す完了期限（例: 24h）。結果を待つ上限にも使う
+ */
+@ConfigurationProperties(prefix = "app.llm.feedback-batch")
+public record FeedbackBatchProperties(
+    Boolean enabled,
+    int maxBatchSize,
+    long flushIntervalMillis,
+    long pollIntervalMillis,
+    String completionWindow) {
+
+  private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+  private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 60_000L;
+  private static final long DEFAULT_POLL_INTERVAL_MILLIS = 30_000L;
+  private static final String DEFAULT_COMPLETION_WINDOW = "24h";
+
+  public FeedbackBatchProperties {
+    enabled = enabled != null && enabled;
+    maxBatchSize = maxBatchSize <= 0 ? DEFAULT_MAX_BATCH_SIZE : maxBatchSize;
+    flushIntervalMillis =
+        flushIntervalMillis <= 0 ? DEFAULT_FLUSH_INTERVAL_MILLIS : flushIntervalMillis;
+    pollIntervalMillis =
+        pollIntervalMillis <= 0 ? DEFAULT_POLL_INTERVAL_MILLIS : pollIntervalMillis;
+    completionWindow =
+        completionWindow == null || completionWindow.isBlank()
+            ? DEFAULT_COMPLETION_WINDOW
+            : completionWindow;
+  }
+
+  /** バッチの結果を待つ上限。完了期限に、期限切れを確認するまでのポーリング 1 回分を足した時間。 */
+  public Duration completionTimeout() {
+    return DurationStyle.detectAndParse(completionWindow).plusMillis(pollIntervalMillis);
+  }
+}
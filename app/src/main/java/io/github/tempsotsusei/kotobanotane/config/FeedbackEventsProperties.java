@@ -0,0 +1,26 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * フィードバック保存通知の SSE（{@code /api/story/feedback/events}）の設定。
+ *
+ * @param heartbeatIntervalMillis 通知が無い間にコメント行を送る間隔（ミリ秒）。プロキシに無通信で切られないようにする
+ * @param maxStreamMillis 1 接続を保つ最大時間（ミリ秒）。過ぎたら閉じ、クライアントの自動再接続に任せる
+ * @param maxStreamsPerUser 1 ユーザーが同時に開ける接続数
+ */
+@ConfigurationProperties(prefix = "app.feedback-events")
+public record FeedbackEventsProperties(
+    long heartbeatIntervalMillis, long maxStreamMillis, int maxStreamsPerUser) {
+
+  private static final long DEFAULT_HEARTBEAT_INTERVAL_MILLIS = 25_000L;
+  private static final long DEFAULT_MAX_STREAM_MILLIS = 30 * 60_000L;
+  private static final int DEFAULT_MAX_STREAMS_PER_USER = 5;
+
+  public FeedbackEventsProperties {
+    heartbeatIntervalMillis =
+        heartbeatIntervalMillis <= 0 ? DEFAULT_HEARTBEAT_INTERVAL_MILLIS : heartbeatIntervalMillis;
+    maxStreamMillis = maxStreamMillis <= 0 ? DEFAULT_MAX_STREAM_MILLIS : maxStreamMillis;
+    maxStreamsPerUser = maxStreamsPerUser <= 0 ? DEFAULT_MAX_STREAMS_PER_USER : maxStreamsPerUser;
+  }
+}
@@ -0,0 +1,77 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * フィードバック生成ジョブのキュー（feedback_jobs テーブル）を処理するワーカーの設定。
+ *
+ * @param enabled このインスタンスでワーカーを動かすか（未指定時は有効。無効でもジョブの登録は行う）
+ * @param pollIntervalMillis キューを確認する間隔（ミリ秒）
+ * @param claimBatchSize 1 回に取り出す最大件数
+ * @param maxInFlight このインスタンスで同時に処理する最大件数
+ * @param leaseMillis 取り出したジョブのリース期間（ミリ秒）。切れると他のインスタンスが取り出せる
+ * @param heartbeatIntervalMillis 処理中のジョブのリースを延ばす間隔（ミリ秒）。リース期間より短くする
+ * @param maxAttempts 取り出しの最大回数。超えたジョブは生成せずに失敗メッセージを保存する
+ * @param drainTimeoutMillis 終了時に処理中のジョブの完了を待つ時間（ミリ秒）
+ * @param candidateWindow 取り出す前に読む候補の最大件数（ユーザーの偏りを見て選ぶため、1 回に取り出す件数より多く読む）
+ * @param fairQuantum ユーザーを 1 巡するごとに各ユーザーへ与える章数（deficit round-robin のクォンタム）
+ * @param maxUserSharePercent 1 ユーザーが使える同時処理枠（{@code maxInFlight}）の割合（%）
+ * @param retryBackoffMillis 生成に失敗したジョブを取り出し直すまでの待ち時間（ミリ秒）。取り出し回数ごとに倍にする
+ */
+@ConfigurationProperties(prefix = "app.feedback-jobs")
+public record FeedbackJobProperties(
+    Boolean enabled,
+    long pollIntervalMillis,
+    int claimBatchSize,
+    int maxInFlight,
+    long leaseMillis,
+    long heartbeatIntervalMillis,
+    int maxAttempts,
+    long drainTimeoutMillis,
+    int candidateWindow,
+    int fairQuantum,
+    int maxUserSharePercent,
+    long retryBackoffMillis) {
+
+  private static final long DEFAULT_POLL_INTERVAL_MILLIS = 1_000L;
+  private static final int DEFAULT_CLAIM_BATCH_SIZE = 10;
+  private static final int DEFAULT_MAX_IN_FLIGHT = 16;
+  private static final long DEFAULT_LEASE_MILLIS = 60_000L;
+  private static final long DEFAULT_HEARTBEAT_INTERVAL_MILLIS = 15_000L;
+  private static final int DEFAULT_MAX_ATTEMPTS = 3;
+  private static final long DEFAULT_DRAIN_TIMEOUT_MILLIS = 20_000L;
+  private static final int DEFAULT_CANDIDATE_WINDOW = 200;
+  private static final int DEFAULT_FAIR_QUANTUM = 5;
+  private static final int DEFAULT_MAX_USER_SHARE_PERCENT = 50;
+  private static final long DEFAULT_RETRY_BACKOFF_MILLIS = 30_000L;
+
+  public FeedbackJobProperties {
+    enabled = enabled == null || enabled;
+    pollIntervalMillis =
+        pollIntervalMillis <= 0 ? DEFAULT_POLL_INTERVAL_MILLIS : pollIntervalMillis;
+    claimBatchSize = claimBatchSize <= 0 ? DEFAULT_CLAIM_BATCH_SIZE : claimBatchSize;
+    maxInFlight = maxInFlight <= 0 ? DEFAULT_MAX_IN_FLIGHT : maxInFlight;
+    leaseMillis = leaseMillis <= 0 ? DEFAULT_LEASE_MILLIS : leaseMillis;
+    heartbeatIntervalMillis =
+        heartbeatIntervalMillis <= 0 ? DEFAULT_HEARTBEAT_INTERVAL_MILLIS : heartbeatIntervalMillis;
+    maxAttempts = maxAttempts <= 0 ? DEFAULT_MAX_ATTEMPTS : maxAttempts;
+    drainTimeoutMillis =
+        drainTimeoutMillis <= 0 ? DEFAULT_DRAIN_TIMEOUT_MILLIS : drainTimeoutMillis;
+    candidateWindow = candidateWindow <= 0 ? DEFAULT_CANDIDATE_WINDOW : candidateWindow;
+    fairQuantum = fairQuantum <= 0 ? DEFAULT_FAIR_QUANTUM : fairQuantum;
+    maxUserSharePercent =
+        maxUserSharePercent <= 0
+            ? DEFAULT_MAX_USER_SHARE_PERCENT
+            : Math.min(100, maxUserSharePercent);
+    retryBackoffMillis =
+        retryBackoffMillis <= 0 ? DEFAULT_RETRY_BACKOFF_MILLIS : retryBackoffMillis;
+    if (heartbeatIntervalMillis >= leaseMillis) {
+      throw new IllegalArgumentException("heartbeatIntervalMillis must be < leaseMillis");
+    }
+  }
+
+  /** 1 ユーザーがこのインスタンスで同時に処理できる最大件数（1 以上）。 */
+  public int maxInFlightPerUser() {
+    return Math.max(1, maxInFlight * maxUserSharePercent / 100);
+  }
+}
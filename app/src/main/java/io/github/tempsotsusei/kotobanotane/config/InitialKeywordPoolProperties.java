@@ -0,0 +1,32 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 初回サジェスト用キーワードの事前生成プール設定。
+ *
+ * @param enabled プールを利用するか（未指定時は有効）
+ * @param lowWatermark 残数がこの値を下回ったら補充を開始する
+ * @param highWatermark 補充時の目標残数（プールの容量も兼ねる）
+ * @param refillConcurrency 補充時に並行して発行する LLM 呼び出し数
+ */
+@ConfigurationProperties(prefix = "app.llm.initial-keyword-pool")
+public record InitialKeywordPoolProperties(
+    Boolean enabled, int lowWatermark, int highWatermark, int refillConcurrency) {
+
+  private static final int DEFAULT_LOW_WATERMARK = 3;
+  private static final int DEFAULT_HIGH_WATERMARK = 10;
+  private static final int DEFAULT_REFILL_CONCURRENCY = 2;
+
+  public InitialKeywordPoolProperties {
+    enabled = enabled == null || enabled;
+    int resolvedLow = lowWatermark <= 0 ? DEFAULT_LOW_WATERMARK : lowWatermark;
+    int resolvedHigh = highWatermark <= 0 ? DEFAULT_HIGH_WATERMARK : highWatermark;
+    if (resolvedHigh < resolvedLow) {
+      throw new IllegalArgumentException("highWatermark must be >= lowWatermark");
+    }
+    lowWatermark = resolvedLow;
+    highWatermark = resolvedHigh;
+    refillConcurrency = refillConcurrency <= 0 ? DEFAULT_REFILL_CONCURRENCY : refillConcurrency;
+  }
+}
@@ -0,0 +1,23 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * キーワード生成結果の L1 キャッシュ設定。
+ *
+ * @param enabled キャッシュを利用するか（未指定時は有効）
+ * @param maxWeightBytes キャッシュ全体の概算メモリ上限（バイト）
+ * @param ttlSeconds 書き込みからの有効期限（秒）
+ */
+@ConfigurationProperties(prefix = "app.llm.keyword-cache")
+public record KeywordCacheProperties(Boolean enabled, long maxWeightBytes, int ttlSeconds) {
+
+  private static final long DEFAULT_MAX_WEIGHT_BYTES = 8L * 1024 * 1024;
+  private static final int DEFAULT_TTL_SECONDS = 600;
+
+  public KeywordCacheProperties {
+    enabled = enabled == null || enabled;
+    maxWeightBytes = maxWeightBytes <= 0 ? DEFAULT_MAX_WEIGHT_BYTES : maxWeightBytes;
+    ttlSeconds = ttlSeconds <= 0 ? DEFAULT_TTL_SECONDS : ttlSeconds;
+  }
+}
@@ -0,0 +1,16 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/** LLM 呼び出し周辺（キャッシュや締め切り、利用量の集計など）の設定を読み込むためのコンフィグ。 */
+@Configuration
+@EnableConfigurationProperties({
+  KeywordCacheProperties.class,
+  InitialKeywordPoolProperties.class,
+  FeedbackBatchProperties.class,
+  LlmDeadlineProperties.class,
+  LlmUsageProperties.class,
+  LlmSchedulerProperties.class
+})
+public class LlmConfiguration {}
@@ -0,0 +1,21 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * LLM を利用する対話的な API の締め切り設定。
+ *
+ * @param interactiveMillis 1 リクエストで LLM 呼び出し（リトライ込み）に使ってよい時間（ミリ秒）
+ * @param minClientMillis クライアントが {@code X-Request-Timeout-Ms} で指定できる最小値（ミリ秒）。これより短い指定は切り上げる
+ */
+@ConfigurationProperties(prefix = "app.llm.deadline")
+public record LlmDeadlineProperties(long interactiveMillis, long minClientMillis) {
+
+  private static final long DEFAULT_INTERACTIVE_MILLIS = 25_000L;
+  private static final long DEFAULT_MIN_CLIENT_MILLIS = 1_000L;
+
+  public LlmDeadlineProperties {
+    interactiveMillis = interactiveMillis <= 0 ? DEFAULT_INTERACTIVE_MILLIS : interactiveMillis;
+    minClientMillis = minClientMillis <= 0 ? DEFAULT_MIN_CLIENT_MILLIS : minClientMillis;
+  }
+}
@@ -0,0 +1,21 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * OpenAI の同時実行枠を待つ呼び出しの優先度スケジューリング設定。
+ *
+ * @param backgroundSharePercent 対話的な呼び出しと競合しているときに、バックグラウンドの呼び出しへ回す払い出しの割合（%）
+ */
+@ConfigurationProperties(prefix = "app.llm.scheduler")
+public record LlmSchedulerProperties(int backgroundSharePercent) {
+
+  private static final int DEFAULT_BACKGROUND_SHARE_PERCENT = 20;
+
+  public LlmSchedulerProperties {
+    backgroundSharePercent =
+        backgroundSharePercent <= 0
+            ? DEFAULT_BACKGROUND_SHARE_PERCENT
+            : Math.min(100, backgroundSharePercent);
+  }
+}
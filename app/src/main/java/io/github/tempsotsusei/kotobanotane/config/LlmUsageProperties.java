@@ -0,0 +1,26 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * LLM 利用量の集計と 1 日あたりの利用上限の設定。
+ *
+ * @param flushIntervalMillis メモリ上の集計を DB へ書き出す間隔（ミリ秒）
+ * @param dailyTokenQuota 1 ユーザーが 1 日に使える入力＋出力トークン数。0 以下なら上限なし
+ */
+@ConfigurationProperties(prefix = "app.llm.usage")
+public record LlmUsageProperties(long flushIntervalMillis, long dailyTokenQuota) {
+
+  private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 30_000L;
+
+  public LlmUsageProperties {
+    flushIntervalMillis =
+        flushIntervalMillis <= 0 ? DEFAULT_FLUSH_INTERVAL_MILLIS : flushIntervalMillis;
+    dailyTokenQuota = Math.max(0, dailyTokenQuota);
+  }
+
+  /** 利用上限が設定されているか。 */
+  public boolean hasDailyTokenQuota() {
+    return dailyTokenQuota > 0;
+  }
+}
@@ -0,0 +1,31 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.StringUtils;
+
+/**
+ * OpenAI 呼び出しの記録・再生（カセット）設定。性能の回帰比較用で、本番では {@code OFF} のまま使う。
+ *
+ * @param mode 記録・再生のモード
+ * @param path カセットファイルのパス
+ */
+@ConfigurationProperties(prefix = "app.openai.cassette")
+public record OpenAiCassetteProperties(Mode mode, String path) {
+
+  private static final String DEFAULT_PATH = "cassettes/openai.cassette";
+
+  /** カセットのモード。 */
+  public enum Mode {
+    /** 記録も再生もしない。 */
+    OFF,
+    /** OpenAI の応答と所要時間をカセットに追記する。 */
+    RECORD,
+    /** OpenAI へは接続せず、カセットの応答を記録時の所要時間で返す。 */
+    REPLAY
+  }
+
+  public OpenAiCassetteProperties {
+    mode = mode == null ? Mode.OFF : mode;
+    path = StringUtils.hasText(path) ? path.strip() : DEFAULT_PATH;
+  }
+}
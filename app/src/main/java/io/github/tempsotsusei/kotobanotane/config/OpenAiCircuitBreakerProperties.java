@@ -0,0 +1,51 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * OpenAI 呼び出しのサーキットブレーカー設定。
+ *
+ * @param windowSize 失敗率・遅延率を計算する直近の呼び出し件数
+ * @param minimumCalls 判定を始めるのに必要な最小件数
+ * @param failureRateThreshold OPEN に遷移する失敗率（%）
+ * @param slowCallDurationMillis 遅い呼び出しとみなす所要時間（ミリ秒）
+ * @param slowCallRateThreshold OPEN に遷移する遅延率（%）
+ * @param openDurationMillis OPEN を維持する時間（ミリ秒）
+ * @param halfOpenProbes HALF_OPEN で試行する呼び出し数
+ */
+@ConfigurationProperties(prefix = "app.openai.circuit-breaker")
+public record OpenAiCircuitBreakerProperties(
+    int windowSize,
+    int minimumCalls,
+    int failureRateThreshold,
+    long slowCallDurationMillis,
+    int slowCallRateThreshold,
+    long openDurationMillis,
+    int halfOpenProbes) {
+
+  private static final int DEFAULT_WINDOW_SIZE = 20;
+  private static final int DEFAULT_MINIMUM_CALLS = 10;
+  private static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+  private static final long DEFAULT_SLOW_CALL_DURATION_MILLIS = 20_000L;
+  private static final int DEFAULT_SLOW_CALL_RATE_THRESHOLD = 80;
+  private static final long DEFAULT_OPEN_DURATION_MILLIS = 30_000L;
+  private static final int DEFAULT_HALF_OPEN_PROBES = 3;
+
+  public OpenAiCircuitBreakerProperties {
+    windowSize = windowSize <= 0 ? DEFAULT_WINDOW_SIZE : windowSize;
+    minimumCalls = minimumCalls <= 0 ? DEFAULT_MINIMUM_CALLS : Math.min(minimumCalls, windowSize);
+    failureRateThreshold =
+        failureRateThreshold <= 0 || failureRateThreshold > 100
+            ? DEFAULT_FAILURE_RATE_THRESHOLD
+            : failureRateThreshold;
+    slowCallDurationMillis =
+        slowCallDurationMillis <= 0 ? DEFAULT_SLOW_CALL_DURATION_MILLIS : slowCallDurationMillis;
+    slowCallRateThreshold =
+        slowCallRateThreshold <= 0 || slowCallRateThreshold > 100
+            ? DEFAULT_SLOW_CALL_RATE_THRESHOLD
+            : slowCallRateThreshold;
+    openDurationMillis =
+        openDurationMillis <= 0 ? DEFAULT_OPEN_DURATION_MILLIS : openDurationMillis;
+    halfOpenProbes = halfOpenProbes <= 0 ? DEFAULT_HALF_OPEN_PROBES : halfOpenProbes;
+  }
+}
@@ -5,5 +5,15 @@ import org.springframework.context.annotation.Configuration;
 
 /** OpenAI 関連の設定を読み込むためのコンフィグ。 */
 @Configuration
-@EnableConfigurationProperties(OpenAiProperties.class)
+@EnableConfigurationProperties({
+  OpenAiProperties.class,
+  OpenAiLimiterProperties.class,
+  OpenAiCircuitBreakerProperties.class,
+  OpenAiHedgingProperties.class,
+  OpenAiRetryProperties.class,
+  OpenAiOutputBudgetProperties.class,
+  OpenAiRoutingProperties.class,
+  OpenAiCassetteProperties.class,
+  FakeOpenAiProperties.class
+})
 public class OpenAiConfiguration {}
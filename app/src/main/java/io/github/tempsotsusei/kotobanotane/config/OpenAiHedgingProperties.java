@@ -0,0 +1,49 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * OpenAI 呼び出しのヘッジ（遅い応答に対する予備リクエスト）設定。
+ *
+ * @param schemaNames ヘッジを有効にするユースケース（structured outputs のスキーマ名）。空なら無効
+ * @param delayPercentile 予備リクエストを送るまでの待ち時間に使う直近レイテンシのパーセンタイル
+ * @param minDelayMillis 待ち時間の下限（ミリ秒）
+ * @param windowSize パーセンタイルを計算する直近の呼び出し件数
+ * @param minSamples ヘッジを始めるのに必要な最小件数
+ * @param budgetPercent 通常リクエストに対する予備リクエストの上限割合（%）
+ */
+@ConfigurationProperties(prefix = "app.openai.hedging")
+public record OpenAiHedgingProperties(
+    List<String> schemaNames,
+    int delayPercentile,
+    long minDelayMillis,
+    int windowSize,
+    int minSamples,
+    int budgetPercent) {
+
+  private static final int DEFAULT_DELAY_PERCENTILE = 95;
+  private static final long DEFAULT_MIN_DELAY_MILLIS = 200L;
+  private static final int DEFAULT_WINDOW_SIZE = 200;
+  private static final int DEFAULT_MIN_SAMPLES = 20;
+  private static final int DEFAULT_BUDGET_PERCENT = 5;
+
+  public OpenAiHedgingProperties {
+    schemaNames =
+        schemaNames == null
+            ? List.of()
+            : schemaNames.stream().map(String::strip).filter(name -> !name.isEmpty()).toList();
+    delayPercentile =
+        delayPercentile <= 0 || delayPercentile >= 100 ? DEFAULT_DELAY_PERCENTILE : delayPercentile;
+    minDelayMillis = minDelayMillis <= 0 ? DEFAULT_MIN_DELAY_MILLIS : minDelayMillis;
+    windowSize = windowSize <= 0 ? DEFAULT_WINDOW_SIZE : windowSize;
+    minSamples = minSamples <= 0 ? DEFAULT_MIN_SAMPLES : Math.min(minSamples, windowSize);
+    budgetPercent =
+        budgetPercent <= 0 || budgetPercent > 100 ? DEFAULT_BUDGET_PERCENT : budgetPercent;
+  }
+
+  /** 指定したユースケースでヘッジが有効か。 */
+  public boolean isEnabledFor(String schemaName) {
+    return schemaNames.contains(schemaName);
+  }
+}
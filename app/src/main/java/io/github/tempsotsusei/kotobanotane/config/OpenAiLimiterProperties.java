@@ -0,0 +1,46 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * OpenAI 呼び出しの適応型（AIMD）同時実行数リミッター設定。
+ *
+ * @param initialLimit 起動直後の同時実行上限
+ * @param minLimit 縮小時の下限
+ * @param maxLimit 拡大時の上限
+ * @param backoffRatio 429/タイムアウト時に上限へ掛ける係数（0〜1）
+ * @param maxQueueSize 上限超過時に待機できる呼び出し数（優先度ごと）
+ * @param queueTimeoutMillis 待機の締め切り（ミリ秒）
+ */
+@ConfigurationProperties(prefix = "app.openai.limiter")
+public record OpenAiLimiterProperties(
+    int initialLimit,
+    int minLimit,
+    int maxLimit,
+    double backoffRatio,
+    int maxQueueSize,
+    long queueTimeoutMillis) {
+
+  private static final int DEFAULT_INITIAL_LIMIT = 4;
+  private static final int DEFAULT_MIN_LIMIT = 1;
+  private static final int DEFAULT_MAX_LIMIT = 32;
+  private static final double DEFAULT_BACKOFF_RATIO = 0.5;
+  private static final int DEFAULT_MAX_QUEUE_SIZE = 100;
+  private static final long DEFAULT_QUEUE_TIMEOUT_MILLIS = 10_000L;
+
+  public OpenAiLimiterProperties {
+    int resolvedMin = minLimit <= 0 ? DEFAULT_MIN_LIMIT : minLimit;
+    int resolvedMax = maxLimit <= 0 ? DEFAULT_MAX_LIMIT : maxLimit;
+    int resolvedInitial = initialLimit <= 0 ? DEFAULT_INITIAL_LIMIT : initialLimit;
+    if (resolvedMax < resolvedMin) {
+      throw new IllegalArgumentException("maxLimit must be >= minLimit");
+    }
+    minLimit = resolvedMin;
+    maxLimit = resolvedMax;
+    initialLimit = Math.max(resolvedMin, Math.min(resolvedInitial, resolvedMax));
+    backoffRatio = backoffRatio <= 0 || backoffRatio >= 1 ? DEFAULT_BACKOFF_RATIO : backoffRatio;
+    maxQueueSize = maxQueueSize <= 0 ? DEFAULT_MAX_QUEUE_SIZE : maxQueueSize;
+    queueTimeoutMillis =
+        queueTimeoutMillis <= 0 ? DEFAULT_QUEUE_TIMEOUT_MILLIS : queueTimeoutMillis;
+  }
+}
@@ -0,0 +1,39 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * OpenAI の {@code max_output_tokens} を実測の出力トークン数から決める設定。リクエストごとの上限（未指定時は {@link
+ * OpenAiProperties#defaultMaxOutputTokens()}）を超える値にはしない。
+ *
+ * @param enabled 実測に基づく調整を行うか（未指定時は有効）
+ * @param percentile 使用する出力トークン数のパーセンタイル
+ * @param headroomPercent パーセンタイルに上乗せする余裕（%）
+ * @param windowSize パーセンタイルを計算する直近の呼び出し件数
+ * @param minSamples 調整を始めるのに必要な最小件数。揃うまではリクエストごとの上限を使う
+ * @param minTokens 調整後の値の下限
+ */
+@ConfigurationProperties(prefix = "app.openai.output-budget")
+public record OpenAiOutputBudgetProperties(
+    Boolean enabled,
+    int percentile,
+    int headroomPercent,
+    int windowSize,
+    int minSamples,
+    int minTokens) {
+
+  private static final int DEFAULT_PERCENTILE = 99;
+  private static final int DEFAULT_HEADROOM_PERCENT = 25;
+  private static final int DEFAULT_WINDOW_SIZE = 200;
+  private static final int DEFAULT_MIN_SAMPLES = 30;
+  private static final int DEFAULT_MIN_TOKENS = 64;
+
+  public OpenAiOutputBudgetProperties {
+    enabled = enabled == null || enabled;
+    percentile = percentile <= 0 || percentile > 100 ? DEFAULT_PERCENTILE : percentile;
+    headroomPercent = headroomPercent <= 0 ? DEFAULT_HEADROOM_PERCENT : headroomPercent;
+    windowSize = windowSize <= 0 ? DEFAULT_WINDOW_SIZE : windowSize;
+    minSamples = minSamples <= 0 ? DEFAULT_MIN_SAMPLES : Math.min(minSamples, windowSize);
+    minTokens = minTokens <= 0 ? DEFAULT_MIN_TOKENS : minTokens;
+  }
+}
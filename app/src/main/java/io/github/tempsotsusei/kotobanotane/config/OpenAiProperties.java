@@ -2,7 +2,13 @@ package io.github.tempsotsusei.kotobanotane.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
-/** OpenAI API の接続設定をまとめたコンフィグクラス。 */
+/**
+ * OpenAI API の接続設定をまとめたコンフィグクラス。
+ *
+ * <p>{@code openaiTimeout} は 1 回の試行のタイムアウト（秒）。{@code openaiBackgroundTimeout} は {@link
+ * io.github.tempsotsusei.kotobanotane.application.llm.LlmPriority#BACKGROUND} の呼び出し用で、複数章をまとめたフィードバック生成のように
+ * 出力が長くなる呼び出しが打ち切られないよう長めにする。
+ */
 @ConfigurationProperties(prefix = "app.openai")
 public record OpenAiProperties(
     String openaiBaseUrl,
@@ -10,4 +16,15 @@ public record OpenAiProperties(
     String openaiModel,
     int openaiTimeout,
     int defaultMaxOutputTokens,
-    int maxAttempts) {}
+    int maxAttempts,
+    int openaiBackgroundTimeout) {
+
+  private static final int DEFAULT_BACKGROUND_TIMEOUT = 120;
+
+  public OpenAiProperties {
+    openaiBackgroundTimeout =
+        openaiBackgroundTimeout <= 0
+            ? Math.max(DEFAULT_BACKGROUND_TIMEOUT, openaiTimeout)
+            : openaiBackgroundTimeout;
+  }
+}
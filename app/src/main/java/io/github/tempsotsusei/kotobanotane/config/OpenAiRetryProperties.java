@@ -0,0 +1,48 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * OpenAI 呼び出しのリトライ（バックオフとリトライ予算）設定。試行回数の上限は {@link OpenAiProperties#maxAttempts()} を使う。
+ *
+ * @param baseBackoffMillis 1 回目のリトライ待ちの上限（ミリ秒）。以降は倍々に伸ばし、その範囲でランダムに待つ
+ * @param maxBackoffMillis リトライ待ちの上限（ミリ秒）
+ * @param maxRetryAfterMillis サーバー指定の待ち時間がこれを超える場合はリトライせずに失敗させる（ミリ秒）
+ * @param budgetPercent 直近の初回試行数に対して許可するリトライ数の割合（%）
+ * @param minRetriesPerWindow 呼び出しが少ない時間帯でも許可するリトライ数
+ * @param windowSeconds リトライ予算を計算する期間（秒）
+ * @param minAttemptMillis 締め切りのある呼び出しで、リトライ待ちの後に最低限残っているべき時間（ミリ秒）。足りなければリトライしない
+ */
+@ConfigurationProperties(prefix = "app.openai.retry")
+public record OpenAiRetryProperties(
+    long baseBackoffMillis,
+    long maxBackoffMillis,
+    long maxRetryAfterMillis,
+    int budgetPercent,
+    int minRetriesPerWindow,
+    int windowSeconds,
+    long minAttemptMillis) {
+
+  private static final long DEFAULT_BASE_BACKOFF_MILLIS = 500L;
+  private static final long DEFAULT_MAX_BACKOFF_MILLIS = 5_000L;
+  private static final long DEFAULT_MAX_RETRY_AFTER_MILLIS = 30_000L;
+  private static final int DEFAULT_BUDGET_PERCENT = 10;
+  private static final int DEFAULT_MIN_RETRIES_PER_WINDOW = 10;
+  private static final int DEFAULT_WINDOW_SECONDS = 10;
+  private static final long DEFAULT_MIN_ATTEMPT_MILLIS = 1_000L;
+
+  public OpenAiRetryProperties {
+    baseBackoffMillis = baseBackoffMillis <= 0 ? DEFAULT_BASE_BACKOFF_MILLIS : baseBackoffMillis;
+    maxBackoffMillis =
+        maxBackoffMillis <= 0
+            ? Math.max(DEFAULT_MAX_BACKOFF_MILLIS, baseBackoffMillis)
+            : Math.max(maxBackoffMillis, baseBackoffMillis);
+    maxRetryAfterMillis =
+        maxRetryAfterMillis <= 0 ? DEFAULT_MAX_RETRY_AFTER_MILLIS : maxRetryAfterMillis;
+    budgetPercent = budgetPercent <= 0 ? DEFAULT_BUDGET_PERCENT : budgetPercent;
+    minRetriesPerWindow =
+        minRetriesPerWindow <= 0 ? DEFAULT_MIN_RETRIES_PER_WINDOW : minRetriesPerWindow;
+    windowSeconds = windowSeconds <= 0 ? DEFAULT_WINDOW_SECONDS : windowSeconds;
+    minAttemptMillis = minAttemptMillis <= 0 ? DEFAULT_MIN_ATTEMPT_MILLIS : minAttemptMillis;
+  }
+}
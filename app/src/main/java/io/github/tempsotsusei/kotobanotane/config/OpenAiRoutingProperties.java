@@ -0,0 +1,66 @@
+package io.github.tempsotsusei.kotobanotane.config;
+
+import java.util.List;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.StringUtils;
+
+/**
+ * ユースケースごとのモデルの振り分け（レイテンシ SLO・エラー率に基づくフォールバック）設定。
+ *
+ * @param routes スキーマ名ごとの振り分け先。未指定のユースケースは {@link OpenAiProperties#openaiModel()} だけを使う
+ * @param latencySloMillis 使用中モデルの直近 p95 がこれを超えたら次のモデルへ切り替える（ミリ秒）
+ * @param errorRateThreshold 使用中モデルの直近のエラー率がこれを超えたら次のモデルへ切り替える（%）
+ * @param windowSize p95 とエラー率を計算する直近の呼び出し件数
+ * @param minSamples 切り替えを判定するのに必要な最小件数
+ * @param probeIntervalMillis フォールバック中に、1 つ上位のモデルへ回復確認の呼び出しを送る間隔（ミリ秒）
+ * @param recoveryProbes 上位のモデルへ戻すのに必要な、SLO 内で連続して成功した回復確認の回数
+ */
+@ConfigurationProperties(prefix = "app.openai.routing")
+public record OpenAiRoutingProperties(
+    Map<String, Route> routes,
+    long latencySloMillis,
+    int errorRateThreshold,
+    int windowSize,
+    int minSamples,
+    long probeIntervalMillis,
+    int recoveryProbes) {
+
+  private static final long DEFAULT_LATENCY_SLO_MILLIS = 8_000L;
+  private static final int DEFAULT_ERROR_RATE_THRESHOLD = 20;
+  private static final int DEFAULT_WINDOW_SIZE = 50;
+  private static final int DEFAULT_MIN_SAMPLES = 20;
+  private static final long DEFAULT_PROBE_INTERVAL_MILLIS = 30_000L;
+  private static final int DEFAULT_RECOVERY_PROBES = 3;
+
+  public OpenAiRoutingProperties {
+    routes = routes == null ? Map.of() : Map.copyOf(routes);
+    latencySloMillis = latencySloMillis <= 0 ? DEFAULT_LATENCY_SLO_MILLIS : latencySloMillis;
+    errorRateThreshold =
+        errorRateThreshold <= 0 || errorRateThreshold > 100
+            ? DEFAULT_ERROR_RATE_THRESHOLD
+            : errorRateThreshold;
+    windowSize = windowSize <= 0 ? DEFAULT_WINDOW_SIZE : windowSize;
+    minSamples = minSamples <= 0 ? DEFAULT_MIN_SAMPLES : Math.min(minSamples, windowSize);
+    probeIntervalMillis =
+        probeIntervalMillis <= 0 ? DEFAULT_PROBE_INTERVAL_MILLIS : probeIntervalMillis;
+    recoveryProbes = recoveryProbes <= 0 ? DEFAULT_RECOVERY_PROBES : recoveryProbes;
+  }
+
+  /**
+   * 1 つのユースケースの振り分け先。
+   *
+   * @param primary 通常時に使うモデル（空なら {@link OpenAiProperties#openaiModel()}）
+   * @param fallbacks 優先順に並べたフォールバック先のモデル。空ならフォールバックしない
+   */
+  public record Route(String primary, List<String> fallbacks) {
+
+    public Route {
+      primary = StringUtils.hasText(primary) ? primary.strip() : null;
+      fallbacks =
+          fallbacks == null
+              ? List.of()
+              : fallbacks.stream().map(String::strip).filter(name -> !name.isEmpty()).toList();
+    }
+  }
+}
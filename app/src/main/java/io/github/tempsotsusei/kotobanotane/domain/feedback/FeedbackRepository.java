@@ -13,7 +13,18 @@ public interface FeedbackRepository {
   /** 章ID一覧に紐づくフィードバックをまとめて取得する。 */
   List<Feedback> findAllByChapterIdIn(Iterable<String> chapterIds);
 
+  /** 章にフィードバックが登録済みかどうか。 */
+  boolean existsByChapterId(String chapterId);
+
   Feedback save(Feedback feedback);
 
+  /**
+   * 章にまだフィードバックが無い場合だけ新規登録する。
+   *
+   * @param feedback 登録するフィードバック
+   * @return 登録した場合は true（既に同じ章のフィードバックがあれば false）
+   */
+  boolean saveIfAbsent(Feedback feedback);
+
   void deleteById(String feedbackId);
 }
@@ -0,0 +1,25 @@
+package io.github.tempsotsusei.kotobanotane.domain.feedbackjob;
+
+import java.time.Instant;
+
+/**
+ * フィードバック生成ジョブ(feedback job)を表すドメインオブジェクト。
+ *
+ * <p>章ごとに 1 件作られ、フィードバックの保存まで終わった時点で削除される。
+ *
+ * @param jobId ジョブ ID
+ * @param storyId 章が属する物語 ID（同じ物語の章はまとめて生成する）
+ * @param chapterId フィードバックの保存先の章 ID
+ * @param auth0Id 物語を作成したユーザー（LLM 使用量の紐付け先）
+ * @param chapterText 平文化済み章本文
+ * @param attempts 取り出された回数
+ * @param createdAt 登録日時
+ */
+public record FeedbackJob(
+    String jobId,
+    String storyId,
+    String chapterId,
+    String auth0Id,
+    String chapterText,
+    int attempts,
+    Instant createdAt) {}
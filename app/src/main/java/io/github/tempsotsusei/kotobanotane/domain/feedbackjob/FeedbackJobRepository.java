@@ -0,0 +1,52 @@
+package io.github.tempsotsusei.kotobanotane.domain.feedbackjob;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/** feedback_jobs テーブルへアクセスするためのリポジトリ。 */
+public interface FeedbackJobRepository {
+
+  /** ジョブを登録する。呼び出し元のトランザクションに参加する。 */
+  void enqueueAll(List<FeedbackJob> jobs);
+
+  /**
+   * リースが無いか期限切れのジョブを、物語単位で古い順に読む。ロックもリースも付けない。
+   *
+   * <p>1 人のユーザーが大量に登録していても、他のユーザーのジョブが候補から押し出されないよう、ユーザーごとに章数が {@code perUserLimit}
+   * に達するまでの物語だけを読む。同じ物語の章はまとめて処理するため、物語の途中では切らない（上限を含む物語は最後の章まで読む）。全体の
+   * {@code limit} も同じく物語単位で数える。
+   *
+   * @param now 現在時刻
+   * @param perUserLimit 1 ユーザーあたりの章数の目安
+   * @param limit 全体の章数の目安
+   * @return 候補のジョブ（古い物語順、物語の中は古い順）
+   */
+  List<FeedbackJob> findClaimable(Instant now, int perUserLimit, int limit);
+
+  /**
+   * 指定したジョブのうち、まだ取り出せるものにリースを付ける。
+   *
+   * <p>他のインスタンスがロック中の行や、候補を読んだ後に取り出された行は待たずに読み飛ばす。
+   *
+   * @param owner リースの持ち主（ワーカー ID）
+   * @param jobIds 取り出すジョブの ID
+   * @param now 現在時刻
+   * @param leaseUntil リースの期限
+   * @return 取り出せたジョブ（attempts は加算後の値）
+   */
+  List<FeedbackJob> claim(
+      String owner, Collection<String> jobIds, Instant now, Instant leaseUntil);
+
+  /** 自分が持っているリースの期限を延ばす。延ばせた件数を返す。 */
+  int extendLeases(String owner, Collection<String> jobIds, Instant leaseUntil);
+
+  /** 処理の終わったジョブを削除する（自分がリースを持つものだけ）。 */
+  void complete(String owner, Collection<String> jobIds);
+
+  /** 処理しきれなかったジョブのリースを手放し、他のワーカーがすぐ取り出せるようにする。 */
+  void release(String owner, Collection<String> jobIds);
+
+  /** 生成に失敗したジョブのリースを手放し、{@code retryAt} までは取り出さないようにする。 */
+  void retryLater(String owner, Collection<String> jobIds, Instant retryAt);
+}
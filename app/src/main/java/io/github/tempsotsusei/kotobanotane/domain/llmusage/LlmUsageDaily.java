@@ -0,0 +1,23 @@
+package io.github.tempsotsusei.kotobanotane.domain.llmusage;
+
+import java.time.LocalDate;
+
+/**
+ * ユーザー・ユースケース・日付ごとの LLM 利用量を表すドメインオブジェクト。
+ *
+ * <p>保存時は既存の値に加算する増分として扱う。
+ */
+public record LlmUsageDaily(
+    String auth0Id,
+    String useCase,
+    LocalDate usageDate,
+    long requestCount,
+    long inputTokens,
+    long outputTokens,
+    long cachedTokens) {
+
+  /** 入力と出力を合わせたトークン数（キャッシュ済み入力も含む）。 */
+  public long totalTokens() {
+    return inputTokens + outputTokens;
+  }
+}
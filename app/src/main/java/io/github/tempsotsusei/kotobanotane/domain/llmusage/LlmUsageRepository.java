@@ -0,0 +1,14 @@
+package io.github.tempsotsusei.kotobanotane.domain.llmusage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/** llm_usage_daily テーブルへアクセスするためのリポジトリ。 */
+public interface LlmUsageRepository {
+
+  /** 指定日の利用量をすべて取得する。 */
+  List<LlmUsageDaily> findAllByUsageDate(LocalDate usageDate);
+
+  /** 増分を既存の行に加算する（行が無ければ作成する）。1 トランザクションでまとめて反映する。 */
+  void addAll(List<LlmUsageDaily> increments);
+}
@@ -0,0 +1,51 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+/**
+ * 日本語を中心としたテキストのトークン数を、トークナイザーを使わずに概算するヘルパー。
+ *
+ * <p>o200k 系のトークナイザーでの実測に近くなるよう、かなは 1 文字 0.8、漢字は 1.2、ASCII の英数字は 4 文字で 1 トークン程度として数える。
+ * 入力の長さに応じて出力トークンの見積もりを伸ばすための相対的な目安であり、課金の計算には使わない。
+ */
+final class JapaneseTokenEstimator {
+
+  private JapaneseTokenEstimator() {}
+
+  /**
+   * トークン数を概算する。
+   *
+   * @param text 対象テキスト（null 可）
+   * @return 概算トークン数（空の場合は 0）
+   */
+  static int estimate(String text) {
+    if (text == null || text.isEmpty()) {
+      return 0;
+    }
+    double tokens = 0;
+    int asciiWordLength = 0;
+    for (int i = 0; i < text.length(); ) {
+      int codePoint = text.codePointAt(i);
+      i += Character.charCount(codePoint);
+      if (codePoint < 0x80 && Character.isLetterOrDigit(codePoint)) {
+        asciiWordLength++;
+        continue;
+      }
+      tokens += Math.ceil(asciiWordLength / 4.0);
+      asciiWordLength = 0;
+      tokens += weightOf(codePoint);
+    }
+    tokens += Math.ceil(asciiWordLength / 4.0);
+    return (int) Math.ceil(tokens);
+  }
+
+  private static double weightOf(int codePoint) {
+    if (Character.isWhitespace(codePoint)) {
+      return 0.25;
+    }
+    Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+    return switch (script) {
+      case HIRAGANA, KATAKANA -> 0.8;
+      case HAN -> 1.2;
+      default -> 1.0;
+    };
+  }
+}
@@ -0,0 +1,292 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiBatchResult;
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiBatchTimeoutException;
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiClientException;
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiStructuredRequest;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * OpenAI Batch API（JSONL アップロード → バッチ作成 → ポーリング → 結果ダウンロード）を扱うクライアント。
+ *
+ * <p>各行のボディは {@link OpenAiClient} と同じ Responses API 形式で組み立てる。バッチは同期呼び出しとは別枠のレート制限で処理されるため、
+ * 同時実行リミッターやサーキットブレーカーは経由しない。
+ */
+@Component
+public class OpenAiBatchClient {
+
+  private static final Logger log = LoggerFactory.getLogger(OpenAiBatchClient.class);
+  private static final String RESPONSES_ENDPOINT = "/v1/responses";
+  private static final Set<String> TERMINAL_STATUSES =
+      Set.of("completed", "failed", "expired", "cancelled");
+  /** 取り消し後、cancelling から cancelled に変わるまで待つ上限（OpenAI の案内では最大 10 分）。 */
+  private static final Duration CANCEL_TIMEOUT = Duration.ofMinutes(10);
+  private static final Retry TRANSIENT_RETRY =
+      Retry.backoff(3, Duration.ofSeconds(1)).filter(OpenAiBatchClient::isTransient);
+
+  private final WebClient webClient;
+  private final ObjectMapper objectMapper;
+  private final OpenAiClient openAiClient;
+  private final MeterRegistry meterRegistry;
+
+  public OpenAiBatchClient(
+      WebClient.Builder builder,
+      ObjectMapper objectMapper,
+      OpenAiProperties properties,
+      OpenAiClient openAiClient,
+      MeterRegistry meterRegistry) {
+    this.objectMapper = objectMapper;
+    this.openAiClient = openAiClient;
+    this.meterRegistry = meterRegistry;
+    this.webClient =
+        builder
+            .baseUrl(properties.openaiBaseUrl())
+            .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + properties.openaiApiKey())
+            .build();
+  }
+
+  /**
+   * リクエスト群を 1 つのバッチとして投入し、完了まで待って結果を返す。
+   *
+   * <p>待機は {@code pollInterval} ごとのポーリングで行い、スレッドを占有しない。期限切れなどで一部しか処理されなかった場合も、返ってきた分は結果に含める。
+   *
+   * <p>{@code timeout} までに終わらなければバッチを取り消し（{@code POST /batches/{id}/cancel}）、取り消しまでに処理された結果を
+   * {@link OpenAiBatchTimeoutException} に載せてエラーにする。ローカルの待機だけをやめると OpenAI 側では処理が続き、呼び出し元が同じリクエストを
+   * 別の方法で処理し直した場合に二重に課金されるため。
+   *
+   * @param requests custom_id をキーにしたリクエスト
+   * @param pollInterval 状態確認の間隔
+   * @param completionWindow Batch API の完了期限（例: 24h）
+   * @param timeout 結果を待つ上限
+   * @return custom_id をキーにした結果（投入した全件を含み、結果が無いものは失敗扱い）
+   */
+  public Mono<Map<String, OpenAiBatchResult>> execute(
+      Map<String, OpenAiStructuredRequest> requests,
+      Duration pollInterval,
+      String completionWindow,
+      Duration timeout) {
+    if (requests.isEmpty()) {
+      return Mono.just(Map.of());
+    }
+    return Mono.fromCallable(() -> toJsonl(requests))
+        .flatMap(this::uploadFile)
+        .flatMap(fileId -> createBatch(fileId, completionWindow))
+        .flatMap(
+            batchId ->
+                awaitCompletion(batchId, pollInterval)
+                    .timeout(timeout)
+                    .onErrorResume(
+                        TimeoutException.class,
+                        e -> cancelAndCollect(batchId, pollInterval, requests))
+                    .flatMap(batch -> collectResults(batch, requests)));
+  }
+
+  private byte[] toJsonl(Map<String, OpenAiStructuredRequest> requests)
+      throws JsonProcessingException {
+    StringBuilder jsonl = new StringBuilder();
+    for (Map.Entry<String, OpenAiStructuredRequest> entry : requests.entrySet()) {
+      Map<String, Object> line = new LinkedHashMap<>();
+      line.put("custom_id", entry.getKey());
+      line.put("method", "POST");
+      line.put("url", RESPONSES_ENDPOINT);
+      // ボディは事前シリアライズ済みの JSON をそのまま埋め込む
+      byte[] body = openAiClient.buildRequestBody(entry.getValue());
+      line.put("body", new RawValue(new String(body, StandardCharsets.UTF_8)));
+      jsonl.append(objectMapper.writeValueAsString(line)).append('\n');
+    }
+    return jsonl.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private Mono<String> uploadFile(byte[] jsonl) {
+    MultipartBodyBuilder multipart = new MultipartBodyBuilder();
+    multipart.part("purpose", "batch");
+    multipart
+        .part("file", new ByteArrayResource(jsonl))
+        .filename("batch.jsonl")
+        .contentType(MediaType.APPLICATION_NDJSON);
+    return call(
+            webClient
+                .post()
+                .uri("/files")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(multipart.build())))
+        .map(file -> file.path("id").asText());
+  }
+
+  private Mono<String> createBatch(String inputFileId, String completionWindow) {
+    Map<String, Object> body = new LinkedHashMap<>();
+    body.put("input_file_id", inputFileId);
+    body.put("endpoint", RESPONSES_ENDPOINT);
+    body.put("completion_window", completionWindow);
+    return call(
+            webClient
+                .post()
+                .uri("/batches")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body))
+        .map(batch -> batch.path("id").asText())
+        .doOnNext(batchId -> log.info("OpenAI batch created batchId={}", batchId));
+  }
+
+  private Mono<JsonNode> awaitCompletion(String batchId, Duration pollInterval) {
+    return Flux.interval(pollInterval)
+        .concatMap(tick -> call(webClient.get().uri("/batches/{id}", batchId)))
+        .filter(batch -> TERMINAL_STATUSES.contains(batch.path("status").asText()))
+        .next();
+  }
+
+  /** バッチを取り消し、止まるのを待ってから、それまでに処理された結果を載せたエラーにする。 */
+  private Mono<JsonNode> cancelAndCollect(
+      String batchId, Duration pollInterval, Map<String, OpenAiStructuredRequest> requests) {
+    log.warn("OpenAI batch timed out, cancelling batchId={}", batchId);
+    meterRegistry.counter("llm.openai.batch.cancelled").increment();
+    return call(webClient.post().uri("/batches/{id}/cancel", batchId))
+        .onErrorResume(
+            e -> {
+              // 取り消しの直前に終わったバッチは取り消せないが、結果は下のポーリングで受け取れる
+              log.warn("Failed to cancel OpenAI batch batchId={}", batchId, e);
+              return Mono.empty();
+            })
+        .then(awaitCompletion(batchId, pollInterval).timeout(CANCEL_TIMEOUT))
+        .flatMap(batch -> collectResults(batch, requests))
+        .onErrorResume(
+            e -> {
+              log.warn("No results collected from cancelled OpenAI batch batchId={}", batchId, e);
+              return Mono.just(Map.of());
+            })
+        .flatMap(
+            partial -> Mono.<JsonNode>error(new OpenAiBatchTimeoutException(batchId, partial)));
+  }
+
+  private Mono<Map<String, OpenAiBatchResult>> collectResults(
+      JsonNode batch, Map<String, OpenAiStructuredRequest> requests) {
+    String status = batch.path("status").asText();
+    String outputFileId = batch.path("output_file_id").asText(null);
+    String errorFileId = batch.path("error_file_id").asText(null);
+    log.info(
+        "OpenAI batch finished batchId={} status={} requestCounts={}",
+        batch.path("id").asText(),
+        status,
+        batch.path("request_counts"));
+    if (outputFileId == null && errorFileId == null) {
+      return Mono.error(new OpenAiClientException("OpenAI batch ended with status=" + status));
+    }
+    return Flux.concat(downloadFile(outputFileId), downloadFile(errorFileId))
+        .collectList()
+        .map(
+            contents -> {
+              Map<String, OpenAiBatchResult> results = new LinkedHashMap<>();
+              contents.forEach(content -> parseResults(content, results));
+              for (String customId : requests.keySet()) {
+                results.putIfAbsent(
+                    customId,
+                    OpenAiBatchResult.failed(customId, "missing from batch output: " + status));
+              }
+              results.keySet().retainAll(requests.keySet());
+              return results;
+            });
+  }
+
+  private Mono<String> downloadFile(String fileId) {
+    if (fileId == null || fileId.isBlank()) {
+      return Mono.empty();
+    }
+    return webClient
+        .get()
+        .uri("/files/{id}/content", fileId)
+        .retrieve()
+        .bodyToMono(String.class)
+        .retryWhen(TRANSIENT_RETRY);
+  }
+
+  /** 出力 JSONL の各行を結果に変換する。 */
+  private void parseResults(String content, Map<String, OpenAiBatchResult> results) {
+    for (String line : content.split("\n")) {
+      if (line.isBlank()) {
+        continue;
+      }
+      JsonNode node;
+      try {
+        node = objectMapper.readTree(line);
+      } catch (JsonProcessingException e) {
+        log.warn("Skipping unparsable batch output line", e);
+        continue;
+      }
+      String customId = node.path("custom_id").asText();
+      results.put(customId, toResult(customId, node));
+    }
+  }
+
+  private OpenAiBatchResult toResult(String customId, JsonNode line) {
+    JsonNode response = line.path("response");
+    int statusCode = response.path("status_code").asInt(0);
+    if (statusCode != 200) {
+      String message = line.path("error").path("message").asText("status_code=" + statusCode);
+      meterRegistry.counter("llm.openai.batch.requests", "result", "failed").increment();
+      return OpenAiBatchResult.failed(customId, message);
+    }
+    JsonNode body = response.path("body");
+    JsonNode usage = body.path("usage");
+    meterRegistry
+        .counter("llm.openai.batch.tokens", "type", "input")
+        .increment(usage.path("input_tokens").asDouble(0));
+    meterRegistry
+        .counter("llm.openai.batch.tokens", "type", "output")
+        .increment(usage.path("output_tokens").asDouble(0));
+    try {
+      OpenAiBatchResult result =
+          OpenAiBatchResult.succeeded(customId, openAiClient.extractJsonContent(body));
+      meterRegistry.counter("llm.openai.batch.requests", "result", "succeeded").increment();
+      return result;
+    } catch (OpenAiClientException e) {
+      meterRegistry.counter("llm.openai.batch.requests", "result", "failed").increment();
+      return OpenAiBatchResult.failed(customId, e.getMessage());
+    }
+  }
+
+  /** 1 回の API 呼び出し。一時的なエラーのみ再試行し、最終的な失敗は {@link OpenAiClientException} にする。 */
+  private Mono<JsonNode> call(WebClient.RequestHeadersSpec<?> spec) {
+    return Mono.defer(
+            () -> {
+              meterRegistry.counter("llm.openai.batch.http_calls").increment();
+              return spec.retrieve().bodyToMono(JsonNode.class);
+            })
+        .retryWhen(TRANSIENT_RETRY)
+        .onErrorMap(
+            error -> !(error instanceof OpenAiClientException),
+            error -> new OpenAiClientException("OpenAI batch API call failed", error));
+  }
+
+  private static boolean isTransient(Throwable error) {
+    if (error instanceof WebClientResponseException e) {
+      int code = e.getStatusCode().value();
+      return code == 429 || code >= 500;
+    }
+    return error instanceof WebClientRequestException;
+  }
+}
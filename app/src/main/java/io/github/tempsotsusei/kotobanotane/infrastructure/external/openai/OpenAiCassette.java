@@ -0,0 +1,351 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiStructuredRequest;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiCassetteProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiCassetteProperties.Mode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * OpenAI の応答を記録・再生するカセット。リリース間で同じトラフィックを流して、スループットとレイテンシを比べるために使う。
+ *
+ * <p>{@code RECORD} では成功した応答の本文（ストリーミングは SSE イベントごと）と、呼び出し開始からの所要時間をリクエストの指紋とともにファイルへ追記する。
+ * {@code REPLAY} では起動時にファイルをメモリマップして指紋ごとの位置の索引だけを作り、呼び出しのたびに該当箇所を読み出して記録時と同じ間隔で返す。
+ * 同じ指紋の記録が複数ある場合は記録順に使い、使い切ったら先頭に戻る。
+ *
+ * <p>指紋はスキーマ名・システムプロンプト・ユーザー入力・ストリーミングかどうかから作る。モデルと {@code max_output_tokens} は振り分けや実測によって
+ * ビルドごとに変わるため含めない。初回サジェストのユーザー入力に入る {@code seed=<UUID>} は呼び出しごとに変わるため、値を伏せてから指紋にする
+ * （初回サジェストの記録は 1 つの指紋にまとまり、記録順に再生される）。失敗した応答は記録しない。
+ *
+ * <p>ファイル形式は先頭にマジックとバージョン、続いてエントリを並べたもの。エントリは指紋（SHA-256 の 32 バイト）、フレーム数、フレームごとの
+ * 「直前のフレームからの待ち時間（ナノ秒）・本文の長さ・UTF-8 の本文」からなる。
+ */
+@Component
+public class OpenAiCassette {
+
+  private static final Logger log = LoggerFactory.getLogger(OpenAiCassette.class);
+
+  private static final int MAGIC = 0x4b4e5443; // "KNTC"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = Integer.BYTES * 2;
+  private static final int FINGERPRINT_BYTES = 32;
+  private static final int FRAME_HEADER_BYTES = Long.BYTES + Integer.BYTES;
+  private static final Pattern SEED = Pattern.compile("seed=[0-9A-Fa-f-]+");
+
+  private final Mode mode;
+  private final Path path;
+  private final MeterRegistry meterRegistry;
+  /** 書き込み中に仮想スレッドがキャリアスレッドへ固定（pinning）されないよう、synchronized ではなくロックを使う。 */
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private FileChannel writer;
+  private MappedByteBuffer mapped;
+  private Map<String, Track> index = Map.of();
+
+  public OpenAiCassette(OpenAiCassetteProperties properties, MeterRegistry meterRegistry) {
+    this.mode = properties.mode();
+    this.path = Path.of(properties.path());
+    this.meterRegistry = meterRegistry;
+    try {
+      switch (mode) {
+        case RECORD -> openForRecording();
+        case REPLAY -> openForReplay();
+        case OFF -> {}
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to open OpenAI cassette: " + path, e);
+    }
+  }
+
+  public boolean isRecording() {
+    return mode == Mode.RECORD;
+  }
+
+  public boolean isReplaying() {
+    return mode == Mode.REPLAY;
+  }
+
+  /**
+   * リクエストの指紋を作る。記録も再生もしない場合は計算せずに null を返す。
+   *
+   * @param request リクエスト情報
+   * @param stream ストリーミング呼び出しかどうか
+   * @return SHA-256 の 16 進文字列
+   */
+  public String fingerprint(OpenAiStructuredRequest request, boolean stream) {
+    if (mode == Mode.OFF) {
+      return null;
+    }
+    MessageDigest digest = sha256();
+    update(digest, request.optionalSchemaName().orElse("structured_output"));
+    update(digest, request.systemPrompt());
+    update(digest, SEED.matcher(request.userInput()).replaceAll("seed=*"));
+    digest.update((byte) (stream ? 1 : 0));
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * 応答を 1 件記録する。
+   *
+   * @param fingerprint {@link #fingerprint} の値
+   * @param frames 応答本文（ストリーミングでは SSE イベントの data ごと）と待ち時間
+   */
+  public void record(String fingerprint, List<Frame> frames) {
+    if (writer == null || fingerprint == null || frames.isEmpty()) {
+      return;
+    }
+    List<byte[]> bodies = new ArrayList<>(frames.size());
+    int size = FINGERPRINT_BYTES + Integer.BYTES;
+    for (Frame frame : frames) {
+      byte[] body = frame.data().getBytes(StandardCharsets.UTF_8);
+      bodies.add(body);
+      size += FRAME_HEADER_BYTES + body.length;
+    }
+    ByteBuffer entry = ByteBuffer.allocate(size);
+    entry.put(HexFormat.of().parseHex(fingerprint));
+    entry.putInt(frames.size());
+    for (int i = 0; i < frames.size(); i++) {
+      entry.putLong(frames.get(i).delayNanos());
+      entry.putInt(bodies.get(i).length);
+      entry.put(bodies.get(i));
+    }
+    entry.flip();
+    // エントリ単位で書き込み、並行して記録しても途中で混ざらないようにする
+    writeLock.lock();
+    try {
+      while (entry.hasRemaining()) {
+        writer.write(entry);
+      }
+    } catch (IOException e) {
+      log.warn("Failed to write OpenAI cassette entry path={}", path, e);
+      return;
+    } finally {
+      writeLock.unlock();
+    }
+    Counter.builder("llm.openai.cassette.recorded")
+        .description("カセットに記録した応答数")
+        .register(meterRegistry)
+        .increment();
+  }
+
+  /**
+   * 指紋に対応する次の記録を取り出す。
+   *
+   * @param fingerprint {@link #fingerprint} の値
+   * @return 記録されたフレーム。記録が無ければ空
+   */
+  public Optional<List<Frame>> replay(String fingerprint) {
+    Track track = fingerprint == null ? null : index.get(fingerprint);
+    Counter.builder("llm.openai.cassette.replays")
+        .description("カセットからの再生結果")
+        .tag("result", track == null ? "miss" : "hit")
+        .register(meterRegistry)
+        .increment();
+    if (track == null) {
+      return Optional.empty();
+    }
+    return Optional.of(readFrames(track.next()));
+  }
+
+  /** 記録中のファイルを閉じる。 */
+  @PreDestroy
+  public void close() {
+    writeLock.lock();
+    try {
+      if (writer == null) {
+        return;
+      }
+      writer.force(false);
+      writer.close();
+    } catch (IOException e) {
+      log.warn("Failed to close OpenAI cassette path={}", path, e);
+    } finally {
+      writer = null;
+      writeLock.unlock();
+    }
+  }
+
+  private void openForRecording() throws IOException {
+    Path parent = path.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    if (Files.exists(path) && Files.size(path) > 0) {
+      // 既存のカセットには追記する
+      try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        reader.read(header, 0);
+        checkHeader(header);
+      }
+    }
+    writer =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    if (writer.size() == 0) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+      while (header.hasRemaining()) {
+        writer.write(header);
+      }
+    }
+    log.info("Recording OpenAI responses to cassette path={}", path);
+  }
+
+  /** ファイル全体をマップし、指紋ごとのエントリ位置だけを索引にする。本文はここでは読まない。 */
+  private void openForReplay() throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Cassette larger than 2GiB is not supported: " + channel.size());
+      }
+      mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    checkHeader(mapped);
+    Map<String, List<Integer>> positions = new HashMap<>();
+    int position = HEADER_BYTES;
+    int entries = 0;
+    byte[] fingerprint = new byte[FINGERPRINT_BYTES];
+    while (position + FINGERPRINT_BYTES + Integer.BYTES <= mapped.limit()) {
+      int end = skipEntry(position);
+      if (end < 0) {
+        log.warn("Ignoring truncated OpenAI cassette entry path={} offset={}", path, position);
+        break;
+      }
+      mapped.get(position, fingerprint);
+      positions
+          .computeIfAbsent(HexFormat.of().formatHex(fingerprint), key -> new ArrayList<>())
+          .add(position);
+      position = end;
+      entries++;
+    }
+    Map<String, Track> tracks = new HashMap<>();
+    positions.forEach(
+        (key, offsets) ->
+            tracks.put(key, new Track(offsets.stream().mapToInt(Integer::intValue).toArray())));
+    index = Map.copyOf(tracks);
+    log.info(
+        "Replaying OpenAI responses from cassette path={} entries={} fingerprints={}",
+        path,
+        entries,
+        index.size());
+  }
+
+  /** エントリの終端位置を返す。ファイルの途中で切れていれば -1。 */
+  private int skipEntry(int position) {
+    int cursor = position + FINGERPRINT_BYTES;
+    int frames = mapped.getInt(cursor);
+    cursor += Integer.BYTES;
+    for (int i = 0; i < frames; i++) {
+      if (cursor + FRAME_HEADER_BYTES > mapped.limit()) {
+        return -1;
+      }
+      int length = mapped.getInt(cursor + Long.BYTES);
+      cursor += FRAME_HEADER_BYTES + length;
+      if (length < 0 || cursor > mapped.limit()) {
+        return -1;
+      }
+    }
+    return cursor;
+  }
+
+  /** 絶対位置で読み出すため、複数スレッドから同時に呼んでもよい。 */
+  private List<Frame> readFrames(int position) {
+    int cursor = position + FINGERPRINT_BYTES;
+    int count = mapped.getInt(cursor);
+    cursor += Integer.BYTES;
+    List<Frame> frames = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      long delayNanos = mapped.getLong(cursor);
+      int length = mapped.getInt(cursor + Long.BYTES);
+      byte[] body = new byte[length];
+      mapped.get(cursor + FRAME_HEADER_BYTES, body);
+      frames.add(new Frame(delayNanos, new String(body, StandardCharsets.UTF_8)));
+      cursor += FRAME_HEADER_BYTES + length;
+    }
+    return frames;
+  }
+
+  private void checkHeader(ByteBuffer buffer) throws IOException {
+    if (buffer.limit() < HEADER_BYTES
+        || buffer.getInt(0) != MAGIC
+        || buffer.getInt(Integer.BYTES) != VERSION) {
+      throw new IOException("Not a supported OpenAI cassette: " + path);
+    }
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    // 長さを先に入れて、区切り位置の違う入力が同じ指紋にならないようにする
+    digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+    digest.update(bytes);
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * 記録した応答の 1 区切り。
+   *
+   * @param delayNanos 直前のフレーム（最初のフレームでは呼び出し開始）からの待ち時間
+   * @param data 応答本文、またはストリーミングの SSE イベントの data
+   */
+  public record Frame(long delayNanos, String data) {}
+
+  /** 1 回の呼び出しで届いた順にフレームを集める。作成した時点を呼び出し開始とみなす。 */
+  public static final class Recorder {
+
+    private final List<Frame> frames = new ArrayList<>();
+    private long lastNanos = System.nanoTime();
+
+    public synchronized void frame(String data) {
+      long now = System.nanoTime();
+      frames.add(new Frame(now - lastNanos, data == null ? "" : data));
+      lastNanos = now;
+    }
+
+    public synchronized List<Frame> frames() {
+      return List.copyOf(frames);
+    }
+  }
+
+  /** 同じ指紋の記録位置と、次に使う記録。 */
+  private static final class Track {
+
+    private final int[] positions;
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    private Track(int[] positions) {
+      this.positions = positions;
+    }
+
+    private int next() {
+      return positions[Math.floorMod(cursor.getAndIncrement(), positions.length)];
+    }
+  }
+}
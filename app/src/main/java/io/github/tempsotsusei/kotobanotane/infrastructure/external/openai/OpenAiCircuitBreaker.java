@@ -0,0 +1,237 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUnavailableException;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiCircuitBreakerProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * OpenAI 呼び出し用のサーキットブレーカー。
+ *
+ * <p>直近 {@code windowSize} 件の失敗率または遅延率がしきい値を超えると OPEN に遷移し、{@code openDurationMillis} の間は通信せずに {@link
+ * LlmUnavailableException} で即座に失敗させる。期間経過後は HALF_OPEN として {@code halfOpenProbes} 件だけ試行を通し、すべて成功すれば
+ * CLOSED に戻る。1 件でも失敗（または遅延）すれば再び OPEN になる。
+ */
+@Component
+public class OpenAiCircuitBreaker {
+
+  private static final Logger log = LoggerFactory.getLogger(OpenAiCircuitBreaker.class);
+
+  /** ブレーカーの状態。 */
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final OpenAiCircuitBreakerProperties properties;
+  private final MeterRegistry meterRegistry;
+  private final long slowCallNanos;
+  private final boolean[] failures;
+  private final boolean[] slows;
+  private State state = State.CLOSED;
+  private long epoch;
+  private int windowIndex;
+  private int windowCount;
+  private int failureCount;
+  private int slowCount;
+  private long openedAtNanos;
+  private int probesInFlight;
+  private int probesSucceeded;
+
+  public OpenAiCircuitBreaker(
+      OpenAiCircuitBreakerProperties properties, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+    this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(properties.slowCallDurationMillis());
+    this.failures = new boolean[properties.windowSize()];
+    this.slows = new boolean[properties.windowSize()];
+    Gauge.builder("llm.openai.circuit.state", this, breaker -> breaker.state().ordinal())
+        .description("サーキットブレーカーの状態（0=CLOSED, 1=OPEN, 2=HALF_OPEN）")
+        .register(meterRegistry);
+  }
+
+  /**
+   * 呼び出し可否を判定し、許可された場合は結果記録用の {@link Permission} を返す。
+   *
+   * @return 呼び出し許可
+   * @throws LlmUnavailableException OPEN 中、または HALF_OPEN の試行枠が埋まっている場合
+   */
+  public Permission acquirePermission() {
+    return acquirePermission(true);
+  }
+
+  /**
+   * {@link #acquirePermission()} の遅延判定の有無を指定する版。
+   *
+   * <p>長い出力を前提とした呼び出し（複数章のフィードバック生成など）は所要時間で障害を判断できないため、{@code countsSlowCalls} を
+   * false にして遅延率の計算から外す。失敗は通常どおり数える。
+   *
+   * @param countsSlowCalls 所要時間を遅延判定に使うか
+   * @return 呼び出し許可
+   * @throws LlmUnavailableException OPEN 中、または HALF_OPEN の試行枠が埋まっている場合
+   */
+  public synchronized Permission acquirePermission(boolean countsSlowCalls) {
+    if (state == State.OPEN) {
+      long elapsed = System.nanoTime() - openedAtNanos;
+      long openNanos = TimeUnit.MILLISECONDS.toNanos(properties.openDurationMillis());
+      if (elapsed < openNanos) {
+        throw reject(Duration.ofNanos(openNanos - elapsed));
+      }
+      transitionTo(State.HALF_OPEN);
+    }
+    if (state == State.HALF_OPEN) {
+      if (probesInFlight + probesSucceeded >= properties.halfOpenProbes()) {
+        throw reject(Duration.ofMillis(properties.openDurationMillis()));
+      }
+      probesInFlight++;
+    }
+    return new Permission(epoch, countsSlowCalls);
+  }
+
+  /**
+   * OPEN 中で待ち時間が残っていれば失敗させる。状態は変えず、HALF_OPEN の試行枠も取らない。
+   *
+   * <p>同時実行数の順番待ちに並ぶ前に呼び、どうせ拒否される呼び出しで待ち行列を埋めないようにする。
+   *
+   * @throws LlmUnavailableException OPEN 中で待ち時間が残っている場合
+   */
+  public synchronized void rejectIfOpen() {
+    if (state != State.OPEN) {
+      return;
+    }
+    long elapsed = System.nanoTime() - openedAtNanos;
+    long openNanos = TimeUnit.MILLISECONDS.toNanos(properties.openDurationMillis());
+    if (elapsed < openNanos) {
+      throw reject(Duration.ofNanos(openNanos - elapsed));
+    }
+  }
+
+  /** 現在の状態を返す。 */
+  public synchronized State state() {
+    return state;
+  }
+
+  private LlmUnavailableException reject(Duration retryAfter) {
+    meterRegistry.counter("llm.openai.circuit.rejected").increment();
+    return new LlmUnavailableException(
+        "OpenAI is temporarily unavailable (circuit open)", retryAfter);
+  }
+
+  private synchronized void recordResult(
+      Permission permission, boolean failure, long durationNanos) {
+    if (permission.epoch != epoch) {
+      // 状態遷移前に取得した許可の結果は判定に使わない
+      return;
+    }
+    boolean slow = permission.countsSlowCalls && durationNanos >= slowCallNanos;
+    if (state == State.HALF_OPEN) {
+      probesInFlight--;
+      if (failure || slow) {
+        transitionTo(State.OPEN);
+      } else if (++probesSucceeded >= properties.halfOpenProbes()) {
+        transitionTo(State.CLOSED);
+      }
+      return;
+    }
+    recordInWindow(failure, slow);
+    if (windowCount >= properties.minimumCalls()
+        && (failureCount * 100 >= properties.failureRateThreshold() * windowCount
+            || slowCount * 100 >= properties.slowCallRateThreshold() * windowCount)) {
+      log.warn(
+          "OpenAI circuit opening failures={} slowCalls={} window={}",
+          failureCount,
+          slowCount,
+          windowCount);
+      transitionTo(State.OPEN);
+    }
+  }
+
+  private synchronized void releaseUnrecorded(Permission permission) {
+    if (permission.epoch == epoch && state == State.HALF_OPEN) {
+      probesInFlight--;
+    }
+  }
+
+  private void recordInWindow(boolean failure, boolean slow) {
+    if (windowCount == failures.length) {
+      failureCount -= failures[windowIndex] ? 1 : 0;
+      slowCount -= slows[windowIndex] ? 1 : 0;
+    } else {
+      windowCount++;
+    }
+    failures[windowIndex] = failure;
+    slows[windowIndex] = slow;
+    failureCount += failure ? 1 : 0;
+    slowCount += slow ? 1 : 0;
+    windowIndex = (windowIndex + 1) % failures.length;
+  }
+
+  private void transitionTo(State next) {
+    log.info("OpenAI circuit state changed from={} to={}", state, next);
+    state = next;
+    epoch++;
+    probesInFlight = 0;
+    probesSucceeded = 0;
+    if (next == State.OPEN) {
+      openedAtNanos = System.nanoTime();
+    }
+    if (next == State.CLOSED) {
+      windowIndex = 0;
+      windowCount = 0;
+      failureCount = 0;
+      slowCount = 0;
+    }
+    meterRegistry.counter("llm.openai.circuit.transitions", "to", next.name()).increment();
+  }
+
+  /** 1 回分の呼び出し許可。結果はいずれか 1 回だけ記録される。 */
+  public final class Permission {
+
+    private final long epoch;
+    private final boolean countsSlowCalls;
+    private final AtomicBoolean recorded = new AtomicBoolean();
+    private long startedAtNanos = System.nanoTime();
+
+    private Permission(long epoch, boolean countsSlowCalls) {
+      this.epoch = epoch;
+      this.countsSlowCalls = countsSlowCalls;
+    }
+
+    /** 通信開始時刻を記録する。待機時間を遅延判定に含めないために使う。 */
+    public void markStarted() {
+      startedAtNanos = System.nanoTime();
+    }
+
+    /** 呼び出しが成功したことを記録する。 */
+    public void onSuccess() {
+      if (recorded.compareAndSet(false, true)) {
+        recordResult(this, false, System.nanoTime() - startedAtNanos);
+      }
+    }
+
+    /**
+     * 呼び出しが失敗したことを記録する。
+     *
+     * @param countsAsFailure サービス側の障害（5xx・429・タイムアウトなど）とみなすか
+     */
+    public void onError(boolean countsAsFailure) {
+      if (recorded.compareAndSet(false, true)) {
+        recordResult(this, countsAsFailure, System.nanoTime() - startedAtNanos);
+      }
+    }
+
+    /** 結果を記録しないまま終了した場合（キャンセルなど）に、試行枠だけを解放する。 */
+    public void releaseIfUnrecorded() {
+      if (recorded.compareAndSet(false, true)) {
+        releaseUnrecorded(this);
+      }
+    }
+  }
+}
@@ -2,41 +2,102 @@ package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmDeadline;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmDeadlineExceededException;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmPriority;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUsage;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUsageLedger;
 import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiClientException;
 import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiStructuredRequest;
 import io.github.tempsotsusei.kotobanotane.config.OpenAiProperties;
+import io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.OpenAiRetryPolicy.Decision;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.time.Duration;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
+import reactor.util.retry.Retry;
 
-/** OpenAI Responses API の呼び出しを担うクライアント。 */
+/**
+ * OpenAI Responses API の呼び出しを担うクライアント。
+ *
+ * <p>成功したレスポンスの {@code usage} は {@link LlmUsageLedger} に記録する。記録先のユーザーは購読時の Reactor Context
+ * から取り出す（結果を共有した呼び出しは最初の呼び出し元に、ヘッジで捨てた側のレスポンスは記録しない）。
+ *
+ * <p>{@link OpenAiCassette} が記録・再生モードのときは、HTTP 呼び出しの部分だけをカセットの記録・再生に置き換える。リトライや同時実行数の制御などは通常どおり通る。
+ */
 @Component
 public class OpenAiClient {
 
   private static final Logger log = LoggerFactory.getLogger(OpenAiClient.class);
-  private static final long BASE_BACKOFF_MILLIS = 500L;
-  private static final long MAX_BACKOFF_MILLIS = 5_000L;
+  private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_EVENT_TYPE =
+      new ParameterizedTypeReference<>() {};
+  /** 想定するユースケース数に対して十分な上限。超えた分はキャッシュせずにその都度組み立てる。 */
+  private static final int MAX_CACHED_TEMPLATES = 64;
 
   private final WebClient webClient;
   private final ObjectMapper objectMapper;
   private final OpenAiProperties properties;
+  private final StructuredRequestCoalescer coalescer;
+  private final OpenAiConcurrencyLimiter concurrencyLimiter;
+  private final OpenAiCircuitBreaker circuitBreaker;
+  private final OpenAiRequestHedger hedger;
+  private final OpenAiRetryPolicy retryPolicy;
+  private final LlmUsageLedger usageLedger;
+  private final OutputTokenBudget outputBudget;
+  private final OpenAiModelRouter router;
+  private final OpenAiCassette cassette;
+  private final MeterRegistry meterRegistry;
+  private final Map<TemplateKey, StructuredRequestTemplate> templates = new ConcurrentHashMap<>();
 
   public OpenAiClient(
-      WebClient.Builder builder, ObjectMapper objectMapper, OpenAiProperties properties) {
+      WebClient.Builder builder,
+      ObjectMapper objectMapper,
+      OpenAiProperties properties,
+      StructuredRequestCoalescer coalescer,
+      OpenAiConcurrencyLimiter concurrencyLimiter,
+      OpenAiCircuitBreaker circuitBreaker,
+      OpenAiRequestHedger hedger,
+      OpenAiRetryPolicy retryPolicy,
+      LlmUsageLedger usageLedger,
+      OutputTokenBudget outputBudget,
+      OpenAiModelRouter router,
+      OpenAiCassette cassette,
+      MeterRegistry meterRegistry) {
     this.properties = properties;
     this.objectMapper = objectMapper;
+    this.coalescer = coalescer;
+    this.concurrencyLimiter = concurrencyLimiter;
+    this.circuitBreaker = circuitBreaker;
+    this.hedger = hedger;
+    this.retryPolicy = retryPolicy;
+    this.usageLedger = usageLedger;
+    this.outputBudget = outputBudget;
+    this.router = router;
+    this.cassette = cassette;
+    this.meterRegistry = meterRegistry;
     this.webClient =
         builder
             .baseUrl(properties.openaiBaseUrl())
@@ -45,97 +106,625 @@ public class OpenAiClient {
             .build();
   }
 
-  /** structured outputs を利用して JSON を取得し、そのままコール元へ返す。 */
+  /**
+   * structured outputs を利用して JSON を取得し、そのままコール元へ返す。
+   *
+   * <p>内部では {@link #requestStructuredJsonAsync(OpenAiStructuredRequest)} を待ち合わせるだけなので、同期呼び出しが必要な箇所向けに残している。
+   * 同時実行枠は {@link LlmPriority#INTERACTIVE} として待つ。
+   */
   public JsonNode requestStructuredJson(OpenAiStructuredRequest request) {
-    Map<String, Object> payload = new HashMap<>();
-    payload.put("model", properties.openaiModel());
+    return requestStructuredJson(request, LlmPriority.INTERACTIVE);
+  }
 
-    List<Map<String, String>> messages =
-        List.of(
-            Map.of("role", "system", "content", request.systemPrompt()),
-            Map.of("role", "user", "content", request.userInput()));
-    payload.put("input", messages);
+  /**
+   * {@link #requestStructuredJson(OpenAiStructuredRequest)} の優先度指定版。{@code block()} では呼び出し元の Context
+   * が引き継がれないため、バックグラウンドの処理はここで優先度を渡す。
+   *
+   * @param request リクエスト情報
+   * @param priority 同時実行枠を待つときの優先度
+   * @return 抽出済み JSON
+   */
+  public JsonNode requestStructuredJson(OpenAiStructuredRequest request, LlmPriority priority) {
+    return requestStructuredJsonAsync(request).contextWrite(priority.asContext()).block();
+  }
 
-    Map<String, Object> responseFormat = new HashMap<>();
-    responseFormat.put("type", "json_schema");
-    responseFormat.put("name", request.optionalSchemaName().orElse("structured_output"));
-    responseFormat.put("schema", request.schema());
+  /**
+   * structured outputs を利用して JSON を非同期に取得する。
+   *
+   * <p>リトライは Reactor の {@code retryWhen} によるバックオフで行い、待機中にスレッドを占有しない。購読されるまで HTTP 呼び出しは行われない。
+   * 同一内容のリクエストが処理中であれば {@link StructuredRequestCoalescer} により結果を共有する。
+   *
+   * @param request リクエスト情報
+   * @return 抽出済み JSON を 1 件発行する Mono
+   */
+  public Mono<JsonNode> requestStructuredJsonAsync(OpenAiStructuredRequest request) {
+    return requestStructuredJsonAsync(request, LlmDeadline.none());
+  }
 
-    Map<String, Object> textConfig = new HashMap<>();
-    textConfig.put("format", responseFormat);
-    payload.put("text", textConfig);
+  /**
+   * 締め切り付きで {@link #requestStructuredJsonAsync(OpenAiStructuredRequest)} を行う。
+   *
+   * <p>締め切りを過ぎると購読を解除して {@link LlmDeadlineExceededException} で失敗する（通信中の HTTP 呼び出しもキャンセルされる）。
+   * 間に合わないリトライは行わない。結果を共有する場合、リトライ判定には最初の呼び出し元の締め切りを使う。
+   *
+   * @param request リクエスト情報
+   * @param deadline 呼び出し元の締め切り
+   * @return 抽出済み JSON を 1 件発行する Mono
+   */
+  public Mono<JsonNode> requestStructuredJsonAsync(
+      OpenAiStructuredRequest request, LlmDeadline deadline) {
+    return withDeadline(
+        coalescer.execute(
+            request,
+            router.primaryModel(request.optionalSchemaName().orElse("structured_output")),
+            () -> sendWithRetry(request, deadline)),
+        deadline);
+  }
 
-    int resolvedMaxOutputTokens =
-        request.optionalMaxOutputTokens().orElse(properties.defaultMaxOutputTokens());
-    payload.put("max_output_tokens", resolvedMaxOutputTokens);
+  /**
+   * structured outputs をストリーミングモードで呼び出し、JSON 本文のテキスト差分を届いた順に発行する。
+   *
+   * <p>Responses API の {@code response.output_text.delta} イベントの {@code delta} をそのまま流す。差分を 1 件も発行していない間の失敗だけを
+   * リトライし、途中まで流した後の失敗は呼び出し元へそのまま伝える。結果を共有できないため重複排除は行わない。
+   *
+   * @param request リクエスト情報
+   * @return JSON 本文の断片を発行する Flux（連結すると非ストリーミング時の本文と同じになる）
+   */
+  public Flux<String> streamStructuredText(OpenAiStructuredRequest request) {
+    return streamStructuredText(request, LlmDeadline.none());
+  }
 
+  /**
+   * 締め切り付きで {@link #streamStructuredText(OpenAiStructuredRequest)} を行う。締め切りを過ぎるとストリームを打ち切り {@link
+   * LlmDeadlineExceededException} で失敗する。
+   *
+   * @param request リクエスト情報
+   * @param deadline 呼び出し元の締め切り
+   * @return JSON 本文の断片を発行する Flux
+   */
+  public Flux<String> streamStructuredText(OpenAiStructuredRequest request, LlmDeadline deadline) {
+    return withDeadline(streamWithRetry(request, deadline), deadline);
+  }
+
+  /**
+   * ストリーミング呼び出しの本体。
+   *
+   * <p>差分を送り始めた後は途中終了しても呼び直せないため、{@code max_output_tokens} はリクエストの上限をそのまま使い、実測値の記録だけを行う。
+   */
+  private Flux<String> streamWithRetry(OpenAiStructuredRequest request, LlmDeadline deadline) {
+    String schemaName = request.optionalSchemaName().orElse("structured_output");
     int maxAttempts = Math.max(1, properties.maxAttempts());
-    int attempt = 1;
-    long startedAt = System.nanoTime();
-
-    while (true) {
-      try {
-        JsonNode response =
-            webClient
-                .post()
-                .uri("/responses")
-                .bodyValue(payload)
-                .retrieve()
-                .bodyToMono(JsonNode.class)
-                .block(Duration.ofSeconds(properties.openaiTimeout()));
-
-        if (response == null) {
-          throw new OpenAiClientException("OpenAI response was empty");
-        }
+    String fingerprint = cassette.fingerprint(request, true);
 
-        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
-        log.info(
-            "OpenAI request succeeded attempts={} elapsedMs={} maxOutputTokens={}",
-            attempt,
-            elapsedMs,
-            resolvedMaxOutputTokens);
-        return extractJsonContent(response);
-      } catch (WebClientResponseException e) {
-        if (isRetryableStatus(e.getStatusCode()) && attempt < maxAttempts) {
-          long backoffMillis = calculateBackoffMillis(attempt);
-          log.warn(
-              "OpenAI API error status={} attempt={}/{} retryingIn={}ms body={}",
-              e.getStatusCode(),
-              attempt,
-              maxAttempts,
-              backoffMillis,
-              e.getResponseBodyAsString());
-          sleep(backoffMillis);
-          attempt++;
-          continue;
-        }
-        log.error(
-            "OpenAI API error status={} attempts={} body={}",
-            e.getStatusCode(),
-            attempt,
-            e.getResponseBodyAsString());
-        throw new OpenAiClientException("OpenAI API returned error: " + e.getStatusCode(), e);
-      } catch (Exception e) {
-        if (isRetryableException(e) && attempt < maxAttempts) {
-          long backoffMillis = calculateBackoffMillis(attempt);
-          log.warn(
-              "OpenAI call failed attempt={}/{} reason={} retryingIn={}ms",
-              attempt,
-              maxAttempts,
-              e.getMessage(),
-              backoffMillis);
-          sleep(backoffMillis);
-          attempt++;
-          continue;
+    return Flux.deferContextual(
+        context -> {
+          String auth0Id = LlmUsageLedger.auth0IdOf(context);
+          long startedAt = System.nanoTime();
+          AtomicInteger attempt = new AtomicInteger();
+          AtomicBoolean emitted = new AtomicBoolean();
+          return Flux.defer(
+                  () -> {
+                    if (attempt.incrementAndGet() == 1) {
+                      retryPolicy.onFirstAttempt();
+                    }
+                    byte[] payload =
+                        renderPayload(
+                            request,
+                            true,
+                            resolveMaxOutputTokens(request),
+                            router.currentModel(schemaName));
+                    return exchangeStream(
+                        payload,
+                        fingerprint,
+                        usage -> {
+                          usageLedger.record(auth0Id, schemaName, usage);
+                          outputBudget.record(
+                              schemaName, request.userInput(), usage.outputTokens());
+                        });
+                  })
+              .doOnNext(
+                  delta -> {
+                    if (emitted.compareAndSet(false, true)) {
+                      long elapsedNanos = System.nanoTime() - startedAt;
+                      log.info(
+                          "OpenAI stream first delta attempts={} elapsedMs={}",
+                          attempt.get(),
+                          TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+                      Timer.builder("llm.openai.stream.first_delta")
+                          .description("ストリーミング呼び出しの最初の差分までの時間")
+                          .tag("use_case", LlmUsageLedger.useCaseOf(schemaName))
+                          .register(meterRegistry)
+                          .record(elapsedNanos, TimeUnit.NANOSECONDS);
+                    }
+                  })
+              .retryWhen(
+                  buildRetrySpec(
+                      maxAttempts, deadline, error -> !emitted.get() && isRetryable(error)))
+              .onErrorMap(
+                  error -> !(error instanceof OpenAiClientException),
+                  error -> toClientException(error, attempt.get()));
+        });
+  }
+
+  /**
+   * 重複排除を経由せずに、リトライ付きで OpenAI を呼び出す。
+   *
+   * <p>{@code max_output_tokens} は {@link OutputTokenBudget} が実測から決めた値を使う。出力がその値で途中終了した場合は、リクエストの上限に広げて
+   * 1 回だけ呼び直す。
+   */
+  private Mono<JsonNode> sendWithRetry(OpenAiStructuredRequest request, LlmDeadline deadline) {
+    String schemaName = request.optionalSchemaName().orElse("structured_output");
+    int ceiling = resolveMaxOutputTokens(request);
+    int budget = outputBudget.resolve(schemaName, request.userInput(), ceiling);
+
+    return sendAttempts(request, deadline, budget)
+        .flatMap(
+            response -> {
+              if (!isTruncated(response)) {
+                return Mono.just(response);
+              }
+              outputBudget.onTruncated(schemaName, budget, ceiling);
+              if (budget >= ceiling) {
+                return Mono.just(response);
+              }
+              log.info(
+                  "OpenAI output truncated, retrying schema={} maxOutputTokens={} -> {}",
+                  schemaName,
+                  budget,
+                  ceiling);
+              return sendAttempts(request, deadline, ceiling);
+            })
+        .map(this::extractJsonContent);
+  }
+
+  /**
+   * 指定した {@code max_output_tokens} で、失敗時のリトライ込みの呼び出しを行う。
+   *
+   * <p>ヘッジが有効なユースケースでは、各試行が {@link OpenAiRequestHedger} を経由する（予備リクエストも同じ試行として扱う）。成功したレスポンスの使用量は
+   * {@link LlmUsageLedger} と {@link OutputTokenBudget} に記録する。
+   *
+   * <p>モデルは試行ごとに {@link OpenAiModelRouter} で選び、試行の所要時間とモデル側の失敗（リトライ対象のエラー）を振り分けの判定に返す。
+   */
+  private Mono<JsonNode> sendAttempts(
+      OpenAiStructuredRequest request, LlmDeadline deadline, int maxOutputTokens) {
+    String schemaName = request.optionalSchemaName().orElse("structured_output");
+    int maxAttempts = Math.max(1, properties.maxAttempts());
+    String fingerprint = cassette.fingerprint(request, false);
+
+    return Mono.deferContextual(
+        context -> {
+          long startedAt = System.nanoTime();
+          AtomicInteger attempt = new AtomicInteger();
+          return Mono.defer(
+                  () -> {
+                    if (attempt.incrementAndGet() == 1) {
+                      retryPolicy.onFirstAttempt();
+                    }
+                    String model = router.select(schemaName);
+                    byte[] payload = renderPayload(request, false, maxOutputTokens, model);
+                    long attemptStartedAt = System.nanoTime();
+                    return hedger
+                        .execute(schemaName, () -> exchange(payload, fingerprint))
+                        .doOnSuccess(
+                            response ->
+                                router.record(
+                                    schemaName,
+                                    model,
+                                    System.nanoTime() - attemptStartedAt,
+                                    false))
+                        .doOnError(
+                            error -> {
+                              if (isRetryable(error)) {
+                                router.record(
+                                    schemaName,
+                                    model,
+                                    System.nanoTime() - attemptStartedAt,
+                                    true);
+                              }
+                            });
+                  })
+              .retryWhen(buildRetrySpec(maxAttempts, deadline, this::isRetryable))
+              .doOnNext(
+                  response -> {
+                    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+                    log.info(
+                        "OpenAI request succeeded attempts={} elapsedMs={} maxOutputTokens={}",
+                        attempt.get(),
+                        elapsedMs,
+                        maxOutputTokens);
+                    parseUsage(response.path("usage"))
+                        .ifPresent(
+                            usage -> {
+                              usageLedger.record(
+                                  LlmUsageLedger.auth0IdOf(context), schemaName, usage);
+                              if (!isTruncated(response)) {
+                                outputBudget.record(
+                                    schemaName, request.userInput(), usage.outputTokens());
+                              }
+                            });
+                  })
+              .onErrorMap(
+                  error -> !(error instanceof OpenAiClientException),
+                  error -> toClientException(error, attempt.get()));
+        });
+  }
+
+  /** 出力が {@code max_output_tokens} に達して途中で終わったレスポンスか。 */
+  static boolean isTruncated(JsonNode response) {
+    return "incomplete".equals(response.path("status").asText())
+        && "max_output_tokens"
+            .equals(response.path("incomplete_details").path("reason").asText());
+  }
+
+  /** Responses API 用のリクエストボディを、出力トークン上限を解決した上で組み立てる。バッチ投入でも同じ形式を使う。 */
+  byte[] buildRequestBody(OpenAiStructuredRequest request) {
+    String schemaName = request.optionalSchemaName().orElse("structured_output");
+    return renderPayload(
+        request, false, resolveMaxOutputTokens(request), router.primaryModel(schemaName));
+  }
+
+  private int resolveMaxOutputTokens(OpenAiStructuredRequest request) {
+    return request.optionalMaxOutputTokens().orElse(properties.defaultMaxOutputTokens());
+  }
+
+  /**
+   * リクエストボディをバイト列で組み立てる。
+   *
+   * <p>モデル・システムプロンプト・スキーマは {@link StructuredRequestTemplate} として一度だけシリアライズしてキャッシュし、呼び出しごとにはユーザー入力と出力トークン上限だけを差し込む。
+   * スキーマは同一インスタンスかどうかで判定するため、呼び出し側はスキーマを定数として使い回す前提。
+   */
+  private byte[] renderPayload(
+      OpenAiStructuredRequest request, boolean stream, int maxOutputTokens, String model) {
+    String schemaName = request.optionalSchemaName().orElse("structured_output");
+    TemplateKey key =
+        new TemplateKey(model, request.systemPrompt(), schemaName, request.schema(), stream);
+    StructuredRequestTemplate template = templates.get(key);
+    if (template == null) {
+      template =
+          StructuredRequestTemplate.create(
+              objectMapper,
+              model,
+              request.systemPrompt(),
+              schemaName,
+              request.schema(),
+              stream);
+      if (templates.size() < MAX_CACHED_TEMPLATES) {
+        templates.putIfAbsent(key, template);
+      }
+    }
+    return template.render(objectMapper, request.userInput(), maxOutputTokens);
+  }
+
+  /**
+   * 1 回分の HTTP 呼び出しを行う。タイムアウトは試行単位で適用する。
+   *
+   * <p>OPEN 中は {@link OpenAiConcurrencyLimiter} の順番待ちに並ばず {@link
+   * io.github.tempsotsusei.kotobanotane.application.llm.LlmUnavailableException} で即失敗する（リトライもしない）。
+   * それ以外は同時実行数の許可を得てから {@link OpenAiCircuitBreaker} の許可を取る。HALF_OPEN の試行枠を順番待ちの間に
+   * 占有したり、順番待ちのタイムアウトで結果を記録しないまま枠を返したりしないようにするため。同時実行数の許可は呼び出しの結果とともに返却し、上限調整に反映する。
+   *
+   * <p>{@link LlmPriority#BACKGROUND} の呼び出しは出力が長くなりうるため、{@code openaiBackgroundTimeout} を試行のタイムアウトに使い、
+   * ブレーカーの遅延判定からも外す。
+   */
+  private Mono<JsonNode> exchange(byte[] payload, String fingerprint) {
+    return Mono.deferContextual(
+        context -> {
+          boolean background = LlmPriority.of(context) == LlmPriority.BACKGROUND;
+          circuitBreaker.rejectIfOpen();
+          return Mono.usingWhen(
+              concurrencyLimiter.acquire(),
+              permit ->
+                  Mono.defer(
+                      () -> {
+                        OpenAiCircuitBreaker.Permission permission =
+                            circuitBreaker.acquirePermission(!background);
+                        return send(payload, fingerprint, permission, attemptTimeout(background))
+                            .doFinally(signal -> permission.releaseIfUnrecorded());
+                      }),
+              permit -> releaseLater(permit, OpenAiConcurrencyLimiter.Outcome.SUCCESS),
+              (permit, error) -> releaseLater(permit, classifyOutcome(error)),
+              permit -> releaseLater(permit, OpenAiConcurrencyLimiter.Outcome.IGNORED));
+        });
+  }
+
+  private Mono<JsonNode> send(
+      byte[] payload,
+      String fingerprint,
+      OpenAiCircuitBreaker.Permission permission,
+      Duration timeout) {
+    return Mono.defer(
+            () -> {
+              permission.markStarted();
+              return post(payload, fingerprint).timeout(timeout);
+            })
+        .switchIfEmpty(Mono.error(() -> new OpenAiClientException("OpenAI response was empty")))
+        .doOnSuccess(response -> permission.onSuccess())
+        .doOnError(error -> permission.onError(isRetryable(error)));
+  }
+
+  /**
+   * 非ストリーミングの HTTP 呼び出し。カセットの再生中は OpenAI へ接続せず記録を返し、記録中は応答と所要時間をカセットへ追記する。
+   */
+  private Mono<JsonNode> post(byte[] payload, String fingerprint) {
+    if (cassette.isReplaying()) {
+      return Mono.defer(
+          () -> {
+            OpenAiCassette.Frame frame =
+                cassette.replay(fingerprint).orElseThrow(() -> cassetteMiss(fingerprint)).get(0);
+            return Mono.delay(Duration.ofNanos(frame.delayNanos()))
+                .then(Mono.fromCallable(() -> objectMapper.readTree(frame.data())));
+          });
+    }
+    Mono<JsonNode> call =
+        webClient.post().uri("/responses").bodyValue(payload).retrieve().bodyToMono(JsonNode.class);
+    if (!cassette.isRecording()) {
+      return call;
+    }
+    return Mono.defer(
+        () -> {
+          OpenAiCassette.Recorder recorder = new OpenAiCassette.Recorder();
+          return call.doOnNext(
+              response -> {
+                recorder.frame(response.toString());
+                cassette.record(fingerprint, recorder.frames());
+              });
+        });
+  }
+
+  /** ストリーミングの HTTP 呼び出し。カセットの再生中は記録した SSE イベントを記録時と同じ間隔で流す。 */
+  private Flux<ServerSentEvent<String>> postStream(byte[] payload, String fingerprint) {
+    if (cassette.isReplaying()) {
+      return Flux.defer(
+          () ->
+              Flux.fromIterable(
+                      cassette.replay(fingerprint).orElseThrow(() -> cassetteMiss(fingerprint)))
+                  .concatMap(
+                      frame ->
+                          Mono.delay(Duration.ofNanos(frame.delayNanos()))
+                              .thenReturn(ServerSentEvent.builder(frame.data()).build())));
+    }
+    return webClient
+        .post()
+        .uri("/responses")
+        .accept(MediaType.TEXT_EVENT_STREAM)
+        .bodyValue(payload)
+        .retrieve()
+        .bodyToFlux(SSE_EVENT_TYPE);
+  }
+
+  private static OpenAiClientException cassetteMiss(String fingerprint) {
+    return new OpenAiClientException("No recorded OpenAI response in cassette: " + fingerprint);
+  }
+
+  /**
+   * {@link #exchange(byte[], String)} のストリーミング版。許可はストリームの終了（完了・失敗・キャンセル）時に返却する。
+   *
+   * <p>{@code response.completed} に含まれる使用量は {@code onUsage} に渡す。
+   */
+  private Flux<String> exchangeStream(
+      byte[] payload, String fingerprint, Consumer<LlmUsage> onUsage) {
+    return Flux.deferContextual(
+        context -> {
+          boolean background = LlmPriority.of(context) == LlmPriority.BACKGROUND;
+          circuitBreaker.rejectIfOpen();
+          return Flux.usingWhen(
+              concurrencyLimiter.acquire(),
+              permit ->
+                  Flux.defer(
+                      () -> {
+                        OpenAiCircuitBreaker.Permission permission =
+                            circuitBreaker.acquirePermission(!background);
+                        return sendStream(
+                                payload,
+                                fingerprint,
+                                permission,
+                                attemptTimeout(background),
+                                onUsage)
+                            .doFinally(signal -> permission.releaseIfUnrecorded());
+                      }),
+              permit -> releaseLater(permit, OpenAiConcurrencyLimiter.Outcome.SUCCESS),
+              (permit, error) -> releaseLater(permit, classifyOutcome(error)),
+              permit -> releaseLater(permit, OpenAiConcurrencyLimiter.Outcome.IGNORED));
+        });
+  }
+
+  /**
+   * SSE で届くイベントからテキスト差分だけを取り出す。{@code response.completed} で完了し、失敗系イベントはエラーにする。
+   *
+   * <p>タイムアウトはイベント間の無通信時間に対して適用する。カセットの記録中は、{@code response.completed} まで届いたストリームだけを記録する。
+   */
+  private Flux<String> sendStream(
+      byte[] payload,
+      String fingerprint,
+      OpenAiCircuitBreaker.Permission permission,
+      Duration timeout,
+      Consumer<LlmUsage> onUsage) {
+    return Flux.defer(
+            () -> {
+              permission.markStarted();
+              Flux<ServerSentEvent<String>> events = postStream(payload, fingerprint);
+              if (!cassette.isRecording()) {
+                return events
+                    .timeout(timeout)
+                    .<String>handle((event, sink) -> handleStreamEvent(event, sink, onUsage));
+              }
+              OpenAiCassette.Recorder recorder = new OpenAiCassette.Recorder();
+              return events
+                  .doOnNext(event -> recorder.frame(event.data()))
+                  .timeout(timeout)
+                  .<String>handle((event, sink) -> handleStreamEvent(event, sink, onUsage))
+                  .doOnComplete(() -> cassette.record(fingerprint, recorder.frames()));
+            })
+        .doOnComplete(permission::onSuccess)
+        .doOnError(error -> permission.onError(isRetryable(error)));
+  }
+
+  private void handleStreamEvent(
+      ServerSentEvent<String> event, SynchronousSink<String> sink, Consumer<LlmUsage> onUsage) {
+    String data = event.data();
+    if (data == null || data.isBlank() || "[DONE]".equals(data.strip())) {
+      return;
+    }
+    JsonNode node;
+    try {
+      node = objectMapper.readTree(data);
+    } catch (Exception e) {
+      sink.error(new OpenAiClientException("Failed to parse OpenAI stream event", e));
+      return;
+    }
+    String type = node.path("type").asText(Objects.toString(event.event(), ""));
+    switch (type) {
+      case "response.output_text.delta" -> {
+        String delta = node.path("delta").asText("");
+        if (!delta.isEmpty()) {
+          sink.next(delta);
         }
-        log.error("OpenAI API call failed attempts={}", attempt, e);
-        throw new OpenAiClientException("OpenAI API call failed", e);
       }
+      case "response.completed" -> {
+        parseUsage(node.path("response").path("usage")).ifPresent(onUsage);
+        sink.complete();
+      }
+      case "response.failed", "response.incomplete", "error" ->
+          sink.error(new OpenAiClientException("OpenAI stream terminated: " + type));
+      default -> {
+        // created / in_progress / output_item.added などの進捗イベントは読み飛ばす
+      }
+    }
+  }
+
+  private Mono<Void> releaseLater(
+      OpenAiConcurrencyLimiter.Permit permit, OpenAiConcurrencyLimiter.Outcome outcome) {
+    return Mono.fromRunnable(() -> concurrencyLimiter.release(permit, outcome));
+  }
+
+  /** 429 とタイムアウトを過負荷として扱い、それ以外は上限調整に使わない。 */
+  /** 1 回の試行のタイムアウト。ストリーミングではイベント間の無通信時間に適用する。 */
+  private Duration attemptTimeout(boolean background) {
+    return Duration.ofSeconds(
+        background ? properties.openaiBackgroundTimeout() : properties.openaiTimeout());
+  }
+
+  private OpenAiConcurrencyLimiter.Outcome classifyOutcome(Throwable error) {
+    if (error instanceof WebClientResponseException e && e.getStatusCode().value() == 429) {
+      return OpenAiConcurrencyLimiter.Outcome.OVERLOADED;
+    }
+    if (error instanceof TimeoutException) {
+      return OpenAiConcurrencyLimiter.Outcome.OVERLOADED;
+    }
+    return OpenAiConcurrencyLimiter.Outcome.IGNORED;
+  }
+
+  /**
+   * リトライ条件を組み立てる。待ち時間とリトライ予算の判定は {@link OpenAiRetryPolicy} に任せる。
+   *
+   * <p>予算切れやサーバー指定の待ち時間が長すぎる場合は、直前の失敗をそのまま返す。
+   */
+  private Retry buildRetrySpec(
+      int maxAttempts, LlmDeadline deadline, Predicate<Throwable> retryable) {
+    return Retry.from(
+        signals ->
+            signals.concatMap(
+                signal -> {
+                  int failedAttempt = (int) signal.totalRetries() + 1;
+                  Throwable failure = signal.failure();
+                  if (failedAttempt >= maxAttempts || !retryable.test(failure)) {
+                    return Mono.<Long>error(failure);
+                  }
+                  return switch (retryPolicy.decide(failedAttempt, failure, deadline)) {
+                    case Decision.Retry retry -> {
+                      logRetry(failure, failedAttempt, maxAttempts, retry);
+                      yield Mono.delay(retry.delay());
+                    }
+                    case Decision.GiveUp giveUp -> {
+                      log.warn(
+                          "OpenAI retry skipped attempt={}/{} reason={}",
+                          failedAttempt,
+                          maxAttempts,
+                          giveUp.reason());
+                      yield Mono.<Long>error(failure);
+                    }
+                  };
+                }));
+  }
+
+  private void logRetry(
+      Throwable failure, int failedAttempt, int maxAttempts, Decision.Retry retry) {
+    if (failure instanceof WebClientResponseException e) {
+      log.warn(
+          "OpenAI API error status={} attempt={}/{} retryingIn={}ms serverHint={} body={}",
+          e.getStatusCode(),
+          failedAttempt,
+          maxAttempts,
+          retry.delay().toMillis(),
+          retry.hinted(),
+          e.getResponseBodyAsString());
+    } else {
+      log.warn(
+          "OpenAI call failed attempt={}/{} reason={} retryingIn={}ms",
+          failedAttempt,
+          maxAttempts,
+          failure.getMessage(),
+          retry.delay().toMillis());
     }
   }
 
+  /** 締め切りを過ぎたら購読を解除し、{@link LlmDeadlineExceededException} にする。 */
+  private <T> Mono<T> withDeadline(Mono<T> call, LlmDeadline deadline) {
+    if (!deadline.isBounded()) {
+      return call;
+    }
+    return Mono.defer(() -> call.timeout(deadline.remaining(), deadlineExceeded()));
+  }
+
+  /** ストリーム全体に締め切りを適用する。要素ごとに残り時間でタイムアウトを張り直す。 */
+  private <T> Flux<T> withDeadline(Flux<T> call, LlmDeadline deadline) {
+    if (!deadline.isBounded()) {
+      return call;
+    }
+    return Flux.defer(
+        () ->
+            call.timeout(
+                Mono.delay(deadline.remaining()),
+                item -> Mono.delay(deadline.remaining()),
+                deadlineExceeded()));
+  }
+
+  private static <T> Mono<T> deadlineExceeded() {
+    return Mono.error(
+        () -> {
+          log.warn("OpenAI call cancelled at request deadline");
+          return new LlmDeadlineExceededException("OpenAI call did not finish before the deadline");
+        });
+  }
+
+  /** 最終的に失敗したエラーをログに残し、呼び出し元向けの例外へ変換する。 */
+  private OpenAiClientException toClientException(Throwable error, int attempts) {
+    if (error instanceof WebClientResponseException e) {
+      log.error(
+          "OpenAI API error status={} attempts={} body={}",
+          e.getStatusCode(),
+          attempts,
+          e.getResponseBodyAsString());
+      return new OpenAiClientException("OpenAI API returned error: " + e.getStatusCode(), e);
+    }
+    log.error("OpenAI API call failed attempts={}", attempts, error);
+    return new OpenAiClientException("OpenAI API call failed", error);
+  }
+
+  /** レスポンスの {@code usage} からトークン使用量を読み取る。含まれていなければ空。 */
+  static Optional<LlmUsage> parseUsage(JsonNode usage) {
+    if (!usage.isObject()) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        new LlmUsage(
+            usage.path("input_tokens").asLong(),
+            usage.path("output_tokens").asLong(),
+            usage.path("input_tokens_details").path("cached_tokens").asLong()));
+  }
+
   /** OpenAI のレスポンスから JSON 本体を抽出するヘルパーメソッド。 */
-  private JsonNode extractJsonContent(JsonNode response) {
+  JsonNode extractJsonContent(JsonNode response) {
     JsonNode output = response.path("output");
     if (!output.isArray() || output.isEmpty()) {
       throw new OpenAiClientException("Unexpected OpenAI response format: missing output array");
@@ -168,12 +757,19 @@ public class OpenAiClient {
     throw new OpenAiClientException("OpenAI response did not contain JSON output");
   }
 
+  private boolean isRetryable(Throwable error) {
+    if (error instanceof WebClientResponseException e) {
+      return isRetryableStatus(e.getStatusCode());
+    }
+    return isRetryableException(error);
+  }
+
   private boolean isRetryableStatus(HttpStatusCode status) {
     int code = status.value();
     return code == 408 || code == 429 || (code >= 500 && code < 600);
   }
 
-  private boolean isRetryableException(Exception exception) {
+  private boolean isRetryableException(Throwable exception) {
     if (exception instanceof WebClientRequestException) {
       return true;
     }
@@ -190,17 +786,29 @@ public class OpenAiClient {
     return false;
   }
 
-  private long calculateBackoffMillis(int attempt) {
-    long multiplier = 1L << Math.max(0, attempt - 1);
-    return Math.min(BASE_BACKOFF_MILLIS * multiplier, MAX_BACKOFF_MILLIS);
-  }
+  /**
+   * テンプレートのキャッシュキー。スキーマは呼び出しごとの深い比較・ハッシュ計算を避けるため同一インスタンスかどうかで比較する。
+   */
+  private record TemplateKey(
+      String model, String systemPrompt, String schemaName, JsonNode schema, boolean stream) {
 
-  private void sleep(long millis) {
-    try {
-      Thread.sleep(millis);
-    } catch (InterruptedException ex) {
-      Thread.currentThread().interrupt();
-      throw new OpenAiClientException("OpenAI retry interrupted", ex);
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof TemplateKey key
+          && schema == key.schema
+          && stream == key.stream
+          && model.equals(key.model)
+          && systemPrompt.equals(key.systemPrompt)
+          && schemaName.equals(key.schemaName);
+    }
+
+    @Override
+    public int hashCode() {
+      int hash = model.hashCode();
+      hash = 31 * hash + systemPrompt.hashCode();
+      hash = 31 * hash + schemaName.hashCode();
+      hash = 31 * hash + System.identityHashCode(schema);
+      return 31 * hash + Boolean.hashCode(stream);
     }
   }
 }
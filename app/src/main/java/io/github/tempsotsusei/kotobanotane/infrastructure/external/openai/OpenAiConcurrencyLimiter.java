@@ -0,0 +1,254 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmPriority;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmScheduler;
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiClientException;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiLimiterProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * OpenAI への同時呼び出し数を AIMD で調整するリミッター。
+ *
+ * <p>成功するたびに上限を少しずつ（1 / 現在上限）引き上げ、429 やタイムアウトでは上限に {@code backoffRatio} を掛けて縮小する。上限を超えた呼び出しは
+ * 優先度ごとに最大 {@code maxQueueSize} 件まで待機し、{@code queueTimeoutMillis} を過ぎると {@link OpenAiClientException}
+ * で失敗する。待機はスレッドを占有しない。
+ *
+ * <p>待機列の順番は {@link LlmScheduler} が決める。呼び出しの優先度は購読時の Context の {@link LlmPriority} を使う。待機できる件数を
+ * 優先度ごとに分けているので、バックグラウンドの呼び出しで待機列が埋まっても対話的な呼び出しは拒否されない。
+ */
+@Component
+public class OpenAiConcurrencyLimiter {
+
+  private static final Logger log = LoggerFactory.getLogger(OpenAiConcurrencyLimiter.class);
+
+  /** 呼び出し結果の分類。 */
+  public enum Outcome {
+    /** 正常応答。上限を引き上げる。 */
+    SUCCESS,
+    /** 429 やタイムアウトなど過負荷を示す失敗。上限を縮小する。 */
+    OVERLOADED,
+    /** 上限調整に使わない結果（その他のエラーやキャンセル）。 */
+    IGNORED
+  }
+
+  private final OpenAiLimiterProperties properties;
+  private final MeterRegistry meterRegistry;
+  private final Object lock = new Object();
+  private final LlmScheduler scheduler;
+  private double limit;
+  private int inFlight;
+  private long lastDecreaseNanos;
+
+  public OpenAiConcurrencyLimiter(
+      OpenAiLimiterProperties properties, LlmScheduler scheduler, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.scheduler = scheduler;
+    this.meterRegistry = meterRegistry;
+    this.limit = properties.initialLimit();
+    this.lastDecreaseNanos = System.nanoTime();
+    Gauge.builder("llm.openai.limiter.limit", this, OpenAiConcurrencyLimiter::currentLimit)
+        .description("現在の同時実行上限")
+        .register(meterRegistry);
+    Gauge.builder("llm.openai.limiter.inflight", this, OpenAiConcurrencyLimiter::inFlight)
+        .description("実行中の OpenAI 呼び出し数")
+        .register(meterRegistry);
+    Gauge.builder("llm.openai.limiter.queue", this, OpenAiConcurrencyLimiter::queueDepth)
+        .description("上限待ちの呼び出し数")
+        .register(meterRegistry);
+  }
+
+  /**
+   * 実行許可を取得する。上限に空きがなければ、Context の {@link LlmPriority} の待機列に並ぶ。
+   *
+   * @return 許可を発行する Mono（待機列が満杯、または締め切り超過時はエラー）
+   */
+  public Mono<Permit> acquire() {
+    return Mono.deferContextual(context -> acquire(LlmPriority.of(context)));
+  }
+
+  private Mono<Permit> acquire(LlmPriority priority) {
+    return Mono.create(
+        sink -> {
+          Permit immediate = null;
+          Waiter waiter = null;
+          synchronized (lock) {
+            if (scheduler.size() == 0 && inFlight < currentLimit()) {
+              inFlight++;
+              immediate = new Permit();
+            } else if (scheduler.size(priority) < properties.maxQueueSize()) {
+              waiter = new Waiter(priority, sink);
+              scheduler.offer(waiter);
+            }
+          }
+          if (immediate != null) {
+            scheduler.recordWait(priority, 0);
+            sink.success(immediate);
+            return;
+          }
+          if (waiter == null) {
+            reject(sink, "queue_full", "OpenAI concurrency limiter queue is full");
+            return;
+          }
+          Waiter queued = waiter;
+          queued.timer =
+              Schedulers.parallel()
+                  .schedule(
+                      () -> expire(queued), properties.queueTimeoutMillis(), TimeUnit.MILLISECONDS);
+          sink.onCancel(() -> abandon(queued));
+        });
+  }
+
+  /**
+   * 許可を返却し、結果に応じて上限を調整する。同じ許可を複数回返却しても 2 回目以降は無視する。
+   *
+   * @param permit 返却する許可
+   * @param outcome 呼び出し結果
+   */
+  public void release(Permit permit, Outcome outcome) {
+    if (!permit.released.compareAndSet(false, true)) {
+      return;
+    }
+    synchronized (lock) {
+      int inFlightBeforeRelease = inFlight;
+      inFlight--;
+      switch (outcome) {
+        case SUCCESS -> {
+          // 上限の半分も使っていない間は拡大しない（アイドル時に上限が膨らみ続けるのを防ぐ）
+          if (inFlightBeforeRelease * 2 >= limit) {
+            limit = Math.min(properties.maxLimit(), limit + 1.0 / limit);
+          }
+        }
+        case OVERLOADED -> {
+          // 同じ混雑で失敗した呼び出しがまとめて返ってきても、縮小は 1 回に留める
+          if (permit.acquiredAtNanos - lastDecreaseNanos > 0) {
+            double previous = limit;
+            limit = Math.max(properties.minLimit(), limit * properties.backoffRatio());
+            lastDecreaseNanos = System.nanoTime();
+            log.warn("OpenAI concurrency limit decreased from={} to={}", previous, limit);
+          }
+        }
+        case IGNORED -> {}
+      }
+    }
+    dispatch();
+  }
+
+  /** 現在の同時実行上限（整数）を返す。 */
+  public int currentLimit() {
+    synchronized (lock) {
+      return Math.max(properties.minLimit(), (int) Math.floor(limit));
+    }
+  }
+
+  /** 実行中の呼び出し数を返す。 */
+  public int inFlight() {
+    synchronized (lock) {
+      return inFlight;
+    }
+  }
+
+  /** 待機中の呼び出し数を返す。 */
+  public int queueDepth() {
+    synchronized (lock) {
+      return scheduler.size();
+    }
+  }
+
+  /** 上限に空きがある限り、スケジューラーが選んだ順に許可を渡す。 */
+  private void dispatch() {
+    while (true) {
+      Waiter next;
+      Permit permit;
+      synchronized (lock) {
+        if (scheduler.size() == 0 || inFlight >= currentLimit()) {
+          return;
+        }
+        next = (Waiter) scheduler.poll();
+        if (!next.state.compareAndSet(Waiter.WAITING, Waiter.GRANTED)) {
+          continue;
+        }
+        inFlight++;
+        permit = new Permit();
+        next.permit = permit;
+      }
+      next.disposeTimer();
+      scheduler.recordWait(next.priority(), next.waitedNanos());
+      next.sink.success(permit);
+    }
+  }
+
+  private void expire(Waiter waiter) {
+    if (!waiter.state.compareAndSet(Waiter.WAITING, Waiter.ABANDONED)) {
+      return;
+    }
+    synchronized (lock) {
+      scheduler.remove(waiter);
+    }
+    reject(waiter.sink, "timeout", "Timed out waiting for OpenAI concurrency permit");
+  }
+
+  private void abandon(Waiter waiter) {
+    if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.ABANDONED)) {
+      waiter.disposeTimer();
+      synchronized (lock) {
+        scheduler.remove(waiter);
+      }
+      return;
+    }
+    // 許可の受け渡しとキャンセルが競合した場合は、受け取られなかった許可を返却しておく
+    Permit granted = waiter.permit;
+    if (granted != null) {
+      release(granted, Outcome.IGNORED);
+    }
+  }
+
+  private void reject(MonoSink<Permit> sink, String reason, String message) {
+    meterRegistry.counter("llm.openai.limiter.rejections", "reason", reason).increment();
+    sink.error(new OpenAiClientException(message));
+  }
+
+  /** 実行許可。{@link #release(Permit, Outcome)} で返却する。 */
+  public static final class Permit {
+
+    private final long acquiredAtNanos = System.nanoTime();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Permit() {}
+  }
+
+  /** 待機中の呼び出し。 */
+  private static final class Waiter extends LlmScheduler.Ticket {
+
+    private static final int WAITING = 0;
+    private static final int GRANTED = 1;
+    private static final int ABANDONED = 2;
+
+    private final MonoSink<Permit> sink;
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+    private volatile Disposable timer;
+    private volatile Permit permit;
+
+    private Waiter(LlmPriority priority, MonoSink<Permit> sink) {
+      super(priority);
+      this.sink = sink;
+    }
+
+    private void disposeTimer() {
+      Disposable current = timer;
+      if (current != null) {
+        current.dispose();
+      }
+    }
+  }
+}
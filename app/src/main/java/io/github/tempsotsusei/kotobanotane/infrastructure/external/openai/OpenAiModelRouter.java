@@ -0,0 +1,246 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import io.github.tempsotsusei.kotobanotane.config.OpenAiProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiRoutingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * ユースケース（スキーマ名）ごとに、呼び出すモデルを主モデルとフォールバック先の中から選ぶコンポーネント。
+ *
+ * <p>使用中のモデルの直近 {@code windowSize} 件の p95 が {@code latencySloMillis} を超えるか、エラー率が {@code
+ * errorRateThreshold} % を超えたら、優先順で次のモデルへ切り替える。フォールバック中は {@code probeIntervalMillis} ごとに 1
+ * 件だけ 1 つ上位のモデルへ回復確認の呼び出しを送り、SLO 内の成功が {@code recoveryProbes} 回続いたらそのモデルへ戻す。
+ *
+ * <p>切り替えは {@code llm.openai.routing.switches} に、使用中のモデルの順位（0 が主モデル）は {@code
+ * llm.openai.routing.active} に記録する。フォールバック先が設定されていないユースケースは常に主モデルを使い、記録も行わない。
+ */
+@Component
+public class OpenAiModelRouter {
+
+  private static final Logger log = LoggerFactory.getLogger(OpenAiModelRouter.class);
+
+  private final OpenAiRoutingProperties properties;
+  private final MeterRegistry meterRegistry;
+  private final String defaultModel;
+  private final Map<String, String> primaryModels = new ConcurrentHashMap<>();
+  private final Map<String, RouteState> states = new ConcurrentHashMap<>();
+
+  public OpenAiModelRouter(
+      OpenAiRoutingProperties properties,
+      OpenAiProperties openAiProperties,
+      MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+    this.defaultModel = openAiProperties.openaiModel();
+    properties
+        .routes()
+        .forEach(
+            (schemaName, route) -> {
+              String primary = route.primary() == null ? defaultModel : route.primary();
+              primaryModels.put(schemaName, primary);
+              Set<String> models = new LinkedHashSet<>();
+              models.add(primary);
+              models.addAll(route.fallbacks());
+              if (models.size() > 1) {
+                states.put(schemaName, new RouteState(schemaName, models.toArray(String[]::new)));
+              }
+            });
+  }
+
+  /**
+   * 今回の呼び出しに使うモデルを選ぶ。フォールバック中は回復確認のために上位のモデルを返すことがある。
+   *
+   * @param schemaName ユースケースを表すスキーマ名
+   * @return モデル名
+   */
+  public String select(String schemaName) {
+    RouteState state = states.get(schemaName);
+    return state == null ? primaryModel(schemaName) : state.select();
+  }
+
+  /**
+   * 回復確認を行わずに、現在使用中のモデルを返す。結果を記録しない呼び出し（ストリーミングなど）で使う。
+   *
+   * @param schemaName ユースケースを表すスキーマ名
+   * @return モデル名
+   */
+  public String currentModel(String schemaName) {
+    RouteState state = states.get(schemaName);
+    return state == null ? primaryModel(schemaName) : state.current();
+  }
+
+  /**
+   * ユースケースの主モデルを返す。
+   *
+   * @param schemaName ユースケースを表すスキーマ名
+   * @return モデル名
+   */
+  public String primaryModel(String schemaName) {
+    return primaryModels.getOrDefault(schemaName, defaultModel);
+  }
+
+  /**
+   * 1 回分の呼び出し結果を記録し、必要であればモデルを切り替える。
+   *
+   * @param schemaName ユースケースを表すスキーマ名
+   * @param model 呼び出したモデル
+   * @param elapsedNanos 呼び出しにかかった時間
+   * @param failed モデル側の失敗（5xx・429・タイムアウトなど）だったか
+   */
+  public void record(String schemaName, String model, long elapsedNanos, boolean failed) {
+    RouteState state = states.get(schemaName);
+    if (state != null) {
+      state.record(model, elapsedNanos, failed);
+    }
+  }
+
+  /** ユースケースごとのモデル候補と使用中の位置。 */
+  private final class RouteState {
+
+    private final String schemaName;
+    private final String[] models;
+    private final ModelWindow[] windows;
+    private final long sloNanos = TimeUnit.MILLISECONDS.toNanos(properties.latencySloMillis());
+    private final long probeIntervalNanos =
+        TimeUnit.MILLISECONDS.toNanos(properties.probeIntervalMillis());
+    private volatile int active;
+    private long lastProbeNanos;
+
+    private RouteState(String schemaName, String[] models) {
+      this.schemaName = schemaName;
+      this.models = models;
+      this.windows = new ModelWindow[models.length];
+      for (int i = 0; i < models.length; i++) {
+        windows[i] = new ModelWindow();
+      }
+      Gauge.builder("llm.openai.routing.active", this, state -> state.active)
+          .description("使用中のモデルの順位（0 が主モデル）")
+          .tag("schema", schemaName)
+          .register(meterRegistry);
+    }
+
+    private String current() {
+      return models[active];
+    }
+
+    private synchronized String select() {
+      if (active > 0 && System.nanoTime() - lastProbeNanos >= probeIntervalNanos) {
+        lastProbeNanos = System.nanoTime();
+        String probe = models[active - 1];
+        Counter.builder("llm.openai.routing.probes")
+            .tag("schema", schemaName)
+            .tag("model", probe)
+            .register(meterRegistry)
+            .increment();
+        return probe;
+      }
+      return models[active];
+    }
+
+    private synchronized void record(String model, long elapsedNanos, boolean failed) {
+      int index = Arrays.asList(models).indexOf(model);
+      if (index < 0) {
+        return;
+      }
+      ModelWindow window = windows[index];
+      window.add(elapsedNanos, failed, sloNanos);
+      if (index == active && active < models.length - 1) {
+        String reason = window.breach(sloNanos);
+        if (reason != null) {
+          switchTo(active + 1, reason);
+        }
+      } else if (index < active && window.consecutiveGood >= properties.recoveryProbes()) {
+        switchTo(index, "recovered");
+      }
+    }
+
+    /** 切り替え前後のモデルの履歴を捨て、切り替え後の状態だけで次の判定を行う。 */
+    private void switchTo(int target, String reason) {
+      String from = models[active];
+      windows[active].reset();
+      windows[target].reset();
+      active = target;
+      lastProbeNanos = System.nanoTime();
+      log.warn(
+          "OpenAI model route switched schema={} from={} to={} reason={}",
+          schemaName,
+          from,
+          models[target],
+          reason);
+      Counter.builder("llm.openai.routing.switches")
+          .description("モデルの切り替え回数")
+          .tag("schema", schemaName)
+          .tag("from", from)
+          .tag("to", models[target])
+          .tag("reason", reason)
+          .register(meterRegistry)
+          .increment();
+    }
+  }
+
+  /** モデルごとの直近のレイテンシと失敗。呼び出し元の RouteState のロック内でだけ使う。 */
+  private final class ModelWindow {
+
+    private final long[] latencies = new long[properties.windowSize()];
+    private final boolean[] failures = new boolean[properties.windowSize()];
+    private final int recomputeInterval = Math.max(1, properties.windowSize() / 10);
+    private int index;
+    private int count;
+    private int failureCount;
+    private int consecutiveGood;
+    private int sinceRecompute;
+    private long p95Nanos = -1;
+
+    private void add(long elapsedNanos, boolean failed, long sloNanos) {
+      if (count == latencies.length && failures[index]) {
+        failureCount--;
+      }
+      latencies[index] = elapsedNanos;
+      failures[index] = failed;
+      if (failed) {
+        failureCount++;
+      }
+      index = (index + 1) % latencies.length;
+      count = Math.min(count + 1, latencies.length);
+      consecutiveGood = !failed && elapsedNanos <= sloNanos ? consecutiveGood + 1 : 0;
+    }
+
+    /** SLO を外れていれば理由（errors / latency）を、外れていなければ null を返す。 */
+    private String breach(long sloNanos) {
+      if (count < properties.minSamples()) {
+        return null;
+      }
+      if (failureCount * 100L > (long) properties.errorRateThreshold() * count) {
+        return "errors";
+      }
+      // ロックの中で毎回ソートしないよう、最初に件数が揃った時点以降は一定件数ごとに計算し直す
+      if (p95Nanos < 0 || ++sinceRecompute >= recomputeInterval) {
+        sinceRecompute = 0;
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        p95Nanos = sorted[(count - 1) * 95 / 100];
+      }
+      return p95Nanos > sloNanos ? "latency" : null;
+    }
+
+    private void reset() {
+      index = 0;
+      count = 0;
+      failureCount = 0;
+      consecutiveGood = 0;
+      sinceRecompute = 0;
+      p95Nanos = -1;
+    }
+  }
+}
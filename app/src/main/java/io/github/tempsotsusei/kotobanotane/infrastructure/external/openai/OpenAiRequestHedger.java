@@ -0,0 +1,148 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import io.github.tempsotsusei.kotobanotane.config.OpenAiHedgingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * 応答が遅い OpenAI 呼び出しに予備リクエストを重ねて、テールレイテンシを抑えるコンポーネント。
+ *
+ * <p>有効なユースケースでは、1 回目の呼び出しが直近レイテンシの {@code delayPercentile} パーセンタイルを過ぎても応答しない場合に同じリクエストをもう 1
+ * 本送り、先に応答した方を採用してもう一方はキャンセルする。予備リクエストは通常リクエストの {@code budgetPercent} % までに制限する（トークンバケット）。
+ *
+ * <p>1 回目が失敗した場合はその失敗をそのまま返し（リトライは呼び出し元に任せる）、予備リクエストの失敗は無視して 1 回目の結果を待つ。
+ */
+@Component
+public class OpenAiRequestHedger {
+
+  /** 予備リクエスト 1 本に必要なトークン（千分率で管理する）。 */
+  private static final long HEDGE_COST = 1_000L;
+
+  /** バケットに貯められる上限。短時間に予備リクエストが集中しすぎないようにする。 */
+  private static final long MAX_BUDGET = 10 * HEDGE_COST;
+
+  private final OpenAiHedgingProperties properties;
+  private final MeterRegistry meterRegistry;
+  private final Map<String, UseCaseState> states = new ConcurrentHashMap<>();
+
+  public OpenAiRequestHedger(OpenAiHedgingProperties properties, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * ユースケースの設定に従い、必要であれば予備リクエストを重ねて {@code attempt} を実行する。
+   *
+   * @param schemaName ユースケースを表すスキーマ名
+   * @param attempt 1 回分の呼び出し（購読ごとに新しい通信を行うこと）
+   * @return 先に得られた結果を発行する Mono
+   */
+  public <T> Mono<T> execute(String schemaName, Supplier<Mono<T>> attempt) {
+    if (!properties.isEnabledFor(schemaName)) {
+      return attempt.get();
+    }
+    UseCaseState state = states.computeIfAbsent(schemaName, UseCaseState::new);
+    return Mono.defer(
+        () -> {
+          state.deposit();
+          state.count("eligible");
+          Mono<T> primary = state.timed(attempt.get());
+          Duration delay = state.hedgeDelay();
+          if (delay == null) {
+            return primary;
+          }
+          Mono<T> backup =
+              Mono.delay(delay)
+                  .flatMap(
+                      tick -> {
+                        if (!state.tryWithdraw()) {
+                          state.count("skipped");
+                          return Mono.<T>never();
+                        }
+                        state.count("fired");
+                        return state
+                            .timed(attempt.get())
+                            .doOnNext(result -> state.count("won"))
+                            .onErrorResume(error -> Mono.never());
+                      });
+          return Mono.firstWithSignal(primary, backup);
+        });
+  }
+
+  /** ユースケースごとのレイテンシ履歴と予算。 */
+  private final class UseCaseState {
+
+    private final String schemaName;
+    private final long[] latencies = new long[properties.windowSize()];
+    private final int recomputeInterval = Math.max(1, properties.windowSize() / 10);
+    private int index;
+    private int count;
+    private int sinceRecompute;
+    private long budget;
+    private volatile Duration hedgeDelay;
+
+    private UseCaseState(String schemaName) {
+      this.schemaName = schemaName;
+    }
+
+    /** 成功またはキャンセルまでの時間を記録する。キャンセル時の値は実際の所要時間の下限として扱う。 */
+    private <T> Mono<T> timed(Mono<T> call) {
+      return Mono.defer(
+          () -> {
+            long startedAt = System.nanoTime();
+            return call.doOnSuccess(result -> record(System.nanoTime() - startedAt))
+                .doOnCancel(() -> record(System.nanoTime() - startedAt));
+          });
+    }
+
+    private Duration hedgeDelay() {
+      return hedgeDelay;
+    }
+
+    private synchronized void deposit() {
+      budget = Math.min(MAX_BUDGET, budget + properties.budgetPercent() * HEDGE_COST / 100);
+    }
+
+    private synchronized boolean tryWithdraw() {
+      if (budget < HEDGE_COST) {
+        return false;
+      }
+      budget -= HEDGE_COST;
+      return true;
+    }
+
+    private synchronized void record(long elapsedNanos) {
+      latencies[index] = elapsedNanos;
+      index = (index + 1) % latencies.length;
+      count = Math.min(count + 1, latencies.length);
+      // 毎回ソートしないよう、最初に件数が揃った時点以降は一定件数ごとに計算し直す
+      if (count >= properties.minSamples()
+          && (hedgeDelay == null || ++sinceRecompute >= recomputeInterval)) {
+        sinceRecompute = 0;
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        long percentile = sorted[(count - 1) * properties.delayPercentile() / 100];
+        hedgeDelay =
+            Duration.ofMillis(
+                Math.max(
+                    properties.minDelayMillis(), TimeUnit.NANOSECONDS.toMillis(percentile)));
+      }
+    }
+
+    private void count(String result) {
+      Counter.builder("llm.openai.hedge")
+          .tag("schema", schemaName)
+          .tag("result", result)
+          .register(meterRegistry)
+          .increment();
+    }
+  }
+}
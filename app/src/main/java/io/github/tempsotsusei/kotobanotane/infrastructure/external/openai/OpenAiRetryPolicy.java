@@ -0,0 +1,138 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmDeadline;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiRetryProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+/**
+ * OpenAI 呼び出しのリトライ待ち時間とプロセス全体のリトライ予算を管理するコンポーネント。
+ *
+ * <p>待ち時間は full jitter（{@code 0〜min(max, base×2^n)} の一様乱数）で決め、429 などでサーバーが {@code Retry-After} や {@code
+ * x-ratelimit-reset-*} を返した場合はその時刻まで待ってから、同時に再開しないよう {@code base} 以内の揺らぎを足す。
+ *
+ * <p>リトライは直近 {@code windowSeconds} 秒の初回試行数の {@code budgetPercent} %（少なくとも {@code minRetriesPerWindow}
+ * 件）までに制限し、過負荷時に全呼び出し元のリトライが重なって負荷を増幅しないようにする。締め切りのある呼び出しでは、待ち時間の後に
+ * {@code minAttemptMillis} 以上残らないリトライは行わない。
+ */
+@Component
+public class OpenAiRetryPolicy {
+
+  /** リトライ可否の判定結果。 */
+  public sealed interface Decision {
+
+    /** {@code delay} 待ってからリトライする。 */
+    record Retry(Duration delay, boolean hinted) implements Decision {}
+
+    /** リトライせずに失敗させる。 */
+    record GiveUp(String reason) implements Decision {}
+  }
+
+  private final OpenAiRetryProperties properties;
+  private final MeterRegistry meterRegistry;
+  private final long[] bucketSeconds;
+  private final int[] firstAttempts;
+  private final int[] retries;
+
+  public OpenAiRetryPolicy(OpenAiRetryProperties properties, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+    this.bucketSeconds = new long[properties.windowSeconds()];
+    this.firstAttempts = new int[properties.windowSeconds()];
+    this.retries = new int[properties.windowSeconds()];
+  }
+
+  /** 初回試行を記録する。リトライ予算の母数になる。 */
+  public synchronized void onFirstAttempt() {
+    firstAttempts[bucket(currentSecond())]++;
+  }
+
+  /**
+   * 失敗した試行についてリトライするかどうかと待ち時間を決める。リトライする場合は予算を消費する。
+   *
+   * @param failedAttempt 失敗した試行の番号（1 始まり）
+   * @param failure 失敗内容
+   * @param deadline 呼び出しの締め切り
+   * @return 判定結果
+   */
+  public Decision decide(int failedAttempt, Throwable failure, LlmDeadline deadline) {
+    Optional<Duration> hint =
+        failure instanceof WebClientResponseException e
+            ? RateLimitHints.parse(e.getHeaders())
+            : Optional.empty();
+    if (hint.isPresent() && hint.get().toMillis() > properties.maxRetryAfterMillis()) {
+      count("hint_too_long");
+      return new Decision.GiveUp("server asked to wait " + hint.get().toMillis() + "ms");
+    }
+    Duration delay =
+        hint.map(wait -> wait.plusMillis(random(properties.baseBackoffMillis())))
+            .orElseGet(() -> Duration.ofMillis(random(backoffCeiling(failedAttempt))));
+    if (!deadline.allows(delay.plusMillis(properties.minAttemptMillis()))) {
+      count("deadline");
+      return new Decision.GiveUp("retry cannot finish before the deadline");
+    }
+    if (!tryAcquireRetry()) {
+      count("budget_exhausted");
+      return new Decision.GiveUp("retry budget exhausted");
+    }
+    count(hint.isPresent() ? "hinted" : "backoff");
+    Timer.builder("llm.openai.retry.delay")
+        .description("リトライ前の待ち時間")
+        .register(meterRegistry)
+        .record(delay.toNanos(), TimeUnit.NANOSECONDS);
+    return new Decision.Retry(delay, hint.isPresent());
+  }
+
+  private synchronized boolean tryAcquireRetry() {
+    long now = currentSecond();
+    int firstTotal = 0;
+    int retryTotal = 0;
+    for (int i = 0; i < bucketSeconds.length; i++) {
+      if (now - bucketSeconds[i] < bucketSeconds.length) {
+        firstTotal += firstAttempts[i];
+        retryTotal += retries[i];
+      }
+    }
+    long allowed =
+        Math.max(properties.minRetriesPerWindow(), firstTotal * properties.budgetPercent() / 100L);
+    if (retryTotal >= allowed) {
+      return false;
+    }
+    retries[bucket(now)]++;
+    return true;
+  }
+
+  /** 秒単位のバケット位置を返す。古い秒のバケットは使い回す前に空にする。 */
+  private int bucket(long second) {
+    int index = (int) Math.floorMod(second, (long) bucketSeconds.length);
+    if (bucketSeconds[index] != second) {
+      bucketSeconds[index] = second;
+      firstAttempts[index] = 0;
+      retries[index] = 0;
+    }
+    return index;
+  }
+
+  private long currentSecond() {
+    return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+  }
+
+  private long backoffCeiling(int failedAttempt) {
+    int shift = Math.min(Math.max(0, failedAttempt - 1), 20);
+    return Math.min(properties.baseBackoffMillis() << shift, properties.maxBackoffMillis());
+  }
+
+  private static long random(long boundMillis) {
+    return ThreadLocalRandom.current().nextLong(boundMillis + 1);
+  }
+
+  private void count(String result) {
+    meterRegistry.counter("llm.openai.retry", "result", result).increment();
+  }
+}
@@ -0,0 +1,142 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import io.github.tempsotsusei.kotobanotane.config.OpenAiOutputBudgetProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Component;
+
+/**
+ * ユースケース（スキーマ名）ごとに実測の出力トークン数を記録し、{@code max_output_tokens} を決めるコンポーネント。
+ *
+ * <p>直近 {@code windowSize} 件の出力トークン数の {@code percentile} パーセンタイルに {@code headroomPercent} %
+ * を上乗せした値を使う。入力が普段（直近の中央値）より長い場合は、出力も長くなりやすいため入力の比率で伸ばす。件数が {@code minSamples}
+ * に満たない間や、計算結果がリクエストの上限を超える場合は上限をそのまま使う。
+ *
+ * <p>出力が上限で途中終了した場合は {@link #onTruncated(String, int, int)} で通知する。以降の見積もりが伸びるよう、実際に必要だった量の下限として
+ * 使った値の 2 倍を記録する。
+ */
+@Component
+public class OutputTokenBudget {
+
+  private final OpenAiOutputBudgetProperties properties;
+  private final MeterRegistry meterRegistry;
+  private final Map<String, UseCaseState> states = new ConcurrentHashMap<>();
+
+  public OutputTokenBudget(OpenAiOutputBudgetProperties properties, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * 今回のリクエストに使う {@code max_output_tokens} を決める。
+   *
+   * @param schemaName ユースケースを表すスキーマ名
+   * @param userInput ユーザー入力（入力トークン数の概算に使う）
+   * @param ceiling リクエストごとの上限
+   * @return {@code minTokens} 以上 {@code ceiling} 以下の値
+   */
+  public int resolve(String schemaName, String userInput, int ceiling) {
+    if (!properties.enabled()) {
+      return ceiling;
+    }
+    UseCaseState state = states.get(schemaName);
+    int budget = state == null ? ceiling : state.budgetFor(estimate(userInput), ceiling);
+    DistributionSummary.builder("llm.openai.output_budget")
+        .description("リクエストに設定した max_output_tokens")
+        .tag("schema", schemaName)
+        .register(meterRegistry)
+        .record(budget);
+    return budget;
+  }
+
+  /**
+   * 正常に完了した呼び出しの出力トークン数を記録する。
+   *
+   * @param schemaName ユースケースを表すスキーマ名
+   * @param userInput ユーザー入力
+   * @param outputTokens 実際の出力トークン数
+   */
+  public void record(String schemaName, String userInput, long outputTokens) {
+    if (!properties.enabled() || outputTokens <= 0) {
+      return;
+    }
+    states
+        .computeIfAbsent(schemaName, key -> new UseCaseState())
+        .record(outputTokens, estimate(userInput));
+  }
+
+  /**
+   * 出力が {@code max_output_tokens} に達して途中で終わったことを記録する。
+   *
+   * @param schemaName ユースケースを表すスキーマ名
+   * @param usedBudget そのリクエストに設定した値
+   * @param ceiling リクエストごとの上限
+   */
+  public void onTruncated(String schemaName, int usedBudget, int ceiling) {
+    Counter.builder("llm.openai.output_budget.truncated")
+        .tag("schema", schemaName)
+        .register(meterRegistry)
+        .increment();
+    if (properties.enabled()) {
+      states
+          .computeIfAbsent(schemaName, key -> new UseCaseState())
+          .record(Math.min((long) usedBudget * 2, ceiling), 0);
+    }
+  }
+
+  private static int estimate(String userInput) {
+    return JapaneseTokenEstimator.estimate(userInput);
+  }
+
+  /** ユースケースごとの直近の出力・入力トークン数。 */
+  private final class UseCaseState {
+
+    private final long[] outputs = new long[properties.windowSize()];
+    private final int[] inputs = new int[properties.windowSize()];
+    private final int recomputeInterval = Math.max(1, properties.windowSize() / 10);
+    private int index;
+    private int count;
+    private int sinceRecompute;
+    private volatile Estimate estimate;
+
+    private int budgetFor(int estimatedInput, int ceiling) {
+      Estimate current = estimate;
+      if (current == null) {
+        return ceiling;
+      }
+      double scale =
+          current.typicalInput() > 0
+              ? Math.max(1.0, (double) estimatedInput / current.typicalInput())
+              : 1.0;
+      double budget =
+          current.outputPercentile() * scale * (100 + properties.headroomPercent()) / 100.0;
+      return (int) Math.min(ceiling, Math.max(properties.minTokens(), Math.ceil(budget)));
+    }
+
+    /** 入力が 0 の記録（途中終了の補正）は中央値の計算から除く。 */
+    private synchronized void record(long outputTokens, int estimatedInput) {
+      outputs[index] = outputTokens;
+      inputs[index] = estimatedInput;
+      index = (index + 1) % outputs.length;
+      count = Math.min(count + 1, outputs.length);
+      // 毎回ソートしないよう、最初に件数が揃った時点以降は一定件数ごとに計算し直す
+      if (count >= properties.minSamples()
+          && (estimate == null || ++sinceRecompute >= recomputeInterval)) {
+        sinceRecompute = 0;
+        long[] sortedOutputs = Arrays.copyOf(outputs, count);
+        Arrays.sort(sortedOutputs);
+        int[] sortedInputs = Arrays.stream(inputs, 0, count).filter(v -> v > 0).sorted().toArray();
+        estimate =
+            new Estimate(
+                sortedOutputs[(count - 1) * properties.percentile() / 100],
+                sortedInputs.length == 0 ? 0 : sortedInputs[sortedInputs.length / 2]);
+      }
+    }
+  }
+
+  private record Estimate(long outputPercentile, int typicalInput) {}
+}
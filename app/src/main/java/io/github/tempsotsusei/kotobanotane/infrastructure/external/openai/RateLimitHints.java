@@ -0,0 +1,113 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * OpenAI のエラーレスポンスヘッダーから、次に呼び出してよいまでの待ち時間を読み取るヘルパー。
+ *
+ * <p>優先順は {@code retry-after-ms} → {@code Retry-After}（秒または HTTP 日付）→ {@code x-ratelimit-reset-*}。最後のものは残量が 0
+ * になっている種類（requests / tokens）のうち長い方を使う。
+ */
+final class RateLimitHints {
+
+  /** {@code 1s}, {@code 6m0s}, {@code 20ms}, {@code 1h2m3.5s} のような Go 形式の期間。 */
+  private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+  private static final String[] RESET_KINDS = {"requests", "tokens"};
+
+  private RateLimitHints() {}
+
+  /**
+   * ヘッダーから待ち時間を読み取る。
+   *
+   * @param headers レスポンスヘッダー
+   * @return 待ち時間（指定が無い、または解釈できない場合は空）
+   */
+  static Optional<Duration> parse(HttpHeaders headers) {
+    if (headers == null) {
+      return Optional.empty();
+    }
+    Optional<Duration> retryAfterMs = parseMillis(headers.getFirst("retry-after-ms"));
+    if (retryAfterMs.isPresent()) {
+      return retryAfterMs;
+    }
+    Optional<Duration> retryAfter = parseRetryAfter(headers.getFirst(HttpHeaders.RETRY_AFTER));
+    if (retryAfter.isPresent()) {
+      return retryAfter;
+    }
+    Duration longest = null;
+    for (String kind : RESET_KINDS) {
+      if (!"0".equals(headers.getFirst("x-ratelimit-remaining-" + kind))) {
+        continue;
+      }
+      Optional<Duration> reset = parseDuration(headers.getFirst("x-ratelimit-reset-" + kind));
+      if (reset.isPresent() && (longest == null || reset.get().compareTo(longest) > 0)) {
+        longest = reset.get();
+      }
+    }
+    return Optional.ofNullable(longest);
+  }
+
+  private static Optional<Duration> parseMillis(String value) {
+    if (value == null || value.isBlank()) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(Duration.ofMillis(Math.round(Double.parseDouble(value.strip()))))
+          .filter(duration -> !duration.isNegative());
+    } catch (NumberFormatException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static Optional<Duration> parseRetryAfter(String value) {
+    if (value == null || value.isBlank()) {
+      return Optional.empty();
+    }
+    String trimmed = value.strip();
+    try {
+      return Optional.of(Duration.ofMillis(Math.round(Double.parseDouble(trimmed) * 1000)))
+          .filter(duration -> !duration.isNegative());
+    } catch (NumberFormatException e) {
+      // HTTP 日付形式として解釈する
+    }
+    try {
+      ZonedDateTime at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+      Duration untilThen = Duration.between(ZonedDateTime.now(at.getZone()), at);
+      return Optional.of(untilThen.isNegative() ? Duration.ZERO : untilThen);
+    } catch (DateTimeParseException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static Optional<Duration> parseDuration(String value) {
+    if (value == null || value.isBlank()) {
+      return Optional.empty();
+    }
+    Matcher matcher = DURATION_PART.matcher(value.strip());
+    double millis = 0;
+    int end = 0;
+    while (matcher.find() && matcher.start() == end) {
+      double amount = Double.parseDouble(matcher.group(1));
+      millis +=
+          switch (matcher.group(2)) {
+            case "h" -> amount * 3_600_000;
+            case "m" -> amount * 60_000;
+            case "s" -> amount * 1_000;
+            default -> amount;
+          };
+      end = matcher.end();
+    }
+    if (end == 0 || end != value.strip().length()) {
+      return Optional.empty();
+    }
+    return Optional.of(Duration.ofMillis(Math.round(millis)));
+  }
+}
@@ -0,0 +1,111 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiStructuredRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.text.Normalizer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * 同一内容の structured リクエストが同時に来た場合に、OpenAI 呼び出しを 1 本にまとめるコンポーネント。
+ *
+ * <p>キーは（スキーマ名・システムプロンプト・正規化した入力・モデル）。先着の呼び出しだけが実際に通信し、処理中に来た重複呼び出しは同じ結果を共有する。完了後はキーを外すため、結果のキャッシュは行わない。
+ */
+@Component
+public class StructuredRequestCoalescer {
+
+  private static final Logger log = LoggerFactory.getLogger(StructuredRequestCoalescer.class);
+  private static final String DEFAULT_SCHEMA_NAME = "structured_output";
+
+  private final Map<CoalescingKey, Flight> inFlight = new ConcurrentHashMap<>();
+  private final MeterRegistry meterRegistry;
+
+  public StructuredRequestCoalescer(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    Gauge.builder("llm.openai.coalescing.inflight", inFlight, Map::size)
+        .description("現在処理中の重複排除対象リクエスト数")
+        .register(meterRegistry);
+  }
+
+  /**
+   * 同一キーの呼び出しが処理中であればその結果を共有し、なければ {@code call} を実行する。
+   *
+   * @param request リクエスト情報
+   * @param model 利用モデル
+   * @param call 実際の OpenAI 呼び出し
+   * @return 共有された結果を発行する Mono
+   */
+  public Mono<JsonNode> execute(
+      OpenAiStructuredRequest request, String model, Supplier<Mono<JsonNode>> call) {
+    CoalescingKey key = CoalescingKey.of(request, model);
+    return Mono.defer(
+        () -> {
+          Flight created = new Flight(key, call);
+          Flight flight = inFlight.putIfAbsent(key, created);
+          if (flight == null) {
+            counter("llm.openai.coalescing.leaders", key.schemaName()).increment();
+            return created.shared;
+          }
+          flight.joiners.incrementAndGet();
+          counter("llm.openai.coalescing.saved", key.schemaName()).increment();
+          return flight.shared;
+        });
+  }
+
+  private Counter counter(String name, String schemaName) {
+    return Counter.builder(name).tag("schema", schemaName).register(meterRegistry);
+  }
+
+  /** 入力を NFKC 正規化し、前後の空白除去と連続空白の畳み込みを行う。 */
+  static String normalize(String input) {
+    String normalized = Normalizer.normalize(input, Normalizer.Form.NFKC);
+    return normalized.strip().replaceAll("\\s+", " ");
+  }
+
+  /** 処理中の 1 本の呼び出し。完了時に自身をマップから外す。 */
+  private final class Flight {
+
+    private final AtomicInteger joiners = new AtomicInteger();
+    private final Mono<JsonNode> shared;
+
+    private Flight(CoalescingKey key, Supplier<Mono<JsonNode>> call) {
+      this.shared =
+          Mono.defer(call)
+              .doFinally(
+                  signal -> {
+                    inFlight.remove(key, this);
+                    int saved = joiners.get();
+                    if (saved > 0) {
+                      log.info(
+                          "Coalesced OpenAI request schema={} inputHash={} savedCalls={}",
+                          key.schemaName(),
+                          Integer.toHexString(key.normalizedInput().hashCode()),
+                          saved);
+                    }
+                  })
+              .share();
+    }
+  }
+
+  /** 重複判定に用いるキー。 */
+  record CoalescingKey(
+      String schemaName, String systemPrompt, String normalizedInput, String model) {
+
+    static CoalescingKey of(OpenAiStructuredRequest request, String model) {
+      return new CoalescingKey(
+          request.optionalSchemaName().orElse(DEFAULT_SCHEMA_NAME),
+          request.systemPrompt(),
+          normalize(request.userInput()),
+          model);
+    }
+  }
+}
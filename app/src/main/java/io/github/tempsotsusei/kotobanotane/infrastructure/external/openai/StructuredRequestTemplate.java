@@ -0,0 +1,139 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiClientException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Responses API のリクエストボディのうち、呼び出しごとに変わらない部分（モデル・システムプロンプト・スキーマ）を事前にシリアライズしたテンプレート。
+ *
+ * <p>ボディは {@code prefix + ユーザー入力(JSON 文字列) + middle + max_output_tokens + "}"} のバイト列として組み立てる。ユーザー入力だけを毎回 JSON
+ * エスケープして差し込むため、スキーマやプロンプトの再シリアライズと中間 Map の生成が不要になる。インスタンスは不変でスレッドセーフ。
+ *
+ * <p>OpenAI のプロンプトキャッシュは先頭から一致する部分にだけ効くため、スキーマ（{@code text.format}）とシステムプロンプトを毎回同じバイト列で先に置き、
+ * 呼び出しごとに変わるユーザー入力と {@code max_output_tokens} は末尾に寄せる。同じプロンプト・スキーマの呼び出しが同じキャッシュに振り分けられるよう、
+ * 両者のハッシュから作った {@code prompt_cache_key} も付ける。
+ */
+final class StructuredRequestTemplate {
+
+  private static final byte[] CLOSING = {'}'};
+
+  private final byte[] prefix;
+  private final byte[] middle;
+
+  private StructuredRequestTemplate(byte[] prefix, byte[] middle) {
+    this.prefix = prefix;
+    this.middle = middle;
+  }
+
+  /**
+   * テンプレートを作成する。
+   *
+   * @param objectMapper シリアライズに使う ObjectMapper
+   * @param model 利用モデル
+   * @param systemPrompt システムプロンプト
+   * @param schemaName structured outputs のスキーマ名
+   * @param schema JSON Schema
+   * @param stream ストリーミングモードで呼び出すか
+   * @return 作成したテンプレート
+   */
+  static StructuredRequestTemplate create(
+      ObjectMapper objectMapper,
+      String model,
+      String systemPrompt,
+      String schemaName,
+      JsonNode schema,
+      boolean stream) {
+    String placeholder = "__user_input_" + UUID.randomUUID() + "__";
+    Map<String, Object> payload = new LinkedHashMap<>();
+    payload.put("model", model);
+    if (stream) {
+      payload.put("stream", true);
+    }
+    payload.put("prompt_cache_key", promptCacheKey(objectMapper, schemaName, systemPrompt, schema));
+    Map<String, Object> responseFormat = new LinkedHashMap<>();
+    responseFormat.put("type", "json_schema");
+    responseFormat.put("name", schemaName);
+    responseFormat.put("schema", schema);
+    payload.put("text", Map.of("format", responseFormat));
+    payload.put(
+        "input",
+        List.of(
+            Map.of("role", "system", "content", systemPrompt),
+            Map.of("role", "user", "content", placeholder)));
+
+    String json;
+    try {
+      json = objectMapper.writeValueAsString(payload);
+    } catch (JsonProcessingException e) {
+      throw new OpenAiClientException("Failed to serialize OpenAI request template", e);
+    }
+    String quotedPlaceholder = '"' + placeholder + '"';
+    int index = json.indexOf(quotedPlaceholder);
+    // 末尾の "}" を外し、max_output_tokens を最後のフィールドとして差し込めるようにする
+    String rest = json.substring(index + quotedPlaceholder.length(), json.length() - 1);
+    return new StructuredRequestTemplate(
+        json.substring(0, index).getBytes(StandardCharsets.UTF_8),
+        (rest + ",\"max_output_tokens\":").getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * プロンプトキャッシュの振り分けに使うキーを作る。プロンプトかスキーマが変われば別のキーになる。
+   *
+   * @param objectMapper スキーマのシリアライズに使う ObjectMapper
+   * @param schemaName スキーマ名（キーの先頭に付けて用途を読み取れるようにする）
+   * @param systemPrompt システムプロンプト
+   * @param schema JSON Schema
+   * @return {@code スキーマ名-ハッシュ先頭16桁}
+   */
+  static String promptCacheKey(
+      ObjectMapper objectMapper, String schemaName, String systemPrompt, JsonNode schema) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+      digest.update(systemPrompt.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      digest.update(objectMapper.writeValueAsBytes(schema));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    } catch (JsonProcessingException e) {
+      throw new OpenAiClientException("Failed to serialize OpenAI request schema", e);
+    }
+    return schemaName + "-" + HexFormat.of().formatHex(digest.digest(), 0, 8);
+  }
+
+  /**
+   * ユーザー入力と出力トークン上限を差し込んだリクエストボディを返す。
+   *
+   * @param objectMapper ユーザー入力のエスケープに使う ObjectMapper
+   * @param userInput ユーザー入力
+   * @param maxOutputTokens 出力トークン上限
+   * @return UTF-8 の JSON バイト列
+   */
+  byte[] render(ObjectMapper objectMapper, String userInput, int maxOutputTokens) {
+    byte[] input;
+    try {
+      input = objectMapper.writeValueAsBytes(userInput);
+    } catch (JsonProcessingException e) {
+      throw new OpenAiClientException("Failed to serialize OpenAI user input", e);
+    }
+    byte[] tokens = Integer.toString(maxOutputTokens).getBytes(StandardCharsets.US_ASCII);
+    byte[] body =
+        new byte[prefix.length + input.length + middle.length + tokens.length + CLOSING.length];
+    int offset = 0;
+    for (byte[] part : new byte[][] {prefix, input, middle, tokens, CLOSING}) {
+      System.arraycopy(part, 0, body, offset, part.length);
+      offset += part.length;
+    }
+    return body;
+  }
+}
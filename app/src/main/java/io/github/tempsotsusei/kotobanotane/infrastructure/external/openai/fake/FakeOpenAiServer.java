@@ -0,0 +1,310 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.fake;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.tempsotsusei.kotobanotane.config.FakeOpenAiProperties;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+/**
+ * 負荷試験用に OpenAI の Responses API（{@code POST /v1/responses}）を真似るローカルサーバー。
+ *
+ * <p>{@code fake-openai} プロファイルで起動し、{@code OPENAI_BASE_URL=http://127.0.0.1:<port>/v1}
+ * を向ければネットワークなしでアプリ全体を動かせる。リクエストの {@code text.format.schema} を満たす出力を返し、応答時間は設定した分布から、
+ * 429（{@code Retry-After} 付き）と 500/503 は設定した割合で抽選する。{@code stream: true} のリクエストには SSE で差分を一定間隔で送り、
+ * 一部は途中で error イベントを送って打ち切る。出力が {@code max_output_tokens} を超える場合は {@code incomplete} で返す。
+ *
+ * <p>Reactor Netty の非ブロッキングなサーバーで待ち時間を作るため、遅い応答を大量に抱えてもスレッドを占有しない。乱数の種を固定すると抽選の並びを再現できる。
+ * バッチ API は対象外。
+ */
+@Component
+@Profile("fake-openai")
+public class FakeOpenAiServer implements SmartLifecycle {
+
+  private static final Logger log = LoggerFactory.getLogger(FakeOpenAiServer.class);
+
+  /** プロンプトキャッシュが効き始める入力トークン数と、キャッシュされる単位。 */
+  private static final int CACHE_MIN_TOKENS = 1_024;
+
+  private static final int CACHE_BLOCK_TOKENS = 128;
+
+  private static final int MAX_REMEMBERED_CACHE_KEYS = 10_000;
+
+  private final FakeOpenAiProperties properties;
+  private final ObjectMapper objectMapper;
+  private final Random random;
+  private final FakeStructuredOutputGenerator generator;
+  private final Set<String> warmCacheKeys = ConcurrentHashMap.newKeySet();
+  private volatile DisposableServer server;
+
+  public FakeOpenAiServer(FakeOpenAiProperties properties, ObjectMapper objectMapper) {
+    this.properties = properties;
+    this.objectMapper = objectMapper;
+    this.random = properties.seed() == 0 ? new Random() : new Random(properties.seed());
+    this.generator = new FakeStructuredOutputGenerator(objectMapper, random);
+  }
+
+  @Override
+  public void start() {
+    server =
+        HttpServer.create()
+            .host(properties.host())
+            .port(properties.port())
+            .route(routes -> routes.post("/v1/responses", this::handle))
+            .bindNow();
+    log.info(
+        "Fake OpenAI server listening on http://{}:{}/v1 latency={} median={}ms p99={}ms"
+            + " rateLimit={}% serverError={}%",
+        properties.host(),
+        server.port(),
+        properties.latencyDistribution(),
+        properties.latencyMedianMillis(),
+        properties.latencyP99Millis(),
+        properties.rateLimitPercent(),
+        properties.serverErrorPercent());
+  }
+
+  @Override
+  public void stop() {
+    DisposableServer current = server;
+    if (current != null) {
+      current.disposeNow();
+      server = null;
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return server != null;
+  }
+
+  /** 待ち受けているポート。起動前は -1。 */
+  public int port() {
+    DisposableServer current = server;
+    return current == null ? -1 : current.port();
+  }
+
+  private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+    return request
+        .receive()
+        .aggregate()
+        .asString(StandardCharsets.UTF_8)
+        .flatMap(body -> respond(body, response));
+  }
+
+  private Mono<Void> respond(String body, HttpServerResponse response) {
+    JsonNode payload;
+    try {
+      payload = objectMapper.readTree(body);
+    } catch (JsonProcessingException e) {
+      return sendError(response, 400, "invalid_request_error", "Request body is not JSON");
+    }
+    int roll = random.nextInt(100);
+    if (roll < properties.rateLimitPercent()) {
+      // 実際のレート制限と同じく、待たずにすぐ返す
+      long retryAfterMillis = properties.retryAfterMillis();
+      response
+          .header("retry-after-ms", Long.toString(retryAfterMillis))
+          .header("Retry-After", Long.toString(Math.ceilDiv(retryAfterMillis, 1_000L)));
+      return sendError(response, 429, "rate_limit_exceeded", "Rate limit reached (fake)");
+    }
+    Duration latency = sampleLatency();
+    if (roll < properties.rateLimitPercent() + properties.serverErrorPercent()) {
+      int status = random.nextBoolean() ? 500 : 503;
+      return Mono.delay(latency)
+          .then(sendError(response, status, "server_error", "Injected failure (fake)"));
+    }
+    FakeResponse fake = buildResponse(payload);
+    if (payload.path("stream").asBoolean(false)) {
+      return stream(response, fake, latency);
+    }
+    return Mono.delay(latency).then(sendJson(response, 200, completedResponse(fake)));
+  }
+
+  private FakeResponse buildResponse(JsonNode payload) {
+    String userInput = "";
+    int inputChars = 0;
+    int systemChars = 0;
+    for (JsonNode message : payload.path("input")) {
+      String content = message.path("content").asText("");
+      inputChars += content.length();
+      if ("system".equals(message.path("role").asText())) {
+        systemChars += content.length();
+      } else {
+        userInput = content;
+      }
+    }
+    JsonNode schema = payload.path("text").path("format").path("schema");
+    String text = generator.generate(schema, userInput).toString();
+    // 日本語はおおよそ 1 文字 1 トークンとして数える
+    int outputTokens = Math.max(1, text.length());
+    int maxOutputTokens = payload.path("max_output_tokens").asInt(Integer.MAX_VALUE);
+    boolean truncated = outputTokens > maxOutputTokens;
+    if (truncated) {
+      text = text.substring(0, Math.max(0, maxOutputTokens));
+      outputTokens = maxOutputTokens;
+    }
+    return new FakeResponse(
+        "resp_fake_" + UUID.randomUUID().toString().replace("-", ""),
+        payload.path("model").asText("fake-model"),
+        text,
+        truncated,
+        inputChars,
+        cachedTokens(payload.path("prompt_cache_key").asText(""), systemChars),
+        outputTokens);
+  }
+
+  /** 同じ prompt_cache_key を見たことがあれば、システムプロンプト分を 128 トークン単位でキャッシュ済みとして数える。 */
+  private int cachedTokens(String promptCacheKey, int systemTokens) {
+    if (promptCacheKey.isEmpty() || systemTokens < CACHE_MIN_TOKENS) {
+      return 0;
+    }
+    if (warmCacheKeys.contains(promptCacheKey)) {
+      return systemTokens / CACHE_BLOCK_TOKENS * CACHE_BLOCK_TOKENS;
+    }
+    if (warmCacheKeys.size() < MAX_REMEMBERED_CACHE_KEYS) {
+      warmCacheKeys.add(promptCacheKey);
+    }
+    return 0;
+  }
+
+  private Mono<Void> stream(HttpServerResponse response, FakeResponse fake, Duration latency) {
+    String text = fake.text();
+    int chunkChars = properties.streamChunkChars();
+    List<String> chunks = new ArrayList<>();
+    for (int i = 0; i < text.length(); i += chunkChars) {
+      chunks.add(text.substring(i, Math.min(text.length(), i + chunkChars)));
+    }
+    boolean fail = random.nextInt(100) < properties.streamFailurePercent();
+    int deliver = fail ? chunks.size() / 2 : chunks.size();
+
+    ObjectNode created = objectMapper.createObjectNode().put("type", "response.created");
+    created.putObject("response").put("id", fake.id()).put("status", "in_progress");
+    Flux<String> deltas =
+        Flux.fromIterable(chunks.subList(0, deliver))
+            .delayElements(Duration.ofMillis(properties.streamDeltaIntervalMillis()))
+            .map(
+                chunk ->
+                    event(
+                        "response.output_text.delta",
+                        objectMapper
+                            .createObjectNode()
+                            .put("type", "response.output_text.delta")
+                            .put("delta", chunk)));
+    Mono<String> last;
+    if (fail) {
+      last =
+          Mono.fromSupplier(
+              () ->
+                  event(
+                      "error",
+                      objectMapper
+                          .createObjectNode()
+                          .put("type", "error")
+                          .put("message", "Injected stream failure (fake)")));
+    } else {
+      String type = fake.truncated() ? "response.incomplete" : "response.completed";
+      last =
+          Mono.fromSupplier(
+              () -> {
+                ObjectNode node = objectMapper.createObjectNode().put("type", type);
+                node.set("response", completedResponse(fake));
+                return event(type, node);
+              });
+    }
+    Flux<String> events =
+        Mono.delay(latency)
+            .thenMany(Flux.concat(Mono.just(event("response.created", created)), deltas, last));
+    return response
+        .status(200)
+        .header("Content-Type", "text/event-stream")
+        .header("Cache-Control", "no-cache")
+        .sendString(events, StandardCharsets.UTF_8)
+        .then();
+  }
+
+  private ObjectNode completedResponse(FakeResponse fake) {
+    ObjectNode root = objectMapper.createObjectNode();
+    root.put("id", fake.id());
+    root.put("object", "response");
+    root.put("model", fake.model());
+    root.put("status", fake.truncated() ? "incomplete" : "completed");
+    if (fake.truncated()) {
+      root.putObject("incomplete_details").put("reason", "max_output_tokens");
+    }
+    ObjectNode message = root.putArray("output").addObject();
+    message.put("type", "message");
+    message.put("role", "assistant");
+    message.putArray("content").addObject().put("type", "output_text").put("text", fake.text());
+    ObjectNode usage = root.putObject("usage");
+    usage.put("input_tokens", fake.inputTokens());
+    usage.putObject("input_tokens_details").put("cached_tokens", fake.cachedTokens());
+    usage.put("output_tokens", fake.outputTokens());
+    usage.put("total_tokens", fake.inputTokens() + fake.outputTokens());
+    return root;
+  }
+
+  private Duration sampleLatency() {
+    long median = properties.latencyMedianMillis();
+    long millis =
+        switch (properties.latencyDistribution()) {
+          case FIXED -> median;
+          case UNIFORM -> (long) (random.nextDouble() * 2 * median);
+          case LOGNORMAL -> {
+            // p99 は標準正規分布の 2.326σ にあたる
+            double sigma = Math.log((double) properties.latencyP99Millis() / median) / 2.326;
+            double sample = median * Math.exp(sigma * random.nextGaussian());
+            yield (long) Math.min(sample, properties.latencyP99Millis() * 10.0);
+          }
+        };
+    return Duration.ofMillis(millis);
+  }
+
+  private Mono<Void> sendError(
+      HttpServerResponse response, int status, String type, String message) {
+    ObjectNode root = objectMapper.createObjectNode();
+    root.putObject("error").put("type", type).put("message", message);
+    return sendJson(response, status, root);
+  }
+
+  private Mono<Void> sendJson(HttpServerResponse response, int status, JsonNode body) {
+    return response
+        .status(status)
+        .header("Content-Type", "application/json")
+        .sendString(Mono.fromSupplier(body::toString), StandardCharsets.UTF_8)
+        .then();
+  }
+
+  private static String event(String type, JsonNode data) {
+    return "event: " + type + "\ndata: " + data + "\n\n";
+  }
+
+  private record FakeResponse(
+      String id,
+      String model,
+      String text,
+      boolean truncated,
+      int inputTokens,
+      int cachedTokens,
+      int outputTokens) {}
+}
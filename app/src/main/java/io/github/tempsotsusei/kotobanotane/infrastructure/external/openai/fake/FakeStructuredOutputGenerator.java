@@ -0,0 +1,121 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.fake;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * JSON Schema を満たすダミーの構造化出力を作るヘルパー。
+ *
+ * <p>object は required（無ければ全プロパティ）を埋め、array は {@code minItems}〜{@code maxItems} 件（上限が無ければ最大 2
+ * 件多く）、string はひらがなの短い単語にする。複数章フィードバックのように要素が {@code chapterKey} を持つ配列は、入力の JSON 配列に含まれる
+ * {@code chapterKey} ごとに 1 要素ずつ作り、値をそのまま返す。
+ */
+final class FakeStructuredOutputGenerator {
+
+  private static final String HIRAGANA =
+      "あいうえおかきくけこさしすせそたちつてとなにぬねのはひふへほまみむめもやゆよらりるれろわ";
+
+  private final ObjectMapper objectMapper;
+  private final Random random;
+
+  FakeStructuredOutputGenerator(ObjectMapper objectMapper, Random random) {
+    this.objectMapper = objectMapper;
+    this.random = random;
+  }
+
+  /**
+   * スキーマに沿った出力を作る。
+   *
+   * @param schema {@code text.format.schema} の JSON Schema
+   * @param userInput リクエストのユーザー入力
+   * @return 生成した JSON
+   */
+  JsonNode generate(JsonNode schema, String userInput) {
+    return generate(schema, chapterKeysOf(userInput));
+  }
+
+  private JsonNode generate(JsonNode schema, Deque<String> chapterKeys) {
+    JsonNode enumValues = schema.path("enum");
+    if (enumValues.isArray() && !enumValues.isEmpty()) {
+      return enumValues.get(random.nextInt(enumValues.size()));
+    }
+    return switch (schema.path("type").asText("object")) {
+      case "array" -> array(schema, chapterKeys);
+      case "string" -> objectMapper.getNodeFactory().textNode(word(schema));
+      case "integer" -> objectMapper.getNodeFactory().numberNode(random.nextInt(10));
+      case "number" -> objectMapper.getNodeFactory().numberNode(random.nextDouble());
+      case "boolean" -> objectMapper.getNodeFactory().booleanNode(random.nextBoolean());
+      default -> object(schema, chapterKeys);
+    };
+  }
+
+  private ObjectNode object(JsonNode schema, Deque<String> chapterKeys) {
+    ObjectNode node = objectMapper.createObjectNode();
+    JsonNode properties = schema.path("properties");
+    List<String> names = new ArrayList<>();
+    if (schema.path("required").isArray()) {
+      schema.path("required").forEach(name -> names.add(name.asText()));
+    } else {
+      properties.fieldNames().forEachRemaining(names::add);
+    }
+    for (String name : names) {
+      if ("chapterKey".equals(name) && !chapterKeys.isEmpty()) {
+        node.put(name, chapterKeys.poll());
+      } else {
+        node.set(name, generate(properties.path(name), chapterKeys));
+      }
+    }
+    return node;
+  }
+
+  private ArrayNode array(JsonNode schema, Deque<String> chapterKeys) {
+    ArrayNode node = objectMapper.createArrayNode();
+    JsonNode items = schema.path("items");
+    int count;
+    if (items.path("properties").has("chapterKey") && !chapterKeys.isEmpty()) {
+      count = chapterKeys.size();
+    } else {
+      int min = schema.path("minItems").asInt(0);
+      int max = schema.has("maxItems") ? schema.path("maxItems").asInt() : min + 2;
+      count = min + random.nextInt(Math.max(1, max - min + 1));
+    }
+    for (int i = 0; i < count; i++) {
+      node.add(generate(items, chapterKeys));
+    }
+    return node;
+  }
+
+  private String word(JsonNode schema) {
+    int maxLength = schema.path("maxLength").asInt(10);
+    int length = 2 + random.nextInt(Math.max(1, Math.min(maxLength, 6) - 1));
+    StringBuilder word = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      word.append(HIRAGANA.charAt(random.nextInt(HIRAGANA.length())));
+    }
+    return word.toString();
+  }
+
+  private Deque<String> chapterKeysOf(String userInput) {
+    Deque<String> keys = new ArrayDeque<>();
+    if (userInput == null || !userInput.startsWith("[")) {
+      return keys;
+    }
+    try {
+      for (JsonNode chapter : objectMapper.readTree(userInput)) {
+        if (chapter.hasNonNull("chapterKey")) {
+          keys.add(chapter.path("chapterKey").asText());
+        }
+      }
+    } catch (Exception e) {
+      // 章の配列でなければ通常の入力として扱う
+    }
+    return keys;
+  }
+}
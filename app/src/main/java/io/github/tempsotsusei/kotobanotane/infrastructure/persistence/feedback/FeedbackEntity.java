@@ -4,11 +4,15 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import java.time.Instant;
 
-/** feedbacks テーブルに対応する JPA エンティティ。 */
+/** feedbacks テーブルに対応する JPA エンティティ。章ごとに 1 件まで。 */
 @Entity
-@Table(name = "feedbacks")
+@Table(
+    name = "feedbacks",
+    uniqueConstraints =
+        @UniqueConstraint(name = "uq_feedbacks_chapter_id", columnNames = "chapter_id"))
 public class FeedbackEntity {
 
   /** フィードバック ID。 */
@@ -1,10 +1,31 @@
 package io.github.tempsotsusei.kotobanotane.infrastructure.persistence.feedback;
 
+import java.time.Instant;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 /** feedbacks テーブルへアクセスする Spring Data JPA リポジトリ。 */
 public interface FeedbackJpaRepository extends JpaRepository<FeedbackEntity, String> {
 
   List<FeedbackEntity> findAllByChapterIdIn(Iterable<String> chapterIds);
+
+  boolean existsByChapterId(String chapterId);
+
+  /** 章のフィードバックが無ければ登録する。chapter_id の一意インデックスと衝突した場合は何もしない。 */
+  @Modifying
+  @Query(
+      value =
+          "INSERT INTO feedbacks (feedback_id, chapter_id, feedback, created_at, updated_at)"
+              + " VALUES (:feedbackId, :chapterId, :feedback, :createdAt, :updatedAt)"
+              + " ON CONFLICT DO NOTHING",
+      nativeQuery = true)
+  int insertIfAbsent(
+      @Param("feedbackId") String feedbackId,
+      @Param("chapterId") String chapterId,
+      @Param("feedback") String feedback,
+      @Param("createdAt") Instant createdAt,
+      @Param("updatedAt") Instant updatedAt);
 }
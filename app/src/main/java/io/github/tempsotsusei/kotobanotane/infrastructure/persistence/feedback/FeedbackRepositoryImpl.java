@@ -35,6 +35,11 @@ public class FeedbackRepositoryImpl implements FeedbackRepository {
         .toList();
   }
 
+  @Override
+  public boolean existsByChapterId(String chapterId) {
+    return feedbackJpaRepository.existsByChapterId(chapterId);
+  }
+
   @Override
   @Transactional
   public Feedback save(Feedback feedback) {
@@ -51,6 +56,18 @@ public class FeedbackRepositoryImpl implements FeedbackRepository {
     return FeedbackMapper.toDomain(saved);
   }
 
+  @Override
+  @Transactional
+  public boolean saveIfAbsent(Feedback feedback) {
+    return feedbackJpaRepository.insertIfAbsent(
+            feedback.feedbackId(),
+            feedback.chapterId(),
+            feedback.feedback(),
+            feedback.createdAt(),
+            feedback.updatedAt())
+        > 0;
+  }
+
   @Override
   @Transactional
   public void deleteById(String feedbackId) {
@@ -0,0 +1,118 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.persistence.feedbackjob;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+
+/** feedback_jobs テーブルに対応する JPA エンティティ。 */
+@Entity
+@Table(name = "feedback_jobs")
+public class FeedbackJobEntity {
+
+  /** ジョブ ID。 */
+  @Id
+  @Column(name = "job_id", length = 255, nullable = false)
+  private String jobId;
+
+  /** 章が属する物語 ID。 */
+  @Column(name = "story_id", length = 255, nullable = false)
+  private String storyId;
+
+  /** フィードバックの保存先の章 ID。 */
+  @Column(name = "chapter_id", length = 255, nullable = false)
+  private String chapterId;
+
+  /** 物語を作成したユーザーの Auth0 ID。 */
+  @Column(name = "auth0_id", length = 255, nullable = false)
+  private String auth0Id;
+
+  /** 平文化済み章本文。 */
+  @Column(name = "chapter_text", nullable = false, columnDefinition = "TEXT")
+  private String chapterText;
+
+  /** 取り出された回数。 */
+  @Column(name = "attempts", nullable = false)
+  private int attempts;
+
+  /** リースを持つワーカー ID（未処理なら null）。 */
+  @Column(name = "lease_owner", length = 255)
+  private String leaseOwner;
+
+  /** リースの期限（未処理なら null）。 */
+  @Column(name = "lease_expires_at")
+  private Instant leaseExpiresAt;
+
+  /** 登録日時。 */
+  @Column(name = "created_at", nullable = false)
+  private Instant createdAt;
+
+  /** JPA が利用するデフォルトコンストラクタ。 */
+  protected FeedbackJobEntity() {}
+
+  public FeedbackJobEntity(
+      String jobId,
+      String storyId,
+      String chapterId,
+      String auth0Id,
+      String chapterText,
+      int attempts,
+      Instant createdAt) {
+    this.jobId = jobId;
+    this.storyId = storyId;
+    this.chapterId = chapterId;
+    this.auth0Id = auth0Id;
+    this.chapterText = chapterText;
+    this.attempts = attempts;
+    this.createdAt = createdAt;
+  }
+
+  public String getJobId() {
+    return jobId;
+  }
+
+  public String getStoryId() {
+    return storyId;
+  }
+
+  public String getChapterId() {
+    return chapterId;
+  }
+
+  public String getAuth0Id() {
+    return auth0Id;
+  }
+
+  public String getChapterText() {
+    return chapterText;
+  }
+
+  public int getAttempts() {
+    return attempts;
+  }
+
+  public String getLeaseOwner() {
+    return leaseOwner;
+  }
+
+  public Instant getLeaseExpiresAt() {
+    return leaseExpiresAt;
+  }
+
+  public Instant getCreatedAt() {
+    return createdAt;
+  }
+
+  /**
+   * リースを付け、取り出し回数を加算する。
+   *
+   * @param owner リースの持ち主
+   * @param expiresAt リースの期限
+   */
+  public void lease(String owner, Instant expiresAt) {
+    this.leaseOwner = owner;
+    this.leaseExpiresAt = expiresAt;
+    this.attempts++;
+  }
+}
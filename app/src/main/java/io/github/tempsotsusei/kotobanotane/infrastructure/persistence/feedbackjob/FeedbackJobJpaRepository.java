@@ -0,0 +1,93 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.persistence.feedbackjob;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/** feedback_jobs テーブルへアクセスする Spring Data JPA リポジトリ。 */
+public interface FeedbackJobJpaRepository extends JpaRepository<FeedbackJobEntity, String> {
+
+  /**
+   * 取り出せるジョブを物語単位で古い順に取得する。
+   *
+   * <p>物語の古さは最も古い章のジョブの登録時刻で決める。まずユーザーごとに章を物語順に並べて通し番号（{@code user_position}）を振り、
+   * 物語の先頭の章の番号が {@code perUserLimit} 以内の物語だけを残す。残った章に全体の通し番号（{@code overall_position}）を振り直し、同じく
+   * 物語の先頭の章の番号が {@code limit} 以内の物語だけを返す。物語の途中で切れることはない。
+   */
+  @Query(
+      value =
+          "WITH claimable AS ("
+              + "SELECT f.*, MIN(f.created_at) OVER (PARTITION BY f.story_id) AS story_created_at"
+              + " FROM feedback_jobs f"
+              + " WHERE f.lease_expires_at IS NULL OR f.lease_expires_at < :now),"
+              + " per_user AS ("
+              + "SELECT c.*, ROW_NUMBER() OVER (PARTITION BY c.auth0_id"
+              + " ORDER BY c.story_created_at, c.story_id, c.created_at, c.job_id) AS user_position"
+              + " FROM claimable c),"
+              + " within_user AS ("
+              + "SELECT * FROM (SELECT u.*,"
+              + " MIN(u.user_position) OVER (PARTITION BY u.story_id) AS story_user_start"
+              + " FROM per_user u) t WHERE story_user_start <= :perUserLimit),"
+              + " overall AS ("
+              + "SELECT w.*, ROW_NUMBER() OVER ("
+              + "ORDER BY w.story_created_at, w.story_id, w.created_at, w.job_id)"
+              + " AS overall_position FROM within_user w)"
+              + " SELECT job_id, story_id, chapter_id, auth0_id, chapter_text, attempts,"
+              + " lease_owner, lease_expires_at, created_at FROM ("
+              + "SELECT o.*, MIN(o.overall_position) OVER (PARTITION BY o.story_id) AS story_start"
+              + " FROM overall o) ranked"
+              + " WHERE story_start <= :limit ORDER BY overall_position",
+      nativeQuery = true)
+  List<FeedbackJobEntity> findClaimable(
+      @Param("now") Instant now,
+      @Param("perUserLimit") int perUserLimit,
+      @Param("limit") int limit);
+
+  /**
+   * 指定したジョブのうち、まだ取り出せるものを行ロック付きで取得する。
+   *
+   * <p>{@code SKIP LOCKED} により、他のインスタンスが取り出し中の行は待たずに読み飛ばす。
+   */
+  @Query(
+      value =
+          "SELECT * FROM feedback_jobs"
+              + " WHERE job_id IN (:jobIds)"
+              + " AND (lease_expires_at IS NULL OR lease_expires_at < :now)"
+              + " FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  List<FeedbackJobEntity> lockClaimable(
+      @Param("jobIds") Collection<String> jobIds, @Param("now") Instant now);
+
+  @Modifying
+  @Query(
+      "update FeedbackJobEntity e set e.leaseExpiresAt = :leaseUntil"
+          + " where e.leaseOwner = :owner and e.jobId in :jobIds")
+  int extendLeases(
+      @Param("owner") String owner,
+      @Param("jobIds") Collection<String> jobIds,
+      @Param("leaseUntil") Instant leaseUntil);
+
+  @Modifying
+  @Query("delete from FeedbackJobEntity e where e.leaseOwner = :owner and e.jobId in :jobIds")
+  int deleteLeased(@Param("owner") String owner, @Param("jobIds") Collection<String> jobIds);
+
+  @Modifying
+  @Query(
+      "update FeedbackJobEntity e set e.leaseOwner = null, e.leaseExpiresAt = null"
+          + " where e.leaseOwner = :owner and e.jobId in :jobIds")
+  int releaseLeases(@Param("owner") String owner, @Param("jobIds") Collection<String> jobIds);
+
+  /** リースを手放し、期限を再試行時刻にして、それまでは取り出し候補に含めないようにする。 */
+  @Modifying
+  @Query(
+      "update FeedbackJobEntity e set e.leaseOwner = null, e.leaseExpiresAt = :retryAt"
+          + " where e.leaseOwner = :owner and e.jobId in :jobIds")
+  int releaseLeasesUntil(
+      @Param("owner") String owner,
+      @Param("jobIds") Collection<String> jobIds,
+      @Param("retryAt") Instant retryAt);
+}
@@ -0,0 +1,31 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.persistence.feedbackjob;
+
+import io.github.tempsotsusei.kotobanotane.domain.feedbackjob.FeedbackJob;
+
+/** feedback job ドメイン ↔ エンティティ変換を行うユーティリティ。 */
+public final class FeedbackJobMapper {
+
+  private FeedbackJobMapper() {}
+
+  public static FeedbackJob toDomain(FeedbackJobEntity entity) {
+    return new FeedbackJob(
+        entity.getJobId(),
+        entity.getStoryId(),
+        entity.getChapterId(),
+        entity.getAuth0Id(),
+        entity.getChapterText(),
+        entity.getAttempts(),
+        entity.getCreatedAt());
+  }
+
+  public static FeedbackJobEntity toEntity(FeedbackJob job) {
+    return new FeedbackJobEntity(
+        job.jobId(),
+        job.storyId(),
+        job.chapterId(),
+        job.auth0Id(),
+        job.chapterText(),
+        job.attempts(),
+        job.createdAt());
+  }
+}
@@ -0,0 +1,83 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.persistence.feedbackjob;
+
+import io.github.tempsotsusei.kotobanotane.domain.feedbackjob.FeedbackJob;
+import io.github.tempsotsusei.kotobanotane.domain.feedbackjob.FeedbackJobRepository;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/** FeedbackJobRepository を JPA で実現する実装クラス。 */
+@Repository
+@Transactional(readOnly = true)
+public class FeedbackJobRepositoryImpl implements FeedbackJobRepository {
+
+  private final FeedbackJobJpaRepository feedbackJobJpaRepository;
+
+  public FeedbackJobRepositoryImpl(FeedbackJobJpaRepository feedbackJobJpaRepository) {
+    this.feedbackJobJpaRepository = feedbackJobJpaRepository;
+  }
+
+  @Override
+  @Transactional
+  public void enqueueAll(List<FeedbackJob> jobs) {
+    feedbackJobJpaRepository.saveAll(jobs.stream().map(FeedbackJobMapper::toEntity).toList());
+  }
+
+  @Override
+  public List<FeedbackJob> findClaimable(Instant now, int perUserLimit, int limit) {
+    return feedbackJobJpaRepository.findClaimable(now, perUserLimit, limit).stream()
+        .map(FeedbackJobMapper::toDomain)
+        .toList();
+  }
+
+  @Override
+  @Transactional
+  public List<FeedbackJob> claim(
+      String owner, Collection<String> jobIds, Instant now, Instant leaseUntil) {
+    if (jobIds.isEmpty()) {
+      return List.of();
+    }
+    List<FeedbackJobEntity> claimable = feedbackJobJpaRepository.lockClaimable(jobIds, now);
+    // 行ロックはコミットまで保持されるので、リースの書き込みまでを 1 トランザクションで行う
+    claimable.forEach(entity -> entity.lease(owner, leaseUntil));
+    return claimable.stream().map(FeedbackJobMapper::toDomain).toList();
+  }
+
+  @Override
+  @Transactional
+  public int extendLeases(String owner, Collection<String> jobIds, Instant leaseUntil) {
+    if (jobIds.isEmpty()) {
+      return 0;
+    }
+    return feedbackJobJpaRepository.extendLeases(owner, jobIds, leaseUntil);
+  }
+
+  @Override
+  @Transactional
+  public void complete(String owner, Collection<String> jobIds) {
+    if (jobIds.isEmpty()) {
+      return;
+    }
+    feedbackJobJpaRepository.deleteLeased(owner, jobIds);
+  }
+
+  @Override
+  @Transactional
+  public void release(String owner, Collection<String> jobIds) {
+    if (jobIds.isEmpty()) {
+      return;
+    }
+    feedbackJobJpaRepository.releaseLeases(owner, jobIds);
+  }
+
+  @Override
+  @Transactional
+  public void retryLater(String owner, Collection<String> jobIds, Instant retryAt) {
+    if (jobIds.isEmpty()) {
+      return;
+    }
+    feedbackJobJpaRepository.releaseLeasesUntil(owner, jobIds, retryAt);
+  }
+}
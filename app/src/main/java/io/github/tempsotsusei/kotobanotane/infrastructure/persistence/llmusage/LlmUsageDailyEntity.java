@@ -0,0 +1,85 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.persistence.llmusage;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import java.time.Instant;
+
+/** llm_usage_daily テーブルに対応する JPA エンティティ。 */
+@Entity
+@Table(name = "llm_usage_daily")
+public class LlmUsageDailyEntity {
+
+  /** ユーザー・ユースケース・日付の複合主キー。 */
+  @EmbeddedId private LlmUsageDailyId id;
+
+  /** OpenAI 呼び出し回数。 */
+  @Column(name = "request_count", nullable = false)
+  private long requestCount;
+
+  /** 入力トークン数（キャッシュ済みを含む）。 */
+  @Column(name = "input_tokens", nullable = false)
+  private long inputTokens;
+
+  /** 出力トークン数。 */
+  @Column(name = "output_tokens", nullable = false)
+  private long outputTokens;
+
+  /** プロンプトキャッシュに載った入力トークン数。 */
+  @Column(name = "cached_tokens", nullable = false)
+  private long cachedTokens;
+
+  /** 更新日時。 */
+  @Column(name = "updated_at", nullable = false)
+  private Instant updatedAt;
+
+  /** JPA が利用するデフォルトコンストラクタ。 */
+  protected LlmUsageDailyEntity() {}
+
+  public LlmUsageDailyEntity(LlmUsageDailyId id, Instant updatedAt) {
+    this.id = id;
+    this.updatedAt = updatedAt;
+  }
+
+  public LlmUsageDailyId getId() {
+    return id;
+  }
+
+  public long getRequestCount() {
+    return requestCount;
+  }
+
+  public long getInputTokens() {
+    return inputTokens;
+  }
+
+  public long getOutputTokens() {
+    return outputTokens;
+  }
+
+  public long getCachedTokens() {
+    return cachedTokens;
+  }
+
+  public Instant getUpdatedAt() {
+    return updatedAt;
+  }
+
+  /**
+   * 増分を加算し、更新日時を反映する。
+   *
+   * @param requests 呼び出し回数の増分
+   * @param input 入力トークン数の増分
+   * @param output 出力トークン数の増分
+   * @param cached キャッシュ済み入力トークン数の増分
+   * @param newUpdatedAt 更新日時
+   */
+  public void add(long requests, long input, long output, long cached, Instant newUpdatedAt) {
+    this.requestCount += requests;
+    this.inputTokens += input;
+    this.outputTokens += output;
+    this.cachedTokens += cached;
+    this.updatedAt = newUpdatedAt;
+  }
+}
@@ -0,0 +1,63 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.persistence.llmusage;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/** llm_usage_daily テーブルの複合主キー（ユーザー・ユースケース・日付）。 */
+@Embeddable
+public class LlmUsageDailyId implements Serializable {
+
+  /** Auth0 のユーザー ID（呼び出し元が特定できない場合は system）。 */
+  @Column(name = "auth0_id", length = 255, nullable = false)
+  private String auth0Id;
+
+  /** ユースケース（keywords, feedback など）。 */
+  @Column(name = "use_case", length = 64, nullable = false)
+  private String useCase;
+
+  /** 集計日（アプリ共通のタイムゾーン基準）。 */
+  @Column(name = "usage_date", nullable = false)
+  private LocalDate usageDate;
+
+  /** JPA が利用するデフォルトコンストラクタ。 */
+  protected LlmUsageDailyId() {}
+
+  public LlmUsageDailyId(String auth0Id, String useCase, LocalDate usageDate) {
+    this.auth0Id = auth0Id;
+    this.useCase = useCase;
+    this.usageDate = usageDate;
+  }
+
+  public String getAuth0Id() {
+    return auth0Id;
+  }
+
+  public String getUseCase() {
+    return useCase;
+  }
+
+  public LocalDate getUsageDate() {
+    return usageDate;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof LlmUsageDailyId other)) {
+      return false;
+    }
+    return Objects.equals(auth0Id, other.auth0Id)
+        && Objects.equals(useCase, other.useCase)
+        && Objects.equals(usageDate, other.usageDate);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(auth0Id, useCase, usageDate);
+  }
+}
@@ -0,0 +1,22 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.persistence.llmusage;
+
+import jakarta.persistence.LockModeType;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/** llm_usage_daily テーブルへアクセスする Spring Data JPA リポジトリ。 */
+public interface LlmUsageDailyJpaRepository
+    extends JpaRepository<LlmUsageDailyEntity, LlmUsageDailyId> {
+
+  List<LlmUsageDailyEntity> findAllByIdUsageDate(LocalDate usageDate);
+
+  /** 加算対象の行を、他インスタンスの書き込みと競合しないよう行ロック付きで取得する。 */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select e from LlmUsageDailyEntity e where e.id in :ids")
+  List<LlmUsageDailyEntity> findAllForUpdate(@Param("ids") Collection<LlmUsageDailyId> ids);
+}
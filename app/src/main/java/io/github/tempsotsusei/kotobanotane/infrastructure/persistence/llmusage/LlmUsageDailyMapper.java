@@ -0,0 +1,24 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.persistence.llmusage;
+
+import io.github.tempsotsusei.kotobanotane.domain.llmusage.LlmUsageDaily;
+
+/** llm usage ドメイン ↔ エンティティ変換を行うユーティリティ。 */
+public final class LlmUsageDailyMapper {
+
+  private LlmUsageDailyMapper() {}
+
+  public static LlmUsageDaily toDomain(LlmUsageDailyEntity entity) {
+    return new LlmUsageDaily(
+        entity.getId().getAuth0Id(),
+        entity.getId().getUseCase(),
+        entity.getId().getUsageDate(),
+        entity.getRequestCount(),
+        entity.getInputTokens(),
+        entity.getOutputTokens(),
+        entity.getCachedTokens());
+  }
+
+  public static LlmUsageDailyId toId(LlmUsageDaily usage) {
+    return new LlmUsageDailyId(usage.auth0Id(), usage.useCase(), usage.usageDate());
+  }
+}
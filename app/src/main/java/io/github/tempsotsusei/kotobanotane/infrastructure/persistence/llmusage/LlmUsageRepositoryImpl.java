@@ -0,0 +1,61 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.persistence.llmusage;
+
+import io.github.tempsotsusei.kotobanotane.config.time.TimeProvider;
+import io.github.tempsotsusei.kotobanotane.domain.llmusage.LlmUsageDaily;
+import io.github.tempsotsusei.kotobanotane.domain.llmusage.LlmUsageRepository;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/** LlmUsageRepository を JPA で実現する実装クラス。 */
+@Repository
+@Transactional(readOnly = true)
+public class LlmUsageRepositoryImpl implements LlmUsageRepository {
+
+  private final LlmUsageDailyJpaRepository llmUsageDailyJpaRepository;
+  private final TimeProvider timeProvider;
+
+  public LlmUsageRepositoryImpl(
+      LlmUsageDailyJpaRepository llmUsageDailyJpaRepository, TimeProvider timeProvider) {
+    this.llmUsageDailyJpaRepository = llmUsageDailyJpaRepository;
+    this.timeProvider = timeProvider;
+  }
+
+  @Override
+  public List<LlmUsageDaily> findAllByUsageDate(LocalDate usageDate) {
+    return llmUsageDailyJpaRepository.findAllByIdUsageDate(usageDate).stream()
+        .map(LlmUsageDailyMapper::toDomain)
+        .toList();
+  }
+
+  @Override
+  @Transactional
+  public void addAll(List<LlmUsageDaily> increments) {
+    if (increments.isEmpty()) {
+      return;
+    }
+    Map<LlmUsageDailyId, LlmUsageDailyEntity> existing =
+        llmUsageDailyJpaRepository
+            .findAllForUpdate(increments.stream().map(LlmUsageDailyMapper::toId).toList())
+            .stream()
+            .collect(Collectors.toMap(LlmUsageDailyEntity::getId, Function.identity()));
+    Instant now = timeProvider.nowInstant();
+    for (LlmUsageDaily increment : increments) {
+      LlmUsageDailyId id = LlmUsageDailyMapper.toId(increment);
+      LlmUsageDailyEntity entity =
+          existing.computeIfAbsent(id, key -> new LlmUsageDailyEntity(key, now));
+      entity.add(
+          increment.requestCount(),
+          increment.inputTokens(),
+          increment.outputTokens(),
+          increment.cachedTokens(),
+          now);
+    }
+    llmUsageDailyJpaRepository.saveAll(existing.values());
+  }
+}
@@ -0,0 +1,71 @@
+package io.github.tempsotsusei.kotobanotane.interfaces.api;
+
+import io.github.tempsotsusei.kotobanotane.application.auth.AuthenticatedTokenService;
+import io.github.tempsotsusei.kotobanotane.application.feedback.FeedbackReadyNotifier;
+import io.github.tempsotsusei.kotobanotane.config.FeedbackEventsProperties;
+import java.time.Duration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+/**
+ * 自分の物語のフィードバックが保存されたことを SSE で知らせる API。
+ *
+ * <p>{@code POST /api/story} の後にクライアントが {@code GET /api/story} を繰り返し呼ばずに済むようにする。保存のたびに {@code
+ * feedback-ready} イベント（id は章 ID）を送るので、受け取ったら該当の物語を取り直す。通知が無い間は {@code heartbeatIntervalMillis}
+ * ごとにコメント行を送り、{@code maxStreamMillis} を過ぎたら閉じる（EventSource は自動で再接続する）。
+ *
+ * <p>非同期で返すため、接続を保っている間もリクエストスレッドは占有しない。Spring MVC は SSE の Flux には非同期リクエストのタイムアウトを掛けないので、
+ * 接続の長さはここで {@code maxStreamMillis} に区切る（他の API のタイムアウトは変えない）。
+ */
+@RestController
+@RequestMapping("/api/story/feedback/events")
+public class FeedbackEventsController {
+
+  private final AuthenticatedTokenService authenticatedTokenService;
+  private final FeedbackReadyNotifier feedbackReadyNotifier;
+  private final FeedbackEventsProperties properties;
+
+  public FeedbackEventsController(
+      AuthenticatedTokenService authenticatedTokenService,
+      FeedbackReadyNotifier feedbackReadyNotifier,
+      FeedbackEventsProperties properties) {
+    this.authenticatedTokenService = authenticatedTokenService;
+    this.feedbackReadyNotifier = feedbackReadyNotifier;
+    this.properties = properties;
+  }
+
+  /**
+   * 自分の物語のフィードバック保存通知を購読する。
+   *
+   * @param authentication JWT
+   * @return {@code feedback-ready} イベントの SSE ストリーム
+   */
+  @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  @PreAuthorize("isAuthenticated()")
+  public Flux<ServerSentEvent<Object>> streamFeedbackEvents(
+      JwtAuthenticationToken authentication) {
+    String auth0Id =
+        authenticatedTokenService.requireExistingAuth0Id(
+            authenticatedTokenService.extractAuth0Id(authentication.getToken()));
+    Flux<ServerSentEvent<Object>> events =
+        feedbackReadyNotifier
+            .subscribe(auth0Id)
+            .map(
+                ready ->
+                    ServerSentEvent.<Object>builder(ready)
+                        .event("feedback-ready")
+                        .id(ready.chapterId())
+                        .build());
+    Flux<ServerSentEvent<Object>> heartbeats =
+        Flux.interval(Duration.ofMillis(properties.heartbeatIntervalMillis()))
+            .map(tick -> ServerSentEvent.builder().comment("keep-alive").build());
+    return Flux.merge(events, heartbeats)
+        .take(Duration.ofMillis(properties.maxStreamMillis()));
+  }
+}
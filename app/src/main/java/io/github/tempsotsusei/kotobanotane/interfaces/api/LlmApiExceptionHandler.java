@@ -0,0 +1,57 @@
+package io.github.tempsotsusei.kotobanotane.interfaces.api;
+
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmDeadlineExceededException;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmQuotaExceededException;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * LLM を利用する本番 API の例外ハンドラ。
+ *
+ * <p>サーキットブレーカーが OPEN の間は OpenAI を呼ばずに 503 と {@code Retry-After} を返し、クライアント側で時間を置いて再試行できるようにする。
+ * リクエストの締め切りまでに LLM の応答が得られなかった場合は 504 を、1 日あたりの利用上限に達したユーザーには翌日までの {@code Retry-After}
+ * 付きで 429 を返す。
+ */
+@RestControllerAdvice(
+    assignableTypes = {StoryChapterNextController.class, StoryChapterKeywordsController.class})
+public class LlmApiExceptionHandler {
+
+  private static final Logger log = LoggerFactory.getLogger(LlmApiExceptionHandler.class);
+  static final String QUOTA_EXCEEDED_MESSAGE = "きょうはたくさん使ったので、あしたまた試してください。";
+
+  @ExceptionHandler(LlmUnavailableException.class)
+  public ResponseEntity<ErrorResponse> handleLlmUnavailable(LlmUnavailableException ex) {
+    log.warn("LLM unavailable: {} retryAfter={}", ex.getMessage(), ex.getRetryAfter());
+    long retryAfterSeconds = Math.max(1, ex.getRetryAfter().toSeconds());
+    ErrorResponse body =
+        new ErrorResponse("LLM サービスが一時的に利用できません。時間を置いて再実行してください。", "LLM-002", true);
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+        .body(body);
+  }
+
+  @ExceptionHandler(LlmDeadlineExceededException.class)
+  public ResponseEntity<ErrorResponse> handleLlmDeadlineExceeded(LlmDeadlineExceededException ex) {
+    log.warn("LLM deadline exceeded: {}", ex.getMessage());
+    ErrorResponse body =
+        new ErrorResponse("LLM サービスの応答に遅延が発生しています。時間を置いて再実行してください。", "LLM-001", true);
+    return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(body);
+  }
+
+  @ExceptionHandler(LlmQuotaExceededException.class)
+  public ResponseEntity<ErrorResponse> handleLlmQuotaExceeded(LlmQuotaExceededException ex) {
+    long retryAfterSeconds = Math.max(1, ex.getRetryAfter().toSeconds());
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+        .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+        .body(new ErrorResponse(QUOTA_EXCEEDED_MESSAGE, "LLM-003", false));
+  }
+
+  /** エラーレスポンス。 */
+  public record ErrorResponse(String message, String errorCode, boolean retriable) {}
+}
@@ -1,7 +1,7 @@
 package io.github.tempsotsusei.kotobanotane.interfaces.api;
 
 import io.github.tempsotsusei.kotobanotane.application.auth.AuthenticatedTokenService;
-import io.github.tempsotsusei.kotobanotane.application.llm.KeywordListsGenerationService;
+import io.github.tempsotsusei.kotobanotane.application.llm.InitialKeywordPool;
 import java.util.List;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
@@ -12,28 +12,29 @@ import org.springframework.web.bind.annotation.RestController;
 /**
  * 章本文が存在しない初回フェーズ向けにキーワード候補を返すコントローラー。
  *
- * <p>LLM から取得した 4 語×3 セットの配列をそのままクライアントへ返却する。
+ * <p>事前生成プールから 4 語×3 セットの配列を取り出して返却する。プールが空の場合のみ LLM をその場で呼び出す。その場合は {@code /chapter/next}
+ * と同じく、ユーザーの 1 日あたりの利用上限を確認し、使用量をそのユーザーに紐付けて記録する。
  */
 @RestController
 @RequestMapping("/api/story/chapter/keywords")
 public class StoryChapterKeywordsController {
 
   private final AuthenticatedTokenService authenticatedTokenService;
-  private final KeywordListsGenerationService keywordListsGenerationService;
+  private final InitialKeywordPool initialKeywordPool;
 
   public StoryChapterKeywordsController(
-      AuthenticatedTokenService authenticatedTokenService,
-      KeywordListsGenerationService keywordListsGenerationService) {
+      AuthenticatedTokenService authenticatedTokenService, InitialKeywordPool initialKeywordPool) {
     this.authenticatedTokenService = authenticatedTokenService;
-    this.keywordListsGenerationService = keywordListsGenerationService;
+    this.initialKeywordPool = initialKeywordPool;
   }
 
   /** 初回サジェスト用のキーワードを取得する。 */
   @GetMapping
   @PreAuthorize("isAuthenticated()")
   public List<List<String>> getInitialKeywords(JwtAuthenticationToken authentication) {
-    authenticatedTokenService.requireExistingAuth0Id(
-        authenticatedTokenService.extractAuth0Id(authentication.getToken()));
-    return keywordListsGenerationService.generateInitialKeywords();
+    String auth0Id =
+        authenticatedTokenService.requireExistingAuth0Id(
+            authenticatedTokenService.extractAuth0Id(authentication.getToken()));
+    return initialKeywordPool.takeOrGenerate(auth0Id);
   }
 }
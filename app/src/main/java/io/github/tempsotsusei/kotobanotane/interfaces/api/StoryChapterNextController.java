@@ -3,49 +3,150 @@ package io.github.tempsotsusei.kotobanotane.interfaces.api;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.github.tempsotsusei.kotobanotane.application.auth.AuthenticatedTokenService;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmDeadline;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmQuotaExceededException;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUnavailableException;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUsageLedger;
 import io.github.tempsotsusei.kotobanotane.application.story.StoryChapterNextService;
+import io.github.tempsotsusei.kotobanotane.config.LlmDeadlineProperties;
+import io.github.tempsotsusei.kotobanotane.interfaces.api.LlmApiExceptionHandler.ErrorResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
  * 直前章の JSON を受け取り、次章生成用キーワードを返却する本番向け API。
  *
- * <p>LLM へは文字列化した本文のみを渡し、レスポンスは 4 語 × 3 セットの配列となる。
+ * <p>LLM へは文字列化した本文のみを渡し、レスポンスは 4 語 × 3 セットの配列となる。{@code /stream} では同じ結果をセット単位で SSE 配信する。
+ *
+ * <p>LLM 呼び出しには設定値（{@code app.llm.deadline.interactive-millis}）とクライアントの {@code X-Request-Timeout-Ms}
+ * の短い方を締め切りとして渡す。どちらのエンドポイントも非同期で返すため、クライアントが切断すると購読が解除され、待機中の OpenAI 呼び出しやリトライも止まる。
+ *
+ * <p>呼び出し前にユーザーの 1 日あたりの利用上限を確認し、使用量はそのユーザーに紐付けて {@link LlmUsageLedger} に記録する。
  */
 @RestController
 @RequestMapping("/api/story/chapter/next")
 public class StoryChapterNextController {
 
+  private static final Logger log = LoggerFactory.getLogger(StoryChapterNextController.class);
+  static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
   private final AuthenticatedTokenService authenticatedTokenService;
   private final StoryChapterNextService storyChapterNextService;
+  private final LlmDeadlineProperties deadlineProperties;
+  private final LlmUsageLedger llmUsageLedger;
 
   public StoryChapterNextController(
       AuthenticatedTokenService authenticatedTokenService,
-      StoryChapterNextService storyChapterNextService) {
+      StoryChapterNextService storyChapterNextService,
+      LlmDeadlineProperties deadlineProperties,
+      LlmUsageLedger llmUsageLedger) {
     this.authenticatedTokenService = authenticatedTokenService;
     this.storyChapterNextService = storyChapterNextService;
+    this.deadlineProperties = deadlineProperties;
+    this.llmUsageLedger = llmUsageLedger;
   }
 
   /**
    * TipTap JSON からキーワードを生成する。
    *
    * @param request 章 JSON を含むリクエスト DTO
+   * @param requestTimeoutMillis クライアントが待てる時間（ミリ秒、任意）
    * @return LLM が生成したキーワード集合
    */
   @PostMapping
   @PreAuthorize("isAuthenticated()")
-  public List<List<String>> generateNextKeywords(
-      @Valid @RequestBody StoryChapterNextRequest request, JwtAuthenticationToken authentication) {
-    authenticatedTokenService.requireExistingAuth0Id(
-        authenticatedTokenService.extractAuth0Id(authentication.getToken()));
-    return storyChapterNextService.generateNextChapterKeywords(request.chapterJson());
+  public Mono<List<List<String>>> generateNextKeywords(
+      @Valid @RequestBody StoryChapterNextRequest request,
+      @RequestHeader(name = REQUEST_TIMEOUT_HEADER, required = false) Long requestTimeoutMillis,
+      JwtAuthenticationToken authentication) {
+    String auth0Id =
+        authenticatedTokenService.requireExistingAuth0Id(
+            authenticatedTokenService.extractAuth0Id(authentication.getToken()));
+    llmUsageLedger.requireWithinQuota(auth0Id);
+    return storyChapterNextService
+        .generateNextChapterKeywords(request.chapterJson(), deadlineFor(requestTimeoutMillis))
+        .contextWrite(LlmUsageLedger.attributedTo(auth0Id));
+  }
+
+  /**
+   * TipTap JSON からキーワードを生成し、4 語セットが完成するたびに SSE で返す。
+   *
+   * <p>各セットは {@code keywords} イベント（id はセットの順番）として送り、最後に {@code done} イベントを送る。章本文が不正な場合はストリームを
+   * 開始せずに 400 を返す。ストリーム開始後に LLM 呼び出しが失敗した場合は、ステータスを変えられないため {@code error} イベントで通知する。
+   *
+   * @param request 章 JSON を含むリクエスト DTO
+   * @param requestTimeoutMillis クライアントが待てる時間（ミリ秒、任意）
+   * @return キーワードセットの SSE ストリーム
+   */
+  @PostMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  @PreAuthorize("isAuthenticated()")
+  public Flux<ServerSentEvent<Object>> streamNextKeywords(
+      @Valid @RequestBody StoryChapterNextRequest request,
+      @RequestHeader(name = REQUEST_TIMEOUT_HEADER, required = false) Long requestTimeoutMillis,
+      JwtAuthenticationToken authentication) {
+    String auth0Id =
+        authenticatedTokenService.requireExistingAuth0Id(
+            authenticatedTokenService.extractAuth0Id(authentication.getToken()));
+    // 入力の検証はストリーム開始前に行い、不正な入力は 400 で返す
+    Flux<List<String>> keywordSets =
+        storyChapterNextService.streamNextChapterKeywords(
+            request.chapterJson(), deadlineFor(requestTimeoutMillis));
+    AtomicInteger index = new AtomicInteger();
+    return Flux.defer(
+            () -> {
+              // 上限超過もストリーム内の error イベントとして通知する
+              llmUsageLedger.requireWithinQuota(auth0Id);
+              return keywordSets;
+            })
+        .contextWrite(LlmUsageLedger.attributedTo(auth0Id))
+        .map(
+            keywords ->
+                ServerSentEvent.<Object>builder(keywords)
+                    .event("keywords")
+                    .id(Integer.toString(index.getAndIncrement()))
+                    .build())
+        .concatWith(Mono.fromSupplier(() -> ServerSentEvent.builder().event("done").build()))
+        .onErrorResume(error -> Mono.just(toErrorEvent(error)));
+  }
+
+  /** 設定値とクライアント指定の短い方を締め切りにする。極端に短い指定は下限まで切り上げる。 */
+  private LlmDeadline deadlineFor(Long requestTimeoutMillis) {
+    long millis = deadlineProperties.interactiveMillis();
+    if (requestTimeoutMillis != null) {
+      millis =
+          Math.min(millis, Math.max(requestTimeoutMillis, deadlineProperties.minClientMillis()));
+    }
+    return LlmDeadline.after(Duration.ofMillis(millis));
+  }
+
+  private ServerSentEvent<Object> toErrorEvent(Throwable error) {
+    log.warn("Keyword stream failed: {}", error.getMessage(), error);
+    ErrorResponse body =
+        switch (error) {
+          case LlmUnavailableException e ->
+              new ErrorResponse("LLM サービスが一時的に利用できません。時間を置いて再実行してください。", "LLM-002", true);
+          case LlmQuotaExceededException e ->
+              new ErrorResponse(LlmApiExceptionHandler.QUOTA_EXCEEDED_MESSAGE, "LLM-003", false);
+          default ->
+              new ErrorResponse("LLM サービスの応答に遅延が発生しています。時間を置いて再実行してください。", "LLM-001", true);
+        };
+    return ServerSentEvent.<Object>builder(body).event("error").build();
   }
 
   /** `/api/story/chapter/next` のリクエスト DTO。 */
@@ -5,7 +5,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import io.github.tempsotsusei.kotobanotane.application.auth.AuthenticatedTokenService;
 import io.github.tempsotsusei.kotobanotane.application.chapter.ChapterJsonTextService;
 import io.github.tempsotsusei.kotobanotane.application.chapter.ChapterTextAnalysis;
-import io.github.tempsotsusei.kotobanotane.application.feedback.FeedbackGenerationJobService;
+import io.github.tempsotsusei.kotobanotane.application.feedback.FeedbackJobWorker;
 import io.github.tempsotsusei.kotobanotane.application.story.ChapterDraft;
 import io.github.tempsotsusei.kotobanotane.application.story.StoryCreationResult;
 import io.github.tempsotsusei.kotobanotane.application.story.StoryCreationService;
@@ -29,7 +29,8 @@ import org.springframework.web.server.ResponseStatusException;
 /**
  * 物語と章を一括登録する本番向け API。
  *
- * <p>保存完了後、各章について非同期でフィードバック生成ジョブを起動する。
+ * <p>章ごとのフィードバック生成ジョブは物語と同じトランザクションで feedback_jobs に登録し、コミット後にワーカーへ取り出しを促す。生成そのものは
+ * {@link FeedbackJobWorker} が行う。
  */
 @RestController
 @RequestMapping("/api/story")
@@ -38,21 +39,21 @@ public class StoryCommandController {
   private final AuthenticatedTokenService authenticatedTokenService;
   private final ChapterJsonTextService chapterJsonTextService;
   private final StoryCreationService storyCreationService;
-  private final FeedbackGenerationJobService feedbackGenerationJobService;
+  private final FeedbackJobWorker feedbackJobWorker;
 
   public StoryCommandController(
       AuthenticatedTokenService authenticatedTokenService,
       ChapterJsonTextService chapterJsonTextService,
       StoryCreationService storyCreationService,
-      FeedbackGenerationJobService feedbackGenerationJobService) {
+      FeedbackJobWorker feedbackJobWorker) {
     this.authenticatedTokenService = authenticatedTokenService;
     this.chapterJsonTextService = chapterJsonTextService;
     this.storyCreationService = storyCreationService;
-    this.feedbackGenerationJobService = feedbackGenerationJobService;
+    this.feedbackJobWorker = feedbackJobWorker;
   }
 
   /**
-   * 物語と章を登録し、フィードバック生成ジョブを起動する。
+   * 物語と章、フィードバック生成ジョブを登録する。
    *
    * @param request 物語作成リクエスト
    * @param authentication 認証トークン
@@ -74,13 +75,8 @@ public class StoryCommandController {
         storyCreationService.createStoryWithChapters(
             auth0Id, request.storyTitle(), request.thumbnailId(), drafts);
 
-    // 章ごとに非同期でフィードバック生成ジョブを起動する
-    result
-        .feedbackTargets()
-        .forEach(
-            target ->
-                feedbackGenerationJobService.generateAndSave(
-                    target.chapterId(), target.plainText()));
+    // フィードバック生成ジョブは物語と一緒にコミット済みなので、次の定期確認を待たずに取り出させる
+    feedbackJobWorker.wakeUp();
 
     return new CreateStoryResponse(result.storyId());
   }
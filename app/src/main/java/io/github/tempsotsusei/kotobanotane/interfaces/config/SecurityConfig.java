@@ -25,13 +25,29 @@ import org.springframework.util.Assert;
 @EnableConfigurationProperties(Auth0Properties.class)
 public class SecurityConfig {
 
+  /**
+   * Actuator のメトリクスなどを読める権限。Auth0 の API に {@code read:actuator} 権限を定義し、運用者のトークンにだけ付与する（scope
+   * クレームが {@code SCOPE_} 付きの権限になる）。アプリの利用者（子どもたち）のトークンでは読めない。
+   */
+  static final String ACTUATOR_AUTHORITY = "SCOPE_read:actuator";
+
   @Bean
-  /** HTTP セキュリティの基本ポリシーを定義する。 ヘルスチェックは匿名許可、それ以外は `@PreAuthorize` などで制御する。 */
+  /**
+   * HTTP セキュリティの基本ポリシーを定義する。 ヘルスチェックは匿名許可、Actuator のそれ以外（メトリクスなど）は運用者の権限が必須、API は
+   * `@PreAuthorize` などで制御する。
+   */
   public SecurityFilterChain securityFilterChain(
       HttpSecurity http, BearerTokenResolver bearerTokenResolver) throws Exception {
     http.csrf(csrf -> csrf.disable())
         .authorizeHttpRequests(
-            authorize -> authorize.requestMatchers("/healthz").permitAll().anyRequest().permitAll())
+            authorize ->
+                authorize
+                    .requestMatchers("/healthz", "/actuator/health", "/actuator/health/**")
+                    .permitAll()
+                    .requestMatchers("/actuator/**")
+                    .hasAuthority(ACTUATOR_AUTHORITY)
+                    .anyRequest()
+                    .permitAll())
         .oauth2ResourceServer(
             oauth2 ->
                 oauth2.bearerTokenResolver(bearerTokenResolver).jwt(Customizer.withDefaults()));
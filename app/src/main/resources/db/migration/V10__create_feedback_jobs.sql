@@ -0,0 +1,26 @@
+-- フィードバック生成ジョブ(feedback_jobs)テーブルを作成するマイグレーション
+-- 物語の作成と同じトランザクションで章ごとに 1 行登録し、ワーカーが取り出して処理し終えたら削除する
+CREATE TABLE IF NOT EXISTS feedback_jobs (
+    job_id VARCHAR(255) PRIMARY KEY,
+    story_id VARCHAR(255) NOT NULL,
+    chapter_id VARCHAR(255) NOT NULL,
+    auth0_id VARCHAR(255) NOT NULL,
+    chapter_text TEXT NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    lease_owner VARCHAR(255),
+    lease_expires_at TIMESTAMPTZ,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    CONSTRAINT fk_feedback_jobs_chapters FOREIGN KEY (chapter_id)
+        REFERENCES chapters (chapter_id) ON DELETE CASCADE
+);
+
+-- 古い順に取り出すためのインデックス
+CREATE INDEX IF NOT EXISTS idx_feedback_jobs_created_at ON feedback_jobs (created_at);
+-- ユーザーごとに古い順で読むためのインデックス
+-- ワーカーは取り出す前にユーザーごとの先頭数件を候補として読み、ユーザー間で順番に選ぶ
+CREATE INDEX IF NOT EXISTS idx_feedback_jobs_auth0_id_created_at
+    ON feedback_jobs (auth0_id, created_at);
+-- リースが無いか期限切れのジョブを探すためのインデックス
+-- 取り出し候補の検索（lease_expires_at IS NULL OR lease_expires_at < now）で、処理中のジョブを読み飛ばせるようにする
+CREATE INDEX IF NOT EXISTS idx_feedback_jobs_lease_expires_at
+    ON feedback_jobs (lease_expires_at);
@@ -0,0 +1,9 @@
+-- 章ごとのフィードバックを 1 件に制限するマイグレーション
+-- 生成ジョブは再実行されうるため、保存は INSERT ... ON CONFLICT DO NOTHING で重複を防ぐ
+-- 既に重複している章は、最初に保存されたフィードバックだけを残す
+DELETE FROM feedbacks f
+USING feedbacks kept
+WHERE f.chapter_id = kept.chapter_id
+  AND (kept.created_at, kept.feedback_id) < (f.created_at, f.feedback_id);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_feedbacks_chapter_id ON feedbacks (chapter_id);
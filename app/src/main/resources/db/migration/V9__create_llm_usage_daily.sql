@@ -0,0 +1,16 @@
+-- LLM 利用量(llm_usage_daily)テーブルを作成するマイグレーション
+-- ユーザー・ユースケース・日付ごとに、アプリ側で集計したトークン数を加算していく
+CREATE TABLE IF NOT EXISTS llm_usage_daily (
+    auth0_id VARCHAR(255) NOT NULL,
+    use_case VARCHAR(64) NOT NULL,
+    usage_date DATE NOT NULL,
+    request_count BIGINT NOT NULL DEFAULT 0,
+    input_tokens BIGINT NOT NULL DEFAULT 0,
+    output_tokens BIGINT NOT NULL DEFAULT 0,
+    cached_tokens BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (auth0_id, use_case, usage_date)
+);
+
+-- 日付単位でユーザーごとの合計を読み込むためのインデックス
+CREATE INDEX IF NOT EXISTS idx_llm_usage_daily_usage_date ON llm_usage_daily (usage_date);
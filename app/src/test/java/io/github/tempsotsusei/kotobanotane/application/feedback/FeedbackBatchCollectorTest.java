@@ -0,0 +1,129 @@
+package io.github.tempsotsusei.kotobanotane.application.feedback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import io.github.tempsotsusei.kotobanotane.application.llm.FeedbackBatchGenerationService;
+import io.github.tempsotsusei.kotobanotane.application.llm.FeedbackItem;
+import io.github.tempsotsusei.kotobanotane.config.FeedbackBatchProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+
+class FeedbackBatchCollectorTest {
+
+  private final FeedbackBatchGenerationService feedbackBatchGenerationService =
+      Mockito.mock(FeedbackBatchGenerationService.class);
+  private final FeedbackService feedbackService = Mockito.mock(FeedbackService.class);
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  /** 上限件数に達した時点でまとめて投入し、章ごとに結果を保存して、結果の無い章はエラーで返すことを検証する。 */
+  @Test
+  void submitsBatchWhenFullAndSavesEachChapter() {
+    FeedbackBatchCollector collector = newCollector(2, 60_000);
+    when(feedbackBatchGenerationService.generateBatch(anyMap()))
+        .thenReturn(Mono.just(Map.of("chap-1", List.of())));
+
+    collector.enqueue("chap-1", "text-1");
+    verify(feedbackBatchGenerationService, never()).generateBatch(anyMap());
+    Mono<Void> missing = collector.enqueue("chap-2", "text-2");
+
+    verify(feedbackBatchGenerationService)
+        .generateBatch(Map.of("chap-1", "text-1", "chap-2", "text-2"));
+    verify(feedbackService, timeout(1000))
+        .createIfAbsent("chap-1", "なおすところはなかったよ。");
+    assertThatThrownBy(() -> missing.block(Duration.ofSeconds(1)))
+        .hasMessageContaining("no result for chapterId=chap-2");
+    verify(feedbackService, never()).createIfAbsent(eq("chap-2"), anyString());
+    assertThat(collector.pendingCount()).isZero();
+  }
+
+  /** 件数に達しなくても、一定時間後に投入されることを検証する。 */
+  @Test
+  void flushesAfterInterval() {
+    FeedbackBatchCollector collector = newCollector(10, 50);
+    when(feedbackBatchGenerationService.generateBatch(anyMap()))
+        .thenReturn(
+            Mono.just(Map.of("chap-1", List.of(new FeedbackItem("もと", "なおし", "りゆう")))));
+
+    collector.enqueue("chap-1", "text-1");
+
+    verify(feedbackBatchGenerationService, timeout(1000)).generateBatch(Map.of("chap-1", "text-1"));
+    verify(feedbackService, timeout(1000))
+        .createIfAbsent(
+            "chap-1", "［ことばそのまま］\nもと\n［なおしたぶん］\nなおし\n［どうして？］\nりゆう");
+  }
+
+  /** バッチ全体が失敗した場合は失敗メッセージを保存せず、章をエラーで返してジョブを取り出し直させることを検証する。 */
+  @Test
+  void returnsChaptersToJobsWhenBatchFails() {
+    FeedbackBatchCollector collector = newCollector(10, 60_000);
+    when(feedbackBatchGenerationService.generateBatch(anyMap()))
+        .thenReturn(Mono.error(new RuntimeException("batch failed")));
+
+    Mono<Void> saved = collector.enqueue("chap-1", "text-1").cache();
+    saved.subscribe(unused -> {}, e -> {});
+    collector.flush();
+
+    assertThatThrownBy(() -> saved.block(Duration.ofSeconds(1)))
+        .hasMessageContaining("batch failed");
+    verifyNoInteractions(feedbackService);
+  }
+
+  /** 積んだ章の Mono は保存まで完了せず、保存できなかった章はエラーになることを検証する。 */
+  @Test
+  void enqueueCompletesOnlyAfterChapterIsSaved() {
+    FeedbackBatchCollector collector = newCollector(10, 60_000);
+    when(feedbackBatchGenerationService.generateBatch(anyMap()))
+        .thenReturn(Mono.just(Map.of("chap-1", List.of(), "chap-2", List.of())));
+    doThrow(new RuntimeException("db down"))
+        .when(feedbackService)
+        .createIfAbsent("chap-2", "なおすところはなかったよ。");
+
+    Mono<Void> saved = collector.enqueue("chap-1", "text-1").cache();
+    Mono<Void> failed = collector.enqueue("chap-2", "text-2").cache();
+    saved.subscribe(unused -> {}, e -> {});
+    failed.subscribe(unused -> {}, e -> {});
+    verifyNoInteractions(feedbackService);
+    collector.flush();
+
+    saved.block(Duration.ofSeconds(1));
+    verify(feedbackService).createIfAbsent("chap-1", "なおすところはなかったよ。");
+    assertThatThrownBy(() -> failed.block(Duration.ofSeconds(1))).hasMessageContaining("db down");
+  }
+
+  /** 終了時に未投入の章はエラーで返し、ジョブを取り出し直せるようにすることを確認する。 */
+  @Test
+  void returnsPendingChaptersOnShutdown() {
+    FeedbackBatchCollector collector = newCollector(10, 60_000);
+
+    Mono<Void> pending = collector.enqueue("chap-1", "text-1");
+    collector.releasePendingOnShutdown();
+
+    assertThatThrownBy(() -> pending.block(Duration.ofSeconds(1)))
+        .isInstanceOf(IllegalStateException.class);
+    assertThat(collector.pendingCount()).isZero();
+    verify(feedbackBatchGenerationService, never()).generateBatch(anyMap());
+  }
+
+  private FeedbackBatchCollector newCollector(int maxBatchSize, long flushIntervalMillis) {
+    return new FeedbackBatchCollector(
+        feedbackBatchGenerationService,
+        feedbackService,
+        new FeedbackBatchProperties(true, maxBatchSize, flushIntervalMillis, 0, null),
+        meterRegistry);
+  }
+}
@@ -1,37 +1,59 @@
 package io.github.tempsotsusei.kotobanotane.application.feedback;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import io.github.tempsotsusei.kotobanotane.application.llm.FeedbackGenerationService;
 import io.github.tempsotsusei.kotobanotane.application.llm.FeedbackItem;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUnavailableException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
 class FeedbackGenerationJobServiceTest {
 
   private final FeedbackGenerationService feedbackGenerationService =
       Mockito.mock(FeedbackGenerationService.class);
   private final FeedbackService feedbackService = Mockito.mock(FeedbackService.class);
+  private final FeedbackBatchCollector feedbackBatchCollector =
+      Mockito.mock(FeedbackBatchCollector.class);
 
   private FeedbackGenerationJobService jobService;
 
   @BeforeEach
   void setUp() {
-    jobService = new FeedbackGenerationJobService(feedbackGenerationService, feedbackService);
+    jobService =
+        new FeedbackGenerationJobService(
+            feedbackGenerationService, feedbackService, feedbackBatchCollector);
   }
 
   /** LLM 成功時に生成されたフィードバックが保存されることを検証する。 */
   @Test
   void savesFeedbackWhenLlmSucceeds() {
-    when(feedbackGenerationService.generate("text"))
-        .thenReturn(java.util.List.of(new FeedbackItem("もと", "なおし", "りゆう")));
+    when(feedbackGenerationService.generateAsync("text"))
+        .thenReturn(Mono.just(java.util.List.of(new FeedbackItem("もと", "なおし", "りゆう"))));
 
-    jobService.generateAndSave("chap-1", "text");
+    jobService.generateAndSaveAsync("chap-1", "text").block();
 
     verify(feedbackService)
-        .create(
+        .createIfAbsent(
             "chap-1",
                 """
 						［ことばそのまま］
@@ -43,13 +65,98 @@ class FeedbackGenerationJobServiceTest {
                 .trim());
   }
 
-  /** LLM 失敗時に固定メッセージが保存されることを検証する。 */
+  /** LLM 失敗時は失敗メッセージを保存せず、エラーを返してジョブを取り出し直させることを検証する。 */
   @Test
-  void savesFailureMessageWhenLlmFails() {
-    when(feedbackGenerationService.generate("text")).thenThrow(new RuntimeException("llm failure"));
+  void propagatesFailureWhenLlmFails() {
+    when(feedbackGenerationService.generateAsync("text"))
+        .thenReturn(
+            Mono.error(new LlmUnavailableException("circuit open", Duration.ofSeconds(30))));
 
-    jobService.generateAndSave("chap-1", "text");
+    assertThatThrownBy(() -> jobService.generateAndSaveAsync("chap-1", "text").block())
+        .isInstanceOf(LlmUnavailableException.class);
 
-    verify(feedbackService).create("chap-1", "フィードバック生成に失敗しました。");
+    verify(feedbackService, never()).createIfAbsent(anyString(), anyString());
+  }
+
+  /** 取り出し回数の上限に達したジョブ向けに、固定の失敗メッセージを保存することを検証する。 */
+  @Test
+  void savesFailureMessagesForExhaustedJobs() {
+    jobService.saveFailureMessages(List.of("chap-1", "chap-2")).block();
+
+    verify(feedbackService).createIfAbsent("chap-1", "フィードバック生成に失敗しました。");
+    verify(feedbackService).createIfAbsent("chap-2", "フィードバック生成に失敗しました。");
+  }
+
+  /** バッチモードのジョブは、積んだ章がすべて保存されるまで完了しないことを検証する。 */
+  @Test
+  void batchJobCompletesOnlyAfterEveryChapterIsSaved() throws InterruptedException {
+    when(feedbackBatchCollector.isEnabled()).thenReturn(true);
+    Sinks.Empty<Void> chapter1 = Sinks.empty();
+    Sinks.Empty<Void> chapter2 = Sinks.empty();
+    when(feedbackBatchCollector.enqueue("chap-1", "text-1")).thenReturn(chapter1.asMono());
+    when(feedbackBatchCollector.enqueue("chap-2", "text-2")).thenReturn(chapter2.asMono());
+    Map<String, String> chapterTexts = new LinkedHashMap<>();
+    chapterTexts.put("chap-1", "text-1");
+    chapterTexts.put("chap-2", "text-2");
+    CountDownLatch done = new CountDownLatch(1);
+
+    jobService.runJob("auth0|user", chapterTexts).subscribe(unused -> {}, e -> {}, done::countDown);
+    verify(feedbackBatchCollector, timeout(1000)).enqueue("chap-2", "text-2");
+    chapter1.tryEmitEmpty();
+
+    assertThat(done.await(100, TimeUnit.MILLISECONDS)).isFalse();
+    chapter2.tryEmitEmpty();
+    assertThat(done.await(1, TimeUnit.SECONDS)).isTrue();
+    verifyNoInteractions(feedbackGenerationService);
+  }
+
+  /** 複数章を 1 回の生成でまとめ、応答に無い章だけ章単位の生成にフォールバックすることを検証する。 */
+  @Test
+  void savesEachChapterFromMultiChapterGeneration() {
+    Map<String, String> chapterTexts = new LinkedHashMap<>();
+    chapterTexts.put("chap-1", "text-1");
+    chapterTexts.put("chap-2", "text-2");
+    when(feedbackGenerationService.generateForChaptersAsync(chapterTexts))
+        .thenReturn(Mono.just(Map.of("chap-1", List.of())));
+    when(feedbackGenerationService.generateAsync("text-2")).thenReturn(Mono.just(List.of()));
+
+    jobService.generateAndSaveAllAsync(chapterTexts).block();
+
+    verify(feedbackService).createIfAbsent("chap-1", "なおすところはなかったよ。");
+    verify(feedbackService).createIfAbsent("chap-2", "なおすところはなかったよ。");
+    verify(feedbackGenerationService, never()).generateAsync("text-1");
+  }
+
+  /** 再実行されたジョブでは、フィードバックが保存済みの章を生成し直さないことを検証する。 */
+  @Test
+  void skipsChaptersThatAlreadyHaveFeedback() {
+    Map<String, String> chapterTexts = new LinkedHashMap<>();
+    chapterTexts.put("chap-1", "text-1");
+    chapterTexts.put("chap-2", "text-2");
+    when(feedbackService.findChapterIdsWithFeedback(chapterTexts.keySet()))
+        .thenReturn(Set.of("chap-1"));
+    when(feedbackGenerationService.generateAsync("text-2")).thenReturn(Mono.just(List.of()));
+
+    jobService.runJob("auth0|user", chapterTexts).block();
+
+    verify(feedbackService).createIfAbsent("chap-2", "なおすところはなかったよ。");
+    verify(feedbackService, never()).createIfAbsent(eq("chap-1"), anyString());
+    verify(feedbackGenerationService, never()).generateAsync("text-1");
+    verify(feedbackGenerationService, never()).generateForChaptersAsync(anyMap());
+  }
+
+  /** 複数章の生成自体が失敗した場合は、どの章にも保存せずにエラーを返すことを検証する。 */
+  @Test
+  void propagatesFailureWhenMultiChapterGenerationFails() {
+    Map<String, String> chapterTexts = new LinkedHashMap<>();
+    chapterTexts.put("chap-1", "text-1");
+    chapterTexts.put("chap-2", "text-2");
+    when(feedbackGenerationService.generateForChaptersAsync(chapterTexts))
+        .thenReturn(Mono.error(new RuntimeException("llm failure")));
+
+    assertThatThrownBy(() -> jobService.generateAndSaveAllAsync(chapterTexts).block())
+        .hasMessageContaining("llm failure");
+
+    verify(feedbackService, never()).createIfAbsent(anyString(), anyString());
   }
 }
@@ -0,0 +1,75 @@
+package io.github.tempsotsusei.kotobanotane.application.feedback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.tempsotsusei.kotobanotane.domain.feedbackjob.FeedbackJob;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class FeedbackJobFairQueueTest {
+
+  /** 章数の多い物語を続けて登録したユーザーと、1 章ずつのユーザーが交互に選ばれることを確認する。 */
+  @Test
+  void alternatesUsersByChapterCredit() {
+    FeedbackJobFairQueue queue = new FeedbackJobFairQueue(2);
+    List<FeedbackJob> candidates = new ArrayList<>();
+    candidates.addAll(story("heavy", "h1", 2));
+    candidates.addAll(story("heavy", "h2", 2));
+    candidates.addAll(story("light", "l1", 1));
+    candidates.addAll(story("light", "l2", 1));
+
+    List<List<FeedbackJob>> selected = queue.select(candidates, 10, 10, Map.of());
+
+    assertThat(selected)
+        .extracting(story -> story.get(0).storyId())
+        .containsExactly("h1", "l1", "l2", "h2");
+  }
+
+  /** 1 ユーザーの処理中の件数が上限に達していたら、そのユーザーは選ばないことを確認する。 */
+  @Test
+  void skipsUsersAtTheirShareLimit() {
+    FeedbackJobFairQueue queue = new FeedbackJobFairQueue(5);
+    List<FeedbackJob> candidates = new ArrayList<>();
+    candidates.addAll(story("heavy", "h1", 3));
+    candidates.addAll(story("light", "l1", 3));
+
+    List<List<FeedbackJob>> selected = queue.select(candidates, 10, 4, Map.of("heavy", 2));
+
+    assertThat(selected).extracting(story -> story.get(0).storyId()).containsExactly("l1");
+  }
+
+  /** 取り出しをまたいでも、前回の続きのユーザーから選ぶことを確認する。 */
+  @Test
+  void resumesRotationOnNextSelection() {
+    FeedbackJobFairQueue queue = new FeedbackJobFairQueue(1);
+    List<FeedbackJob> candidates = new ArrayList<>();
+    candidates.addAll(story("a", "a1", 1));
+    candidates.addAll(story("b", "b1", 1));
+
+    List<List<FeedbackJob>> first = queue.select(candidates, 1, 10, Map.of());
+    List<List<FeedbackJob>> second = queue.select(candidates, 1, 10, Map.of());
+
+    assertThat(first.get(0).get(0).storyId()).isEqualTo("a1");
+    assertThat(second.get(0).get(0).storyId()).isEqualTo("b1");
+  }
+
+  private static List<FeedbackJob> story(String user, String storyId, int chapters) {
+    List<FeedbackJob> jobs = new ArrayList<>();
+    for (int i = 1; i <= chapters; i++) {
+      String chapterId = storyId + "-" + i;
+      jobs.add(
+          new FeedbackJob(
+              "job-" + chapterId,
+              storyId,
+              chapterId,
+              user,
+              "text-" + chapterId,
+              0,
+              Instant.parse("2025-01-01T00:00:00Z")));
+    }
+    return jobs;
+  }
+}
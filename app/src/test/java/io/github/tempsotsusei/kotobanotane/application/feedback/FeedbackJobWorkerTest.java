@@ -0,0 +1,241 @@
+package io.github.tempsotsusei.kotobanotane.application.feedback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUnavailableException;
+import io.github.tempsotsusei.kotobanotane.application.uuid.UuidGeneratorService;
+import io.github.tempsotsusei.kotobanotane.config.FeedbackJobProperties;
+import io.github.tempsotsusei.kotobanotane.config.time.TimeProvider;
+import io.github.tempsotsusei.kotobanotane.domain.feedbackjob.FeedbackJob;
+import io.github.tempsotsusei.kotobanotane.domain.feedbackjob.FeedbackJobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.context.SmartLifecycle;
+import reactor.core.publisher.Mono;
+
+class FeedbackJobWorkerTest {
+
+  private final FeedbackJobRepository feedbackJobRepository =
+      Mockito.mock(FeedbackJobRepository.class);
+  private final FeedbackGenerationJobService feedbackGenerationJobService =
+      Mockito.mock(FeedbackGenerationJobService.class);
+  private final UuidGeneratorService uuidGeneratorService =
+      Mockito.mock(UuidGeneratorService.class);
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private FeedbackJobWorker worker;
+
+  @BeforeEach
+  void setUp() {
+    when(uuidGeneratorService.generateV7()).thenReturn("worker-1");
+    worker =
+        new FeedbackJobWorker(
+            feedbackJobRepository,
+            feedbackGenerationJobService,
+            new FeedbackJobProperties(true, 0, 0, 0, 0, 0, 3, 50, 0, 0, 0, 1_000),
+            new TimeProvider(ZoneId.of("Asia/Tokyo")),
+            uuidGeneratorService,
+            meterRegistry);
+  }
+
+  /** 取り出したジョブを物語ごとにまとめて生成し、終わったジョブを削除することを確認する。 */
+  @Test
+  void runsClaimedJobsPerStoryAndCompletesThem() {
+    queued(
+        job("job-1", "story-1", "chap-1", 0),
+        job("job-2", "story-2", "chap-3", 0),
+        job("job-3", "story-1", "chap-2", 0));
+    when(feedbackGenerationJobService.runJob(anyString(), anyMap())).thenReturn(Mono.empty());
+
+    worker.poll();
+
+    Map<String, String> story1 = new LinkedHashMap<>();
+    story1.put("chap-1", "text-chap-1");
+    story1.put("chap-2", "text-chap-2");
+    verify(feedbackGenerationJobService).runJob("auth0|user", story1);
+    verify(feedbackGenerationJobService).runJob("auth0|user", Map.of("chap-3", "text-chap-3"));
+    verify(feedbackJobRepository, timeout(1000))
+        .complete("worker-1", List.of("job-1", "job-3"));
+    verify(feedbackJobRepository, timeout(1000)).complete("worker-1", List.of("job-2"));
+  }
+
+  /** 取り出し回数の上限を超えたジョブは生成せず、失敗メッセージを保存して終えることを確認する。 */
+  @Test
+  void savesFailureMessageForExhaustedJobs() {
+    queued(job("job-1", "story-1", "chap-1", 3));
+    when(feedbackGenerationJobService.saveFailureMessages(anyCollection()))
+        .thenReturn(Mono.empty());
+
+    worker.poll();
+
+    verify(feedbackGenerationJobService).saveFailureMessages(Set.of("chap-1"));
+    verify(feedbackGenerationJobService, never()).runJob(anyString(), anyMap());
+    verify(feedbackJobRepository, timeout(1000)).complete("worker-1", List.of("job-1"));
+  }
+
+  /** 生成に失敗したジョブは失敗メッセージを保存せず、取り出し回数に応じて間を空けて取り出し直すことを確認する。 */
+  @Test
+  void retriesFailedJobsLaterWithBackoff() {
+    queued(job("job-1", "story-1", "chap-1", 1));
+    when(feedbackGenerationJobService.runJob(anyString(), anyMap()))
+        .thenReturn(Mono.error(new LlmUnavailableException("circuit open", Duration.ZERO)));
+    Instant before = Instant.now();
+
+    worker.poll();
+
+    ArgumentCaptor<Instant> retryAt = ArgumentCaptor.forClass(Instant.class);
+    verify(feedbackJobRepository, timeout(1000))
+        .retryLater(eq("worker-1"), eq(List.of("job-1")), retryAt.capture());
+    // 2 回目の取り出しなので、待ち時間は 1 秒の倍になる
+    assertThat(retryAt.getValue()).isAfterOrEqualTo(before.plusSeconds(2));
+    verify(feedbackGenerationJobService, never()).saveFailureMessages(anyCollection());
+    verify(feedbackJobRepository, never()).complete(anyString(), anyCollection());
+  }
+
+  /** 処理中のジョブのリースを延ばし、終了時に終わらなかったジョブのリースを手放すことを確認する。 */
+  @Test
+  void extendsLeasesAndReleasesUnfinishedJobsOnDrain() {
+    queued(job("job-1", "story-1", "chap-1", 0));
+    when(feedbackGenerationJobService.runJob(anyString(), anyMap())).thenReturn(Mono.never());
+    when(feedbackJobRepository.extendLeases(eq("worker-1"), anyCollection(), any()))
+        .thenReturn(1);
+
+    worker.poll();
+    worker.heartbeat();
+    worker.drain();
+    worker.poll();
+
+    verify(feedbackJobRepository).extendLeases(eq("worker-1"), eq(List.of("job-1")), any());
+    verify(feedbackJobRepository).release("worker-1", List.of("job-1"));
+    verify(feedbackJobRepository, never()).complete(anyString(), anyCollection());
+    verify(feedbackJobRepository).claim(eq("worker-1"), anyCollection(), any(), any());
+  }
+
+  /** 1 人のユーザーが先に大量に登録していても、後から登録した他のユーザーのジョブが同じ取り出しで選ばれることを確認する。 */
+  @Test
+  void sharesWorkersFairlyBetweenUsers() {
+    List<FeedbackJob> jobs = new ArrayList<>();
+    for (int i = 1; i <= 4; i++) {
+      for (int chapter = 1; chapter <= 5; chapter++) {
+        jobs.add(userJob("heavy", "story-" + i, "chap-" + i + "-" + chapter));
+      }
+    }
+    jobs.add(userJob("light", "story-light", "chap-light"));
+    queued(jobs.toArray(FeedbackJob[]::new));
+    when(feedbackGenerationJobService.runJob(anyString(), anyMap())).thenReturn(Mono.never());
+
+    worker.poll();
+
+    // 既定では 1 回に 10 件、1 ユーザーは同時処理枠 16 件の 50%（8 件）まで
+    verify(feedbackGenerationJobService).runJob(eq("auth0|light"), anyMap());
+    verify(feedbackGenerationJobService).runJob(eq("auth0|heavy"), anyMap());
+    assertThat(worker.inFlightCount()).isEqualTo(6);
+    worker.drain();
+  }
+
+  /** 候補がユーザーの上限まで埋まっていれば、すべて取り出せても順番待ちの多いユーザーとして遅延を記録することを確認する。 */
+  @Test
+  void tagsLatencyAsHeavyWhenCandidatesReachUserLimit() {
+    List<FeedbackJob> jobs = new ArrayList<>();
+    for (int chapter = 1; chapter <= 8; chapter++) {
+      jobs.add(userJob("heavy", "story-1", "chap-" + chapter));
+    }
+    queued(jobs.toArray(FeedbackJob[]::new));
+    when(feedbackGenerationJobService.runJob(anyString(), anyMap())).thenReturn(Mono.empty());
+
+    worker.poll();
+    // 処理中のジョブが終わるまで待つ
+    worker.drain();
+
+    verify(feedbackJobRepository).complete(eq("worker-1"), anyCollection());
+    assertThat(
+            meterRegistry
+                .get("feedback.jobs.latency")
+                .tag("user_backlog", "heavy")
+                .timer()
+                .count())
+        .isEqualTo(8);
+  }
+
+  /** ライフサイクルの停止で取り出しを止め、以降は動いていない扱いになることを確認する。 */
+  @Test
+  void stopsPollingWhenLifecycleStops() {
+    assertThat(worker.isRunning()).isFalse();
+
+    worker.start();
+    assertThat(worker.isRunning()).isTrue();
+    worker.stop();
+
+    assertThat(worker.isRunning()).isFalse();
+    assertThat(worker.getPhase()).isEqualTo(SmartLifecycle.DEFAULT_PHASE);
+  }
+
+  /** 候補として返し、取り出し時は指定された ID のものだけ attempts を加算して返すようにする。 */
+  private void queued(FeedbackJob... jobs) {
+    List<FeedbackJob> candidates = List.of(jobs);
+    when(feedbackJobRepository.findClaimable(any(), anyInt(), anyInt())).thenReturn(candidates);
+    when(feedbackJobRepository.claim(eq("worker-1"), anyCollection(), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              Collection<String> jobIds = invocation.getArgument(1);
+              return candidates.stream()
+                  .filter(job -> jobIds.contains(job.jobId()))
+                  .map(
+                      job ->
+                          new FeedbackJob(
+                              job.jobId(),
+                              job.storyId(),
+                              job.chapterId(),
+                              job.auth0Id(),
+                              job.chapterText(),
+                              job.attempts() + 1,
+                              job.createdAt()))
+                  .toList();
+            });
+  }
+
+  private FeedbackJob job(String jobId, String storyId, String chapterId, int attempts) {
+    return new FeedbackJob(
+        jobId,
+        storyId,
+        chapterId,
+        "auth0|user",
+        "text-" + chapterId,
+        attempts,
+        Instant.parse("2025-01-01T00:00:00Z"));
+  }
+
+  private FeedbackJob userJob(String user, String storyId, String chapterId) {
+    return new FeedbackJob(
+        "job-" + chapterId,
+        storyId,
+        chapterId,
+        "auth0|" + user,
+        "text-" + chapterId,
+        0,
+        Instant.parse("2025-01-01T00:00:00Z"));
+  }
+}
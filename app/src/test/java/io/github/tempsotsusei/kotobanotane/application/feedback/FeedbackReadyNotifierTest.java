@@ -0,0 +1,92 @@
+package io.github.tempsotsusei.kotobanotane.application.feedback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.github.tempsotsusei.kotobanotane.application.feedback.FeedbackReadyNotifier.FeedbackReady;
+import io.github.tempsotsusei.kotobanotane.config.FeedbackEventsProperties;
+import io.github.tempsotsusei.kotobanotane.domain.story.Story;
+import io.github.tempsotsusei.kotobanotane.domain.story.StoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+
+class FeedbackReadyNotifierTest {
+
+  private final StoryRepository storyRepository = Mockito.mock(StoryRepository.class);
+  private final FeedbackReadyNotifier notifier =
+      new FeedbackReadyNotifier(
+          storyRepository, new FeedbackEventsProperties(0, 0, 2), new SimpleMeterRegistry());
+
+  /** 物語の作成者の購読にだけ通知が届くことを確認する。 */
+  @Test
+  void notifiesOnlyStoryOwner() {
+    when(storyRepository.findById("story-1")).thenReturn(Optional.of(story("auth0|owner")));
+
+    List<FeedbackReady> owner = new CopyOnWriteArrayList<>();
+    List<FeedbackReady> other = new CopyOnWriteArrayList<>();
+    Disposable ownerSubscription = notifier.subscribe("auth0|owner").subscribe(owner::add);
+    Disposable otherSubscription = notifier.subscribe("auth0|other").subscribe(other::add);
+
+    notifier.onFeedbackSaved(new FeedbackSavedEvent("fb-1", "chap-1", "story-1"));
+
+    assertThat(owner).containsExactly(new FeedbackReady("story-1", "chap-1"));
+    assertThat(other).isEmpty();
+    ownerSubscription.dispose();
+    otherSubscription.dispose();
+  }
+
+  /** 誰も接続していなければ物語を読み込まないことを確認する。 */
+  @Test
+  void skipsLookupWithoutSubscribers() {
+    Disposable subscription = notifier.subscribe("auth0|owner").subscribe();
+    subscription.dispose();
+
+    notifier.onFeedbackSaved(new FeedbackSavedEvent("fb-1", "chap-1", "story-1"));
+
+    verify(storyRepository, never()).findById(anyString());
+  }
+
+  /** 1 ユーザーの同時接続数の上限を超えると 429 で拒否することを確認する。 */
+  @Test
+  void rejectsStreamsOverPerUserLimit() {
+    notifier.subscribe("auth0|owner").subscribe();
+    notifier.subscribe("auth0|owner").subscribe();
+
+    assertThatThrownBy(() -> notifier.subscribe("auth0|owner"))
+        .isInstanceOf(ResponseStatusException.class)
+        .hasMessageContaining("too many");
+  }
+
+  /** 購読されなかった Flux は接続数に数えず、購読が終われば枠を返すことを確認する。 */
+  @Test
+  void registersOnlyWhenSubscribed() {
+    notifier.subscribe("auth0|owner");
+    notifier.subscribe("auth0|owner");
+    notifier.subscribe("auth0|owner");
+
+    Disposable first = notifier.subscribe("auth0|owner").subscribe();
+    Disposable second = notifier.subscribe("auth0|owner").subscribe();
+    first.dispose();
+    second.dispose();
+
+    Disposable third = notifier.subscribe("auth0|owner").subscribe();
+    assertThat(third.isDisposed()).isFalse();
+    third.dispose();
+  }
+
+  private static Story story(String auth0Id) {
+    Instant now = Instant.parse("2025-01-01T00:00:00Z");
+    return new Story("story-1", auth0Id, "title", null, now, now);
+  }
+}
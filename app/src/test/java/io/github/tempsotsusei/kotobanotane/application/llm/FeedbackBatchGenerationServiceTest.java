@@ -0,0 +1,63 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.tempsotsusei.kotobanotane.config.FeedbackBatchProperties;
+import io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.OpenAiBatchClient;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+
+class FeedbackBatchGenerationServiceTest {
+
+  private final FeedbackGenerationService feedbackGenerationService =
+      Mockito.mock(FeedbackGenerationService.class);
+  private final OpenAiBatchClient openAiBatchClient = Mockito.mock(OpenAiBatchClient.class);
+
+  /** 完了期限を過ぎたバッチは、取り消しまでに生成された章の結果を使い、残りの章だけを即時生成することを確認する。 */
+  @Test
+  void generatesOnlyUnfinishedChaptersImmediatelyWhenBatchTimesOut() {
+    FeedbackBatchGenerationService service =
+        new FeedbackBatchGenerationService(
+            feedbackGenerationService,
+            openAiBatchClient,
+            new FeedbackBatchProperties(true, 0, 0, 10, "100ms"));
+    ObjectNode json = new ObjectMapper().createObjectNode();
+    List<FeedbackItem> fromBatch = List.of(new FeedbackItem("もと", "なおし", "りゆう"));
+    List<FeedbackItem> immediate = List.of(new FeedbackItem("もと2", "なおし2", "りゆう2"));
+    when(openAiBatchClient.execute(
+            anyMap(), any(Duration.class), anyString(), any(Duration.class)))
+        .thenReturn(
+            Mono.error(
+                new OpenAiBatchTimeoutException(
+                    "batch-1", Map.of("chap-1", OpenAiBatchResult.succeeded("chap-1", json)))));
+    when(feedbackGenerationService.parseResponse(any())).thenReturn(Optional.of(fromBatch));
+    when(feedbackGenerationService.generateAsync("text-2")).thenReturn(Mono.just(immediate));
+    when(feedbackGenerationService.generateAsync("text-3"))
+        .thenReturn(Mono.error(new OpenAiClientException("failed")));
+    Map<String, String> chapterTexts = new LinkedHashMap<>();
+    chapterTexts.put("chap-1", "text-1");
+    chapterTexts.put("chap-2", "text-2");
+    chapterTexts.put("chap-3", "text-3");
+
+    Map<String, List<FeedbackItem>> results =
+        service.generateBatch(chapterTexts).block(Duration.ofSeconds(1));
+
+    assertThat(results)
+        .containsOnly(Map.entry("chap-1", fromBatch), Map.entry("chap-2", immediate));
+    verify(feedbackGenerationService, never()).generateAsync("text-1");
+  }
+}
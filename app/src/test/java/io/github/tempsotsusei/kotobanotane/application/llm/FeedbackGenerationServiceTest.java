@@ -0,0 +1,98 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.OpenAiClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+
+class FeedbackGenerationServiceTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final OpenAiClient openAiClient = Mockito.mock(OpenAiClient.class);
+  private final FeedbackGenerationService service =
+      new FeedbackGenerationService(
+          openAiClient, objectMapper, new StructuredOutputValidator(), new SimpleMeterRegistry());
+
+  @Test
+  void generateForChaptersAsyncSendsOneRequestAndSplitsByChapterId() throws Exception {
+    // 全章を 1 回のリクエストで送り、短いキーで返ってきた結果を章 ID に戻せることを確認する。
+    JsonNode response =
+        objectMapper.readTree(
+            """
+            {"chapters": [
+              {"chapterKey": "c2", "feedbacks": []},
+              {"chapterKey": "c1", "feedbacks": [
+                {"original": "わたし、いく", "corrected": "わたしはいく", "reason": "「は」がないから"}
+              ]}
+            ]}
+            """);
+    when(openAiClient.requestStructuredJsonAsync(any(OpenAiStructuredRequest.class)))
+        .thenReturn(Mono.just(response));
+
+    Map<String, String> chapterTexts = new LinkedHashMap<>();
+    chapterTexts.put("chapter-a", "わたし、いく");
+    chapterTexts.put("chapter-b", "そらはあおい");
+
+    Map<String, List<FeedbackItem>> result = service.generateForChaptersAsync(chapterTexts).block();
+
+    assertThat(result.get("chapter-a"))
+        .containsExactly(new FeedbackItem("わたし、いく", "わたしはいく", "「は」がないから"));
+    assertThat(result.get("chapter-b")).isEmpty();
+
+    ArgumentCaptor<OpenAiStructuredRequest> captor =
+        ArgumentCaptor.forClass(OpenAiStructuredRequest.class);
+    verify(openAiClient, times(1)).requestStructuredJsonAsync(captor.capture());
+    JsonNode input = objectMapper.readTree(captor.getValue().userInput());
+    assertThat(input).hasSize(2);
+    assertThat(input.get(0).path("chapterKey").asText()).isEqualTo("c1");
+    assertThat(input.get(1).path("text").asText()).isEqualTo("そらはあおい");
+  }
+
+  @Test
+  void generateForChaptersAsyncLeavesOutChaptersThatDoNotMatchSchema() throws Exception {
+    // スキーマを満たさない章は結果に含めず、呼び出し側で章ごとの生成に回せるようにすることを確認する。
+    JsonNode response =
+        objectMapper.readTree(
+            """
+            {"chapters": [
+              {"chapterKey": "c1", "feedbacks": [{"original": "わたし、いく"}]},
+              {"chapterKey": "c2", "feedbacks": []}
+            ]}
+            """);
+    when(openAiClient.requestStructuredJsonAsync(any(OpenAiStructuredRequest.class)))
+        .thenReturn(Mono.just(response));
+
+    Map<String, String> chapterTexts = new LinkedHashMap<>();
+    chapterTexts.put("chapter-a", "わたし、いく");
+    chapterTexts.put("chapter-b", "そらはあおい");
+
+    Map<String, List<FeedbackItem>> result = service.generateForChaptersAsync(chapterTexts).block();
+
+    assertThat(result).containsOnlyKeys("chapter-b");
+  }
+
+  @Test
+  void generateAsyncFailsWhenResponseDoesNotMatchSchema() throws Exception {
+    // 1 章分の応答がスキーマを満たさない場合は、空のフィードバックとして保存せずに失敗させることを確認する。
+    JsonNode response = objectMapper.readTree("{\"feedbacks\": \"なし\"}");
+    when(openAiClient.requestStructuredJsonAsync(any(OpenAiStructuredRequest.class)))
+        .thenReturn(Mono.just(response));
+
+    assertThatThrownBy(() -> service.generateAsync("わたし、いく").block())
+        .isInstanceOf(OpenAiClientException.class);
+  }
+}
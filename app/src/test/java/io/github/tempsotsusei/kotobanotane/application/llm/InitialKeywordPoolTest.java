@@ -0,0 +1,112 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.github.tempsotsusei.kotobanotane.config.InitialKeywordPoolProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+
+class InitialKeywordPoolTest {
+
+  private static final List<List<String>> VALID_SET =
+      List.of(
+          List.of("あお", "あか", "きいろ", "みどり"),
+          List.of("そら", "うみ", "ほし", "つき"),
+          List.of("はる", "なつ", "あき", "ふゆ"));
+
+  private final KeywordListsGenerationService keywordListsGenerationService =
+      Mockito.mock(KeywordListsGenerationService.class);
+  private final LlmUsageLedger usageLedger = Mockito.mock(LlmUsageLedger.class);
+
+  /** 起動時に high watermark まで補充し、取り出したセットを再度返さないことを確認する。 */
+  @Test
+  void warmUpFillsPoolAndEntriesAreHandedOutOnce() {
+    when(keywordListsGenerationService.generateInitialKeywordsAsync())
+        .thenReturn(Mono.just(VALID_SET));
+    InitialKeywordPool pool = newPool(true, 1, 2);
+
+    pool.warmUp();
+
+    assertThat(pool.size()).isEqualTo(2);
+    Optional<List<List<String>>> first = pool.poll();
+    assertThat(first).contains(VALID_SET);
+    // 残数 1 は low watermark を下回らないため補充されない
+    assertThat(pool.size()).isEqualTo(1);
+  }
+
+  /** 検証に失敗したセットはプールに入れないことを確認する。 */
+  @Test
+  void discardsInvalidSets() {
+    when(keywordListsGenerationService.generateInitialKeywordsAsync())
+        .thenReturn(Mono.just(List.of(List.of("あお", "", "きいろ", "みどり"))));
+    InitialKeywordPool pool = newPool(true, 1, 2);
+
+    pool.warmUp();
+
+    assertThat(pool.size()).isZero();
+  }
+
+  /** プールが空の場合は利用上限を確認し、呼び出し元ユーザーに紐付けてその場で LLM を呼び出すことを確認する。 */
+  @Test
+  void fallsBackToLiveCallWhenPoolIsEmpty() {
+    AtomicReference<String> attributedTo = new AtomicReference<>();
+    when(keywordListsGenerationService.generateInitialKeywordsAsync())
+        .thenReturn(
+            Mono.deferContextual(
+                context -> {
+                  attributedTo.set(LlmUsageLedger.auth0IdOf(context));
+                  return Mono.just(VALID_SET);
+                }));
+    InitialKeywordPool pool = newPool(false, 1, 2);
+
+    List<List<String>> keywords = pool.takeOrGenerate("auth0|user");
+
+    assertThat(keywords).isEqualTo(VALID_SET);
+    verify(usageLedger).requireWithinQuota("auth0|user");
+    assertThat(attributedTo.get()).isEqualTo("auth0|user");
+  }
+
+  /** 利用上限に達している場合は、プールが空でも LLM を呼び出さないことを確認する。 */
+  @Test
+  void rejectsLiveCallWhenQuotaIsExceeded() {
+    doThrow(new LlmQuotaExceededException("quota", Duration.ofHours(1)))
+        .when(usageLedger)
+        .requireWithinQuota("auth0|user");
+    InitialKeywordPool pool = newPool(false, 1, 2);
+
+    assertThatThrownBy(() -> pool.takeOrGenerate("auth0|user"))
+        .isInstanceOf(LlmQuotaExceededException.class);
+    verify(keywordListsGenerationService, never()).generateInitialKeywordsAsync();
+  }
+
+  /** プールから返す場合は利用上限を確認しないことを確認する。 */
+  @Test
+  void doesNotCheckQuotaForPooledSets() {
+    when(keywordListsGenerationService.generateInitialKeywordsAsync())
+        .thenReturn(Mono.just(VALID_SET));
+    InitialKeywordPool pool = newPool(true, 1, 2);
+    pool.warmUp();
+
+    assertThat(pool.takeOrGenerate("auth0|user")).isEqualTo(VALID_SET);
+    verify(usageLedger, never()).requireWithinQuota("auth0|user");
+  }
+
+  private InitialKeywordPool newPool(boolean enabled, int low, int high) {
+    return new InitialKeywordPool(
+        keywordListsGenerationService,
+        usageLedger,
+        new InitialKeywordPoolProperties(enabled, low, high, 1),
+        new SimpleMeterRegistry());
+  }
+}
@@ -3,6 +3,7 @@ package io.github.tempsotsusei.kotobanotane.application.llm;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -10,22 +11,31 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.tempsotsusei.kotobanotane.config.KeywordCacheProperties;
 import io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.OpenAiClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 class KeywordListsGenerationServiceTest {
 
   private final ObjectMapper objectMapper = new ObjectMapper();
   private final OpenAiClient openAiClient = Mockito.mock(OpenAiClient.class);
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
   private KeywordListsGenerationService service;
 
   @BeforeEach
   void setUp() {
-    service = new KeywordListsGenerationService(openAiClient, objectMapper);
+    KeywordListsCache cache =
+        new KeywordListsCache(new KeywordCacheProperties(true, 0, 0), new SimpleMeterRegistry());
+    service =
+        new KeywordListsGenerationService(
+            openAiClient, objectMapper, cache, new StructuredOutputValidator(), meterRegistry);
   }
 
   @Test
@@ -47,6 +57,47 @@ class KeywordListsGenerationServiceTest {
     assertThat(lists.get(0)).containsExactly("りんご", "ばなな", "くるま", "ねこ");
   }
 
+  @Test
+  void generateReturnsCachedResultForSameNormalizedText() {
+    // 正規化後に同じ本文であれば、2 回目は OpenAI を呼ばずにキャッシュから返すことを確認する。
+    ObjectNode response = objectMapper.createObjectNode();
+    ArrayNode keywords = objectMapper.createArrayNode();
+    keywords.add(arrayOf("りんご", "ばなな", "くるま", "ねこ"));
+    keywords.add(arrayOf("いぬ", "とり", "つくえ", "そら"));
+    keywords.add(arrayOf("みかん", "もも", "ぼうし", "くつ"));
+    response.set("keywords", keywords);
+
+    when(openAiClient.requestStructuredJson(any(OpenAiStructuredRequest.class)))
+        .thenReturn(response);
+
+    List<List<String>> first = service.generate("ＡＢＣのおはなし");
+    List<List<String>> second = service.generate("ABCのおはなし ");
+
+    assertThat(second).isEqualTo(first);
+    verify(openAiClient, times(1)).requestStructuredJson(any(OpenAiStructuredRequest.class));
+  }
+
+  @Test
+  void streamKeywordSetsEmitsSetsFromStreamedDeltasAndCachesResult() {
+    // ストリーミングで届いた断片からセットを順に発行し、完了後はキャッシュから返すことを確認する。
+    when(openAiClient.streamStructuredText(
+            any(OpenAiStructuredRequest.class), any(LlmDeadline.class)))
+        .thenReturn(
+            Flux.just(
+                "{\"keywords\":[[\"りんご\",\"ばなな\",",
+                "\"くるま\",\"ねこ\"],[\"いぬ\",\"とり\",\"つくえ\",\"そら\"]",
+                ",[\"みかん\",\"もも\",\"ぼうし\",\"くつ\"]]}"));
+
+    List<List<String>> streamed = service.streamKeywordSets("テスト文章").collectList().block();
+    List<List<String>> cached = service.streamKeywordSets("テスト文章").collectList().block();
+
+    assertThat(streamed).hasSize(3);
+    assertThat(streamed.get(1)).containsExactly("いぬ", "とり", "つくえ", "そら");
+    assertThat(cached).isEqualTo(streamed);
+    verify(openAiClient, times(1))
+        .streamStructuredText(any(OpenAiStructuredRequest.class), any(LlmDeadline.class));
+  }
+
   @Test
   void generateThrowsForBlankInput() {
     // 入力が空文字の場合に例外が送出されることを確認する。
@@ -62,16 +113,124 @@ class KeywordListsGenerationServiceTest {
     keywords.add(arrayOf("はる", "なつ", "あき", "ふゆ"));
     response.set("keywords", keywords);
 
-    when(openAiClient.requestStructuredJson(any(OpenAiStructuredRequest.class)))
-        .thenReturn(response);
+    when(openAiClient.requestStructuredJsonAsync(any(OpenAiStructuredRequest.class)))
+        .thenReturn(Mono.just(response));
 
-    List<List<String>> lists = service.generateInitialKeywords();
+    List<List<String>> lists = service.generateInitialKeywordsAsync().block();
 
     assertThat(lists).hasSize(3);
     ArgumentCaptor<OpenAiStructuredRequest> captor =
         ArgumentCaptor.forClass(OpenAiStructuredRequest.class);
-    verify(openAiClient).requestStructuredJson(captor.capture());
-    assertThat(captor.getValue().userInput()).contains("seed=");
+    verify(openAiClient).requestStructuredJsonAsync(captor.capture());
+    assertThat(captor.getValue().userInput()).startsWith("seed=");
+  }
+
+  @Test
+  void initialRequestKeepsSystemPromptStableAcrossSeeds() {
+    // seed はユーザー入力だけに入り、システムプロンプトは呼び出しごとに同じ文字列になることを確認する。
+    OpenAiStructuredRequest first = service.buildInitialRequest();
+    OpenAiStructuredRequest second = service.buildInitialRequest();
+
+    assertThat(first.systemPrompt()).isEqualTo(second.systemPrompt()).doesNotContain("seed=");
+    assertThat(first.userInput()).isNotEqualTo(second.userInput());
+    assertThat(first.schema()).isSameAs(second.schema());
+  }
+
+  @Test
+  void generateAsyncComposesOnAsyncClient() {
+    // 非同期版が requestStructuredJsonAsync の結果をリストへ変換することを確認する。
+    ObjectNode response = objectMapper.createObjectNode();
+    ArrayNode keywords = objectMapper.createArrayNode();
+    keywords.add(arrayOf("りんご", "ばなな", "くるま", "ねこ"));
+    keywords.add(arrayOf("いぬ", "とり", "つくえ", "そら"));
+    keywords.add(arrayOf("みかん", "もも", "ぼうし", "くつ"));
+    response.set("keywords", keywords);
+
+    when(openAiClient.requestStructuredJsonAsync(
+            any(OpenAiStructuredRequest.class), any(LlmDeadline.class)))
+        .thenReturn(Mono.just(response));
+
+    List<List<String>> lists = service.generateAsync("テスト文章").block();
+
+    assertThat(lists).hasSize(3).first().isEqualTo(List.of("りんご", "ばなな", "くるま", "ねこ"));
+  }
+
+  @Test
+  void generateTrimsExtraWordsAndRequestsOnlyMissingSets() {
+    // 5 語のセットは 4 語に切り詰め、ひらがなでないセットは捨て、足りない 1 セットだけを追加で依頼することを確認する。
+    ObjectNode response = objectMapper.createObjectNode();
+    ArrayNode keywords = objectMapper.createArrayNode();
+    keywords.add(arrayOf("りんご", "ばなな", "くるま", "ねこ", "いす"));
+    keywords.add(arrayOf("リンゴ", "とり", "つくえ", "そら"));
+    keywords.add(arrayOf("みかん", "もも", "ぼうし", "くつ"));
+    response.set("keywords", keywords);
+    ObjectNode repaired = objectMapper.createObjectNode();
+    repaired.set("keywords", objectMapper.createArrayNode().add(arrayOf("はる", "なつ", "あき", "ふゆ")));
+
+    when(openAiClient.requestStructuredJson(any(OpenAiStructuredRequest.class)))
+        .thenReturn(response, repaired);
+
+    List<List<String>> lists = service.generate("テスト文章");
+
+    assertThat(lists)
+        .containsExactly(
+            List.of("りんご", "ばなな", "くるま", "ねこ"),
+            List.of("みかん", "もも", "ぼうし", "くつ"),
+            List.of("はる", "なつ", "あき", "ふゆ"));
+    ArgumentCaptor<OpenAiStructuredRequest> captor =
+        ArgumentCaptor.forClass(OpenAiStructuredRequest.class);
+    verify(openAiClient, times(2)).requestStructuredJson(captor.capture());
+    OpenAiStructuredRequest repair = captor.getAllValues().get(1);
+    assertThat(repair.schemaName()).isEqualTo("keyword_repair");
+    assertThat(repair.userInput()).contains("必要なセット数: 1").contains("りんご").endsWith("テスト文章");
+    assertThat(repair.schema().path("properties").path("keywords").path("maxItems").asInt())
+        .isEqualTo(1);
+    assertThat(repairs("dropped")).isEqualTo(1.0);
+  }
+
+  @Test
+  void generateAsyncReturnsValidSetsWhenRepairFails() {
+    // 補完の依頼が失敗しても、揃ったセットだけを返し、キャッシュには入れないことを確認する。
+    ObjectNode response = objectMapper.createObjectNode();
+    ArrayNode keywords = objectMapper.createArrayNode();
+    keywords.add(arrayOf("りんご", "ばなな", "くるま", "ねこ"));
+    keywords.add(arrayOf("とてもながいひらがなのたんご", "とり", "つくえ", "そら"));
+    response.set("keywords", keywords);
+
+    when(openAiClient.requestStructuredJsonAsync(
+            any(OpenAiStructuredRequest.class), any(LlmDeadline.class)))
+        .thenReturn(
+            Mono.just(response), Mono.error(new OpenAiClientException("repair failed")));
+
+    List<List<String>> lists = service.generateAsync("テスト文章").block();
+
+    assertThat(lists).containsExactly(List.of("りんご", "ばなな", "くるま", "ねこ"));
+    assertThat(repairs("incomplete")).isEqualTo(1.0);
+  }
+
+  @Test
+  void streamKeywordSetsSkipsInvalidSetAndAppendsRepairedSet() {
+    // ストリーミングでも不正なセットは流さず、足りない分を最後に補って流すことを確認する。
+    when(openAiClient.streamStructuredText(
+            any(OpenAiStructuredRequest.class), any(LlmDeadline.class)))
+        .thenReturn(
+            Flux.just(
+                "{\"keywords\":[[\"りんご\",\"ばなな\",\"くるま\",\"ねこ\"],",
+                "[\"いぬ\",\"とり\",\"つくえ\"],[\"みかん\",\"もも\",\"ぼうし\",\"くつ\"]]}"));
+    ObjectNode repaired = objectMapper.createObjectNode();
+    repaired.set("keywords", objectMapper.createArrayNode().add(arrayOf("はる", "なつ", "あき", "ふゆ")));
+    when(openAiClient.requestStructuredJsonAsync(
+            any(OpenAiStructuredRequest.class), any(LlmDeadline.class)))
+        .thenReturn(Mono.just(repaired));
+
+    List<List<String>> streamed = service.streamKeywordSets("テスト文章").collectList().block();
+
+    assertThat(streamed).hasSize(3);
+    assertThat(streamed.get(2)).containsExactly("はる", "なつ", "あき", "ふゆ");
+  }
+
+  private double repairs(String action) {
+    return meterRegistry.get("llm.keywords.repair").tag("action", action).counter().count();
   }
 
   private JsonNode arrayOf(String... values) {
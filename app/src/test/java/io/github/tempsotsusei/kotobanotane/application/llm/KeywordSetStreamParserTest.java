@@ -0,0 +1,55 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class KeywordSetStreamParserTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  /** トークンの途中で分割された断片でも、セットが完成した時点で順に取り出せることを確認する。 */
+  @Test
+  void emitsEachSetAsSoonAsItIsComplete() {
+    KeywordSetStreamParser parser = new KeywordSetStreamParser(objectMapper.getFactory());
+    List<List<String>> emitted = new ArrayList<>();
+
+    emitted.addAll(parser.feed("{\"keyw"));
+    emitted.addAll(parser.feed("ords\": [[\"りん"));
+    emitted.addAll(parser.feed("ご\", \"ばなな\", \"くるま\", \"ねこ\"]"));
+    assertThat(emitted).containsExactly(List.of("りんご", "ばなな", "くるま", "ねこ"));
+
+    emitted.addAll(parser.feed(", [\"いぬ\", \"とり\", \"つくえ\", \"そら\"], [\"み"));
+    assertThat(emitted).hasSize(2);
+
+    emitted.addAll(parser.feed("かん\", \"もも\", \"ぼうし\", \"くつ\"]]}"));
+    emitted.addAll(parser.finish());
+
+    assertThat(emitted).hasSize(3).last().isEqualTo(List.of("みかん", "もも", "ぼうし", "くつ"));
+  }
+
+  /** keywords 以外のフィールドは無視することを確認する。 */
+  @Test
+  void ignoresOtherFields() {
+    KeywordSetStreamParser parser = new KeywordSetStreamParser(objectMapper.getFactory());
+
+    List<List<String>> emitted =
+        new ArrayList<>(parser.feed("{\"note\": [[\"x\"]], \"keywords\": [[\"a\", \"b\"]]}"));
+    emitted.addAll(parser.finish());
+
+    assertThat(emitted).containsExactly(List.of("a", "b"));
+  }
+
+  /** JSON が閉じる前にストリームが終わった場合はエラーになることを確認する。 */
+  @Test
+  void finishFailsWhenJsonIsIncomplete() {
+    KeywordSetStreamParser parser = new KeywordSetStreamParser(objectMapper.getFactory());
+    parser.feed("{\"keywords\": [[\"a\", \"b\", \"c\", \"d\"]");
+
+    assertThatThrownBy(parser::finish).isInstanceOf(OpenAiClientException.class);
+  }
+}
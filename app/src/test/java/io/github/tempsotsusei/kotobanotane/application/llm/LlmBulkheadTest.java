@@ -0,0 +1,127 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.tempsotsusei.kotobanotane.config.AsyncExecutorProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class LlmBulkheadTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final LlmBulkhead bulkhead =
+      new LlmBulkhead(
+          new AsyncExecutorProperties(0, 0, 0, null, 4, Map.of("keywords", 2), 200, 0),
+          meterRegistry);
+
+  /** 仮想スレッドを何本起動しても、同時実行数がユースケースごとの上限を超えないことを確認する。 */
+  @Test
+  void limitsConcurrencyPerUseCase() throws Exception {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      threads.add(
+          Thread.startVirtualThread(
+              () ->
+                  bulkhead.call(
+                      "feedback",
+                      () -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        await(release);
+                        return running.decrementAndGet();
+                      })));
+    }
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+    while (bulkhead.inUse("feedback") < 4 && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    int inUseWhileBlocked = bulkhead.inUse("feedback");
+    release.countDown();
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(1));
+    }
+
+    assertThat(inUseWhileBlocked).isEqualTo(4);
+    assertThat(maxRunning.get()).isEqualTo(4);
+    assertThat(bulkhead.inUse("feedback")).isZero();
+  }
+
+  /** 枠が空かないまま待ち時間を過ぎたら、他のユースケースは止めずに諦めることを確認する。 */
+  @Test
+  void rejectsWhenUseCaseStaysFull() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(2);
+    for (int i = 0; i < 2; i++) {
+      Thread.startVirtualThread(
+          () ->
+              bulkhead.call(
+                  "keywords",
+                  () -> {
+                    started.countDown();
+                    return await(release);
+                  }));
+    }
+    started.await(1, TimeUnit.SECONDS);
+
+    assertThatThrownBy(() -> bulkhead.call("keywords", () -> "late"))
+        .isInstanceOf(LlmUnavailableException.class);
+    assertThat(bulkhead.call("feedback", () -> "ok")).isEqualTo("ok");
+    assertThat(rejections("keywords")).isEqualTo(1.0);
+    release.countDown();
+  }
+
+  /** 枠の空きを待つジョブが上限に達していれば、待たずに諦めることを確認する。 */
+  @Test
+  void rejectsWithoutWaitingWhenTooManyJobsAreWaiting() throws Exception {
+    LlmBulkhead small =
+        new LlmBulkhead(
+            new AsyncExecutorProperties(0, 0, 0, null, 1, Map.of(), 5_000, 1), meterRegistry);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    Thread.startVirtualThread(
+        () ->
+            small.call(
+                "async_job_ack",
+                () -> {
+                  started.countDown();
+                  return await(release);
+                }));
+    started.await(1, TimeUnit.SECONDS);
+    Thread waiter = Thread.startVirtualThread(() -> small.call("async_job_ack", () -> "queued"));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+    while (small.waiting("async_job_ack") < 1 && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+
+    long startedAt = System.nanoTime();
+    assertThatThrownBy(() -> small.call("async_job_ack", () -> "late"))
+        .isInstanceOf(LlmUnavailableException.class)
+        .hasMessageContaining("queue_full");
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isLessThan(1_000);
+    release.countDown();
+    waiter.join(TimeUnit.SECONDS.toMillis(1));
+    assertThat(small.waiting("async_job_ack")).isZero();
+  }
+
+  private double rejections(String useCase) {
+    return meterRegistry.get("llm.bulkhead.rejections").tag("use_case", useCase).counter().count();
+  }
+
+  private static boolean await(CountDownLatch latch) {
+    try {
+      return latch.await(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.tempsotsusei.kotobanotane.config.LlmSchedulerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class LlmSchedulerTest {
+
+  private final LlmScheduler scheduler =
+      new LlmScheduler(new LlmSchedulerProperties(20), new SimpleMeterRegistry());
+
+  /** 対話的な呼び出しが途切れなくても、バックグラウンドは払い出しの 20% を受け取ることを確認する。 */
+  @Test
+  void reservesShareForBackgroundWhileInteractiveIsWaiting() {
+    for (int i = 0; i < 20; i++) {
+      scheduler.offer(new LlmScheduler.Ticket(LlmPriority.INTERACTIVE));
+      scheduler.offer(new LlmScheduler.Ticket(LlmPriority.BACKGROUND));
+    }
+
+    List<LlmPriority> granted = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      granted.add(scheduler.poll().priority());
+    }
+
+    assertThat(granted.stream().filter(LlmPriority.BACKGROUND::equals).count()).isEqualTo(2);
+    assertThat(granted.subList(0, 4)).containsOnly(LlmPriority.INTERACTIVE);
+    assertThat(scheduler.size()).isEqualTo(30);
+  }
+
+  /** 対話的な呼び出しが無ければ、バックグラウンドは待たずに順番に通ることを確認する。 */
+  @Test
+  void grantsBackgroundInOrderWhenNoInteractiveIsWaiting() {
+    LlmScheduler.Ticket first = new LlmScheduler.Ticket(LlmPriority.BACKGROUND);
+    LlmScheduler.Ticket second = new LlmScheduler.Ticket(LlmPriority.BACKGROUND);
+    scheduler.offer(first);
+    scheduler.offer(second);
+
+    assertThat(scheduler.poll()).isSameAs(first);
+    assertThat(scheduler.poll()).isSameAs(second);
+    assertThat(scheduler.poll()).isNull();
+  }
+}
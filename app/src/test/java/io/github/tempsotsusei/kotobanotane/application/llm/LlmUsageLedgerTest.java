@@ -0,0 +1,116 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.github.tempsotsusei.kotobanotane.config.LlmUsageProperties;
+import io.github.tempsotsusei.kotobanotane.config.time.TimeProvider;
+import io.github.tempsotsusei.kotobanotane.domain.llmusage.LlmUsageDaily;
+import io.github.tempsotsusei.kotobanotane.domain.llmusage.LlmUsageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+class LlmUsageLedgerTest {
+
+  private final LlmUsageRepository llmUsageRepository = Mockito.mock(LlmUsageRepository.class);
+  private final TimeProvider timeProvider = new TimeProvider(ZoneId.of("Asia/Tokyo"));
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  /** 同じユーザー・ユースケースの使用量は 1 行の増分にまとめて書き出すことを確認する。 */
+  @Test
+  void flushesAggregatedIncrementsPerUserAndUseCase() {
+    LlmUsageLedger ledger = newLedger(0);
+    ledger.record("auth0|a", "keyword_matrix", new LlmUsage(100, 20, 50));
+    ledger.record("auth0|a", "keyword_matrix", new LlmUsage(80, 10, 0));
+    ledger.record(null, "feedbacks_wrapper", new LlmUsage(300, 150, 0));
+
+    ledger.flush();
+
+    LocalDate today = timeProvider.now().toLocalDate();
+    assertThat(captureFlushed())
+        .containsExactlyInAnyOrder(
+            new LlmUsageDaily("auth0|a", "keywords", today, 2, 180, 30, 50),
+            new LlmUsageDaily(LlmUsageLedger.UNATTRIBUTED, "feedback", today, 1, 300, 150, 0));
+    assertThat(meterRegistry.counter("llm.usage.tokens", "use_case", "keywords", "type", "cached"))
+        .returns(50.0, counter -> counter.count());
+    assertThat(meterRegistry.summary("llm.usage.cache_hit_ratio", "use_case", "keywords"))
+        .returns(2L, summary -> summary.count())
+        .returns(0.5, summary -> summary.max());
+  }
+
+  /** 書き出しに失敗した増分は失われず、次回の書き出しに含まれることを確認する。 */
+  @Test
+  void keepsIncrementsWhenFlushFails() {
+    LlmUsageLedger ledger = newLedger(0);
+    ledger.record("auth0|a", "keyword_matrix", new LlmUsage(100, 20, 0));
+    doThrow(new IllegalStateException("db down")).when(llmUsageRepository).addAll(anyList());
+
+    ledger.flush();
+    Mockito.reset(llmUsageRepository);
+    ledger.record("auth0|a", "keyword_matrix", new LlmUsage(10, 5, 0));
+    ledger.flush();
+
+    assertThat(captureFlushed())
+        .singleElement()
+        .satisfies(
+            usage -> {
+              assertThat(usage.requestCount()).isEqualTo(2);
+              assertThat(usage.totalTokens()).isEqualTo(135);
+            });
+  }
+
+  /** 当日の合計が上限に達したユーザーだけを拒否することを確認する。起動時に DB の当日分も読み込む。 */
+  @Test
+  void rejectsUsersOverDailyQuota() {
+    LocalDate today = timeProvider.now().toLocalDate();
+    when(llmUsageRepository.findAllByUsageDate(today))
+        .thenReturn(List.of(new LlmUsageDaily("auth0|a", "keywords", today, 3, 700, 200, 0)));
+    LlmUsageLedger ledger = newLedger(1_000);
+    ledger.start();
+
+    ledger.requireWithinQuota("auth0|a");
+    ledger.record("auth0|a", "keyword_matrix", new LlmUsage(80, 20, 0));
+
+    assertThatThrownBy(() -> ledger.requireWithinQuota("auth0|a"))
+        .isInstanceOfSatisfying(
+            LlmQuotaExceededException.class,
+            e ->
+                assertThat(e.getRetryAfter())
+                    .isPositive()
+                    .isLessThanOrEqualTo(Duration.ofDays(1)));
+    ledger.requireWithinQuota("auth0|b");
+    ledger.stop();
+  }
+
+  /** キーワードの補充呼び出しは、キーワード生成と同じユースケースとして集計することを確認する。 */
+  @Test
+  void attributesKeywordRepairToKeywords() {
+    assertThat(LlmUsageLedger.useCaseOf("keyword_repair")).isEqualTo("keywords");
+    assertThat(LlmUsageLedger.useCaseOf("keyword_matrix")).isEqualTo("keywords");
+  }
+
+  private List<LlmUsageDaily> captureFlushed() {
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<LlmUsageDaily>> captor = ArgumentCaptor.forClass(List.class);
+    verify(llmUsageRepository).addAll(captor.capture());
+    return captor.getValue();
+  }
+
+  private LlmUsageLedger newLedger(long dailyTokenQuota) {
+    return new LlmUsageLedger(
+        llmUsageRepository,
+        new LlmUsageProperties(60_000, dailyTokenQuota),
+        timeProvider,
+        meterRegistry);
+  }
+}
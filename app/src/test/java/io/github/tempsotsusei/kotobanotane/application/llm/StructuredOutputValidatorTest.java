@@ -0,0 +1,49 @@
+package io.github.tempsotsusei.kotobanotane.application.llm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+class StructuredOutputValidatorTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final StructuredOutputValidator validator = new StructuredOutputValidator();
+
+  /** 必須項目・余分なプロパティ・件数・文字列の制約の違反を、場所付きで返すことを確認する。 */
+  @Test
+  void reportsViolationsWithPaths() throws Exception {
+    JsonNode schema =
+        objectMapper.readTree(
+            """
+            {"type":"object","required":["keywords","note"],"additionalProperties":false,
+             "properties":{"keywords":{"type":"array","maxItems":1,
+               "items":{"type":"string","maxLength":3,"pattern":"^[ぁ-ゖ]+$"}}}}
+            """);
+    JsonNode value =
+        objectMapper.readTree("{\"keywords\":[\"ねこ\",\"イヌ\",\"ひよこさん\"],\"x\":1}");
+
+    assertThat(validator.validate(schema, value))
+        .containsExactlyInAnyOrder(
+            "$.note: required",
+            "$.keywords: more than 1 items",
+            "$.keywords[1]: does not match ^[ぁ-ゖ]+$",
+            "$.keywords[2]: longer than 3",
+            "$.x: not allowed");
+  }
+
+  /** 型が違う場合は型の違反だけを返し、満たしていれば空を返すことを確認する。 */
+  @Test
+  void checksTypesAndAcceptsValidValue() throws Exception {
+    JsonNode schema =
+        objectMapper.readTree(
+            "{\"type\":\"array\",\"minItems\":2,\"items\":{\"enum\":[\"a\",\"b\"]}}");
+
+    assertThat(validator.validate(schema, objectMapper.readTree("{\"a\":1}")))
+        .containsExactly("$: expected array");
+    assertThat(validator.validate(schema, objectMapper.readTree("[\"a\",\"c\"]")))
+        .containsExactly("$[1]: not one of [\"a\",\"b\"]");
+    assertThat(validator.isValid(schema, objectMapper.readTree("[\"b\",\"a\"]"))).isTrue();
+  }
+}
@@ -3,6 +3,7 @@ package io.github.tempsotsusei.kotobanotane.application.story;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -10,11 +11,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.tempsotsusei.kotobanotane.application.chapter.ChapterJsonTextService;
 import io.github.tempsotsusei.kotobanotane.application.chapter.ChapterTextAnalysis;
 import io.github.tempsotsusei.kotobanotane.application.llm.KeywordListsGenerationService;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmDeadline;
+import java.time.Duration;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
 
 class StoryChapterNextServiceTest {
 
@@ -26,6 +30,7 @@ class StoryChapterNextServiceTest {
 
   private StoryChapterNextService service;
   private JsonNode chapterJson;
+  private final LlmDeadline deadline = LlmDeadline.after(Duration.ofSeconds(10));
 
   @BeforeEach
   void setUp() throws Exception {
@@ -33,18 +38,19 @@ class StoryChapterNextServiceTest {
     chapterJson = objectMapper.readTree("{\"type\":\"doc\",\"content\":[]}");
   }
 
-  /** 正常な JSON を受け取った際に LLM 呼び出しが行われることを確認する。 */
+  /** 正常な JSON を受け取った際に、締め切りを渡して LLM 呼び出しが行われることを確認する。 */
   @Test
   void generateNextChapterKeywordsCallsLlmWhenValid() {
     when(chapterJsonTextService.analyze(chapterJson))
         .thenReturn(new ChapterTextAnalysis("ひかりの道", List.of()));
-    when(keywordListsGenerationService.generate("ひかりの道"))
-        .thenReturn(List.of(List.of("ひかり", "みち", "そら", "ゆめ")));
+    when(keywordListsGenerationService.generateAsync("ひかりの道", deadline))
+        .thenReturn(Mono.just(List.of(List.of("ひかり", "みち", "そら", "ゆめ"))));
 
-    List<List<String>> response = service.generateNextChapterKeywords(chapterJson);
+    List<List<String>> response =
+        service.generateNextChapterKeywords(chapterJson, deadline).block();
 
     assertThat(response).hasSize(1);
-    verify(keywordListsGenerationService).generate("ひかりの道");
+    verify(keywordListsGenerationService).generateAsync("ひかりの道", deadline);
   }
 
   /** 文字列化した本文が空の場合に 400 エラーとなることを検証する。 */
@@ -53,7 +59,7 @@ class StoryChapterNextServiceTest {
     when(chapterJsonTextService.analyze(chapterJson))
         .thenReturn(new ChapterTextAnalysis(" \n", List.of()));
 
-    assertThatThrownBy(() -> service.generateNextChapterKeywords(chapterJson))
+    assertThatThrownBy(() -> service.generateNextChapterKeywords(chapterJson, deadline))
         .isInstanceOf(ResponseStatusException.class)
         .hasMessageContaining("between 1 and 200");
   }
@@ -65,8 +71,19 @@ class StoryChapterNextServiceTest {
     when(chapterJsonTextService.analyze(chapterJson))
         .thenReturn(new ChapterTextAnalysis(longText, List.of()));
 
-    assertThatThrownBy(() -> service.generateNextChapterKeywords(chapterJson))
+    assertThatThrownBy(() -> service.generateNextChapterKeywords(chapterJson, deadline))
         .isInstanceOf(ResponseStatusException.class)
         .hasMessageContaining("between 1 and 200");
   }
+
+  /** ストリーミング版でも不正な本文はストリーム開始前に 400 エラーとなることを検証する。 */
+  @Test
+  void streamNextChapterKeywordsRejectsEmptyTextBeforeStreaming() {
+    when(chapterJsonTextService.analyze(chapterJson))
+        .thenReturn(new ChapterTextAnalysis("", List.of()));
+
+    assertThatThrownBy(() -> service.streamNextChapterKeywords(chapterJson, deadline))
+        .isInstanceOf(ResponseStatusException.class);
+    verifyNoInteractions(keywordListsGenerationService);
+  }
 }
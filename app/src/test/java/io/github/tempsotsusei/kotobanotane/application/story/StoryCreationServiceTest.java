@@ -2,6 +2,9 @@ package io.github.tempsotsusei.kotobanotane.application.story;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -9,6 +12,8 @@ import io.github.tempsotsusei.kotobanotane.application.chapter.ChapterService;
 import io.github.tempsotsusei.kotobanotane.application.uuid.UuidGeneratorService;
 import io.github.tempsotsusei.kotobanotane.config.time.TimeProvider;
 import io.github.tempsotsusei.kotobanotane.domain.chapter.Chapter;
+import io.github.tempsotsusei.kotobanotane.domain.feedbackjob.FeedbackJob;
+import io.github.tempsotsusei.kotobanotane.domain.feedbackjob.FeedbackJobRepository;
 import io.github.tempsotsusei.kotobanotane.domain.story.Story;
 import io.github.tempsotsusei.kotobanotane.domain.story.StoryRepository;
 import io.github.tempsotsusei.kotobanotane.domain.thumbnail.ThumbnailRepository;
@@ -16,6 +21,7 @@ import java.time.Instant;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -24,6 +30,8 @@ class StoryCreationServiceTest {
   private final StoryRepository storyRepository = Mockito.mock(StoryRepository.class);
   private final ChapterService chapterService = Mockito.mock(ChapterService.class);
   private final ThumbnailRepository thumbnailRepository = Mockito.mock(ThumbnailRepository.class);
+  private final FeedbackJobRepository feedbackJobRepository =
+      Mockito.mock(FeedbackJobRepository.class);
   private final UuidGeneratorService uuidGeneratorService =
       Mockito.mock(UuidGeneratorService.class);
   private final TimeProvider timeProvider = Mockito.mock(TimeProvider.class);
@@ -38,11 +46,12 @@ class StoryCreationServiceTest {
             storyRepository,
             chapterService,
             thumbnailRepository,
+            feedbackJobRepository,
             uuidGeneratorService,
             timeProvider);
   }
 
-  /** Story と複数章が保存され、フィードバック対象が生成される正常系を検証する。 */
+  /** Story と複数章が保存され、フィードバック対象と章ごとのジョブが生成される正常系を検証する。 */
   @Test
   void createStoryWithChaptersSavesAllAndReturnsTargets() throws Exception {
     Instant now = Instant.parse("2025-01-01T00:00:00Z");
@@ -70,9 +79,14 @@ class StoryCreationServiceTest {
         service.createStoryWithChapters("auth0|user", "物語タイトル", "thumb-1", drafts);
 
     assertThat(result.storyId()).isEqualTo("story-1");
-    assertThat(result.feedbackTargets()).hasSize(2);
-    assertThat(result.feedbackTargets().get(0).chapterId()).isEqualTo("chap-1");
-    assertThat(result.feedbackTargets().get(1).chapterId()).isEqualTo("chap-2");
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<FeedbackJob>> jobs = ArgumentCaptor.forClass(List.class);
+    verify(feedbackJobRepository).enqueueAll(jobs.capture());
+    assertThat(jobs.getValue())
+        .extracting(FeedbackJob::chapterId, FeedbackJob::chapterText, FeedbackJob::auth0Id)
+        .containsExactly(
+            tuple("chap-1", "first", "auth0|user"),
+            tuple("chap-2", "second", "auth0|user"));
   }
 
   /** タイトルが16文字以上の場合に 400 となることを検証する。 */
@@ -84,6 +98,7 @@ class StoryCreationServiceTest {
     assertThatThrownBy(
             () -> service.createStoryWithChapters("auth0|user", "abcdefghijklmnop", null, drafts))
         .isInstanceOf(ResponseStatusException.class);
+    verifyNoInteractions(feedbackJobRepository);
   }
 
   /** 章が 6 件以上の場合に 400 となることを検証する。 */
@@ -0,0 +1,148 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * テスト用の Batch API 代替サーバー。{@link okhttp3.mockwebserver.MockWebServer} の Dispatcher として使う。
+ *
+ * <p>アップロードされた JSONL の各行を {@code responder} で出力行に変換し、{@code pollsBeforeCompletion} 回の in_progress を返した後に
+ * completed にする。取り消された（{@code POST /batches/{id}/cancel}）バッチは、次の状態確認で cancelled として出力ファイルを返す。
+ */
+final class FakeOpenAiBatchServer extends Dispatcher {
+
+  private final ObjectMapper objectMapper;
+  private final Function<JsonNode, JsonNode> responder;
+  private final int pollsBeforeCompletion;
+  private final Map<String, String> files = new ConcurrentHashMap<>();
+  private final Map<String, String> batchOutputs = new ConcurrentHashMap<>();
+  private final AtomicInteger ids = new AtomicInteger();
+  private final AtomicInteger polls = new AtomicInteger();
+  private final AtomicInteger submittedLines = new AtomicInteger();
+  private final Set<String> cancelledBatches = ConcurrentHashMap.newKeySet();
+
+  FakeOpenAiBatchServer(
+      ObjectMapper objectMapper,
+      Function<JsonNode, JsonNode> responder,
+      int pollsBeforeCompletion) {
+    this.objectMapper = objectMapper;
+    this.responder = responder;
+    this.pollsBeforeCompletion = pollsBeforeCompletion;
+  }
+
+  /** 投入された JSONL の行数を返す。 */
+  int submittedLines() {
+    return submittedLines.get();
+  }
+
+  /** 取り消されたバッチ ID を返す。 */
+  Set<String> cancelledBatches() {
+    return cancelledBatches;
+  }
+
+  /** structured output を返す成功行を作る。 */
+  static JsonNode successLine(ObjectMapper objectMapper, String customId, JsonNode json) {
+    ObjectNode line = objectMapper.createObjectNode();
+    line.put("custom_id", customId);
+    ObjectNode response = line.putObject("response");
+    response.put("status_code", 200);
+    ObjectNode body = response.putObject("body");
+    ObjectNode content = body.putArray("output").addObject().putArray("content").addObject();
+    content.put("type", "output_text");
+    content.put("text", json.toString());
+    body.putObject("usage").put("input_tokens", 100).put("output_tokens", 50);
+    return line;
+  }
+
+  /** エラーステータスを返す失敗行を作る。 */
+  static JsonNode errorLine(ObjectMapper objectMapper, String customId, int statusCode) {
+    ObjectNode line = objectMapper.createObjectNode();
+    line.put("custom_id", customId);
+    line.putObject("response").put("status_code", statusCode);
+    line.putObject("error").put("message", "status " + statusCode);
+    return line;
+  }
+
+  @Override
+  public MockResponse dispatch(RecordedRequest request) {
+    String path = request.getPath().replaceAll("/+", "/");
+    try {
+      if ("POST".equals(request.getMethod()) && path.equals("/files")) {
+        return uploadFile(request.getBody().readUtf8());
+      }
+      if ("POST".equals(request.getMethod()) && path.endsWith("/cancel")) {
+        String batchId = path.substring("/batches/".length(), path.length() - "/cancel".length());
+        cancelledBatches.add(batchId);
+        return json(objectMapper.createObjectNode().put("id", batchId).put("status", "cancelling"));
+      }
+      if ("POST".equals(request.getMethod()) && path.equals("/batches")) {
+        return createBatch(objectMapper.readTree(request.getBody().readUtf8()));
+      }
+      if ("GET".equals(request.getMethod()) && path.startsWith("/batches/")) {
+        return retrieveBatch(path.substring("/batches/".length()));
+      }
+      if ("GET".equals(request.getMethod()) && path.endsWith("/content")) {
+        String fileId = path.substring("/files/".length(), path.length() - "/content".length());
+        return new MockResponse().setBody(files.getOrDefault(fileId, ""));
+      }
+    } catch (Exception e) {
+      return new MockResponse().setResponseCode(500).setBody(e.getMessage());
+    }
+    return new MockResponse().setResponseCode(404);
+  }
+
+  private MockResponse uploadFile(String multipartBody) {
+    // multipart の中から JSONL の行だけを取り出す
+    StringBuilder jsonl = new StringBuilder();
+    for (String line : multipartBody.split("\r?\n")) {
+      if (line.startsWith("{\"custom_id\"")) {
+        jsonl.append(line).append('\n');
+      }
+    }
+    String fileId = "file-" + ids.incrementAndGet();
+    files.put(fileId, jsonl.toString());
+    return json(objectMapper.createObjectNode().put("id", fileId));
+  }
+
+  private MockResponse createBatch(JsonNode body) throws Exception {
+    StringBuilder output = new StringBuilder();
+    for (String line : files.get(body.path("input_file_id").asText()).split("\n")) {
+      if (!line.isBlank()) {
+        submittedLines.incrementAndGet();
+        output.append(responder.apply(objectMapper.readTree(line))).append('\n');
+      }
+    }
+    String batchId = "batch-" + ids.incrementAndGet();
+    String outputFileId = "file-" + ids.incrementAndGet();
+    files.put(outputFileId, output.toString());
+    batchOutputs.put(batchId, outputFileId);
+    return json(objectMapper.createObjectNode().put("id", batchId).put("status", "validating"));
+  }
+
+  private MockResponse retrieveBatch(String batchId) {
+    ObjectNode batch = objectMapper.createObjectNode().put("id", batchId);
+    if (cancelledBatches.contains(batchId)) {
+      return json(
+          batch.put("status", "cancelled").put("output_file_id", batchOutputs.get(batchId)));
+    }
+    if (polls.incrementAndGet() <= pollsBeforeCompletion) {
+      return json(batch.put("status", "in_progress"));
+    }
+    return json(batch.put("status", "completed").put("output_file_id", batchOutputs.get(batchId)));
+  }
+
+  private MockResponse json(JsonNode body) {
+    return new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setBody(body.toString());
+  }
+}
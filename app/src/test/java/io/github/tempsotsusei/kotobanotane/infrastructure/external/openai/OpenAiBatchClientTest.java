@@ -0,0 +1,149 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmScheduler;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUsageLedger;
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiBatchResult;
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiBatchTimeoutException;
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiStructuredRequest;
+import io.github.tempsotsusei.kotobanotane.config.LlmSchedulerProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiCassetteProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiCircuitBreakerProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiHedgingProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiLimiterProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiOutputBudgetProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiRetryProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiRoutingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+class OpenAiBatchClientTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private MockWebServer mockWebServer;
+  private OpenAiBatchClient batchClient;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    mockWebServer = new MockWebServer();
+    mockWebServer.start();
+    OpenAiProperties properties =
+        new OpenAiProperties(
+            mockWebServer.url("/").toString(), "dummy-key", "gpt-test", 10, 1000, 5, 0);
+    OpenAiClient openAiClient =
+        new OpenAiClient(
+            WebClient.builder(),
+            objectMapper,
+            properties,
+            new StructuredRequestCoalescer(meterRegistry),
+            new OpenAiConcurrencyLimiter(
+                new OpenAiLimiterProperties(0, 0, 0, 0, 0, 0),
+                new LlmScheduler(new LlmSchedulerProperties(0), meterRegistry),
+                meterRegistry),
+            new OpenAiCircuitBreaker(
+                new OpenAiCircuitBreakerProperties(0, 0, 0, 0, 0, 0, 0), meterRegistry),
+            new OpenAiRequestHedger(
+                new OpenAiHedgingProperties(List.of(), 0, 0, 0, 0, 0), meterRegistry),
+            new OpenAiRetryPolicy(new OpenAiRetryProperties(0, 0, 0, 0, 0, 0, 0), meterRegistry),
+            mock(LlmUsageLedger.class),
+            new OutputTokenBudget(
+                new OpenAiOutputBudgetProperties(false, 0, 0, 0, 0, 0), meterRegistry),
+            new OpenAiModelRouter(
+                new OpenAiRoutingProperties(Map.of(), 0, 0, 0, 0, 0, 0), properties, meterRegistry),
+            new OpenAiCassette(new OpenAiCassetteProperties(null, null), meterRegistry),
+            meterRegistry);
+    batchClient =
+        new OpenAiBatchClient(
+            WebClient.builder(), objectMapper, properties, openAiClient, meterRegistry);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    mockWebServer.shutdown();
+  }
+
+  @Test
+  void submitsRequestsAsOneBatchAndMapsResultsByCustomId() {
+    // 2 件を 1 バッチで投入し、ポーリング後に custom_id ごとの成功・失敗が返ることを確認する。
+    FakeOpenAiBatchServer server =
+        new FakeOpenAiBatchServer(
+            objectMapper,
+            line -> {
+              String customId = line.path("custom_id").asText();
+              if ("bad".equals(customId)) {
+                return FakeOpenAiBatchServer.errorLine(objectMapper, customId, 500);
+              }
+              String userInput = line.path("body").path("input").path(1).path("content").asText();
+              JsonNode json = objectMapper.createObjectNode().put("echo", userInput);
+              return FakeOpenAiBatchServer.successLine(objectMapper, customId, json);
+            },
+            2);
+    mockWebServer.setDispatcher(server);
+
+    Map<String, OpenAiStructuredRequest> requests = new LinkedHashMap<>();
+    requests.put("good", request("こんにちは"));
+    requests.put("bad", request("さようなら"));
+
+    Map<String, OpenAiBatchResult> results =
+        batchClient.execute(requests, Duration.ofMillis(10), "24h", Duration.ofSeconds(5)).block();
+
+    assertThat(server.submittedLines()).isEqualTo(2);
+    assertThat(results.get("good").isSucceeded()).isTrue();
+    assertThat(results.get("good").json().path("echo").asText()).isEqualTo("こんにちは");
+    assertThat(results.get("bad").isSucceeded()).isFalse();
+    // アップロード・作成・ポーリング 3 回の計 5 回（ダウンロードは別計上）で 2 件を処理する
+    assertThat(meterRegistry.counter("llm.openai.batch.http_calls").count()).isEqualTo(5.0);
+    assertThat(meterRegistry.counter("llm.openai.batch.tokens", "type", "input").count())
+        .isEqualTo(100.0);
+  }
+
+  @Test
+  void cancelsBatchAndReturnsProcessedResultsWhenTimeoutPasses() {
+    // 待ち時間の上限を過ぎたらバッチを取り消し、それまでに処理された結果を例外に載せて返すことを確認する。
+    FakeOpenAiBatchServer server =
+        new FakeOpenAiBatchServer(
+            objectMapper,
+            line ->
+                FakeOpenAiBatchServer.successLine(
+                    objectMapper,
+                    line.path("custom_id").asText(),
+                    objectMapper.createObjectNode().put("echo", "ok")),
+            Integer.MAX_VALUE);
+    mockWebServer.setDispatcher(server);
+
+    assertThatThrownBy(
+            () ->
+                batchClient
+                    .execute(
+                        Map.of("good", request("こんにちは")),
+                        Duration.ofMillis(10),
+                        "24h",
+                        Duration.ofMillis(100))
+                    .block(Duration.ofSeconds(5)))
+        .isInstanceOfSatisfying(
+            OpenAiBatchTimeoutException.class,
+            e -> assertThat(e.getPartialResults().get("good").isSucceeded()).isTrue());
+    assertThat(server.cancelledBatches()).hasSize(1);
+  }
+
+  private OpenAiStructuredRequest request(String userInput) {
+    return new OpenAiStructuredRequest(
+        "system", userInput, objectMapper.createObjectNode(), "schema_name", null);
+  }
+}
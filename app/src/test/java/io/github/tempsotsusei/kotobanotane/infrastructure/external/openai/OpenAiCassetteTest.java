@@ -0,0 +1,116 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiStructuredRequest;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiCassetteProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiCassetteProperties.Mode;
+import io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.OpenAiCassette.Frame;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OpenAiCassetteTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @TempDir Path dir;
+
+  /** 起動をまたいで追記した記録を、同じ指紋ごとに記録順で繰り返し返すことを確認する。 */
+  @Test
+  void replaysRecordingsInOrderAcrossAppends() {
+    OpenAiCassette first = open(Mode.RECORD);
+    String fingerprint = first.fingerprint(request("きょうは"), false);
+    first.record(fingerprint, List.of(new Frame(1_000, "{\"n\":1}")));
+    first.close();
+    OpenAiCassette second = open(Mode.RECORD);
+    second.record(fingerprint, List.of(new Frame(2_000, "{\"n\":2}")));
+    second.close();
+
+    OpenAiCassette replay = open(Mode.REPLAY);
+
+    assertThat(replay.replay(fingerprint)).contains(List.of(new Frame(1_000, "{\"n\":1}")));
+    assertThat(replay.replay(fingerprint)).contains(List.of(new Frame(2_000, "{\"n\":2}")));
+    assertThat(replay.replay(fingerprint)).contains(List.of(new Frame(1_000, "{\"n\":1}")));
+    assertThat(
+            meterRegistry.get("llm.openai.cassette.replays").tag("result", "hit").counter().count())
+        .isEqualTo(3.0);
+  }
+
+  /** ストリーミングの記録はイベントごとの間隔ごと残り、通常の呼び出しとは別の指紋になることを確認する。 */
+  @Test
+  void keepsStreamFramesUnderSeparateFingerprint() {
+    OpenAiCassette recording = open(Mode.RECORD);
+    String stream = recording.fingerprint(request("きょうは"), true);
+    List<Frame> frames =
+        List.of(new Frame(500, "{\"type\":\"response.created\"}"), new Frame(30, "ことば"));
+    recording.record(stream, frames);
+    recording.close();
+
+    OpenAiCassette replay = open(Mode.REPLAY);
+
+    assertThat(replay.fingerprint(request("きょうは"), false)).isNotEqualTo(stream);
+    assertThat(replay.replay(stream)).contains(frames);
+    assertThat(replay.replay(replay.fingerprint(request("あしたは"), true))).isEmpty();
+  }
+
+  /** 初回サジェストのように呼び出しごとに seed が変わるリクエストも、記録した応答を再生できることを確認する。 */
+  @Test
+  void replaysInitialKeywordRequestRegardlessOfSeed() {
+    OpenAiCassette recording = open(Mode.RECORD);
+    String recorded = recording.fingerprint(request("seed=" + UUID.randomUUID()), false);
+    recording.record(recorded, List.of(new Frame(1_000, "{\"keywords\":[]}")));
+    recording.close();
+
+    OpenAiCassette replay = open(Mode.REPLAY);
+    String replayed = replay.fingerprint(request("seed=" + UUID.randomUUID()), false);
+
+    assertThat(replayed).isEqualTo(recorded);
+    assertThat(replay.replay(replayed)).contains(List.of(new Frame(1_000, "{\"keywords\":[]}")));
+    assertThat(replay.fingerprint(request("きょうは"), false)).isNotEqualTo(recorded);
+  }
+
+  /** 書き込み途中で止まったエントリは読み飛ばし、それまでの記録は使えることを確認する。 */
+  @Test
+  void ignoresTruncatedTrailingEntry() throws Exception {
+    OpenAiCassette recording = open(Mode.RECORD);
+    String fingerprint = recording.fingerprint(request("きょうは"), false);
+    recording.record(fingerprint, List.of(new Frame(1, "{}")));
+    recording.close();
+    Path path = dir.resolve("openai.cassette");
+    byte[] partial = new byte[40];
+    partial[35] = 1;
+    Files.write(path, partial, StandardOpenOption.APPEND);
+
+    assertThat(open(Mode.REPLAY).replay(fingerprint)).contains(List.of(new Frame(1, "{}")));
+  }
+
+  /** 記録も再生もしない場合は指紋を計算しないことを確認する。 */
+  @Test
+  void skipsFingerprintWhenOff() {
+    OpenAiCassette off =
+        new OpenAiCassette(new OpenAiCassetteProperties(null, null), meterRegistry);
+
+    assertThat(off.isRecording()).isFalse();
+    assertThat(off.isReplaying()).isFalse();
+    assertThat(off.fingerprint(request("きょうは"), false)).isNull();
+  }
+
+  private OpenAiCassette open(Mode mode) {
+    return new OpenAiCassette(
+        new OpenAiCassetteProperties(mode, dir.resolve("openai.cassette").toString()),
+        meterRegistry);
+  }
+
+  private OpenAiStructuredRequest request(String userInput) {
+    return new OpenAiStructuredRequest(
+        "system", userInput, objectMapper.createObjectNode(), "keyword_matrix", null);
+  }
+}
@@ -0,0 +1,150 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUnavailableException;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiCircuitBreakerProperties;
+import io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.OpenAiCircuitBreaker.Permission;
+import io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.OpenAiCircuitBreaker.State;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OpenAiCircuitBreakerTest {
+
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+  }
+
+  /** 失敗率がしきい値を超えると OPEN になり、以降は即座に LlmUnavailableException になることを確認する。 */
+  @Test
+  void opensAfterFailureRateExceedsThreshold() {
+    OpenAiCircuitBreaker breaker = newBreaker(10_000);
+
+    for (int i = 0; i < 4; i++) {
+      breaker.acquirePermission().onError(true);
+    }
+
+    assertThat(breaker.state()).isEqualTo(State.OPEN);
+    assertThatThrownBy(breaker::acquirePermission)
+        .isInstanceOf(LlmUnavailableException.class)
+        .satisfies(e -> assertThat(((LlmUnavailableException) e).getRetryAfter()).isPositive());
+    assertThat(meterRegistry.counter("llm.openai.circuit.rejected").count()).isEqualTo(1.0);
+  }
+
+  /** 障害とみなさない失敗（4xx など）ではブレーカーが開かないことを確認する。 */
+  @Test
+  void staysClosedForNonServiceFailures() {
+    OpenAiCircuitBreaker breaker = newBreaker(10_000);
+
+    for (int i = 0; i < 10; i++) {
+      breaker.acquirePermission().onError(false);
+    }
+
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+  }
+
+  /** 遅延判定から外した呼び出しは、遅くてもブレーカーを開かないことを確認する。 */
+  @Test
+  void ignoresSlowCallsExcludedFromSlowCallAccounting() throws InterruptedException {
+    OpenAiCircuitBreaker breaker = newBreaker(10_000, 1);
+
+    for (int i = 0; i < 4; i++) {
+      Permission permission = breaker.acquirePermission(false);
+      Thread.sleep(5);
+      permission.onSuccess();
+    }
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+
+    // 窓（10 件）がすべて遅い呼び出しで埋まると開く
+    for (int i = 0; i < 10; i++) {
+      Permission permission = breaker.acquirePermission();
+      Thread.sleep(5);
+      permission.onSuccess();
+    }
+    assertThat(breaker.state()).isEqualTo(State.OPEN);
+  }
+
+  /** OPEN 期間経過後は HALF_OPEN となり、試行がすべて成功すれば CLOSED に戻ることを確認する。 */
+  @Test
+  void closesAfterSuccessfulProbes() throws InterruptedException {
+    OpenAiCircuitBreaker breaker = newBreaker(50);
+    openBreaker(breaker);
+    Thread.sleep(80);
+
+    Permission first = breaker.acquirePermission();
+    Permission second = breaker.acquirePermission();
+    assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+    assertThatThrownBy(breaker::acquirePermission).isInstanceOf(LlmUnavailableException.class);
+
+    first.onSuccess();
+    second.onSuccess();
+
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+  }
+
+  /** HALF_OPEN の試行が失敗すると再び OPEN になることを確認する。 */
+  @Test
+  void reopensWhenProbeFails() throws InterruptedException {
+    OpenAiCircuitBreaker breaker = newBreaker(50);
+    openBreaker(breaker);
+    Thread.sleep(80);
+
+    breaker.acquirePermission().onError(true);
+
+    assertThat(breaker.state()).isEqualTo(State.OPEN);
+    assertThatThrownBy(breaker::acquirePermission).isInstanceOf(LlmUnavailableException.class);
+  }
+
+  /** 結果を記録せずに終わった試行は、HALF_OPEN の試行枠を返却することを確認する。 */
+  @Test
+  void releasesProbeSlotWhenCancelled() throws InterruptedException {
+    OpenAiCircuitBreaker breaker = newBreaker(50);
+    openBreaker(breaker);
+    Thread.sleep(80);
+
+    breaker.acquirePermission().releaseIfUnrecorded();
+    breaker.acquirePermission();
+    breaker.acquirePermission();
+
+    assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+  }
+
+  /** 事前判定は OPEN 期間中だけ失敗し、期間が過ぎても HALF_OPEN の試行枠を取らないことを確認する。 */
+  @Test
+  void rejectIfOpenDoesNotTakeProbeSlot() throws InterruptedException {
+    OpenAiCircuitBreaker breaker = newBreaker(50);
+    openBreaker(breaker);
+    assertThatThrownBy(breaker::rejectIfOpen).isInstanceOf(LlmUnavailableException.class);
+    Thread.sleep(80);
+
+    breaker.rejectIfOpen();
+    breaker.rejectIfOpen();
+    breaker.acquirePermission();
+    breaker.acquirePermission();
+
+    assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+  }
+
+  private void openBreaker(OpenAiCircuitBreaker breaker) {
+    for (int i = 0; i < 4; i++) {
+      breaker.acquirePermission().onError(true);
+    }
+    assertThat(breaker.state()).isEqualTo(State.OPEN);
+  }
+
+  private OpenAiCircuitBreaker newBreaker(long openDurationMillis) {
+    return newBreaker(openDurationMillis, 60_000);
+  }
+
+  private OpenAiCircuitBreaker newBreaker(long openDurationMillis, long slowCallDurationMillis) {
+    return new OpenAiCircuitBreaker(
+        new OpenAiCircuitBreakerProperties(
+            10, 4, 50, slowCallDurationMillis, 100, openDurationMillis, 2),
+        meterRegistry);
+  }
+}
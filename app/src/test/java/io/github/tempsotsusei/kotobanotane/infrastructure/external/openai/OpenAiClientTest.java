@@ -1,34 +1,66 @@
 package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmDeadline;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmDeadlineExceededException;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmScheduler;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUsage;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUsageLedger;
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiClientException;
 import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiStructuredRequest;
+import io.github.tempsotsusei.kotobanotane.config.LlmSchedulerProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiCassetteProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiCassetteProperties.Mode;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiCircuitBreakerProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiHedgingProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiLimiterProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiOutputBudgetProperties;
 import io.github.tempsotsusei.kotobanotane.config.OpenAiProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiRetryProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiRoutingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.web.reactive.function.client.WebClient;
 
 class OpenAiClientTest {
 
   private final ObjectMapper objectMapper = new ObjectMapper();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final LlmUsageLedger usageLedger = mock(LlmUsageLedger.class);
+  private final OutputTokenBudget outputBudget =
+      new OutputTokenBudget(
+          new OpenAiOutputBudgetProperties(true, 100, 0, 10, 2, 0), meterRegistry);
   private MockWebServer mockWebServer;
+  private OpenAiProperties properties;
   private OpenAiClient client;
 
   @BeforeEach
   void setUp() throws IOException {
     mockWebServer = new MockWebServer();
     mockWebServer.start();
-    OpenAiProperties properties =
+    properties =
         new OpenAiProperties(
-            mockWebServer.url("/").toString(), "dummy-key", "gpt-test", 10, 1000, 5);
-    client = new OpenAiClient(WebClient.builder(), objectMapper, properties);
+            mockWebServer.url("/").toString(), "dummy-key", "gpt-test", 10, 1000, 5, 0);
+    client = newClient(new OpenAiCassette(new OpenAiCassetteProperties(null, null), meterRegistry));
   }
 
   @AfterEach
@@ -59,4 +91,257 @@ class OpenAiClientTest {
 
     assertThat(result.path("field").asText()).isEqualTo("value");
   }
+
+  @Test
+  void asyncRequestRetriesRetryableStatusWithoutBlocking() throws Exception {
+    // 503 の後に成功レスポンスを返し、retryWhen によるリトライで JSON を取得できることを確認する。
+    mockWebServer.enqueue(new MockResponse().setResponseCode(503).setBody("unavailable"));
+    mockWebServer.enqueue(
+        new MockResponse()
+            .setHeader("Content-Type", "application/json")
+            .setBody(responseBody("field", "retried")));
+
+    JsonNode result =
+        client
+            .requestStructuredJsonAsync(
+                new OpenAiStructuredRequest(
+                    "system", "user", objectMapper.createObjectNode(), "schema_name", null))
+            .block();
+
+    assertThat(result.path("field").asText()).isEqualTo("retried");
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test
+  void retriesAfterServerProvidedDelayOn429() {
+    // 429 の retry-after-ms に従って待ってからリトライし、ヒント付きリトライとして記録されることを確認する。
+    mockWebServer.enqueue(
+        new MockResponse().setResponseCode(429).setHeader("retry-after-ms", "50").setBody("slow"));
+    mockWebServer.enqueue(
+        new MockResponse()
+            .setHeader("Content-Type", "application/json")
+            .setBody(responseBody("field", "after-hint")));
+
+    JsonNode result =
+        client.requestStructuredJson(
+            new OpenAiStructuredRequest(
+                "system", "user", objectMapper.createObjectNode(), "schema_name", null));
+
+    assertThat(result.path("field").asText()).isEqualTo("after-hint");
+    assertThat(meterRegistry.counter("llm.openai.retry", "result", "hinted").count())
+        .isEqualTo(1.0);
+  }
+
+  @Test
+  void givesUpWhenServerAsksToWaitTooLong() {
+    // Retry-After が上限（既定 30 秒）を超える場合はリトライせずに失敗することを確認する。
+    mockWebServer.enqueue(
+        new MockResponse().setResponseCode(429).setHeader("Retry-After", "120").setBody("later"));
+
+    assertThatThrownBy(
+            () ->
+                client.requestStructuredJson(
+                    new OpenAiStructuredRequest(
+                        "system", "user", objectMapper.createObjectNode(), "schema_name", null)))
+        .isInstanceOf(OpenAiClientException.class);
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+    assertThat(meterRegistry.counter("llm.openai.retry", "result", "hint_too_long").count())
+        .isEqualTo(1.0);
+  }
+
+  @Test
+  void recordsUsageForUserInSubscriberContext() {
+    // usage ブロックのトークン数を、Context で指定したユーザーとスキーマ名に紐付けて記録することを確認する。
+    ObjectNode response = (ObjectNode) readTree(responseBody("field", "value"));
+    ObjectNode usage = response.putObject("usage");
+    usage.put("input_tokens", 120);
+    usage.put("output_tokens", 30);
+    usage.putObject("input_tokens_details").put("cached_tokens", 64);
+    mockWebServer.enqueue(
+        new MockResponse()
+            .setHeader("Content-Type", "application/json")
+            .setBody(response.toString()));
+
+    client
+        .requestStructuredJsonAsync(
+            new OpenAiStructuredRequest(
+                "system", "user", objectMapper.createObjectNode(), "schema_name", null))
+        .contextWrite(LlmUsageLedger.attributedTo("auth0|user"))
+        .block();
+
+    verify(usageLedger).record("auth0|user", "schema_name", new LlmUsage(120, 30, 64));
+  }
+
+  @Test
+  void retriesWithCeilingWhenOutputIsTruncatedByLearnedBudget() throws Exception {
+    // 実測から絞った max_output_tokens で途中終了した場合、上限に広げて 1 回だけ呼び直すことを確認する。
+    outputBudget.record("schema_name", "user", 100);
+    outputBudget.record("schema_name", "user", 100);
+    ObjectNode truncated = (ObjectNode) readTree(responseBody("field", "partial"));
+    truncated.put("status", "incomplete");
+    truncated.putObject("incomplete_details").put("reason", "max_output_tokens");
+    mockWebServer.enqueue(
+        new MockResponse()
+            .setHeader("Content-Type", "application/json")
+            .setBody(truncated.toString()));
+    mockWebServer.enqueue(
+        new MockResponse()
+            .setHeader("Content-Type", "application/json")
+            .setBody(responseBody("field", "complete")));
+
+    JsonNode result =
+        client
+            .requestStructuredJsonAsync(
+                new OpenAiStructuredRequest(
+                    "system", "user", objectMapper.createObjectNode(), "schema_name", 1000))
+            .block();
+
+    assertThat(result.path("field").asText()).isEqualTo("complete");
+    assertThat(maxOutputTokensOf(mockWebServer.takeRequest())).isEqualTo(125);
+    assertThat(maxOutputTokensOf(mockWebServer.takeRequest())).isEqualTo(1000);
+    assertThat(
+            meterRegistry
+                .counter("llm.openai.output_budget.truncated", "schema", "schema_name")
+                .count())
+        .isEqualTo(1.0);
+  }
+
+  @Test
+  void failsWithDeadlineExceededWhenResponseArrivesTooLate() {
+    // 応答が締め切りより遅い場合は待ち続けずに締め切り超過として失敗することを確認する。
+    mockWebServer.enqueue(
+        new MockResponse()
+            .setHeader("Content-Type", "application/json")
+            .setBody(responseBody("field", "late"))
+            .setHeadersDelay(2, TimeUnit.SECONDS));
+
+    assertThatThrownBy(
+            () ->
+                client
+                    .requestStructuredJsonAsync(
+                        new OpenAiStructuredRequest(
+                            "system", "user", objectMapper.createObjectNode(), "schema_name", null),
+                        LlmDeadline.after(Duration.ofMillis(200)))
+                    .block())
+        .isInstanceOf(LlmDeadlineExceededException.class);
+  }
+
+  @Test
+  void streamStructuredTextEmitsDeltasUntilCompleted() throws Exception {
+    // SSE で届いた output_text.delta を順に発行し、response.completed で完了することを確認する。
+    String body =
+        """
+        event: response.created
+        data: {"type":"response.created"}
+
+        event: response.output_text.delta
+        data: {"type":"response.output_text.delta","delta":"{\\"keywords\\":"}
+
+        event: response.output_text.delta
+        data: {"type":"response.output_text.delta","delta":"[]}"}
+
+        event: response.completed
+        data: {"type":"response.completed"}
+
+        """;
+    mockWebServer.enqueue(
+        new MockResponse().setHeader("Content-Type", "text/event-stream").setBody(body));
+
+    List<String> deltas =
+        client
+            .streamStructuredText(
+                new OpenAiStructuredRequest(
+                    "system", "user", objectMapper.createObjectNode(), "schema_name", null))
+            .collectList()
+            .block();
+
+    assertThat(String.join("", deltas)).isEqualTo("{\"keywords\":[]}");
+    RecordedRequest recorded = mockWebServer.takeRequest();
+    assertThat(objectMapper.readTree(recorded.getBody().readUtf8()).path("stream").asBoolean())
+        .isTrue();
+  }
+
+  @Test
+  void replaysRecordedResponsesWithoutContactingServer(@TempDir Path dir) throws Exception {
+    // 記録モードで取得した応答を、再生モードではサーバーに接続せず記録時の所要時間で返すことを確認する。
+    String cassettePath = dir.resolve("openai.cassette").toString();
+    OpenAiStructuredRequest request =
+        new OpenAiStructuredRequest(
+            "system", "user", objectMapper.createObjectNode(), "schema_name", null);
+    mockWebServer.enqueue(
+        new MockResponse()
+            .setHeader("Content-Type", "application/json")
+            .setBody(responseBody("field", "recorded"))
+            .setBodyDelay(100, TimeUnit.MILLISECONDS));
+    OpenAiCassette recording =
+        new OpenAiCassette(new OpenAiCassetteProperties(Mode.RECORD, cassettePath), meterRegistry);
+    newClient(recording).requestStructuredJson(request);
+    recording.close();
+    mockWebServer.shutdown();
+
+    OpenAiClient replaying =
+        newClient(
+            new OpenAiCassette(
+                new OpenAiCassetteProperties(Mode.REPLAY, cassettePath), meterRegistry));
+    long startedAt = System.nanoTime();
+    JsonNode replayed = replaying.requestStructuredJson(request);
+
+    assertThat(replayed.path("field").asText()).isEqualTo("recorded");
+    assertThat(System.nanoTime() - startedAt)
+        .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    assertThatThrownBy(
+            () ->
+                replaying.requestStructuredJson(
+                    new OpenAiStructuredRequest(
+                        "system", "other", objectMapper.createObjectNode(), "schema_name", null)))
+        .isInstanceOf(OpenAiClientException.class);
+  }
+
+  private OpenAiClient newClient(OpenAiCassette cassette) {
+    return new OpenAiClient(
+        WebClient.builder(),
+        objectMapper,
+        properties,
+        new StructuredRequestCoalescer(meterRegistry),
+        new OpenAiConcurrencyLimiter(
+            new OpenAiLimiterProperties(0, 0, 0, 0, 0, 0),
+            new LlmScheduler(new LlmSchedulerProperties(0), meterRegistry),
+            meterRegistry),
+        new OpenAiCircuitBreaker(
+            new OpenAiCircuitBreakerProperties(0, 0, 0, 0, 0, 0, 0), meterRegistry),
+        new OpenAiRequestHedger(
+            new OpenAiHedgingProperties(List.of(), 0, 0, 0, 0, 0), meterRegistry),
+        new OpenAiRetryPolicy(new OpenAiRetryProperties(0, 0, 0, 0, 0, 0, 0), meterRegistry),
+        usageLedger,
+        outputBudget,
+        new OpenAiModelRouter(
+            new OpenAiRoutingProperties(Map.of(), 0, 0, 0, 0, 0, 0), properties, meterRegistry),
+        cassette,
+        meterRegistry);
+  }
+
+  private int maxOutputTokensOf(RecordedRequest recorded) throws IOException {
+    return objectMapper.readTree(recorded.getBody().readUtf8()).path("max_output_tokens").asInt();
+  }
+
+  private JsonNode readTree(String json) {
+    try {
+      return objectMapper.readTree(json);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private String responseBody(String field, String value) {
+    ObjectNode json = objectMapper.createObjectNode();
+    json.put(field, value);
+    ObjectNode content = objectMapper.createObjectNode();
+    content.put("type", "output_json_schema");
+    content.set("json", json);
+    ObjectNode outputItem = objectMapper.createObjectNode();
+    outputItem.set("content", objectMapper.createArrayNode().add(content));
+    ObjectNode root = objectMapper.createObjectNode();
+    root.set("output", objectMapper.createArrayNode().add(outputItem));
+    return root.toString();
+  }
 }
@@ -0,0 +1,157 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmPriority;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmScheduler;
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiClientException;
+import io.github.tempsotsusei.kotobanotane.config.LlmSchedulerProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiLimiterProperties;
+import io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.OpenAiConcurrencyLimiter.Outcome;
+import io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.OpenAiConcurrencyLimiter.Permit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OpenAiConcurrencyLimiterTest {
+
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+  }
+
+  /** 上限を超えた呼び出しは待機し、許可が返却されると先頭から実行されることを確認する。 */
+  @Test
+  void queuedCallerProceedsWhenPermitIsReleased() {
+    OpenAiConcurrencyLimiter limiter = newLimiter(2, 1, 10, 5, 5_000);
+    Permit first = limiter.acquire().block();
+    limiter.acquire().block();
+
+    CompletableFuture<Permit> queued = limiter.acquire().toFuture();
+    assertThat(queued).isNotDone();
+    assertThat(limiter.queueDepth()).isEqualTo(1);
+
+    limiter.release(first, Outcome.IGNORED);
+
+    assertThat(queued.join()).isNotNull();
+    assertThat(limiter.queueDepth()).isZero();
+    assertThat(limiter.inFlight()).isEqualTo(2);
+  }
+
+  /** 対話的な呼び出しは、先に並んでいたバックグラウンドの呼び出しより先に許可を受け取ることを確認する。 */
+  @Test
+  void interactiveCallerOvertakesQueuedBackgroundCaller() {
+    OpenAiConcurrencyLimiter limiter = newLimiter(1, 1, 1, 5, 5_000);
+    Permit running = limiter.acquire().block();
+
+    CompletableFuture<Permit> background =
+        limiter.acquire().contextWrite(LlmPriority.BACKGROUND.asContext()).toFuture();
+    CompletableFuture<Permit> interactive = limiter.acquire().toFuture();
+    limiter.release(running, Outcome.IGNORED);
+
+    assertThat(interactive.join()).isNotNull();
+    assertThat(background).isNotDone();
+
+    limiter.release(interactive.join(), Outcome.IGNORED);
+    assertThat(background.join()).isNotNull();
+    assertThat(
+            meterRegistry
+                .get("llm.scheduler.queue_wait")
+                .tag("priority", "background")
+                .timer()
+                .count())
+        .isEqualTo(1);
+  }
+
+  /** 429 などの過負荷では上限を縮小し、成功が続くと再び拡大することを確認する。 */
+  @Test
+  void decreasesOnOverloadAndIncreasesOnSuccess() {
+    OpenAiConcurrencyLimiter limiter = newLimiter(4, 1, 10, 5, 5_000);
+    Permit overloaded = limiter.acquire().block();
+
+    limiter.release(overloaded, Outcome.OVERLOADED);
+    assertThat(limiter.currentLimit()).isEqualTo(2);
+
+    for (int i = 0; i < 10; i++) {
+      Permit a = limiter.acquire().block();
+      Permit b = limiter.acquire().block();
+      limiter.release(a, Outcome.SUCCESS);
+      limiter.release(b, Outcome.SUCCESS);
+    }
+    assertThat(limiter.currentLimit()).isGreaterThan(2);
+  }
+
+  /** 同じ混雑で失敗した呼び出しが続けて返却されても、縮小は 1 回だけであることを確認する。 */
+  @Test
+  void decreasesOnlyOncePerCongestionEvent() {
+    OpenAiConcurrencyLimiter limiter = newLimiter(8, 1, 10, 5, 5_000);
+    Permit a = limiter.acquire().block();
+    Permit b = limiter.acquire().block();
+
+    limiter.release(a, Outcome.OVERLOADED);
+    limiter.release(b, Outcome.OVERLOADED);
+
+    assertThat(limiter.currentLimit()).isEqualTo(4);
+  }
+
+  /** 待機列が満杯の場合は即座に拒否し、メトリクスに記録することを確認する。 */
+  @Test
+  void rejectsWhenQueueIsFull() {
+    OpenAiConcurrencyLimiter limiter = newLimiter(1, 1, 1, 1, 5_000);
+    limiter.acquire().block();
+    limiter.acquire().toFuture();
+
+    assertThatThrownBy(() -> limiter.acquire().block())
+        .isInstanceOf(OpenAiClientException.class)
+        .hasMessageContaining("queue is full");
+    assertThat(
+            meterRegistry
+                .get("llm.openai.limiter.rejections")
+                .tag("reason", "queue_full")
+                .counter()
+                .count())
+        .isEqualTo(1.0);
+  }
+
+  /** バックグラウンドの呼び出しで待機列が埋まっていても、対話的な呼び出しは待機できることを確認する。 */
+  @Test
+  void keepsSeparateQueueCapacityPerPriority() {
+    OpenAiConcurrencyLimiter limiter = newLimiter(1, 1, 1, 1, 5_000);
+    Permit running = limiter.acquire().block();
+    limiter.acquire().contextWrite(LlmPriority.BACKGROUND.asContext()).toFuture();
+
+    assertThatThrownBy(
+            () -> limiter.acquire().contextWrite(LlmPriority.BACKGROUND.asContext()).block())
+        .isInstanceOf(OpenAiClientException.class)
+        .hasMessageContaining("queue is full");
+    CompletableFuture<Permit> interactive = limiter.acquire().toFuture();
+    assertThat(limiter.queueDepth()).isEqualTo(2);
+
+    limiter.release(running, Outcome.IGNORED);
+    assertThat(interactive.join()).isNotNull();
+  }
+
+  /** 締め切りまでに許可を得られない場合はエラーで待機列から外れることを確認する。 */
+  @Test
+  void failsWhenQueueDeadlinePasses() {
+    OpenAiConcurrencyLimiter limiter = newLimiter(1, 1, 1, 5, 50);
+    limiter.acquire().block();
+
+    assertThatThrownBy(() -> limiter.acquire().block())
+        .isInstanceOf(OpenAiClientException.class)
+        .hasMessageContaining("Timed out");
+    assertThat(limiter.queueDepth()).isZero();
+  }
+
+  private OpenAiConcurrencyLimiter newLimiter(
+      int initial, int min, int max, int queueSize, long queueTimeoutMillis) {
+    return new OpenAiConcurrencyLimiter(
+        new OpenAiLimiterProperties(initial, min, max, 0.5, queueSize, queueTimeoutMillis),
+        new LlmScheduler(new LlmSchedulerProperties(0), meterRegistry),
+        meterRegistry);
+  }
+}
@@ -0,0 +1,130 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.tempsotsusei.kotobanotane.config.OpenAiProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiRoutingProperties;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiRoutingProperties.Route;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class OpenAiModelRouterTest {
+
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(20);
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  /** フォールバック先が無いユースケースは、主モデル（未指定なら既定のモデル）を使うことを確認する。 */
+  @Test
+  void usesDefaultModelForUnroutedSchema() {
+    OpenAiModelRouter router = newRouter(60_000);
+
+    assertThat(router.select("feedbacks_wrapper")).isEqualTo("default-model");
+    assertThat(router.primaryModel("keyword_matrix")).isEqualTo("primary");
+  }
+
+  /** 主モデルの p95 が SLO を超えたら次のモデルへ切り替え、メトリクスに記録することを確認する。 */
+  @Test
+  void switchesToFallbackWhenP95BreachesSlo() {
+    OpenAiModelRouter router = newRouter(60_000);
+
+    for (int i = 0; i < 5; i++) {
+      router.record("keyword_matrix", router.select("keyword_matrix"), SLOW, false);
+    }
+
+    assertThat(router.select("keyword_matrix")).isEqualTo("fast");
+    assertThat(switches("primary", "fast", "latency")).isEqualTo(1.0);
+    assertThat(meterRegistry.get("llm.openai.routing.active").gauge().value()).isEqualTo(1.0);
+  }
+
+  /** p95 は記録のたびではなく一定件数（windowSize / 10）ごとに計算し直すことを確認する。 */
+  @Test
+  void recomputesP95EveryRecomputeInterval() {
+    OpenAiModelRouter router = newRouter(60_000, 100);
+    for (int i = 0; i < 5; i++) {
+      router.record("keyword_matrix", "primary", FAST, false);
+    }
+
+    for (int i = 0; i < 9; i++) {
+      router.record("keyword_matrix", "primary", SLOW, false);
+    }
+    assertThat(router.currentModel("keyword_matrix")).isEqualTo("primary");
+    router.record("keyword_matrix", "primary", SLOW, false);
+
+    assertThat(router.currentModel("keyword_matrix")).isEqualTo("fast");
+  }
+
+  /** エラー率が閾値を超えた場合も切り替えることを確認する。 */
+  @Test
+  void switchesToFallbackWhenErrorRateSpikes() {
+    OpenAiModelRouter router = newRouter(60_000);
+
+    for (int i = 0; i < 3; i++) {
+      router.record("keyword_matrix", "primary", FAST, false);
+    }
+    router.record("keyword_matrix", "primary", FAST, true);
+    router.record("keyword_matrix", "primary", FAST, true);
+
+    assertThat(router.currentModel("keyword_matrix")).isEqualTo("fast");
+    assertThat(switches("primary", "fast", "errors")).isEqualTo(1.0);
+  }
+
+  /** フォールバック中は間隔を空けて主モデルを試し、SLO 内の成功が続いたら戻すことを確認する。 */
+  @Test
+  void returnsToPrimaryAfterSuccessfulProbes() throws Exception {
+    OpenAiModelRouter router = newRouter(1);
+    for (int i = 0; i < 5; i++) {
+      router.record("keyword_matrix", "primary", SLOW, false);
+    }
+    assertThat(router.currentModel("keyword_matrix")).isEqualTo("fast");
+
+    for (int i = 0; i < 3; i++) {
+      Thread.sleep(5);
+      String probe = router.select("keyword_matrix");
+      assertThat(probe).isEqualTo("primary");
+      router.record("keyword_matrix", probe, FAST, false);
+    }
+
+    assertThat(router.currentModel("keyword_matrix")).isEqualTo("primary");
+    assertThat(switches("fast", "primary", "recovered")).isEqualTo(1.0);
+  }
+
+  private double switches(String from, String to, String reason) {
+    return meterRegistry
+        .counter(
+            "llm.openai.routing.switches",
+            "from",
+            from,
+            "reason",
+            reason,
+            "schema",
+            "keyword_matrix",
+            "to",
+            to)
+        .count();
+  }
+
+  private OpenAiModelRouter newRouter(long probeIntervalMillis) {
+    return newRouter(probeIntervalMillis, 10);
+  }
+
+  private OpenAiModelRouter newRouter(long probeIntervalMillis, int windowSize) {
+    OpenAiRoutingProperties properties =
+        new OpenAiRoutingProperties(
+            Map.of("keyword_matrix", new Route("primary", List.of("fast"))),
+            100,
+            20,
+            windowSize,
+            5,
+            probeIntervalMillis,
+            3);
+    return new OpenAiModelRouter(
+        properties,
+        new OpenAiProperties("http://localhost", "key", "default-model", 10, 1000, 3, 0),
+        meterRegistry);
+  }
+}
@@ -0,0 +1,111 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.tempsotsusei.kotobanotane.config.OpenAiHedgingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+class OpenAiRequestHedgerTest {
+
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+  }
+
+  /** 1 回目が遅い場合に予備リクエストの結果を採用し、1 回目はキャンセルされることを確認する。 */
+  @Test
+  void usesBackupWhenPrimaryIsSlow() {
+    OpenAiRequestHedger hedger = newHedger(100);
+    warmUp(hedger);
+    AtomicInteger attempts = new AtomicInteger();
+    AtomicBoolean primaryCancelled = new AtomicBoolean();
+
+    String result =
+        hedger
+            .execute(
+                "keyword_matrix",
+                () ->
+                    attempts.incrementAndGet() == 1
+                        ? Mono.delay(Duration.ofSeconds(5))
+                            .thenReturn("slow")
+                            .doOnCancel(() -> primaryCancelled.set(true))
+                        : Mono.just("fast"))
+            .block(Duration.ofSeconds(2));
+
+    assertThat(result).isEqualTo("fast");
+    assertThat(attempts.get()).isEqualTo(2);
+    assertThat(primaryCancelled.get()).isTrue();
+    assertThat(count("won")).isEqualTo(1.0);
+  }
+
+  /** 予算が足りない場合は予備リクエストを送らずに 1 回目の結果を待つことを確認する。 */
+  @Test
+  void skipsBackupWhenBudgetIsExhausted() {
+    OpenAiRequestHedger hedger = newHedger(1);
+    warmUp(hedger);
+    AtomicInteger attempts = new AtomicInteger();
+
+    String result =
+        hedger
+            .execute(
+                "keyword_matrix",
+                () -> {
+                  attempts.incrementAndGet();
+                  return Mono.delay(Duration.ofMillis(100)).thenReturn("primary");
+                })
+            .block(Duration.ofSeconds(2));
+
+    assertThat(result).isEqualTo("primary");
+    assertThat(attempts.get()).isEqualTo(1);
+    assertThat(count("skipped")).isEqualTo(1.0);
+  }
+
+  /** 対象外のユースケースではそのまま 1 回だけ呼び出すことを確認する。 */
+  @Test
+  void passesThroughForOtherSchemas() {
+    OpenAiRequestHedger hedger = newHedger(100);
+    AtomicInteger attempts = new AtomicInteger();
+
+    String result =
+        hedger
+            .execute(
+                "feedbacks_wrapper",
+                () -> {
+                  attempts.incrementAndGet();
+                  return Mono.just("ok");
+                })
+            .block();
+
+    assertThat(result).isEqualTo("ok");
+    assertThat(attempts.get()).isEqualTo(1);
+    assertThat(meterRegistry.find("llm.openai.hedge").counters()).isEmpty();
+  }
+
+  /** 即座に応答する呼び出しでレイテンシ履歴を埋め、待ち時間を下限（1ms）にする。 */
+  private void warmUp(OpenAiRequestHedger hedger) {
+    for (int i = 0; i < 5; i++) {
+      hedger.execute("keyword_matrix", () -> Mono.just("warm")).block();
+    }
+  }
+
+  private double count(String result) {
+    return meterRegistry
+        .counter("llm.openai.hedge", "schema", "keyword_matrix", "result", result)
+        .count();
+  }
+
+  private OpenAiRequestHedger newHedger(int budgetPercent) {
+    return new OpenAiRequestHedger(
+        new OpenAiHedgingProperties(List.of("keyword_matrix"), 50, 1, 10, 5, budgetPercent),
+        meterRegistry);
+  }
+}
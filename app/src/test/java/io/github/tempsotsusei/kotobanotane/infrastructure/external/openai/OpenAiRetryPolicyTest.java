@@ -0,0 +1,76 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmDeadline;
+import io.github.tempsotsusei.kotobanotane.config.OpenAiRetryProperties;
+import io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.OpenAiRetryPolicy.Decision;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OpenAiRetryPolicyTest {
+
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+  }
+
+  /** バックオフは 0〜base×2^(n-1)（上限 max）の範囲に収まることを確認する。 */
+  @Test
+  void backoffStaysWithinFullJitterRange() {
+    OpenAiRetryPolicy policy = newPolicy(100, 1_000);
+
+    for (int i = 0; i < 50; i++) {
+      Decision first = policy.decide(1, new TimeoutException(), LlmDeadline.none());
+      Decision fourth = policy.decide(4, new TimeoutException(), LlmDeadline.none());
+
+      assertThat(((Decision.Retry) first).delay()).isBetween(Duration.ZERO, Duration.ofMillis(100));
+      assertThat(((Decision.Retry) fourth).delay())
+          .isBetween(Duration.ZERO, Duration.ofMillis(800));
+    }
+  }
+
+  /** 初回試行に対するリトライが予算を超えると打ち切り、メトリクスに記録されることを確認する。 */
+  @Test
+  void givesUpWhenBudgetIsExhausted() {
+    OpenAiRetryPolicy policy = newPolicy(100, 2);
+    for (int i = 0; i < 10; i++) {
+      policy.onFirstAttempt();
+    }
+
+    LlmDeadline none = LlmDeadline.none();
+
+    // 10 件の 20% = 2 件までは許可される
+    assertThat(policy.decide(1, new TimeoutException(), none)).isInstanceOf(Decision.Retry.class);
+    assertThat(policy.decide(1, new TimeoutException(), none)).isInstanceOf(Decision.Retry.class);
+    assertThat(policy.decide(1, new TimeoutException(), none)).isInstanceOf(Decision.GiveUp.class);
+    assertThat(meterRegistry.counter("llm.openai.retry", "result", "budget_exhausted").count())
+        .isEqualTo(1.0);
+  }
+
+  /** 待ち時間の後に最低限の試行時間が残らない場合はリトライしないことを確認する。 */
+  @Test
+  void givesUpWhenRetryCannotFinishBeforeDeadline() {
+    OpenAiRetryPolicy policy = newPolicy(100, 10);
+
+    Decision decision =
+        policy.decide(1, new TimeoutException(), LlmDeadline.after(Duration.ofMillis(300)));
+
+    assertThat(decision).isInstanceOf(Decision.GiveUp.class);
+    assertThat(meterRegistry.counter("llm.openai.retry", "result", "deadline").count())
+        .isEqualTo(1.0);
+    assertThat(policy.decide(1, new TimeoutException(), LlmDeadline.after(Duration.ofSeconds(5))))
+        .isInstanceOf(Decision.Retry.class);
+  }
+
+  private OpenAiRetryPolicy newPolicy(long baseBackoffMillis, int minRetries) {
+    return new OpenAiRetryPolicy(
+        new OpenAiRetryProperties(baseBackoffMillis, 5_000, 0, 20, minRetries, 60, 500),
+        meterRegistry);
+  }
+}
@@ -0,0 +1,83 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.tempsotsusei.kotobanotane.config.OpenAiOutputBudgetProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+class OutputTokenBudgetTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  /** 件数が揃うまではリクエストごとの上限をそのまま使うことを確認する。 */
+  @Test
+  void usesCeilingUntilEnoughSamples() {
+    OutputTokenBudget budget = newBudget(true);
+    budget.record("keyword_matrix", "きょうはいいてんき", 300);
+
+    assertThat(budget.resolve("keyword_matrix", "きょうはいいてんき", 2000)).isEqualTo(2000);
+  }
+
+  /** パーセンタイルに余裕を上乗せし、上限・下限の範囲に収めることを確認する。 */
+  @Test
+  void appliesHeadroomToObservedPercentile() {
+    OutputTokenBudget budget = newBudget(true);
+    for (int i = 0; i < 4; i++) {
+      budget.record("keyword_matrix", "きょうはいいてんき", 300);
+    }
+
+    assertThat(budget.resolve("keyword_matrix", "きょうはいいてんき", 2000)).isEqualTo(375);
+    assertThat(budget.resolve("keyword_matrix", "きょうはいいてんき", 200)).isEqualTo(200);
+    assertThat(budget.resolve("feedbacks_wrapper", "きょうはいいてんき", 2000)).isEqualTo(2000);
+  }
+
+  /** 入力が普段より長い場合は、その比率で見積もりを伸ばすことを確認する。 */
+  @Test
+  void scalesWithLongerInput() {
+    OutputTokenBudget budget = newBudget(true);
+    for (int i = 0; i < 4; i++) {
+      budget.record("feedbacks_wrapper", "あいうえお", 100);
+    }
+
+    int typical = budget.resolve("feedbacks_wrapper", "あいうえお", 2000);
+    int longer = budget.resolve("feedbacks_wrapper", "あいうえお".repeat(4), 2000);
+
+    assertThat(typical).isEqualTo(125);
+    assertThat(longer).isEqualTo(500);
+  }
+
+  /** 途中終了の通知で見積もりが伸び、メトリクスに記録されることを確認する。 */
+  @Test
+  void truncationRaisesFutureBudget() {
+    OutputTokenBudget budget = newBudget(true);
+    for (int i = 0; i < 4; i++) {
+      budget.record("keyword_matrix", "きょうはいいてんき", 300);
+    }
+
+    budget.onTruncated("keyword_matrix", 375, 2000);
+
+    assertThat(budget.resolve("keyword_matrix", "きょうはいいてんき", 2000)).isEqualTo(938);
+    assertThat(
+            meterRegistry
+                .counter("llm.openai.output_budget.truncated", "schema", "keyword_matrix")
+                .count())
+        .isEqualTo(1.0);
+  }
+
+  /** 無効化されている場合は常に上限を使うことを確認する。 */
+  @Test
+  void returnsCeilingWhenDisabled() {
+    OutputTokenBudget budget = newBudget(false);
+    for (int i = 0; i < 4; i++) {
+      budget.record("keyword_matrix", "きょうはいいてんき", 300);
+    }
+
+    assertThat(budget.resolve("keyword_matrix", "きょうはいいてんき", 2000)).isEqualTo(2000);
+  }
+
+  private OutputTokenBudget newBudget(boolean enabled) {
+    return new OutputTokenBudget(
+        new OpenAiOutputBudgetProperties(enabled, 100, 25, 10, 4, 64), meterRegistry);
+  }
+}
@@ -0,0 +1,58 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+class RateLimitHintsTest {
+
+  @Test
+  void prefersRetryAfterMsOverRetryAfter() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set("retry-after-ms", "1500");
+    headers.set(HttpHeaders.RETRY_AFTER, "10");
+
+    assertThat(RateLimitHints.parse(headers)).contains(Duration.ofMillis(1500));
+  }
+
+  @Test
+  void parsesRetryAfterSeconds() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.RETRY_AFTER, "2");
+
+    assertThat(RateLimitHints.parse(headers)).contains(Duration.ofSeconds(2));
+  }
+
+  @Test
+  void usesLongestResetOfExhaustedLimits() {
+    // 残量が 0 の種類だけを対象にし、Go 形式の期間（6m0s, 20ms など）を解釈することを確認する。
+    HttpHeaders headers = new HttpHeaders();
+    headers.set("x-ratelimit-remaining-requests", "0");
+    headers.set("x-ratelimit-reset-requests", "1.5s");
+    headers.set("x-ratelimit-remaining-tokens", "0");
+    headers.set("x-ratelimit-reset-tokens", "1m2s");
+
+    assertThat(RateLimitHints.parse(headers)).contains(Duration.ofSeconds(62));
+  }
+
+  @Test
+  void ignoresResetWhenLimitIsNotExhausted() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set("x-ratelimit-remaining-requests", "12");
+    headers.set("x-ratelimit-reset-requests", "20ms");
+
+    assertThat(RateLimitHints.parse(headers)).isEmpty();
+  }
+
+  @Test
+  void ignoresUnparsableValues() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.RETRY_AFTER, "soon");
+    headers.set("x-ratelimit-remaining-tokens", "0");
+    headers.set("x-ratelimit-reset-tokens", "1x");
+
+    assertThat(RateLimitHints.parse(headers)).isEmpty();
+  }
+}
@@ -0,0 +1,97 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.tempsotsusei.kotobanotane.application.llm.OpenAiStructuredRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class StructuredRequestCoalescerTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private SimpleMeterRegistry meterRegistry;
+  private StructuredRequestCoalescer coalescer;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    coalescer = new StructuredRequestCoalescer(meterRegistry);
+  }
+
+  /** 処理中の同一リクエストは 1 回の呼び出しにまとめられ、結果を共有することを確認する。 */
+  @Test
+  void sharesInFlightCallBetweenDuplicateRequests() {
+    AtomicInteger calls = new AtomicInteger();
+    Sinks.One<JsonNode> sink = Sinks.one();
+    Supplier<Mono<JsonNode>> call =
+        () -> {
+          calls.incrementAndGet();
+          return sink.asMono();
+        };
+
+    CompletableFuture<JsonNode> first =
+        coalescer.execute(request("ひかりの みち"), "gpt-test", call).toFuture();
+    // 全角スペースや末尾の空白は正規化され、同一キーとして扱われる
+    CompletableFuture<JsonNode> second =
+        coalescer.execute(request("ひかりの　みち "), "gpt-test", call).toFuture();
+
+    JsonNode response = objectMapper.createObjectNode().put("field", "value");
+    sink.tryEmitValue(response);
+
+    assertThat(first.join()).isSameAs(response);
+    assertThat(second.join()).isSameAs(response);
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(
+            meterRegistry
+                .get("llm.openai.coalescing.saved")
+                .tag("schema", "schema_name")
+                .counter()
+                .count())
+        .isEqualTo(1.0);
+  }
+
+  /** 完了後の同一リクエストは結果をキャッシュせず、新たに呼び出すことを確認する。 */
+  @Test
+  void startsNewCallAfterPreviousCompleted() {
+    AtomicInteger calls = new AtomicInteger();
+    Supplier<Mono<JsonNode>> call =
+        () ->
+            Mono.fromSupplier(
+                () -> objectMapper.createObjectNode().put("n", calls.incrementAndGet()));
+
+    coalescer.execute(request("おなじ"), "gpt-test", call).block();
+    coalescer.execute(request("おなじ"), "gpt-test", call).block();
+
+    assertThat(calls.get()).isEqualTo(2);
+  }
+
+  /** モデルが異なる場合は別キーとして扱うことを確認する。 */
+  @Test
+  void doesNotShareAcrossModels() {
+    AtomicInteger calls = new AtomicInteger();
+    Sinks.One<JsonNode> sink = Sinks.one();
+    Supplier<Mono<JsonNode>> call =
+        () -> {
+          calls.incrementAndGet();
+          return sink.asMono();
+        };
+
+    coalescer.execute(request("おなじ"), "gpt-a", call).toFuture();
+    coalescer.execute(request("おなじ"), "gpt-b", call).toFuture();
+
+    assertThat(calls.get()).isEqualTo(2);
+  }
+
+  private OpenAiStructuredRequest request(String userInput) {
+    return new OpenAiStructuredRequest(
+        "system", userInput, objectMapper.createObjectNode(), "schema_name", null);
+  }
+}
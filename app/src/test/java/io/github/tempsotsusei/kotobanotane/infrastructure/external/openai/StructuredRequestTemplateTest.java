@@ -0,0 +1,95 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class StructuredRequestTemplateTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void rendersSameJsonAsMapBasedPayload() throws Exception {
+    // 引用符・改行・日本語を含む入力でも、差し込み後のボディが従来の組み立てと同じ JSON になることを確認する。
+    ObjectNode schema = objectMapper.createObjectNode();
+    schema.put("type", "object");
+    schema.putObject("properties").putObject("keywords").put("type", "array");
+    String userInput = "きょうは \"そら\" を\nみた。\\おわり";
+    String systemPrompt = "system \"prompt\"";
+
+    StructuredRequestTemplate template =
+        StructuredRequestTemplate.create(
+            objectMapper, "gpt-test", systemPrompt, "keyword_matrix", schema, false);
+    JsonNode rendered = objectMapper.readTree(template.render(objectMapper, userInput, 1500));
+
+    ObjectNode expected = objectMapper.createObjectNode();
+    expected.put("model", "gpt-test");
+    expected.put(
+        "prompt_cache_key",
+        StructuredRequestTemplate.promptCacheKey(
+            objectMapper, "keyword_matrix", systemPrompt, schema));
+    expected
+        .putArray("input")
+        .add(objectMapper.createObjectNode().put("role", "system").put("content", systemPrompt))
+        .add(objectMapper.createObjectNode().put("role", "user").put("content", userInput));
+    ObjectNode format = expected.putObject("text").putObject("format");
+    format.put("type", "json_schema");
+    format.put("name", "keyword_matrix");
+    format.set("schema", schema);
+    expected.put("max_output_tokens", 1500);
+    assertThat(rendered).isEqualTo(expected);
+  }
+
+  @Test
+  void staticPartsFormByteStablePrefixBeforeUserInput() {
+    // スキーマとシステムプロンプトがユーザー入力より前に並び、入力が違っても先頭のバイト列が一致することを確認する。
+    ObjectNode schema = objectMapper.createObjectNode().put("type", "object");
+    StructuredRequestTemplate template =
+        StructuredRequestTemplate.create(
+            objectMapper, "gpt-test", "system", "keyword_matrix", schema, false);
+
+    String first = new String(template.render(objectMapper, "seed=1", 10), StandardCharsets.UTF_8);
+    String second = new String(template.render(objectMapper, "seed=2", 99), StandardCharsets.UTF_8);
+    String prefix = first.substring(0, first.indexOf("\"seed=1\""));
+
+    assertThat(second).startsWith(prefix);
+    assertThat(prefix).contains("\"json_schema\"", "\"system\"", "\"prompt_cache_key\"");
+  }
+
+  @Test
+  void promptCacheKeyChangesWithPromptOrSchema() {
+    ObjectNode schema = objectMapper.createObjectNode().put("type", "object");
+    ObjectNode otherSchema = objectMapper.createObjectNode().put("type", "array");
+
+    String key = StructuredRequestTemplate.promptCacheKey(objectMapper, "s", "prompt", schema);
+
+    assertThat(key).startsWith("s-").hasSize(18);
+    assertThat(StructuredRequestTemplate.promptCacheKey(objectMapper, "s", "prompt", schema))
+        .isEqualTo(key);
+    assertThat(StructuredRequestTemplate.promptCacheKey(objectMapper, "s", "prompt2", schema))
+        .isNotEqualTo(key);
+    assertThat(StructuredRequestTemplate.promptCacheKey(objectMapper, "s", "prompt", otherSchema))
+        .isNotEqualTo(key);
+  }
+
+  @Test
+  void templateIsReusableAcrossInputs() throws Exception {
+    // 同じテンプレートから異なる入力・トークン上限で繰り返し組み立てても互いに影響しないことを確認する。
+    StructuredRequestTemplate template =
+        StructuredRequestTemplate.create(
+            objectMapper, "gpt-test", "system", "schema", objectMapper.createObjectNode(), true);
+
+    JsonNode first = objectMapper.readTree(template.render(objectMapper, "first", 10));
+    JsonNode second = objectMapper.readTree(template.render(objectMapper, "second", 20));
+
+    assertThat(first.path("stream").asBoolean()).isTrue();
+    assertThat(first.path("input").path(1).path("content").asText()).isEqualTo("first");
+    assertThat(first.path("max_output_tokens").asInt()).isEqualTo(10);
+    assertThat(second.path("input").path(1).path("content").asText()).isEqualTo("second");
+    assertThat(second.path("max_output_tokens").asInt()).isEqualTo(20);
+  }
+}
@@ -0,0 +1,161 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.external.openai.fake;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.tempsotsusei.kotobanotane.config.FakeOpenAiProperties;
+import io.github.tempsotsusei.kotobanotane.config.FakeOpenAiProperties.LatencyDistribution;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.reactive.function.client.WebClient;
+
+class FakeOpenAiServerTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private FakeOpenAiServer server;
+
+  @AfterEach
+  void tearDown() {
+    if (server != null) {
+      server.stop();
+    }
+  }
+
+  /** キーワードのスキーマ（3 セット × 4 語）を満たす出力と使用量を返すことを確認する。 */
+  @Test
+  void returnsSchemaValidStructuredOutput() throws Exception {
+    start(0, 0);
+
+    ResponseEntity<String> response = post(request(false, 2000));
+    JsonNode body = objectMapper.readTree(response.getBody());
+    String text = body.path("output").path(0).path("content").path(0).path("text").asText();
+    JsonNode output = objectMapper.readTree(text);
+
+    assertThat(response.getStatusCode().value()).isEqualTo(200);
+    assertThat(body.path("status").asText()).isEqualTo("completed");
+    assertThat(output.path("keywords")).hasSize(3);
+    output.path("keywords").forEach(set -> assertThat(set).hasSize(4));
+    assertThat(body.path("usage").path("output_tokens").asInt()).isPositive();
+  }
+
+  /** 出力が max_output_tokens を超える場合は incomplete で返すことを確認する。 */
+  @Test
+  void marksResponseIncompleteWhenOutputExceedsMaxOutputTokens() throws Exception {
+    start(0, 0);
+
+    JsonNode body = objectMapper.readTree(post(request(false, 5)).getBody());
+
+    assertThat(body.path("status").asText()).isEqualTo("incomplete");
+    assertThat(body.path("incomplete_details").path("reason").asText())
+        .isEqualTo("max_output_tokens");
+  }
+
+  /** 429 を返す設定では Retry-After 系のヘッダーを付けることを確認する。 */
+  @Test
+  void injectsRateLimitWithRetryAfter() {
+    start(100, 0);
+
+    ResponseEntity<String> response = post(request(false, 2000));
+
+    assertThat(response.getStatusCode().value()).isEqualTo(429);
+    assertThat(response.getHeaders().getFirst("retry-after-ms")).isEqualTo("1500");
+    assertThat(response.getHeaders().getFirst("Retry-After")).isEqualTo("2");
+  }
+
+  /** ストリーミングでは差分を送った後に response.completed で終えることを確認する。 */
+  @Test
+  void streamsDeltasUntilCompleted() throws Exception {
+    start(0, 0);
+
+    String body = post(request(true, 2000)).getBody();
+    StringBuilder text = new StringBuilder();
+    for (String line : body.split("\n")) {
+      if (line.startsWith("data: ")) {
+        JsonNode event = objectMapper.readTree(line.substring("data: ".length()));
+        if ("response.output_text.delta".equals(event.path("type").asText())) {
+          text.append(event.path("delta").asText());
+        }
+      }
+    }
+
+    assertThat(body).contains("event: response.created").endsWith("\n\n");
+    assertThat(body).contains("event: response.completed");
+    assertThat(objectMapper.readTree(text.toString()).path("keywords")).hasSize(3);
+  }
+
+  /** 複数章の入力では、入力の chapterKey ごとに 1 要素ずつ返すことを確認する。 */
+  @Test
+  void echoesChapterKeysForMultiChapterSchema() {
+    ObjectNode item = objectMapper.createObjectNode().put("type", "object");
+    item.putObject("properties").putObject("chapterKey").put("type", "string");
+    item.putArray("required").add("chapterKey");
+    ObjectNode schema = objectMapper.createObjectNode().put("type", "object");
+    ObjectNode chapters = schema.putObject("properties").putObject("chapters");
+    chapters.put("type", "array").set("items", item);
+    schema.putArray("required").add("chapters");
+
+    String input = "[{\"chapterKey\":\"c1\",\"text\":\"a\"},{\"chapterKey\":\"c2\"}]";
+
+    JsonNode output =
+        new FakeStructuredOutputGenerator(objectMapper, new Random(1)).generate(schema, input);
+
+    assertThat(output.path("chapters")).hasSize(2);
+    assertThat(output.path("chapters").path(1).path("chapterKey").asText()).isEqualTo("c2");
+  }
+
+  private void start(int rateLimitPercent, int serverErrorPercent) {
+    server =
+        new FakeOpenAiServer(
+            new FakeOpenAiProperties(
+                "127.0.0.1",
+                0,
+                LatencyDistribution.FIXED,
+                1,
+                1,
+                rateLimitPercent,
+                serverErrorPercent,
+                1500,
+                1,
+                8,
+                0,
+                42),
+            objectMapper);
+    server.start();
+  }
+
+  private ResponseEntity<String> post(ObjectNode body) {
+    return WebClient.create("http://127.0.0.1:" + server.port() + "/v1")
+        .post()
+        .uri("/responses")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(body.toString())
+        .exchangeToMono(response -> response.toEntity(String.class))
+        .block();
+  }
+
+  private ObjectNode request(boolean stream, int maxOutputTokens) {
+    ObjectNode words = objectMapper.createObjectNode().put("type", "array");
+    words.put("minItems", 4).put("maxItems", 4).putObject("items").put("type", "string");
+    ObjectNode keywords = objectMapper.createObjectNode().put("type", "array");
+    keywords.put("minItems", 3).put("maxItems", 3).set("items", words);
+    ObjectNode schema = objectMapper.createObjectNode().put("type", "object");
+    schema.putObject("properties").set("keywords", keywords);
+    schema.putArray("required").add("keywords");
+
+    ObjectNode body = objectMapper.createObjectNode().put("model", "gpt-test");
+    if (stream) {
+      body.put("stream", true);
+    }
+    body.putObject("text").putObject("format").put("type", "json_schema").set("schema", schema);
+    body.putArray("input")
+        .add(objectMapper.createObjectNode().put("role", "system").put("content", "system"))
+        .add(objectMapper.createObjectNode().put("role", "user").put("content", "きょうは"));
+    body.put("max_output_tokens", maxOutputTokens);
+    return body;
+  }
+}
@@ -0,0 +1,41 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.persistence.feedback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import io.github.tempsotsusei.kotobanotane.domain.feedback.Feedback;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(FeedbackRepositoryImpl.class)
+class FeedbackRepositoryImplTest {
+
+  private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+  @Autowired private FeedbackRepositoryImpl feedbackRepository;
+
+  /** 同じ章への 2 回目の保存は登録せず、最初のフィードバックを残すことを確認する。 */
+  @Test
+  void saveIfAbsentKeepsOneFeedbackPerChapter() {
+    boolean first = feedbackRepository.saveIfAbsent(feedback("feedback-1", "最初"));
+    boolean second = feedbackRepository.saveIfAbsent(feedback("feedback-2", "再実行"));
+
+    assertThat(first).isTrue();
+    assertThat(second).isFalse();
+    assertThat(feedbackRepository.findAllByChapterIdIn(List.of("chap-1")))
+        .extracting(Feedback::feedbackId, Feedback::feedback)
+        .containsExactly(tuple("feedback-1", "最初"));
+    assertThat(feedbackRepository.existsByChapterId("chap-1")).isTrue();
+  }
+
+  private static Feedback feedback(String feedbackId, String text) {
+    return new Feedback(feedbackId, "chap-1", text, NOW, NOW);
+  }
+}
@@ -0,0 +1,96 @@
+package io.github.tempsotsusei.kotobanotane.infrastructure.persistence.feedbackjob;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.tempsotsusei.kotobanotane.domain.feedbackjob.FeedbackJob;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(FeedbackJobRepositoryImpl.class)
+class FeedbackJobRepositoryImplTest {
+
+  private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+  @Autowired private FeedbackJobRepositoryImpl feedbackJobRepository;
+  @Autowired private FeedbackJobJpaRepository feedbackJobJpaRepository;
+
+  @BeforeEach
+  void setUp() {
+    feedbackJobJpaRepository.saveAll(
+        List.of(
+            job("a-1", "story-a", "auth0|heavy", 1),
+            job("a-2", "story-a", "auth0|heavy", 2),
+            job("a-3", "story-a", "auth0|heavy", 3),
+            job("b-1", "story-b", "auth0|heavy", 4),
+            job("b-2", "story-b", "auth0|heavy", 5),
+            job("c-1", "story-c", "auth0|light", 6)));
+  }
+
+  /** 1 ユーザー分の上限は物語単位で数え、上限をまたぐ物語も途中で切らずに返すことを確認する。 */
+  @Test
+  void findClaimableKeepsWholeStoriesWithinPerUserLimit() {
+    List<FeedbackJob> candidates = feedbackJobRepository.findClaimable(NOW, 2, 100);
+
+    assertThat(candidates)
+        .extracting(FeedbackJob::jobId)
+        .containsExactly("a-1", "a-2", "a-3", "c-1");
+  }
+
+  /** 全体の上限も物語単位で数えることを確認する。 */
+  @Test
+  void findClaimableKeepsWholeStoriesWithinOverallLimit() {
+    List<FeedbackJob> candidates = feedbackJobRepository.findClaimable(NOW, 10, 4);
+
+    assertThat(candidates)
+        .extracting(FeedbackJob::jobId)
+        .containsExactly("a-1", "a-2", "a-3", "b-1", "b-2");
+  }
+
+  /** リース中のジョブは候補に含めないことを確認する。 */
+  @Test
+  void findClaimableSkipsLeasedJobs() {
+    FeedbackJobEntity leased = feedbackJobJpaRepository.findById("c-1").orElseThrow();
+    leased.lease("worker", NOW.plusSeconds(60));
+    feedbackJobJpaRepository.saveAndFlush(leased);
+
+    assertThat(feedbackJobRepository.findClaimable(NOW, 10, 100))
+        .extracting(FeedbackJob::jobId)
+        .doesNotContain("c-1");
+  }
+
+  /** 再試行待ちにしたジョブは、再試行時刻を過ぎるまで候補に含めないことを確認する。 */
+  @Test
+  void retryLaterHidesJobUntilRetryAt() {
+    FeedbackJobEntity leased = feedbackJobJpaRepository.findById("c-1").orElseThrow();
+    leased.lease("worker", NOW.plusSeconds(60));
+    feedbackJobJpaRepository.saveAndFlush(leased);
+
+    feedbackJobRepository.retryLater("worker", List.of("c-1"), NOW.plusSeconds(30));
+
+    assertThat(feedbackJobRepository.findClaimable(NOW.plusSeconds(10), 10, 100))
+        .extracting(FeedbackJob::jobId)
+        .doesNotContain("c-1");
+    assertThat(feedbackJobRepository.findClaimable(NOW.plusSeconds(31), 10, 100))
+        .extracting(FeedbackJob::jobId)
+        .contains("c-1");
+  }
+
+  private FeedbackJobEntity job(String jobId, String storyId, String auth0Id, int minute) {
+    return new FeedbackJobEntity(
+        jobId,
+        storyId,
+        "chap-" + jobId,
+        auth0Id,
+        "text-" + jobId,
+        0,
+        NOW.minusSeconds(600).plusSeconds(minute * 60L));
+  }
+}
@@ -0,0 +1,68 @@
+package io.github.tempsotsusei.kotobanotane.interfaces.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import io.github.tempsotsusei.kotobanotane.application.auth.AuthenticatedTokenService;
+import io.github.tempsotsusei.kotobanotane.application.feedback.FeedbackReadyNotifier;
+import io.github.tempsotsusei.kotobanotane.application.feedback.FeedbackReadyNotifier.FeedbackReady;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+
+/** `/api/story/feedback/events` の挙動を確認する統合テスト。 */
+@SpringBootTest(properties = "app.feedback-events.max-stream-millis=300")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class FeedbackEventsControllerTest {
+
+  @Autowired private MockMvc mockMvc;
+
+  @MockBean private AuthenticatedTokenService authenticatedTokenService;
+  @MockBean private FeedbackReadyNotifier feedbackReadyNotifier;
+
+  @BeforeEach
+  void setUp() {
+    when(authenticatedTokenService.extractAuth0Id(any())).thenReturn("auth0|user");
+    when(authenticatedTokenService.requireExistingAuth0Id("auth0|user")).thenReturn("auth0|user");
+  }
+
+  /** 自分の物語のフィードバック保存を feedback-ready イベントとして受け取り、上限時間で閉じることを確認する。 */
+  @Test
+  void streamsFeedbackReadyEvents() throws Exception {
+    when(feedbackReadyNotifier.subscribe("auth0|user"))
+        .thenReturn(Flux.just(new FeedbackReady("story-1", "chap-1")).concatWith(Flux.never()));
+
+    MvcResult result =
+        mockMvc
+            .perform(
+                get("/api/story/feedback/events").with(jwt()).accept(MediaType.TEXT_EVENT_STREAM))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    String body = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+    assertThat(body).contains("event:feedback-ready", "id:chap-1", "\"storyId\":\"story-1\"");
+  }
+
+  /** 未認証リクエストを 401 で弾くことを確認する。 */
+  @Test
+  void rejectsWhenUnauthenticated() throws Exception {
+    mockMvc.perform(get("/api/story/feedback/events")).andExpect(status().isUnauthorized());
+  }
+}
@@ -4,11 +4,14 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import io.github.tempsotsusei.kotobanotane.application.auth.AuthenticatedTokenService;
-import io.github.tempsotsusei.kotobanotane.application.llm.KeywordListsGenerationService;
+import io.github.tempsotsusei.kotobanotane.application.llm.InitialKeywordPool;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUnavailableException;
+import java.time.Duration;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -28,7 +31,7 @@ class StoryChapterKeywordsControllerTest {
   @Autowired private MockMvc mockMvc;
 
   @MockBean private AuthenticatedTokenService authenticatedTokenService;
-  @MockBean private KeywordListsGenerationService keywordListsGenerationService;
+  @MockBean private InitialKeywordPool initialKeywordPool;
 
   @BeforeEach
   void setUp() {
@@ -39,7 +42,7 @@ class StoryChapterKeywordsControllerTest {
   /** JWT 付きリクエストで初期キーワード配列を返すことを確認する。 */
   @Test
   void returnsKeywordsForAuthenticatedUser() throws Exception {
-    when(keywordListsGenerationService.generateInitialKeywords())
+    when(initialKeywordPool.takeOrGenerate("auth0|user"))
         .thenReturn(List.of(List.of("あお", "あか", "きいろ", "みどり")));
 
     mockMvc
@@ -49,6 +52,20 @@ class StoryChapterKeywordsControllerTest {
         .andExpect(jsonPath("$[0][3]").value("みどり"));
   }
 
+  /** LLM が利用不可の場合は 503 と Retry-After を返すことを確認する。 */
+  @Test
+  void returnsServiceUnavailableWhenLlmIsUnavailable() throws Exception {
+    when(initialKeywordPool.takeOrGenerate("auth0|user"))
+        .thenThrow(new LlmUnavailableException("circuit open", Duration.ofSeconds(12)));
+
+    mockMvc
+        .perform(get("/api/story/chapter/keywords").with(jwt()))
+        .andExpect(status().isServiceUnavailable())
+        .andExpect(header().string("Retry-After", "12"))
+        .andExpect(jsonPath("$.errorCode").value("LLM-002"))
+        .andExpect(jsonPath("$.retriable").value(true));
+  }
+
   /** 未認証リクエストを 401 で弾くことを確認する。 */
   @Test
   void rejectsWhenUnauthenticated() throws Exception {
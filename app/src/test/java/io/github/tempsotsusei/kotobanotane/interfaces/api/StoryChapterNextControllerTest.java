@@ -1,17 +1,32 @@
 package io.github.tempsotsusei.kotobanotane.interfaces.api;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import io.github.tempsotsusei.kotobanotane.application.auth.AuthenticatedTokenService;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmDeadline;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmDeadlineExceededException;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmQuotaExceededException;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUnavailableException;
+import io.github.tempsotsusei.kotobanotane.application.llm.LlmUsageLedger;
 import io.github.tempsotsusei.kotobanotane.application.story.StoryChapterNextService;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -20,7 +35,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /** `/api/story/chapter/next` の振る舞いを確認する結合テスト。 */
 @SpringBootTest
@@ -44,6 +62,7 @@ class StoryChapterNextControllerTest {
 
   @MockBean private AuthenticatedTokenService authenticatedTokenService;
   @MockBean private StoryChapterNextService storyChapterNextService;
+  @MockBean private LlmUsageLedger llmUsageLedger;
 
   @BeforeEach
   void setUp() {
@@ -54,17 +73,132 @@ class StoryChapterNextControllerTest {
   /** JWT 付きリクエストでキーワード配列が返る正常系を検証する。 */
   @Test
   void returnsKeywordsWhenAuthenticated() throws Exception {
-    when(storyChapterNextService.generateNextChapterKeywords(any()))
-        .thenReturn(List.of(List.of("ひかり", "そら", "みち", "ゆめ")));
+    when(storyChapterNextService.generateNextChapterKeywords(any(), any()))
+        .thenReturn(Mono.just(List.of(List.of("ひかり", "そら", "みち", "ゆめ"))));
+
+    MvcResult result =
+        mockMvc
+            .perform(
+                post("/api/story/chapter/next")
+                    .with(jwt())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(REQUEST_BODY))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc
+        .perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0][1]").value("そら"));
+  }
+
+  /** クライアントが X-Request-Timeout-Ms を指定した場合、設定値より短い締め切りが渡ることを検証する。 */
+  @Test
+  void passesClientRequestTimeoutAsDeadline() throws Exception {
+    when(storyChapterNextService.generateNextChapterKeywords(any(), any()))
+        .thenReturn(Mono.just(List.of(List.of("ひかり", "そら", "みち", "ゆめ"))));
 
     mockMvc
         .perform(
             post("/api/story/chapter/next")
                 .with(jwt())
+                .header("X-Request-Timeout-Ms", "3000")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(REQUEST_BODY))
-        .andExpect(status().isOk())
-        .andExpect(jsonPath("$[0][1]").value("そら"));
+        .andExpect(request().asyncStarted());
+
+    ArgumentCaptor<LlmDeadline> deadline = ArgumentCaptor.forClass(LlmDeadline.class);
+    verify(storyChapterNextService).generateNextChapterKeywords(any(), deadline.capture());
+    assertThat(deadline.getValue().remaining())
+        .isPositive()
+        .isLessThanOrEqualTo(Duration.ofSeconds(3));
+  }
+
+  /** 締め切りまでに LLM の応答が得られない場合は 504 を返すことを検証する。 */
+  @Test
+  void returnsGatewayTimeoutWhenDeadlineIsExceeded() throws Exception {
+    when(storyChapterNextService.generateNextChapterKeywords(any(), any()))
+        .thenReturn(Mono.error(new LlmDeadlineExceededException("deadline exceeded")));
+
+    MvcResult result =
+        mockMvc
+            .perform(
+                post("/api/story/chapter/next")
+                    .with(jwt())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(REQUEST_BODY))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc
+        .perform(asyncDispatch(result))
+        .andExpect(status().isGatewayTimeout())
+        .andExpect(jsonPath("$.errorCode").value("LLM-001"));
+  }
+
+  /** ストリーミング版でキーワードセットごとに SSE イベントが送られることを検証する。 */
+  @Test
+  void streamsKeywordSetsAsServerSentEvents() throws Exception {
+    when(storyChapterNextService.streamNextChapterKeywords(any(), any()))
+        .thenReturn(
+            Flux.just(
+                List.of("ひかり", "そら", "みち", "ゆめ"), List.of("うみ", "かぜ", "いす", "くつ")));
+
+    MvcResult result =
+        mockMvc
+            .perform(
+                post("/api/story/chapter/next/stream")
+                    .with(jwt())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .content(REQUEST_BODY))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    String body = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+    assertThat(body).contains("event:keywords", "\"うみ\"", "event:done");
+  }
+
+  /** ストリーム中に LLM が利用不可になった場合は error イベントで通知することを検証する。 */
+  @Test
+  void streamsErrorEventWhenLlmIsUnavailable() throws Exception {
+    when(storyChapterNextService.streamNextChapterKeywords(any(), any()))
+        .thenReturn(Flux.error(new LlmUnavailableException("circuit open", Duration.ofSeconds(5))));
+
+    MvcResult result =
+        mockMvc
+            .perform(
+                post("/api/story/chapter/next/stream")
+                    .with(jwt())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .content(REQUEST_BODY))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    String body = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+    assertThat(body).contains("event:error", "LLM-002");
+  }
+
+  /** 1 日の利用上限に達したユーザーは LLM を呼ばずに 429 と Retry-After で拒否されることを検証する。 */
+  @Test
+  void returnsTooManyRequestsWhenDailyQuotaIsExceeded() throws Exception {
+    doThrow(new LlmQuotaExceededException("quota", Duration.ofHours(3)))
+        .when(llmUsageLedger)
+        .requireWithinQuota("auth0|user");
+
+    mockMvc
+        .perform(
+            post("/api/story/chapter/next")
+                .with(jwt())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(REQUEST_BODY))
+        .andExpect(status().isTooManyRequests())
+        .andExpect(header().string("Retry-After", "10800"))
+        .andExpect(jsonPath("$.errorCode").value("LLM-003"));
+    verify(storyChapterNextService, never()).generateNextChapterKeywords(any(), any());
   }
 
   /** 未認証リクエストが 401 で拒否されることを確認する。 */
@@ -81,7 +215,7 @@ class StoryChapterNextControllerTest {
   /** Service 層からの 400 エラーが Controller でも 400 として伝播することを検証する。 */
   @Test
   void returnsBadRequestWhenServiceThrows() throws Exception {
-    when(storyChapterNextService.generateNextChapterKeywords(any()))
+    when(storyChapterNextService.generateNextChapterKeywords(any(), any()))
         .thenThrow(
             new ResponseStatusException(
                 HttpStatus.BAD_REQUEST, "chapterJson text length must be between 1 and 200"));
@@ -94,4 +228,23 @@ class StoryChapterNextControllerTest {
                 .content(REQUEST_BODY))
         .andExpect(status().isBadRequest());
   }
+
+  /** ストリーミング版でも不正な章本文はストリームを開始せずに 400 で返すことを検証する。 */
+  @Test
+  void streamReturnsBadRequestBeforeStreamingWhenTextIsInvalid() throws Exception {
+    when(storyChapterNextService.streamNextChapterKeywords(any(), any()))
+        .thenThrow(
+            new ResponseStatusException(
+                HttpStatus.BAD_REQUEST, "chapterJson text length must be between 1 and 200"));
+
+    mockMvc
+        .perform(
+            post("/api/story/chapter/next/stream")
+                .with(jwt())
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .content(REQUEST_BODY))
+        .andExpect(status().isBadRequest());
+    verify(llmUsageLedger, never()).requireWithinQuota(any());
+  }
 }
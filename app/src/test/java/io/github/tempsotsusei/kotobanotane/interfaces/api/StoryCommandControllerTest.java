@@ -1,7 +1,6 @@
 package io.github.tempsotsusei.kotobanotane.interfaces.api;
 
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
@@ -13,8 +12,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.tempsotsusei.kotobanotane.application.auth.AuthenticatedTokenService;
 import io.github.tempsotsusei.kotobanotane.application.chapter.ChapterJsonTextService;
 import io.github.tempsotsusei.kotobanotane.application.chapter.ChapterTextAnalysis;
-import io.github.tempsotsusei.kotobanotane.application.feedback.FeedbackGenerationJobService;
-import io.github.tempsotsusei.kotobanotane.application.story.ChapterFeedbackTarget;
+import io.github.tempsotsusei.kotobanotane.application.feedback.FeedbackJobWorker;
 import io.github.tempsotsusei.kotobanotane.application.story.StoryCreationResult;
 import io.github.tempsotsusei.kotobanotane.application.story.StoryCreationService;
 import java.util.List;
@@ -39,7 +37,7 @@ class StoryCommandControllerTest {
   @MockBean private AuthenticatedTokenService authenticatedTokenService;
   @MockBean private ChapterJsonTextService chapterJsonTextService;
   @MockBean private StoryCreationService storyCreationService;
-  @MockBean private FeedbackGenerationJobService feedbackGenerationJobService;
+  @MockBean private FeedbackJobWorker feedbackJobWorker;
 
   private final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -49,17 +47,12 @@ class StoryCommandControllerTest {
     when(authenticatedTokenService.requireExistingAuth0Id("auth0|user")).thenReturn("auth0|user");
   }
 
-  /** JWT 付きの正常系で storyId が返り、フィードバックジョブが章数分起動することを検証する。 */
+  /** JWT 付きの正常系で storyId が返り、フィードバックジョブのワーカーが起こされることを検証する。 */
   @Test
   void createsStoryAndStartsFeedbackJobs() throws Exception {
     when(chapterJsonTextService.analyze(any()))
         .thenReturn(new ChapterTextAnalysis("短い本文", List.of()));
-    StoryCreationResult result =
-        new StoryCreationResult(
-            "story-1",
-            List.of(
-                new ChapterFeedbackTarget("chap-1", "短い本文"),
-                new ChapterFeedbackTarget("chap-2", "短い本文")));
+    StoryCreationResult result = new StoryCreationResult("story-1");
     when(storyCreationService.createStoryWithChapters(any(), any(), any(), any()))
         .thenReturn(result);
 
@@ -84,7 +77,7 @@ class StoryCommandControllerTest {
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.storyId").value("story-1"));
 
-    verify(feedbackGenerationJobService, times(2)).generateAndSave(any(), any());
+    verify(feedbackJobWorker).wakeUp();
   }
 
   /** タイトルが16文字以上の場合に 400 となることを検証する。 */
@@ -0,0 +1,39 @@
+package io.github.tempsotsusei.kotobanotane.interfaces.config;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+/** Actuator エンドポイントの公開範囲を確認する統合テスト。 */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ActuatorSecurityTest {
+
+  @Autowired private MockMvc mockMvc;
+
+  /** ヘルスチェックは認証なしで呼べることを確認する。 */
+  @Test
+  void permitsHealthWithoutAuthentication() throws Exception {
+    mockMvc.perform(get("/actuator/health")).andExpect(status().isOk());
+  }
+
+  /** メトリクスは未認証では 401、運用者の権限が無いアプリ利用者のトークンでは 403 を返し、運用者なら読めることを確認する。 */
+  @Test
+  void requiresOperatorAuthorityForMetrics() throws Exception {
+    mockMvc.perform(get("/actuator/metrics")).andExpect(status().isUnauthorized());
+    mockMvc.perform(get("/actuator/metrics").with(jwt())).andExpect(status().isForbidden());
+    SimpleGrantedAuthority operator = new SimpleGrantedAuthority(SecurityConfig.ACTUATOR_AUTHORITY);
+    mockMvc
+        .perform(get("/actuator/metrics").with(jwt().authorities(operator)))
+        .andExpect(status().isOk());
+  }
+}